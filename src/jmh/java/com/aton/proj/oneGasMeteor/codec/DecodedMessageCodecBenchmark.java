@@ -0,0 +1,70 @@
+package com.aton.proj.oneGasMeteor.codec;
+
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aton.proj.oneGasMeteor.decoder.TekMessageDecoder;
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.model.TelemetryMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Round-trip encode + decode di decoded_data: JSON con Jackson contro
+ * {@link DecodedMessageCodec}, sui frame di esempio di
+ * {@code DecodedMessageCodecTest}.
+ *
+ * Ops/sec dal modo Throughput, bytes/op con il profiler GC:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="DecodedMessageCodecBenchmark -prof gc"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodedMessageCodecBenchmark {
+
+	/** TEK822V2 type 4, 7 misure */
+	private static final String HEX_MSG_TYPE4 = "180A640188117C0862406075927406047B0078773652FF84002100721E31000161E0860000112233445047B00005200002C84013000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000F594A4E29F30A5029F30A5029F30A5229F30A5029F30A5029F30A4E29F30A5029F30A5029F30A5029F30A5029F30A5429F30A5629F30A5A29F30A5629F30A5229F30A4E29F30A4829F30A4629F30A4229F30A4229F30000000000000000000000000000000000000000000000000000000055F7";
+
+	/** TEK822V2 type 8, 10 misure */
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+
+	@Param({ "type4", "type8" })
+	public String frame;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private DecodedMessage original;
+
+	@Setup
+	public void setUp() {
+		String hex = switch (frame) {
+		case "type4" -> HEX_MSG_TYPE4;
+		case "type8" -> HEX_MSG_TYPE8;
+		default -> throw new IllegalArgumentException("Frame sconosciuto: " + frame);
+		};
+		original = new TekMessageDecoder().decode(new TelemetryMessage(HexFormat.of().parseHex(hex), "benchmark"));
+	}
+
+	@Benchmark
+	public DecodedMessage json() throws Exception {
+		return objectMapper.readValue(objectMapper.writeValueAsBytes(original), DecodedMessage.class);
+	}
+
+	@Benchmark
+	public DecodedMessage binary() {
+		return DecodedMessageCodec.decode(DecodedMessageCodec.encode(original));
+	}
+}
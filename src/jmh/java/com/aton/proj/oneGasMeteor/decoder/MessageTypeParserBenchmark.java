@@ -0,0 +1,86 @@
+package com.aton.proj.oneGasMeteor.decoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Confronto tra il parser a scansione singola ({@link MessageTypeParser}) e la
+ * versione precedente ({@link LegacyMessageTypeParser}) sui payload di
+ * {@code MessageTypeParserTest}, letti dal frame come in TelemetryService.
+ *
+ * Ops/sec dal modo Throughput, bytes/op con il profiler GC:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="MessageTypeParserBenchmark -prof gc"}
+ * (metrica {@code gc.alloc.rate.norm}).
+ *
+ * Il logger del package è portato a WARN nel setup: con il livello DEBUG di
+ * log4j2.properties si misurerebbe il logging invece del parsing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageTypeParserBenchmark {
+
+	private static final String BODY_MT6 = ",S0=80,S1=05,S2=7F0038";
+	private static final String BODY_MT16 = ",89882390000028895236,19875,5,55,150,3,45000,1200,800,2500,148,2";
+	private static final String BODY_MT17 = ",95,134442.0,5255.9950N,00013.4000E,1.2,42.5,3,180.0,0.5,0.3,070325,8";
+
+	@Param({ "mt6", "mt16", "mt17" })
+	public String message;
+
+	private MessageTypeParser parser;
+	private LegacyMessageTypeParser legacyParser;
+	private byte[] frame;
+
+	@Setup
+	public void setUp() {
+		String body = switch (message) {
+		case "mt6" -> BODY_MT6;
+		case "mt16" -> BODY_MT16;
+		case "mt17" -> BODY_MT17;
+		default -> throw new IllegalArgumentException("Messaggio sconosciuto: " + message);
+		};
+		Configurator.setLevel(MessageTypeParser.class.getPackageName(), Level.WARN);
+		parser = new MessageTypeParser();
+		legacyParser = new LegacyMessageTypeParser();
+
+		// Header fittizio + body, come TelemetryMessage (body da offset 17)
+		byte[] ascii = body.getBytes(StandardCharsets.US_ASCII);
+		frame = new byte[17 + ascii.length];
+		System.arraycopy(ascii, 0, frame, 17, ascii.length);
+	}
+
+	@Benchmark
+	public Object legacy() {
+		return switch (message) {
+		case "mt6" -> legacyParser.parseMessageType6(frame, 17, frame.length - 17, "DEV", "TEK822V2");
+		case "mt16" -> legacyParser.parseMessageType16(frame, 17, frame.length - 17, "DEV", "TEK822V2");
+		default -> legacyParser.parseMessageType17(frame, 17, frame.length - 17, "DEV", "TEK822V2");
+		};
+	}
+
+	@Benchmark
+	public Object singlePass() {
+		return switch (message) {
+		case "mt6" -> parser.parseMessageType6(frame, 17, frame.length - 17, "DEV", "TEK822V2");
+		case "mt16" -> parser.parseMessageType16(frame, 17, frame.length - 17, "DEV", "TEK822V2");
+		default -> parser.parseMessageType17(frame, 17, frame.length - 17, "DEV", "TEK822V2");
+		};
+	}
+}
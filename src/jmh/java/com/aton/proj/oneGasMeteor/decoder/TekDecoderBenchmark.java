@@ -0,0 +1,97 @@
+package com.aton.proj.oneGasMeteor.decoder;
+
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.model.TelemetryMessage;
+
+/**
+ * Confronto tra decodifica completa ({@link TekMessageDecoder#decode}) e vista
+ * flyweight ({@link TekFrameView}) sui frame di esempio di
+ * {@code TekMessageDecoderTest}.
+ *
+ * Ops/sec dal modo Throughput, bytes/op con il profiler GC:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="TekDecoderBenchmark -prof gc"}
+ * (metrica {@code gc.alloc.rate.norm}).
+ *
+ * Entrambi i benchmark leggono gli stessi campi (IMEI, tipo, tutte le misure)
+ * per confrontare lavoro equivalente.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TekDecoderBenchmark {
+
+	/** TEK822V2 type 4, 7 misure */
+	private static final String HEX_MSG_TYPE4 = "180A640188117C0862406075927406047B0078773652FF84002100721E31000161E0860000112233445047B00005200002C84013000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000F594A4E29F30A5029F30A5029F30A5229F30A5029F30A5029F30A4E29F30A5029F30A5029F30A5029F30A5029F30A5429F30A5629F30A5A29F30A5629F30A5229F30A4E29F30A4829F30A4629F30A4229F30A4229F30000000000000000000000000000000000000000000000000000000055F7";
+
+	/** TEK822V2 type 8, 10 misure */
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+
+	/** TEK822V2 type 16, solo header (body ASCII) */
+	private static final String HEX_MSG_TYPE16 = "18020344891936086443104798705410462C38393838323830363636303031303637353334382C3435323237332C302C38302C323335352C31382C35383937342C3732362C362C33393439362C313639362C36302C7EE0";
+
+	@Param({ "type4", "type8", "type16" })
+	public String frame;
+
+	private TekMessageDecoder decoder;
+	private TelemetryMessage message;
+
+	@Setup
+	public void setUp() {
+		String hex = switch (frame) {
+		case "type4" -> HEX_MSG_TYPE4;
+		case "type8" -> HEX_MSG_TYPE8;
+		case "type16" -> HEX_MSG_TYPE16;
+		default -> throw new IllegalArgumentException("Frame sconosciuto: " + frame);
+		};
+		decoder = new TekMessageDecoder();
+		message = new TelemetryMessage(HexFormat.of().parseHex(hex), "benchmark");
+	}
+
+	@Benchmark
+	public void pojoDecoder(Blackhole bh) {
+		DecodedMessage decoded = decoder.decode(message);
+		bh.consume(decoded.getUniqueIdentifier().getImei());
+		bh.consume(decoded.getUnitInfo().getProductType());
+		for (DecodedMessage.MeasurementData m : decoded.getMeasurementData()) {
+			bh.consume(m.getDistanceCm());
+			bh.consume(m.getTemperatureC());
+			bh.consume(m.getSonicRssi());
+			bh.consume(m.getTimestamp());
+		}
+	}
+
+	@Benchmark
+	public void flyweightView(Blackhole bh) {
+		TekFrameView view = decoder.view(message);
+		bh.consume(view.imei());
+		bh.consume(view.productType());
+		for (int slot = 0; slot < view.measurementSlots(); slot++) {
+			if (view.isVoid(slot)) {
+				continue;
+			}
+			bh.consume(view.distanceCm(slot));
+			bh.consume(view.temperatureC(slot));
+			bh.consume(view.sonicRssi(slot));
+			bh.consume(view.timestampMillis(slot));
+		}
+	}
+}
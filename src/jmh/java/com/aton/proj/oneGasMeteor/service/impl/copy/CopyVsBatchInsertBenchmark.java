@@ -0,0 +1,138 @@
+package com.aton.proj.oneGasMeteor.service.impl.copy;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.service.impl.BatchInsertService;
+
+/**
+ * Righe/secondo di {@link BatchInsertService#flushAll()} su telemetry_data con
+ * batch INSERT JDBC e con COPY binario ({@link CopyBatchWriter}).
+ *
+ * Richiede un PostgreSQL/TimescaleDB locale:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="CopyVsBatchInsertBenchmark -jvmArgs -Djmh.pg.url=jdbc:postgresql://localhost:5432/onegas?user=postgres&password=postgres"}
+ *
+ * telemetry_data è creata come tabella TEMP della sessione: copre quella reale
+ * (se esiste) e sparisce alla chiusura, il database non viene toccato.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CopyVsBatchInsertBenchmark {
+
+	private static final int ROWS = 10_000;
+
+	private static final String CREATE_TEMP_TABLE = "CREATE TEMP TABLE telemetry_data ("
+			+ "id BIGINT GENERATED ALWAYS AS IDENTITY, device_id VARCHAR(50) NOT NULL, "
+			+ "device_type VARCHAR(50) NOT NULL, raw_message TEXT, decoded_data TEXT, decoded_data_bin BYTEA, "
+			+ "received_at TIMESTAMP(3) NOT NULL, processed_at TIMESTAMP(3), imei VARCHAR(20), "
+			+ "firmware_version VARCHAR(20), battery_voltage DOUBLE PRECISION, battery_percentage DOUBLE PRECISION, "
+			+ "signal_strength INT, message_type VARCHAR(50), measurement_count INT)";
+
+	@Param({ "jdbc", "copy" })
+	public String writer;
+
+	@Param({ "100", "1000" })
+	public int batchSize;
+
+	private SingleConnectionDataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+	private BatchInsertService service;
+	private TelemetryEntity[] entities;
+
+	@Setup
+	public void setUp() {
+		String url = System.getProperty("jmh.pg.url");
+		if (url == null) {
+			throw new IllegalStateException("Specificare -Djmh.pg.url=jdbc:postgresql://...");
+		}
+		// Una sola connessione: la tabella TEMP è visibile solo a questa sessione
+		dataSource = new SingleConnectionDataSource(url, true);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute(CREATE_TEMP_TABLE);
+
+		CopyBatchWriter copyWriter = null;
+		if (writer.equals("copy")) {
+			copyWriter = new CopyBatchWriter(jdbcTemplate);
+			ReflectionTestUtils.setField(copyWriter, "bufferSize", 65536);
+			ReflectionTestUtils.invokeMethod(copyWriter, "detectDatabase");
+			if (!copyWriter.isAvailable()) {
+				throw new IllegalStateException("COPY non disponibile su " + url);
+			}
+		}
+
+		service = new BatchInsertService(jdbcTemplate, null, new MockEnvironment(), copyWriter);
+		ReflectionTestUtils.setField(service, "batchSize", batchSize);
+		ReflectionTestUtils.setField(service, "intervalMs", 3_600_000L);
+		ReflectionTestUtils.invokeMethod(service, "startFlushers");
+		// Nessun worker in background: la connessione è una sola, scrive solo flushAll()
+		ReflectionTestUtils.setField(service, "running", false);
+
+		entities = new TelemetryEntity[ROWS];
+		LocalDateTime now = LocalDateTime.now();
+		for (int i = 0; i < ROWS; i++) {
+			entities[i] = telemetry(i, now.minusSeconds(i));
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void truncate() {
+		jdbcTemplate.execute("TRUNCATE telemetry_data");
+	}
+
+	@TearDown
+	public void tearDown() {
+		ReflectionTestUtils.invokeMethod(service, "stopFlushers");
+		dataSource.destroy();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void flush() {
+		for (TelemetryEntity entity : entities) {
+			service.enqueue(entity);
+		}
+		service.flushAll();
+	}
+
+	private static TelemetryEntity telemetry(int i, LocalDateTime receivedAt) {
+		TelemetryEntity e = new TelemetryEntity();
+		e.setDeviceId("bench-" + (i % 500));
+		e.setDeviceType("TEK822V2");
+		e.setRawMessage("180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE");
+		e.setDecodedDataJson("{\"measurementData\":[{\"distanceCm\":42,\"temperatureC\":18.5}]}");
+		e.setReceivedAt(receivedAt);
+		e.setProcessedAt(receivedAt);
+		e.setImei("864431047987054");
+		e.setFirmwareVersion("1.2");
+		e.setBatteryVoltage(3.6);
+		e.setBatteryPercentage(87.0);
+		e.setSignalStrength(18);
+		e.setMessageType("8");
+		e.setMeasurementCount(10);
+		return e;
+	}
+}
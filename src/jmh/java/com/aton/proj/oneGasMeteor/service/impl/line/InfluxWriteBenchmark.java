@@ -0,0 +1,143 @@
+package com.aton.proj.oneGasMeteor.service.impl.line;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.service.impl.InfluxDBBatchInsertService;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.InfluxDBClientFactory;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Righe/secondo di {@link InfluxDBBatchInsertService#flushAll()} con
+ * WriteApiBlocking e Point ("blocking") e con {@link PipelinedInfluxDBWriter}
+ * ("pipelined"), contro un server HTTP locale che risponde 204 a
+ * /api/v2/write dopo latencyMs (tempo di scrittura simulato di InfluxDB).
+ *
+ * Nessuna installazione richiesta:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="InfluxWriteBenchmark -prof gc"}
+ *
+ * Nel caso pipelined ogni invocazione attende anche la fine delle richieste
+ * in volo, così i due casi misurano lo stesso lavoro.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InfluxWriteBenchmark {
+
+	private static final int ROWS = 10_000;
+
+	@Param({ "blocking", "pipelined" })
+	public String writer;
+
+	@Param({ "0", "5" })
+	public int latencyMs;
+
+	private ExecutorService serverExecutor;
+	private HttpServer server;
+	private InfluxDBClient client;
+	private PipelinedInfluxDBWriter pipelinedWriter;
+	private InfluxDBBatchInsertService service;
+	private TelemetryEntity[] entities;
+
+	@Setup
+	public void setUp() throws IOException {
+		serverExecutor = Executors.newFixedThreadPool(8);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			try (InputStream in = exchange.getRequestBody()) {
+				in.transferTo(OutputStream.nullOutputStream());
+			}
+			if (latencyMs > 0) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+			}
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+		});
+		server.setExecutor(serverExecutor);
+		server.start();
+		String url = "http://127.0.0.1:" + server.getAddress().getPort();
+
+		client = InfluxDBClientFactory.create(url, "bench-token".toCharArray(), "ongas", "oneGasDB");
+		if (writer.equals("pipelined")) {
+			pipelinedWriter = new PipelinedInfluxDBWriter(url, "ongas", "oneGasDB", "bench-token");
+			pipelinedWriter.start();
+		}
+		service = new InfluxDBBatchInsertService(client.getWriteApiBlocking(), null, pipelinedWriter);
+		ReflectionTestUtils.setField(service, "batchSize", 1000);
+
+		entities = new TelemetryEntity[ROWS];
+		LocalDateTime now = LocalDateTime.now();
+		for (int i = 0; i < ROWS; i++) {
+			entities[i] = telemetry(i, now.minusSeconds(i));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		if (pipelinedWriter != null) {
+			pipelinedWriter.shutdown();
+		}
+		client.close();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void flush() {
+		for (TelemetryEntity entity : entities) {
+			service.enqueue(entity);
+		}
+		service.flushAll();
+		if (pipelinedWriter != null) {
+			// i permessi vengono presi prima che flush() ritorni: a zero tutti i batch hanno risposta
+			while (pipelinedWriter.getInFlight() > 0) {
+				LockSupport.parkNanos(10_000);
+			}
+		}
+	}
+
+	private static TelemetryEntity telemetry(int i, LocalDateTime receivedAt) {
+		TelemetryEntity e = new TelemetryEntity();
+		e.setDeviceId("bench-" + (i % 500));
+		e.setDeviceType("TEK822V2");
+		e.setRawMessage("180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE");
+		e.setDecodedDataJson("{\"measurementData\":[{\"distanceCm\":42,\"temperatureC\":18.5}]}");
+		e.setReceivedAt(receivedAt);
+		e.setImei("864431047987054");
+		e.setFirmwareVersion("1.2");
+		e.setBatteryVoltage(3.6);
+		e.setBatteryPercentage(87.0);
+		e.setSignalStrength(18);
+		e.setMessageType("8");
+		e.setMeasurementCount(10);
+		return e;
+	}
+}
@@ -0,0 +1,105 @@
+package com.aton.proj.oneGasMeteor.loadgen;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Istanti di connessione dei device simulati, in ordine di tempo.
+ *
+ * <ul>
+ * <li>poisson: arrivi indipendenti a rate costante (connessioni/s), device
+ * scelti a caso</li>
+ * <li>sync: tutta la flotta si connette all'inizio di ogni periodo entro
+ * jitter ms (schedule S2 uguale per tutti, RTC leggermente sfasati)</li>
+ * <li>ramp: come poisson ma con rate che cresce linearmente da 0 a rate nella
+ * durata del test</li>
+ * </ul>
+ *
+ * @param offsetsNanos Istante di ogni connessione dall'inizio del test
+ * @param devices      Indice del device per ogni connessione
+ */
+public record ArrivalSchedule(long[] offsetsNanos, int[] devices) {
+
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	public int size() {
+		return offsetsNanos.length;
+	}
+
+	public static ArrivalSchedule poisson(int devices, double ratePerSecond, int durationSeconds, Random random) {
+		Builder builder = new Builder();
+		double t = exponential(random);
+		while (t / ratePerSecond < durationSeconds) {
+			builder.add((long) (t / ratePerSecond * NANOS_PER_SECOND), random.nextInt(devices));
+			t += exponential(random);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Rate λ(t) = rate·t/D: con Λ(t) = rate·t²/2D, l'arrivo k-esimo di un
+	 * processo a rate 1 (s_k) cade in t_k = sqrt(2·D·s_k / rate)
+	 */
+	public static ArrivalSchedule ramp(int devices, double peakRatePerSecond, int durationSeconds, Random random) {
+		Builder builder = new Builder();
+		double s = exponential(random);
+		double t;
+		while ((t = Math.sqrt(2 * durationSeconds * s / peakRatePerSecond)) < durationSeconds) {
+			builder.add((long) (t * NANOS_PER_SECOND), random.nextInt(devices));
+			s += exponential(random);
+		}
+		return builder.build();
+	}
+
+	public static ArrivalSchedule synchronizedFleet(int devices, int periodSeconds, int jitterMs,
+			int durationSeconds, Random random) {
+		Builder builder = new Builder();
+		for (long start = 0; start < durationSeconds; start += Math.max(1, periodSeconds)) {
+			for (int device = 0; device < devices; device++) {
+				long jitterNanos = jitterMs > 0 ? (long) (random.nextDouble() * jitterMs * 1_000_000L) : 0;
+				builder.add(start * NANOS_PER_SECOND + jitterNanos, device);
+			}
+		}
+		return builder.build().sorted();
+	}
+
+	private ArrivalSchedule sorted() {
+		Integer[] order = new Integer[offsetsNanos.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(offsetsNanos[a], offsetsNanos[b]));
+		long[] offsets = new long[order.length];
+		int[] deviceIndexes = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			offsets[i] = offsetsNanos[order[i]];
+			deviceIndexes[i] = devices[order[i]];
+		}
+		return new ArrivalSchedule(offsets, deviceIndexes);
+	}
+
+	private static double exponential(Random random) {
+		return -Math.log(1 - random.nextDouble());
+	}
+
+	private static final class Builder {
+
+		private long[] offsets = new long[1024];
+		private int[] devices = new int[1024];
+		private int size;
+
+		void add(long offsetNanos, int device) {
+			if (size == offsets.length) {
+				offsets = Arrays.copyOf(offsets, size * 2);
+				devices = Arrays.copyOf(devices, size * 2);
+			}
+			offsets[size] = offsetNanos;
+			devices[size] = device;
+			size++;
+		}
+
+		ArrivalSchedule build() {
+			return new ArrivalSchedule(Arrays.copyOf(offsets, size), Arrays.copyOf(devices, size));
+		}
+	}
+}
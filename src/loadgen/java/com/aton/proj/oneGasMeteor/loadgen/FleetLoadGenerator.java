@@ -0,0 +1,424 @@
+package com.aton.proj.oneGasMeteor.loadgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToIntFunction;
+
+import com.aton.proj.oneGasMeteor.service.metrics.LatencyHistogram;
+
+/**
+ * Flotta di device TEK simulati, per dimensionare pod e database senza
+ * hardware reale.
+ *
+ * Ogni device ha IMEI e product type fissi e un contatore messaggi; a ogni
+ * connessione invia un frame ({@link TekFrameBuilder}) del tipo estratto dal
+ * mix configurato, chiude l'output e legge la risposta fino alla chiusura del
+ * server, come i device reali. La risposta deve essere vuota o nel formato
+ * {@code PASSWORD,REG=VAL,...}; le richieste ricevute cambiano il messaggio
+ * successivo del device (R6=02 → type 16, R1=02/04/08 → type 6, R1=20 → type
+ * 8, R7 → type 17).
+ *
+ * Parametri ({@code --nome=valore}):
+ * <ul>
+ * <li>host, port: istanza da caricare (default localhost:8091)</li>
+ * <li>devices: dimensione della flotta (default 1000)</li>
+ * <li>pattern: poisson, sync o ramp (default poisson, vedi
+ * {@link ArrivalSchedule})</li>
+ * <li>rate: connessioni/s per poisson, rate finale per ramp (default 100)</li>
+ * <li>period-s, jitter-ms: periodo e dispersione degli arrivi per sync
+ * (default 60 e 2000)</li>
+ * <li>duration-s: durata del test (default 60)</li>
+ * <li>products: mix di product type (default
+ * TEK822V2:60,TEK822V1:25,TEK811:15)</li>
+ * <li>messages: mix di message type (default 4:80,8:5,9:5,6:4,16:4,17:2)</li>
+ * <li>concurrency: connessioni contemporanee massime (default 1024)</li>
+ * <li>timeout-ms: timeout di connect e lettura (default 10000)</li>
+ * <li>seed: seme per flotta e istanti di arrivo (default 1)</li>
+ * </ul>
+ *
+ * Esecuzione:
+ * {@code mvn -Ploadgen test-compile exec:exec -Dloadgen.args="--devices=20000 --pattern=sync --period-s=30"}
+ *
+ * Il rapporto riporta throughput, tasso di errore per causa, percentili e
+ * istogramma di latenza per message type, comandi ricevuti e ritardo massimo
+ * sulla tabella di marcia.
+ */
+public class FleetLoadGenerator {
+
+	/** Limiti superiori (ms) delle classi dell'istogramma di latenza */
+	private static final long[] LATENCY_BOUNDS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+	private static final Set<Integer> MESSAGE_TYPES = Set.of(4, 8, 9, 6, 16, 17);
+
+	private final InetSocketAddress target;
+	private final int timeoutMs;
+	private final Semaphore inFlight;
+	private final int[] messageMix;
+
+	private final String[] productTypes;
+	private final String[] imeis;
+	private final AtomicIntegerArray messageCounts;
+	/** Message type richiesto dal server per la prossima connessione (0 = mix) */
+	private final AtomicIntegerArray requestedTypes;
+
+	private final Map<Integer, TypeStats> statsByType = new TreeMap<>();
+	private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BOUNDS_MS.length + 1);
+	private final Map<String, LongAdder> commandsByRegister = new ConcurrentHashMap<>();
+	private final AtomicLong connectErrors = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong ioErrors = new AtomicLong();
+	private final AtomicLong badReplies = new AtomicLong();
+	private final LongAccumulator maxLagMicros = new LongAccumulator(Math::max, 0);
+
+	/** Statistiche di un message type */
+	private static final class TypeStats {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final LongAdder sent = new LongAdder();
+		final LongAdder failed = new LongAdder();
+	}
+
+	public FleetLoadGenerator(InetSocketAddress target, int devices, Map<String, Integer> productMix,
+			Map<String, Integer> messageMix, int concurrency, int timeoutMs, Random random) {
+		this.target = target;
+		this.timeoutMs = timeoutMs;
+		this.inFlight = new Semaphore(Math.max(1, concurrency));
+		this.messageMix = expand(messageMix, Integer::parseInt);
+
+		String[] products = expand(productMix);
+		for (String product : productMix.keySet()) {
+			if (!TekFrameBuilder.PRODUCT_CODES.containsKey(product)) {
+				throw new IllegalArgumentException("Unknown product type: " + product);
+			}
+		}
+		for (int type : this.messageMix) {
+			if (!MESSAGE_TYPES.contains(type)) {
+				throw new IllegalArgumentException("Unsupported message type: " + type + " " + MESSAGE_TYPES);
+			}
+			statsByType.computeIfAbsent(type, t -> new TypeStats());
+		}
+		for (int type : new int[] { 6, 8, 16, 17 }) {
+			statsByType.computeIfAbsent(type, t -> new TypeStats());
+		}
+
+		this.productTypes = new String[devices];
+		this.imeis = new String[devices];
+		for (int i = 0; i < devices; i++) {
+			productTypes[i] = products[random.nextInt(products.length)];
+			imeis[i] = String.format("35%013d", i);
+		}
+		this.messageCounts = new AtomicIntegerArray(devices);
+		this.requestedTypes = new AtomicIntegerArray(devices);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		Random random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+		int devices = Integer.parseInt(options.getOrDefault("devices", "1000"));
+		int durationSeconds = Integer.parseInt(options.getOrDefault("duration-s", "60"));
+		double rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+		String pattern = options.getOrDefault("pattern", "poisson");
+
+		FleetLoadGenerator generator = new FleetLoadGenerator(
+				new InetSocketAddress(options.getOrDefault("host", "localhost"),
+						Integer.parseInt(options.getOrDefault("port", "8091"))),
+				devices,
+				parseMix(options.getOrDefault("products", "TEK822V2:60,TEK822V1:25,TEK811:15")),
+				parseMix(options.getOrDefault("messages", "4:80,8:5,9:5,6:4,16:4,17:2")),
+				Integer.parseInt(options.getOrDefault("concurrency", "1024")),
+				Integer.parseInt(options.getOrDefault("timeout-ms", "10000")), random);
+
+		ArrivalSchedule schedule = switch (pattern) {
+		case "poisson" -> ArrivalSchedule.poisson(devices, rate, durationSeconds, random);
+		case "ramp" -> ArrivalSchedule.ramp(devices, rate, durationSeconds, random);
+		case "sync" -> ArrivalSchedule.synchronizedFleet(devices,
+				Integer.parseInt(options.getOrDefault("period-s", "60")),
+				Integer.parseInt(options.getOrDefault("jitter-ms", "2000")), durationSeconds, random);
+		default -> throw new IllegalArgumentException("Unknown pattern: " + pattern + " (poisson, sync, ramp)");
+		};
+
+		System.out.printf("Simulating %d devices against %s: pattern %s, %d connections in %d s%n", devices,
+				generator.target, pattern, schedule.size(), durationSeconds);
+		generator.run(schedule);
+	}
+
+	public void run(ArrivalSchedule schedule) throws InterruptedException {
+		long startNanos = System.nanoTime();
+
+		try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < schedule.size(); i++) {
+				long dueNanos = startNanos + schedule.offsetsNanos()[i];
+				long wait;
+				while ((wait = dueNanos - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(wait);
+				}
+
+				inFlight.acquire();
+				maxLagMicros.accumulate((System.nanoTime() - dueNanos) / 1000);
+				int device = schedule.devices()[i];
+				workers.execute(() -> {
+					try {
+						connect(device);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+		}
+
+		report(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Una connessione del device: frame, risposta, eventuale richiesta per il
+	 * messaggio successivo
+	 */
+	private void connect(int device) {
+		int requested = requestedTypes.getAndSet(device, 0);
+		int messageType = requested != 0 ? requested
+				: messageMix[ThreadLocalRandom.current().nextInt(messageMix.length)];
+		byte[] frame = TekFrameBuilder.build(productTypes[device], imeis[device], messageType,
+				messageCounts.incrementAndGet(device) & 0xFFFF,
+				LocalTime.now(ZoneOffset.UTC).toSecondOfDay() / 60, ThreadLocalRandom.current());
+
+		TypeStats stats = statsByType.get(messageType);
+		stats.sent.increment();
+		long start = System.nanoTime();
+		byte[] reply;
+		try (Socket socket = new Socket()) {
+			try {
+				socket.connect(target, timeoutMs);
+			} catch (IOException e) {
+				connectErrors.incrementAndGet();
+				stats.failed.increment();
+				return;
+			}
+			socket.setSoTimeout(timeoutMs);
+			socket.getOutputStream().write(frame);
+			socket.getOutputStream().flush();
+			socket.shutdownOutput();
+			reply = readReply(socket.getInputStream());
+		} catch (SocketTimeoutException e) {
+			timeouts.incrementAndGet();
+			stats.failed.increment();
+			return;
+		} catch (IOException e) {
+			ioErrors.incrementAndGet();
+			stats.failed.increment();
+			return;
+		}
+
+		long micros = (System.nanoTime() - start) / 1000;
+		List<String[]> commands = parseReply(reply);
+		if (commands == null) {
+			badReplies.incrementAndGet();
+			stats.failed.increment();
+			return;
+		}
+		stats.latency.recordMicros(micros);
+		latencyBuckets.incrementAndGet(bucket(micros / 1000));
+		for (String[] command : commands) {
+			commandsByRegister.computeIfAbsent(command[0], k -> new LongAdder()).increment();
+			int next = requestedMessageType(command[0], command[1]);
+			if (next != 0) {
+				requestedTypes.set(device, next);
+			}
+		}
+	}
+
+	private static byte[] readReply(InputStream in) throws IOException {
+		ByteArrayOutputStream reply = new ByteArrayOutputStream();
+		byte[] buffer = new byte[512];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			reply.write(buffer, 0, n);
+		}
+		return reply.toByteArray();
+	}
+
+	/**
+	 * Risposta {@code PASSWORD,REG=VAL,...} (vedi
+	 * {@code ControllerUtils.concatenateCommands}): coppie registro/valore, lista
+	 * vuota se la risposta è vuota, null se il formato non è valido
+	 */
+	static List<String[]> parseReply(byte[] reply) {
+		List<String[]> commands = new ArrayList<>();
+		if (reply.length == 0) {
+			return commands;
+		}
+		String[] tokens = new String(reply, StandardCharsets.US_ASCII).split(",");
+		if (tokens.length < 2 || tokens[0].isEmpty() || tokens[0].contains("=")) {
+			return null;
+		}
+		for (int i = 1; i < tokens.length; i++) {
+			int eq = tokens[i].indexOf('=');
+			if (eq <= 0 || !isRegister(tokens[i].substring(0, eq))) {
+				return null;
+			}
+			commands.add(new String[] { tokens[i].substring(0, eq), tokens[i].substring(eq + 1) });
+		}
+		return commands;
+	}
+
+	private static boolean isRegister(String name) {
+		if (name.length() < 2 || (name.charAt(0) != 'S' && name.charAt(0) != 'R')) {
+			return false;
+		}
+		for (int i = 1; i < name.length(); i++) {
+			if (!Character.isDigit(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Messaggio che il device invia alla connessione successiva in risposta a una
+	 * richiesta del server (0 = nessuna)
+	 */
+	static int requestedMessageType(String register, String value) {
+		return switch (register) {
+		case "R6" -> "02".equals(value) ? 16 : 0;
+		case "R1" -> switch (value) {
+			case "02", "04", "08" -> 6;
+			case "20" -> 8;
+			default -> 0;
+			};
+		case "R7" -> 17;
+		default -> 0;
+		};
+	}
+
+	private static int bucket(long millis) {
+		for (int i = 0; i < LATENCY_BOUNDS_MS.length; i++) {
+			if (millis <= LATENCY_BOUNDS_MS[i]) {
+				return i;
+			}
+		}
+		return LATENCY_BOUNDS_MS.length;
+	}
+
+	private void report(long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		long sent = 0;
+		long failed = 0;
+		for (TypeStats stats : statsByType.values()) {
+			sent += stats.sent.sum();
+			failed += stats.failed.sum();
+		}
+
+		System.out.printf("%nConnections:      %d (ok %d, failed %d)%n", sent, sent - failed, failed);
+		System.out.printf("Elapsed:          %.1f s%n", seconds);
+		System.out.printf("Throughput:       %.1f frames/s%n", seconds > 0 ? (sent - failed) / seconds : 0);
+		System.out.printf("Error rate:       %.3f%% (connect %d, timeout %d, io %d, bad reply %d)%n",
+				sent > 0 ? failed * 100.0 / sent : 0, connectErrors.get(), timeouts.get(), ioErrors.get(),
+				badReplies.get());
+		System.out.printf("Max schedule lag: %.1f ms%n", maxLagMicros.get() / 1000.0);
+
+		System.out.printf("%n%-6s %9s %8s %9s %9s %9s %9s%n", "type", "sent", "failed", "p50 ms", "p99 ms",
+				"p999 ms", "max ms");
+		for (Map.Entry<Integer, TypeStats> entry : statsByType.entrySet()) {
+			TypeStats stats = entry.getValue();
+			if (stats.sent.sum() == 0) {
+				continue;
+			}
+			System.out.printf("%-6d %9d %8d %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(), stats.sent.sum(),
+					stats.failed.sum(), stats.latency.quantileMicros(0.50) / 1000.0,
+					stats.latency.quantileMicros(0.99) / 1000.0, stats.latency.quantileMicros(0.999) / 1000.0,
+					stats.latency.maxMicros() / 1000.0);
+		}
+
+		long ok = sent - failed;
+		System.out.printf("%nLatency histogram:%n");
+		for (int i = 0; i <= LATENCY_BOUNDS_MS.length; i++) {
+			long count = latencyBuckets.get(i);
+			String label = i < LATENCY_BOUNDS_MS.length ? "<= " + LATENCY_BOUNDS_MS[i] + " ms"
+					: "> " + LATENCY_BOUNDS_MS[i - 1] + " ms";
+			int bar = ok > 0 ? (int) Math.round(count * 50.0 / ok) : 0;
+			System.out.printf("  %-11s %9d %s%n", label, count, "#".repeat(bar));
+		}
+
+		if (!commandsByRegister.isEmpty()) {
+			System.out.printf("%nCommands received:%n");
+			new TreeMap<>(commandsByRegister)
+					.forEach((register, count) -> System.out.printf("  %-4s %d%n", register, count.sum()));
+		}
+	}
+
+	/**
+	 * "A:60,B:40" → {A=60, B=40}
+	 */
+	static Map<String, Integer> parseMix(String mix) {
+		Map<String, Integer> weights = new HashMap<>();
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Invalid mix entry: " + entry + " (expected name:weight)");
+			}
+			weights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+		}
+		return weights;
+	}
+
+	/**
+	 * Tabella in cui ogni valore compare tante volte quanto il suo peso: un
+	 * indice casuale estrae secondo il mix
+	 */
+	private static String[] expand(Map<String, Integer> mix) {
+		List<String> table = new ArrayList<>();
+		new TreeMap<>(mix).forEach((value, weight) -> {
+			for (int i = 0; i < weight; i++) {
+				table.add(value);
+			}
+		});
+		if (table.isEmpty()) {
+			throw new IllegalArgumentException("Empty mix: " + mix);
+		}
+		return table.toArray(String[]::new);
+	}
+
+	private static int[] expand(Map<String, Integer> mix, ToIntFunction<String> parser) {
+		String[] table = expand(mix);
+		int[] values = new int[table.length];
+		for (int i = 0; i < table.length; i++) {
+			values[i] = parser.applyAsInt(table[i]);
+		}
+		return values;
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("Unrecognized argument: " + arg + " (expected --name=value)");
+			}
+			int eq = arg.indexOf('=');
+			options.put(arg.substring(2, eq), arg.substring(eq + 1));
+		}
+		return options;
+	}
+}
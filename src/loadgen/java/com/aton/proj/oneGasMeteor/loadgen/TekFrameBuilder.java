@@ -0,0 +1,151 @@
+package com.aton.proj.oneGasMeteor.loadgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Costruzione di frame TEK sintetici secondo le regole di
+ * {@code TekMessageDecoder} e {@code MessageTypeParser}.
+ *
+ * Header di 17 byte: product code (0), hw/fw (1-2), contact reason (3), alarm
+ * e last reset (4), CSQ/RSSI (5), batteria e diagnostica (6), IMEI BCD con
+ * zero iniziale (7-14), lunghezza del body a 10 bit (bit 7:6 di 15 + byte 16)
+ * e message type (bit 5:0 di 15).
+ *
+ * Body 4/8/9: 9 byte di diagnostica (contatore 17-18, ore RTC 19, energia
+ * 20-21, logger speed 23, minuti RTC 25), 28 slot di misura da 4 byte dal
+ * byte 26, 2 byte finali. Body 6/16/17: ASCII separato da virgole con virgola
+ * iniziale.
+ */
+public final class TekFrameBuilder {
+
+	public static final int HEADER_SIZE = 17;
+	public static final int MEASUREMENT_SLOTS = 28;
+	private static final int DIAGNOSTIC_BYTES = 9;
+	private static final int MEASUREMENT_BODY = DIAGNOSTIC_BYTES + MEASUREMENT_SLOTS * 4 + 2;
+
+	/** Codice prodotto (byte 0) per product type */
+	public static final Map<String, Integer> PRODUCT_CODES = Map.ofEntries(
+			Map.entry("TEK586", 2), Map.entry("TEK733", 5), Map.entry("TEK643", 6), Map.entry("TEK811", 7),
+			Map.entry("TEK822V1", 8), Map.entry("TEK733A", 9), Map.entry("TEK871", 10), Map.entry("TEK811A", 11),
+			Map.entry("TEK822V1BTN", 23), Map.entry("TEK822V2", 24), Map.entry("TEK900", 25),
+			Map.entry("TEK880", 26), Map.entry("TEK898V2", 27), Map.entry("TEK898V1", 28));
+
+	/** hw 2.1, fw 4.3 (sopra 3.0: byte 20-21 = energia) */
+	private static final byte HW_REVISION = 0x0A;
+	private static final byte FW_REVISION = 0x64;
+	/** Logger speed 15 minuti sia per il type 4 (bit 6:0) sia per 8/9 (bit 7) */
+	private static final byte LOGGER_SPEED_15_MIN = (byte) 0x81;
+
+	private TekFrameBuilder() {
+	}
+
+	/**
+	 * @param productType  Product type (chiave di {@link #PRODUCT_CODES})
+	 * @param imei         IMEI di 15 cifre
+	 * @param messageType  4, 8, 9, 6, 16 o 17
+	 * @param messageCount Contatore messaggi del device
+	 * @param utcMinuteOfDay Ora del RTC del device (minuti dalla mezzanotte UTC)
+	 * @param random       Sorgente dei valori misurati
+	 */
+	public static byte[] build(String productType, String imei, int messageType, int messageCount,
+			int utcMinuteOfDay, Random random) {
+		byte[] body = switch (messageType) {
+		case 4, 8, 9 -> measurementBody(messageType, messageCount, utcMinuteOfDay, random);
+		case 6 -> settingsBody(random);
+		case 16 -> statisticsBody(messageCount, random);
+		case 17 -> gpsBody(utcMinuteOfDay, random);
+		default -> throw new IllegalArgumentException("Message type non supportato: " + messageType);
+		};
+		Integer productCode = PRODUCT_CODES.get(productType);
+		if (productCode == null) {
+			throw new IllegalArgumentException("Product type sconosciuto: " + productType);
+		}
+
+		byte[] frame = new byte[HEADER_SIZE + body.length];
+		frame[0] = productCode.byteValue();
+		frame[1] = HW_REVISION;
+		frame[2] = FW_REVISION;
+		// Contact reason: allarme per il type 8, altrimenti schedulato
+		frame[3] = (byte) (messageType == 8 ? 0x02 : 0x01);
+		frame[4] = (byte) (messageType == 8 ? 0x81 : 0x00);
+		frame[5] = (byte) (10 + random.nextInt(22));
+		// RTC impostato, LTE attivo, batteria 20-31
+		frame[6] = (byte) (0x60 | (20 + random.nextInt(12)));
+		writeImei(frame, imei);
+		frame[15] = (byte) (((body.length >> 8) & 0x03) << 6 | (messageType & 0x3F));
+		frame[16] = (byte) body.length;
+		System.arraycopy(body, 0, frame, HEADER_SIZE, body.length);
+		return frame;
+	}
+
+	/**
+	 * IMEI in BCD sui byte 7-14: 16 nibble, il primo a zero
+	 */
+	static void writeImei(byte[] frame, String imei) {
+		if (imei.length() != 15) {
+			throw new IllegalArgumentException("IMEI di 15 cifre atteso: " + imei);
+		}
+		String digits = "0" + imei;
+		for (int i = 0; i < 8; i++) {
+			frame[7 + i] = (byte) ((digits.charAt(2 * i) - '0') << 4 | (digits.charAt(2 * i + 1) - '0'));
+		}
+	}
+
+	private static byte[] measurementBody(int messageType, int messageCount, int utcMinuteOfDay, Random random) {
+		byte[] body = new byte[MEASUREMENT_BODY];
+		body[0] = (byte) (messageCount >> 8);
+		body[1] = (byte) messageCount;
+		// 3 tentativi rimasti, ore RTC
+		body[2] = (byte) (0x60 | (utcMinuteOfDay / 60));
+		int energy = 200 + random.nextInt(800);
+		body[3] = (byte) (energy >> 8);
+		body[4] = (byte) energy;
+		body[6] = LOGGER_SPEED_15_MIN;
+		body[8] = (byte) (utcMinuteOfDay % 60);
+
+		// Livello che scende lentamente andando indietro nel tempo (consumo)
+		int slots = messageType == 8 ? 10 : MEASUREMENT_SLOTS;
+		int distance = 20 + random.nextInt(150);
+		int temperatureRaw = 60 + random.nextInt(40);
+		for (int slot = 0; slot < slots; slot++) {
+			int j = DIAGNOSTIC_BYTES + slot * 4;
+			int d = Math.max(1, distance - slot);
+			body[j] = (byte) (8 + random.nextInt(8));
+			body[j + 1] = (byte) temperatureRaw;
+			body[j + 2] = (byte) (0x28 | (d >> 8) & 0x03);
+			body[j + 3] = (byte) d;
+		}
+		return body;
+	}
+
+	private static byte[] settingsBody(Random random) {
+		int slot = random.nextInt(96);
+		return ascii(String.format(",S0=81,S1=05,S2=7F%02X00,S3=00,S4=0000,S5=0000,S6=0000", slot));
+	}
+
+	private static byte[] statisticsBody(int messageCount, Random random) {
+		int attempts = Math.max(1, messageCount);
+		int failures = random.nextInt(1 + attempts / 20);
+		return ascii(String.format(",8988280666%010d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d",
+				random.nextInt(1_000_000_000), 40_000 + random.nextInt(30_000), random.nextInt(10),
+				20 + random.nextInt(20), attempts, failures, attempts * 12, 30 + random.nextInt(30), 5,
+				attempts * 20, attempts - failures, failures));
+	}
+
+	private static byte[] gpsBody(int utcMinuteOfDay, Random random) {
+		// ddmm.mmmm / dddmm.mmmm nel nord Italia
+		double latitude = 4500 + random.nextDouble() * 59;
+		double longitude = 900 + random.nextDouble() * 59;
+		return ascii(String.format(Locale.ROOT,
+				",%d,%02d%02d%02d.0,%09.4fN,%010.4fE,%.1f,%.1f,2,0.0,0.0,0.0,180526,%d", 20 + random.nextInt(60),
+				utcMinuteOfDay / 60, utcMinuteOfDay % 60, random.nextInt(60), latitude, longitude,
+				0.8 + random.nextDouble(), 50 + random.nextDouble() * 300, 4 + random.nextInt(8)));
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+}
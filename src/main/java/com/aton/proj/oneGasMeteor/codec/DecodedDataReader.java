@@ -0,0 +1,40 @@
+package com.aton.proj.oneGasMeteor.codec;
+
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Ricostruisce il {@link DecodedMessage} di un record di telemetria,
+ * indipendentemente dal formato con cui è stato salvato (decoded_data_bin o
+ * decoded_data JSON). L'espansione avviene solo su richiesta (API REST).
+ */
+@Component
+public class DecodedDataReader {
+
+	private final ObjectMapper objectMapper;
+
+	public DecodedDataReader(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * @return il messaggio decodificato, null se il record non ne contiene
+	 */
+	public DecodedMessage read(TelemetryEntity entity) {
+		if (entity.getDecodedDataBin() != null) {
+			return DecodedMessageCodec.decode(entity.getDecodedDataBin());
+		}
+		if (entity.getDecodedDataJson() != null) {
+			try {
+				return objectMapper.readValue(entity.getDecodedDataJson(), DecodedMessage.class);
+			} catch (JsonProcessingException e) {
+				throw new IllegalStateException("decoded_data non valido per telemetry id=" + entity.getId(), e);
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,701 @@
+package com.aton.proj.oneGasMeteor.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.model.DecodedMessage.MeasurementData;
+
+/**
+ * Codec binario versionato per {@link DecodedMessage} (colonna
+ * {@code telemetry_data.decoded_data_bin}).
+ *
+ * Formato v1 (interi come varint, con segno in zig-zag):
+ * <pre>
+ * magic(0xDC) version(1)
+ * productType hardwareRevision firmwareRevision     stringhe nullable
+ * imei                                              15 cifre come varlong, altrimenti stringa
+ * messageType                                       intero canonico come varint, altrimenti stringa
+ * flag booleani                                     17 tri-state (null/false/true) da 2 bit
+ * interi nullable                                   bitmask di presenza + valori
+ * batteryVoltage batteryRemainingPercentage          stringhe nullable
+ * misure                                            count, layout (colonnare o per riga)
+ * </pre>
+ *
+ * Il layout colonnare vale per le misure prodotte da {@code TekMessageDecoder}
+ * (slot "Data i", temperatura a passi di 0.5 °C, timestamp al millisecondo) e
+ * salva ogni colonna in delta: slot, distanza, temperatura grezza, sonic
+ * src/rssi in un byte, timestamp come primo valore + passo fisso del logger.
+ * Qualsiasi altra forma ricade nel layout per riga, senza perdita.
+ *
+ * {@link #decode(byte[])} ricostruisce lo stesso grafo, quindi la stessa forma
+ * JSON della colonna {@code decoded_data}.
+ */
+public final class DecodedMessageCodec {
+
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0xDC;
+
+	private static final int LAYOUT_ROWS = 0;
+	private static final int LAYOUT_COLUMNAR = 1;
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_NUMERIC = 1;
+	private static final int TAG_STRING = 2;
+
+	private static final String MEASUREMENT_PREFIX = "Data ";
+
+	/** temperatureF "%.2f" per ogni valore grezzo a 7 bit, come nel decoder */
+	private static final String[] TEMPERATURE_F_LABELS = new String[128];
+
+	static {
+		for (int raw = 0; raw < TEMPERATURE_F_LABELS.length; raw++) {
+			TEMPERATURE_F_LABELS[raw] = String.format("%.2f", (temperatureC(raw) * 9 / 5) + 32);
+		}
+	}
+
+	private DecodedMessageCodec() {
+	}
+
+	// ====================== Encode ======================
+
+	public static byte[] encode(DecodedMessage decoded) {
+		List<MeasurementData> measurements = decoded.getMeasurementData();
+		Sink out = new Sink(64 + 8 * (measurements != null ? measurements.size() : 0));
+		out.writeByte(MAGIC);
+		out.writeByte(VERSION);
+
+		DecodedMessage.UnitInfo unitInfo = decoded.getUnitInfo();
+		out.writeString(unitInfo != null ? unitInfo.getProductType() : null);
+		out.writeString(unitInfo != null ? unitInfo.getHardwareRevision() : null);
+		out.writeString(unitInfo != null ? unitInfo.getFirmwareRevision() : null);
+
+		writeImei(out, decoded.getUniqueIdentifier() != null ? decoded.getUniqueIdentifier().getImei() : null);
+		writeNumericString(out, decoded.getMessageType());
+
+		out.writeVarLong(packFlags(decoded));
+		writeNullableInts(out, integers(decoded));
+
+		DecodedMessage.BatteryStatus battery = decoded.getBatteryStatus();
+		out.writeString(battery != null ? battery.getBatteryVoltage() : null);
+		out.writeString(battery != null ? battery.getBatteryRemainingPercentage() : null);
+
+		writeMeasurements(out, measurements);
+		return out.toByteArray();
+	}
+
+	private static void writeImei(Sink out, String imei) {
+		if (imei == null) {
+			out.writeByte(TAG_NULL);
+		} else if (imei.length() == 15 && isDigits(imei)) {
+			out.writeByte(TAG_NUMERIC);
+			out.writeVarLong(Long.parseLong(imei));
+		} else {
+			out.writeByte(TAG_STRING);
+			out.writeString(imei);
+		}
+	}
+
+	private static void writeNumericString(Sink out, String value) {
+		if (value == null) {
+			out.writeByte(TAG_NULL);
+		} else if (isCanonicalInt(value)) {
+			out.writeByte(TAG_NUMERIC);
+			out.writeVarLong(Integer.parseInt(value));
+		} else {
+			out.writeByte(TAG_STRING);
+			out.writeString(value);
+		}
+	}
+
+	private static long packFlags(DecodedMessage d) {
+		DecodedMessage.ContactReason cr = d.getContactReason();
+		DecodedMessage.AlarmStatus as = d.getAlarmStatus();
+		DecodedMessage.LastReset lr = d.getLastReset();
+		DecodedMessage.DiagnosticInfo di = d.getDiagnosticInfo();
+		Boolean[] flags = {
+				cr != null ? cr.getScheduled() : null, cr != null ? cr.getAlarm() : null,
+				cr != null ? cr.getServerRequest() : null, cr != null ? cr.getManual() : null,
+				cr != null ? cr.getReboot() : null, cr != null ? cr.getTspRequested() : null,
+				cr != null ? cr.getDynamic1() : null, cr != null ? cr.getDynamic2() : null,
+				as != null ? as.getStatic1() : null, as != null ? as.getStatic2() : null,
+				as != null ? as.getStatic3() : null, as != null ? as.getBund() : null,
+				as != null ? as.getActive() : null,
+				lr != null ? lr.getBrownout() : null, lr != null ? lr.getWatchdog() : null,
+				di != null ? di.getRtcSet() : null, di != null ? di.getLteActive() : null };
+		long packed = 0;
+		for (int i = 0; i < flags.length; i++) {
+			long state = flags[i] == null ? 0 : (flags[i] ? 2 : 1);
+			packed |= state << (i * 2);
+		}
+		return packed;
+	}
+
+	private static Integer[] integers(DecodedMessage d) {
+		DecodedMessage.SignalStrength ss = d.getSignalStrength();
+		DecodedMessage.DiagnosticInfo di = d.getDiagnosticInfo();
+		DecodedMessage.UnitSetup us = d.getUnitSetup();
+		return new Integer[] {
+				ss != null ? ss.getRssi() : null, ss != null ? ss.getCsq() : null,
+				di != null ? di.getEnergyUsedLastContactMaSeconds() : null,
+				di != null ? di.getLastErrorCode() : null, di != null ? di.getMessageCount() : null,
+				di != null ? di.getTryAttemptsRemaining() : null,
+				us != null ? us.getLoggerSpeedMinutes() : null };
+	}
+
+	private static void writeNullableInts(Sink out, Integer[] values) {
+		int mask = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				mask |= 1 << i;
+			}
+		}
+		out.writeVarLong(mask);
+		for (Integer value : values) {
+			if (value != null) {
+				out.writeZigZag(value);
+			}
+		}
+	}
+
+	private static void writeMeasurements(Sink out, List<MeasurementData> measurements) {
+		if (measurements == null) {
+			out.writeVarLong(0);
+			return;
+		}
+		int n = measurements.size();
+		out.writeVarLong(n + 1L);
+		if (n == 0) {
+			return;
+		}
+
+		int[] slots = new int[n];
+		int[] temperatures = new int[n];
+		long[] timestamps = new long[n];
+		if (fillColumns(measurements, slots, temperatures, timestamps)) {
+			out.writeByte(LAYOUT_COLUMNAR);
+			writeColumns(out, measurements, slots, temperatures, timestamps);
+		} else {
+			out.writeByte(LAYOUT_ROWS);
+			for (MeasurementData m : measurements) {
+				writeRow(out, m);
+			}
+		}
+	}
+
+	/**
+	 * Verifica che tutte le misure abbiano la forma del decoder TEK e ne estrae
+	 * le colonne derivate. false = layout per riga.
+	 */
+	private static boolean fillColumns(List<MeasurementData> measurements, int[] slots, int[] temperatures,
+			long[] timestamps) {
+		for (int i = 0; i < measurements.size(); i++) {
+			MeasurementData m = measurements.get(i);
+			if (m == null || m.getPercentageFull() != null || m.getPayloadValue() != null
+					|| m.getTemperatureCode() != null || m.getAuxdata1() != null || m.getAuxdata2() != null) {
+				return false;
+			}
+			int slot = parseSlot(m.getMeasurementNum());
+			if (slot < 0) {
+				return false;
+			}
+			Integer distance = m.getDistanceCm();
+			if (distance == null || !distance.equals(m.getMeasuredValue())) {
+				return false;
+			}
+			if (!isNibble(m.getSonicSrc()) || !isNibble(m.getSonicRssi())) {
+				return false;
+			}
+			Double temperatureC = m.getTemperatureC();
+			if (temperatureC == null) {
+				return false;
+			}
+			int raw = (int) Math.round((temperatureC + 30.0) * 2.0);
+			if (raw < 0 || raw > 127 || temperatureC(raw) != temperatureC
+					|| !TEMPERATURE_F_LABELS[raw].equals(m.getTemperatureF())) {
+				return false;
+			}
+			long millis = parseInstantMillis(m.getTimestamp());
+			if (millis == Long.MIN_VALUE) {
+				return false;
+			}
+			slots[i] = slot;
+			temperatures[i] = raw;
+			timestamps[i] = millis;
+		}
+		return true;
+	}
+
+	private static void writeColumns(Sink out, List<MeasurementData> measurements, int[] slots,
+			int[] temperatures, long[] timestamps) {
+		int n = slots.length;
+
+		writeDeltas(out, slots);
+
+		int[] distances = new int[n];
+		for (int i = 0; i < n; i++) {
+			distances[i] = measurements.get(i).getDistanceCm();
+		}
+		writeDeltas(out, distances);
+		writeDeltas(out, temperatures);
+
+		for (MeasurementData m : measurements) {
+			out.writeByte((m.getSonicSrc() << 4) | m.getSonicRssi());
+		}
+
+		// Timestamp: primo valore + passo fisso (logger speed) se uniforme
+		out.writeZigZag(timestamps[0]);
+		if (n > 1) {
+			long step = timestamps[1] - timestamps[0];
+			boolean uniform = true;
+			for (int i = 2; i < n && uniform; i++) {
+				uniform = timestamps[i] - timestamps[i - 1] == step;
+			}
+			out.writeByte(uniform ? 1 : 0);
+			if (uniform) {
+				out.writeZigZag(step);
+			} else {
+				for (int i = 1; i < n; i++) {
+					out.writeZigZag(timestamps[i] - timestamps[i - 1]);
+				}
+			}
+		}
+	}
+
+	private static void writeDeltas(Sink out, int[] values) {
+		int previous = 0;
+		for (int value : values) {
+			out.writeZigZag((long) value - previous);
+			previous = value;
+		}
+	}
+
+	private static void writeRow(Sink out, MeasurementData m) {
+		if (m == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeByte(1);
+		out.writeString(m.getMeasurementNum());
+		writeNullableInts(out,
+				new Integer[] { m.getMeasuredValue(), m.getDistanceCm(), m.getSonicSrc(), m.getSonicRssi() });
+		if (m.getTemperatureC() == null) {
+			out.writeByte(0);
+		} else {
+			out.writeByte(1);
+			out.writeLong(Double.doubleToRawLongBits(m.getTemperatureC()));
+		}
+		out.writeString(m.getPercentageFull());
+		out.writeString(m.getPayloadValue());
+		out.writeString(m.getTemperatureF());
+		out.writeString(m.getTemperatureCode());
+		out.writeString(m.getAuxdata1());
+		out.writeString(m.getAuxdata2());
+		out.writeString(m.getTimestamp());
+	}
+
+	// ====================== Decode ======================
+
+	public static DecodedMessage decode(byte[] data) {
+		Source in = new Source(data);
+		if (in.readByte() != MAGIC) {
+			throw new IllegalArgumentException("decoded_data_bin: magic non valido");
+		}
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("decoded_data_bin: versione non supportata " + version);
+		}
+
+		DecodedMessage d = new DecodedMessage();
+		d.getUnitInfo().setProductType(in.readString());
+		d.getUnitInfo().setHardwareRevision(in.readString());
+		d.getUnitInfo().setFirmwareRevision(in.readString());
+
+		d.getUniqueIdentifier().setImei(readImei(in));
+		d.setMessageType(readNumericString(in));
+
+		unpackFlags(in.readVarLong(), d);
+
+		Integer[] ints = readNullableInts(in, 7);
+		d.getSignalStrength().setRssi(ints[0]);
+		d.getSignalStrength().setCsq(ints[1]);
+		d.getDiagnosticInfo().setEnergyUsedLastContactMaSeconds(ints[2]);
+		d.getDiagnosticInfo().setLastErrorCode(ints[3]);
+		d.getDiagnosticInfo().setMessageCount(ints[4]);
+		d.getDiagnosticInfo().setTryAttemptsRemaining(ints[5]);
+		d.getUnitSetup().setLoggerSpeedMinutes(ints[6]);
+
+		d.getBatteryStatus().setBatteryVoltage(in.readString());
+		d.getBatteryStatus().setBatteryRemainingPercentage(in.readString());
+
+		d.setMeasurementData(readMeasurements(in));
+		return d;
+	}
+
+	private static String readImei(Source in) {
+		return switch (in.readByte()) {
+		case TAG_NULL -> null;
+		case TAG_NUMERIC -> {
+			String digits = Long.toString(in.readVarLong());
+			yield "0".repeat(15 - digits.length()) + digits;
+		}
+		default -> in.readString();
+		};
+	}
+
+	private static String readNumericString(Source in) {
+		return switch (in.readByte()) {
+		case TAG_NULL -> null;
+		case TAG_NUMERIC -> Long.toString(in.readVarLong());
+		default -> in.readString();
+		};
+	}
+
+	private static void unpackFlags(long packed, DecodedMessage d) {
+		Boolean[] f = new Boolean[17];
+		for (int i = 0; i < f.length; i++) {
+			int state = (int) ((packed >>> (i * 2)) & 0x03);
+			f[i] = state == 0 ? null : state == 2;
+		}
+		DecodedMessage.ContactReason cr = d.getContactReason();
+		cr.setScheduled(f[0]);
+		cr.setAlarm(f[1]);
+		cr.setServerRequest(f[2]);
+		cr.setManual(f[3]);
+		cr.setReboot(f[4]);
+		cr.setTspRequested(f[5]);
+		cr.setDynamic1(f[6]);
+		cr.setDynamic2(f[7]);
+		DecodedMessage.AlarmStatus as = d.getAlarmStatus();
+		as.setStatic1(f[8]);
+		as.setStatic2(f[9]);
+		as.setStatic3(f[10]);
+		as.setBund(f[11]);
+		as.setActive(f[12]);
+		d.getLastReset().setBrownout(f[13]);
+		d.getLastReset().setWatchdog(f[14]);
+		d.getDiagnosticInfo().setRtcSet(f[15]);
+		d.getDiagnosticInfo().setLteActive(f[16]);
+	}
+
+	private static Integer[] readNullableInts(Source in, int count) {
+		int mask = (int) in.readVarLong();
+		Integer[] values = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			if ((mask & (1 << i)) != 0) {
+				values[i] = (int) in.readZigZag();
+			}
+		}
+		return values;
+	}
+
+	private static List<MeasurementData> readMeasurements(Source in) {
+		long encodedCount = in.readVarLong();
+		if (encodedCount == 0) {
+			return null;
+		}
+		int n = (int) (encodedCount - 1);
+		List<MeasurementData> measurements = new ArrayList<>(n);
+		if (n == 0) {
+			return measurements;
+		}
+
+		int layout = in.readByte();
+		if (layout == LAYOUT_ROWS) {
+			for (int i = 0; i < n; i++) {
+				measurements.add(readRow(in));
+			}
+			return measurements;
+		}
+
+		int[] slots = readDeltas(in, n);
+		int[] distances = readDeltas(in, n);
+		int[] temperatures = readDeltas(in, n);
+		int[] sonic = new int[n];
+		for (int i = 0; i < n; i++) {
+			sonic[i] = in.readByte();
+		}
+		long[] timestamps = new long[n];
+		timestamps[0] = in.readZigZag();
+		if (n > 1) {
+			boolean uniform = in.readByte() == 1;
+			long step = uniform ? in.readZigZag() : 0;
+			for (int i = 1; i < n; i++) {
+				timestamps[i] = timestamps[i - 1] + (uniform ? step : in.readZigZag());
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			MeasurementData m = new MeasurementData();
+			m.setMeasurementNum(MEASUREMENT_PREFIX + slots[i]);
+			m.setMeasuredValue(distances[i]);
+			m.setDistanceCm(distances[i]);
+			m.setSonicSrc(sonic[i] >> 4);
+			m.setSonicRssi(sonic[i] & 0x0F);
+			m.setTemperatureC(temperatureC(temperatures[i]));
+			m.setTemperatureF(TEMPERATURE_F_LABELS[temperatures[i]]);
+			m.setTimestamp(Instant.ofEpochMilli(timestamps[i]).toString());
+			measurements.add(m);
+		}
+		return measurements;
+	}
+
+	private static int[] readDeltas(Source in, int n) {
+		int[] values = new int[n];
+		long previous = 0;
+		for (int i = 0; i < n; i++) {
+			previous += in.readZigZag();
+			values[i] = (int) previous;
+		}
+		return values;
+	}
+
+	private static MeasurementData readRow(Source in) {
+		if (in.readByte() == 0) {
+			return null;
+		}
+		MeasurementData m = new MeasurementData();
+		m.setMeasurementNum(in.readString());
+		Integer[] ints = readNullableInts(in, 4);
+		m.setMeasuredValue(ints[0]);
+		m.setDistanceCm(ints[1]);
+		m.setSonicSrc(ints[2]);
+		m.setSonicRssi(ints[3]);
+		if (in.readByte() == 1) {
+			m.setTemperatureC(Double.longBitsToDouble(in.readLong()));
+		}
+		m.setPercentageFull(in.readString());
+		m.setPayloadValue(in.readString());
+		m.setTemperatureF(in.readString());
+		m.setTemperatureCode(in.readString());
+		m.setAuxdata1(in.readString());
+		m.setAuxdata2(in.readString());
+		m.setTimestamp(in.readString());
+		return m;
+	}
+
+	// ====================== Helper ======================
+
+	private static double temperatureC(int raw) {
+		return (raw / 2.0) - 30.0;
+	}
+
+	private static boolean isNibble(Integer value) {
+		return value != null && value >= 0 && value <= 15;
+	}
+
+	private static boolean isDigits(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Intero senza segno, senza zeri iniziali e con al più 9 cifre: round-trip
+	 * garantito con {@code Integer.toString}
+	 */
+	private static boolean isCanonicalInt(String value) {
+		int length = value.length();
+		return length > 0 && length <= 9 && isDigits(value) && (length == 1 || value.charAt(0) != '0');
+	}
+
+	/**
+	 * @return indice dello slot da "Data i" (forma canonica), -1 altrimenti
+	 */
+	private static int parseSlot(String measurementNum) {
+		if (measurementNum == null || !measurementNum.startsWith(MEASUREMENT_PREFIX)) {
+			return -1;
+		}
+		String digits = measurementNum.substring(MEASUREMENT_PREFIX.length());
+		return isCanonicalInt(digits) ? Integer.parseInt(digits) : -1;
+	}
+
+	/**
+	 * Parse di un timestamp nel formato di {@code Instant.toString()} per epoch
+	 * millis: "yyyy-MM-ddTHH:mm:ssZ" oppure "yyyy-MM-ddTHH:mm:ss.SSSZ" con millis
+	 * diversi da zero. Solo queste forme garantiscono il round-trip esatto.
+	 *
+	 * @return epoch millis, Long.MIN_VALUE se il formato non è quello canonico
+	 */
+	static long parseInstantMillis(String ts) {
+		if (ts == null || (ts.length() != 20 && ts.length() != 24) || ts.charAt(4) != '-' || ts.charAt(7) != '-'
+				|| ts.charAt(10) != 'T' || ts.charAt(13) != ':' || ts.charAt(16) != ':'
+				|| ts.charAt(ts.length() - 1) != 'Z') {
+			return Long.MIN_VALUE;
+		}
+		int year = digits(ts, 0, 4);
+		int month = digits(ts, 5, 2);
+		int day = digits(ts, 8, 2);
+		int hour = digits(ts, 11, 2);
+		int minute = digits(ts, 14, 2);
+		int second = digits(ts, 17, 2);
+		int millis = 0;
+		if (ts.length() == 24) {
+			if (ts.charAt(19) != '.') {
+				return Long.MIN_VALUE;
+			}
+			millis = digits(ts, 20, 3);
+			if (millis <= 0) {
+				return Long.MIN_VALUE; // ".000" non è prodotto da Instant.toString()
+			}
+		}
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour < 0
+				|| hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+			return Long.MIN_VALUE;
+		}
+		long epochDay = daysFromCivil(year, month, day);
+		return ((epochDay * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+	}
+
+	private static int digits(String s, int from, int count) {
+		int value = 0;
+		for (int i = from; i < from + count; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		return switch (month) {
+		case 2 -> ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+		case 4, 6, 9, 11 -> 30;
+		default -> 31;
+		};
+	}
+
+	/** Giorni dall'epoch per una data del calendario gregoriano prolettico */
+	private static long daysFromCivil(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yoe = y - era * 400;
+		long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	/** Buffer di scrittura espandibile */
+	private static final class Sink {
+		private byte[] buf;
+		private int pos;
+
+		Sink(int initialCapacity) {
+			buf = new byte[initialCapacity];
+		}
+
+		void writeByte(int b) {
+			ensure(1);
+			buf[pos++] = (byte) b;
+		}
+
+		void writeLong(long v) {
+			ensure(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				buf[pos++] = (byte) (v >>> shift);
+			}
+		}
+
+		void writeVarLong(long v) {
+			ensure(10);
+			while ((v & ~0x7FL) != 0) {
+				buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			buf[pos++] = (byte) v;
+		}
+
+		void writeZigZag(long v) {
+			writeVarLong((v << 1) ^ (v >> 63));
+		}
+
+		/** Stringa nullable: lunghezza + 1 (0 = null) e byte UTF-8 */
+		void writeString(String s) {
+			if (s == null) {
+				writeVarLong(0);
+				return;
+			}
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(bytes.length + 1L);
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos += bytes.length;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buf, pos);
+		}
+
+		private void ensure(int extra) {
+			if (pos + extra > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+			}
+		}
+	}
+
+	/** Cursore di lettura */
+	private static final class Source {
+		private final byte[] buf;
+		private int pos;
+
+		Source(byte[] buf) {
+			this.buf = buf;
+		}
+
+		int readByte() {
+			if (pos >= buf.length) {
+				throw new IllegalArgumentException("decoded_data_bin troncato");
+			}
+			return buf[pos++] & 0xFF;
+		}
+
+		long readLong() {
+			long v = 0;
+			for (int i = 0; i < 8; i++) {
+				v = (v << 8) | readByte();
+			}
+			return v;
+		}
+
+		long readVarLong() {
+			long v = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				v |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return v;
+				}
+			}
+			throw new IllegalArgumentException("decoded_data_bin: varint non valido");
+		}
+
+		long readZigZag() {
+			long v = readVarLong();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		String readString() {
+			long length = readVarLong();
+			if (length == 0) {
+				return null;
+			}
+			int n = (int) (length - 1);
+			if (n < 0 || pos + n > buf.length) {
+				throw new IllegalArgumentException("decoded_data_bin troncato");
+			}
+			String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+			pos += n;
+			return s;
+		}
+	}
+}
@@ -11,6 +11,30 @@ public class TcpServerProperties {
 	private int maxConnections = 10000;
 	private int backlog = 1024;
 
+	/**
+	 * Motore di ingest TCP: "blocking" (ServerSocket + un virtual thread per
+	 * connessione) oppure "nio" (selector loop + pool di decodifica limitato).
+	 */
+	private String engine = "blocking";
+
+	// Parametri del motore NIO (ignorati con engine=blocking)
+	private int selectorThreads = 2;
+	private int decodeThreads = 64;
+	private int decodeQueueCapacity = 10000;
+
+	/**
+	 * Sessioni multi-frame (solo engine=blocking): la connessione resta aperta e
+	 * legge frame finché il device chiude o resta inattivo per sessionIdleTimeout
+	 * ms. Con false un solo frame per connessione.
+	 */
+	private boolean sessionEnabled = false;
+	private int sessionIdleTimeout = 3000;
+	private int sessionMaxFrames = 256;
+	/** Validità della cache dei comandi pendenti nella sessione */
+	private long sessionCommandRefreshMs = 5000;
+	/** Telemetrie della sessione accodate in blocco ogni N frame (e a fine sessione) */
+	private int sessionFlushFrames = 32;
+
 	public int getPort() {
 		return port;
 	}
@@ -42,4 +66,76 @@ public class TcpServerProperties {
 	public void setBacklog(int backlog) {
 		this.backlog = backlog;
 	}
+
+	public String getEngine() {
+		return engine;
+	}
+
+	public void setEngine(String engine) {
+		this.engine = engine;
+	}
+
+	public int getSelectorThreads() {
+		return selectorThreads;
+	}
+
+	public void setSelectorThreads(int selectorThreads) {
+		this.selectorThreads = selectorThreads;
+	}
+
+	public int getDecodeThreads() {
+		return decodeThreads;
+	}
+
+	public void setDecodeThreads(int decodeThreads) {
+		this.decodeThreads = decodeThreads;
+	}
+
+	public int getDecodeQueueCapacity() {
+		return decodeQueueCapacity;
+	}
+
+	public void setDecodeQueueCapacity(int decodeQueueCapacity) {
+		this.decodeQueueCapacity = decodeQueueCapacity;
+	}
+
+	public boolean isSessionEnabled() {
+		return sessionEnabled;
+	}
+
+	public void setSessionEnabled(boolean sessionEnabled) {
+		this.sessionEnabled = sessionEnabled;
+	}
+
+	public int getSessionIdleTimeout() {
+		return sessionIdleTimeout;
+	}
+
+	public void setSessionIdleTimeout(int sessionIdleTimeout) {
+		this.sessionIdleTimeout = sessionIdleTimeout;
+	}
+
+	public int getSessionMaxFrames() {
+		return sessionMaxFrames;
+	}
+
+	public void setSessionMaxFrames(int sessionMaxFrames) {
+		this.sessionMaxFrames = sessionMaxFrames;
+	}
+
+	public long getSessionCommandRefreshMs() {
+		return sessionCommandRefreshMs;
+	}
+
+	public void setSessionCommandRefreshMs(long sessionCommandRefreshMs) {
+		this.sessionCommandRefreshMs = sessionCommandRefreshMs;
+	}
+
+	public int getSessionFlushFrames() {
+		return sessionFlushFrames;
+	}
+
+	public void setSessionFlushFrames(int sessionFlushFrames) {
+		this.sessionFlushFrames = sessionFlushFrames;
+	}
 }
\ No newline at end of file
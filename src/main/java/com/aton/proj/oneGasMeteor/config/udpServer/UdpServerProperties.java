@@ -0,0 +1,84 @@
+package com.aton.proj.oneGasMeteor.config.udpServer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "udp.server")
+public class UdpServerProperties {
+	/** Listener UDP attivo accanto al server TCP */
+	private boolean enabled = false;
+	private int port = 8092;
+
+	/** SO_RCVBUF: assorbe i burst mentre i buffer del pool sono tutti in uso */
+	private int receiveBufferSize = 4 * 1024 * 1024;
+
+	/**
+	 * Buffer di ricezione riutilizzati; limitano anche i datagrammi in
+	 * elaborazione contemporaneamente
+	 */
+	private int bufferPoolSize = 1024;
+
+	/** Datagrammi letti per ogni risveglio del selector */
+	private int batchSize = 64;
+
+	/** Finestra in cui un datagramma identico è considerato una ritrasmissione */
+	private long dedupWindowMs = 120000;
+	private int dedupMaxEntries = 100000;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	public void setReceiveBufferSize(int receiveBufferSize) {
+		this.receiveBufferSize = receiveBufferSize;
+	}
+
+	public int getBufferPoolSize() {
+		return bufferPoolSize;
+	}
+
+	public void setBufferPoolSize(int bufferPoolSize) {
+		this.bufferPoolSize = bufferPoolSize;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getDedupWindowMs() {
+		return dedupWindowMs;
+	}
+
+	public void setDedupWindowMs(long dedupWindowMs) {
+		this.dedupWindowMs = dedupWindowMs;
+	}
+
+	public int getDedupMaxEntries() {
+		return dedupMaxEntries;
+	}
+
+	public void setDedupMaxEntries(int dedupMaxEntries) {
+		this.dedupMaxEntries = dedupMaxEntries;
+	}
+}
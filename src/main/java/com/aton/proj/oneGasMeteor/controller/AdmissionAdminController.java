@@ -0,0 +1,50 @@
+package com.aton.proj.oneGasMeteor.controller;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.aton.proj.oneGasMeteor.server.AdmissionControl;
+
+/**
+ * Stato del controllo di ammissione TCP
+ *
+ * GET /admin/admission/status - livello, pressione, segnali e contatori delle
+ *                               decisioni
+ */
+@RestController
+@RequestMapping("/admin/admission")
+@ConditionalOnProperty(name = "tcp.admission.enabled", havingValue = "true")
+public class AdmissionAdminController {
+
+	private final AdmissionControl admissionControl;
+
+	public AdmissionAdminController(AdmissionControl admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+
+	@GetMapping("/status")
+	public ResponseEntity<Map<String, Object>> getStatus() {
+		Map<String, Object> status = new HashMap<>();
+		status.put("level", admissionControl.getLevel());
+		status.put("pressure", admissionControl.getPressure());
+		status.put("effectiveConnectionLimit", admissionControl.effectiveConnectionLimit());
+		status.put("queued", admissionControl.getLastQueued());
+		status.put("spoolBytes", admissionControl.getLastSpoolBytes());
+		status.put("poolWaiting", admissionControl.getLastPoolWaiting());
+		status.put("admitted", admissionControl.getAdmitted());
+		status.put("throttled", admissionControl.getThrottled());
+		status.put("throttleDelayTotalMs", admissionControl.getThrottleDelayTotalMs());
+		status.put("rejectedOverLimit", admissionControl.getRejectedOverLimit());
+		status.put("shed", admissionControl.getShed());
+		status.put("levelChanges", admissionControl.getLevelChanges());
+		status.put("timestamp", LocalDateTime.now());
+		return ResponseEntity.ok(status);
+	}
+}
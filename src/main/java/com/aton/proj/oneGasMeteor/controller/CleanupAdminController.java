@@ -58,7 +58,7 @@ public class CleanupAdminController {
         response.put("timestamp", LocalDateTime.now());
         
         try {
-            cleanupService.cleanupOldTelemetry();
+            response.put("tables", cleanupService.cleanupOldTelemetry());
             response.put("status", "success");
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -0,0 +1,63 @@
+package com.aton.proj.oneGasMeteor.controller;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.aton.proj.oneGasMeteor.service.state.DeviceLatestState;
+import com.aton.proj.oneGasMeteor.service.state.DeviceLatestStateService;
+import com.aton.proj.oneGasMeteor.service.state.DeviceLatestStateService.Page;
+
+/**
+ * Ultimo stato dei device, servito dalla mappa in memoria (nessuna query).
+ *
+ * GET /api/devices/state?after=&limit=100 - flotta in ordine di device_id;
+ *                                           la pagina successiva parte da
+ *                                           after=nextAfter
+ * GET /api/devices/{deviceId}/state       - stato di un device
+ */
+@RestController
+@RequestMapping("/api/devices")
+@ConditionalOnProperty(name = "device.state.enabled", havingValue = "true")
+public class DeviceStateController {
+
+	private static final Logger log = LoggerFactory.getLogger(DeviceStateController.class);
+
+	private final DeviceLatestStateService deviceLatestStateService;
+
+	public DeviceStateController(DeviceLatestStateService deviceLatestStateService) {
+		this.deviceLatestStateService = deviceLatestStateService;
+		log.info("DeviceStateController initialized");
+	}
+
+	@GetMapping("/state")
+	public ResponseEntity<Page> getFleet(@RequestParam(required = false) String after,
+			@RequestParam(defaultValue = "100") int limit) {
+		log.debug("GET /api/devices/state?after={}&limit={}", after, limit);
+		return ResponseEntity.ok(deviceLatestStateService.page(after, limit));
+	}
+
+	@GetMapping("/{deviceId}/state")
+	public ResponseEntity<DeviceLatestState> getDevice(@PathVariable String deviceId) {
+		DeviceLatestState state = deviceLatestStateService.get(deviceId);
+		return state != null ? ResponseEntity.ok(state) : ResponseEntity.notFound().build();
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException ex) {
+		return ResponseEntity.badRequest().body(Map.of(
+				"status", "ERROR",
+				"message", ex.getMessage(),
+				"timestamp", LocalDateTime.now().toString()));
+	}
+}
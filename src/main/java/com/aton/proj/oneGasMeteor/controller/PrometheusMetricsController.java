@@ -0,0 +1,207 @@
+package com.aton.proj.oneGasMeteor.controller;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.aton.proj.oneGasMeteor.server.AdmissionControl;
+import com.aton.proj.oneGasMeteor.server.UdpIngestServer;
+import com.aton.proj.oneGasMeteor.service.BatchWriteService;
+import com.aton.proj.oneGasMeteor.service.CommandStatusWriteBehind;
+import com.aton.proj.oneGasMeteor.service.ProcessingMetricsWriter;
+import com.aton.proj.oneGasMeteor.service.dedup.TelemetryDeduplicator;
+import com.aton.proj.oneGasMeteor.service.impl.line.PipelinedInfluxDBWriter;
+import com.aton.proj.oneGasMeteor.service.state.DeviceLatestStateService;
+import com.aton.proj.oneGasMeteor.service.metrics.StageLatencyRegistry;
+import com.aton.proj.oneGasMeteor.service.metrics.StageLatencyRegistry.Snapshot;
+import com.aton.proj.oneGasMeteor.service.spool.WriteAheadSpool;
+
+/**
+ * Metriche in formato testo Prometheus (0.0.4)
+ *
+ * GET /metrics/prometheus - latenze per fase (summary con p50/p99/p999, max),
+ *                           code di scrittura, spool, controllo di ammissione,
+ *                           ingest UDP, telemetrie duplicate soppresse,
+ *                           scritture pipelined su InfluxDB
+ */
+@RestController
+@RequestMapping("/metrics")
+@ConditionalOnProperty(name = "metrics.latency.enabled", havingValue = "true", matchIfMissing = true)
+public class PrometheusMetricsController {
+
+	private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+
+	private static final String LATENCY = "onegas_stage_latency_seconds";
+	private static final String LATENCY_MAX = "onegas_stage_latency_max_seconds";
+
+	private final StageLatencyRegistry latencyRegistry;
+	private final BatchWriteService batchWriteService;
+	private final WriteAheadSpool spool;
+	private final AdmissionControl admissionControl;
+	private final ProcessingMetricsWriter metricsWriter;
+	private final CommandStatusWriteBehind commandStatusWriteBehind;
+	private final UdpIngestServer udpIngestServer;
+	private final TelemetryDeduplicator telemetryDeduplicator;
+	private final DeviceLatestStateService deviceLatestState;
+	private final PipelinedInfluxDBWriter influxWriter;
+
+	public PrometheusMetricsController(StageLatencyRegistry latencyRegistry,
+			@Nullable BatchWriteService batchWriteService, @Nullable WriteAheadSpool spool,
+			@Nullable AdmissionControl admissionControl, @Nullable ProcessingMetricsWriter metricsWriter,
+			@Nullable CommandStatusWriteBehind commandStatusWriteBehind, @Nullable UdpIngestServer udpIngestServer,
+			@Nullable TelemetryDeduplicator telemetryDeduplicator,
+			@Nullable DeviceLatestStateService deviceLatestState, @Nullable PipelinedInfluxDBWriter influxWriter) {
+		this.latencyRegistry = latencyRegistry;
+		this.batchWriteService = batchWriteService;
+		this.spool = spool;
+		this.admissionControl = admissionControl;
+		this.metricsWriter = metricsWriter;
+		this.commandStatusWriteBehind = commandStatusWriteBehind;
+		this.udpIngestServer = udpIngestServer;
+		this.telemetryDeduplicator = telemetryDeduplicator;
+		this.deviceLatestState = deviceLatestState;
+		this.influxWriter = influxWriter;
+	}
+
+	@GetMapping("/prometheus")
+	public ResponseEntity<String> scrape() {
+		StringBuilder out = new StringBuilder(8192);
+		writeLatencies(out, latencyRegistry.snapshot());
+
+		if (batchWriteService != null) {
+			gauge(out, "onegas_batch_queued_entities", "Entity in coda nei batch service",
+					batchWriteService.getQueuedCount());
+		}
+		if (spool != null) {
+			gauge(out, "onegas_spool_depth_records", "Record nello spool su disco", spool.depth());
+			gauge(out, "onegas_spool_size_bytes", "Byte occupati dallo spool", spool.sizeBytes());
+			counter(out, "onegas_spool_dropped_records_total", "Record scartati a spool pieno",
+					spool.droppedRecords());
+		}
+		if (admissionControl != null) {
+			gauge(out, "onegas_admission_level", "Livello di ammissione (0 normal, 1 throttle, 2 shed)",
+					admissionControl.getLevel().ordinal());
+			gauge(out, "onegas_admission_pressure", "Pressione massima tra i segnali (1 = soglia)",
+					admissionControl.getPressure());
+			counter(out, "onegas_admission_shed_total", "Connessioni chiuse in SHED", admissionControl.getShed());
+			counter(out, "onegas_admission_throttled_total", "Accept ritardati in THROTTLE",
+					admissionControl.getThrottled());
+		}
+		if (metricsWriter != null) {
+			gauge(out, "onegas_metrics_writer_queued", "Metriche in attesa di scrittura",
+					metricsWriter.getQueuedCount());
+			counter(out, "onegas_metrics_writer_dropped_total", "Metriche scartate", metricsWriter.getDropped());
+		}
+		if (commandStatusWriteBehind != null) {
+			gauge(out, "onegas_command_status_queued", "Comandi inviati in attesa di UPDATE SENT",
+					commandStatusWriteBehind.getQueuedCount());
+		}
+		if (udpIngestServer != null) {
+			counter(out, "onegas_udp_received_total", "Datagrammi UDP ricevuti", udpIngestServer.getReceived());
+			counter(out, "onegas_udp_duplicates_total", "Ritrasmissioni UDP riconosciute",
+					udpIngestServer.getDuplicates());
+			counter(out, "onegas_udp_malformed_total", "Datagrammi UDP scartati (frame incompleto)",
+					udpIngestServer.getMalformed());
+		}
+		if (telemetryDeduplicator != null) {
+			// Tasso di soppressione: rate(suppressed) / rate(checked)
+			counter(out, "onegas_telemetry_dedup_checked_total", "Telemetrie controllate dal deduplicatore",
+					telemetryDeduplicator.getChecked());
+			counter(out, "onegas_telemetry_dedup_suppressed_total", "Telemetrie duplicate non accodate",
+					telemetryDeduplicator.getSuppressed());
+			gauge(out, "onegas_telemetry_dedup_filter_bytes", "Memoria del filtro di deduplicazione",
+					telemetryDeduplicator.getSizeBytes());
+		}
+		if (deviceLatestState != null) {
+			gauge(out, "onegas_device_state_devices", "Device con stato in memoria", deviceLatestState.getDeviceCount());
+			gauge(out, "onegas_device_state_pending", "Device con stato non ancora scritto",
+					deviceLatestState.getPendingCount());
+			// Rapporto messaggi/righe: rate(onegas_device_state_upserted_rows_total) contro i frame ricevuti
+			counter(out, "onegas_device_state_upserted_rows_total", "Righe scritte su device_latest_state",
+					deviceLatestState.getUpsertedRows());
+			counter(out, "onegas_device_state_failed_flushes_total", "Flush di device_latest_state falliti",
+					deviceLatestState.getFailedFlushes());
+		}
+		if (influxWriter != null) {
+			gauge(out, "onegas_influx_write_in_flight", "Richieste di scrittura InfluxDB in volo",
+					influxWriter.getInFlight());
+			counter(out, "onegas_influx_write_batches_total", "Batch scritti su InfluxDB", influxWriter.getSentBatches());
+			counter(out, "onegas_influx_write_lines_total", "Righe scritte su InfluxDB", influxWriter.getSentLines());
+			counter(out, "onegas_influx_write_retries_total", "Nuovi tentativi di scrittura InfluxDB",
+					influxWriter.getRetries());
+			counter(out, "onegas_influx_write_failed_batches_total", "Batch InfluxDB con tentativi esauriti",
+					influxWriter.getFailedBatches());
+			counter(out, "onegas_influx_write_rejected_batches_total", "Batch rifiutati da InfluxDB (4xx) e scartati",
+					influxWriter.getRejectedBatches());
+			counter(out, "onegas_influx_write_rejected_lines_total", "Righe rifiutate da InfluxDB (4xx) e scartate",
+					influxWriter.getRejectedLines());
+		}
+		return ResponseEntity.ok().contentType(PROMETHEUS_TEXT).body(out.toString());
+	}
+
+	static void writeLatencies(StringBuilder out, List<Snapshot> snapshots) {
+		out.append("# HELP ").append(LATENCY).append(" Latenza per fase della pipeline TCP\n");
+		out.append("# TYPE ").append(LATENCY).append(" summary\n");
+		for (Snapshot s : snapshots) {
+			String labels = labels(s);
+			quantile(out, labels, "0.5", s.p50Micros());
+			quantile(out, labels, "0.99", s.p99Micros());
+			quantile(out, labels, "0.999", s.p999Micros());
+			out.append(LATENCY).append("_sum{").append(labels).append("} ").append(seconds(s.sumMicros())).append('\n');
+			out.append(LATENCY).append("_count{").append(labels).append("} ").append(s.count()).append('\n');
+		}
+		out.append("# HELP ").append(LATENCY_MAX).append(" Latenza massima nella finestra corrente\n");
+		out.append("# TYPE ").append(LATENCY_MAX).append(" gauge\n");
+		for (Snapshot s : snapshots) {
+			out.append(LATENCY_MAX).append('{').append(labels(s)).append("} ").append(seconds(s.maxMicros()))
+					.append('\n');
+		}
+	}
+
+	private static void quantile(StringBuilder out, String labels, String q, long micros) {
+		out.append(LATENCY).append('{').append(labels).append(",quantile=\"").append(q).append("\"} ")
+				.append(seconds(micros)).append('\n');
+	}
+
+	private static String labels(Snapshot s) {
+		return "stage=\"" + s.stage().label() + "\",device_type=\"" + escape(s.deviceType())
+				+ "\",message_type=\"" + escape(s.messageType()) + "\"";
+	}
+
+	private static void gauge(StringBuilder out, String name, String help, double value) {
+		metric(out, name, help, "gauge", value);
+	}
+
+	private static void counter(StringBuilder out, String name, String help, double value) {
+		metric(out, name, help, "counter", value);
+	}
+
+	private static void metric(StringBuilder out, String name, String help, String type, double value) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		out.append(name).append(' ').append(format(value)).append('\n');
+	}
+
+	private static String seconds(long micros) {
+		return format(micros / 1_000_000.0);
+	}
+
+	private static String format(double value) {
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		}
+		return String.format(Locale.ROOT, "%.6f", value);
+	}
+
+	/** Escape dei valori di etichetta: backslash, doppi apici, a capo */
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
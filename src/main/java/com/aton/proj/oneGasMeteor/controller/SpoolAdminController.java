@@ -0,0 +1,42 @@
+package com.aton.proj.oneGasMeteor.controller;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.aton.proj.oneGasMeteor.service.spool.WriteAheadSpool;
+
+/**
+ * Stato dello spool su disco dei batch service
+ *
+ * GET /admin/spool/status - profondità, byte, segmenti, record scartati
+ */
+@RestController
+@RequestMapping("/admin/spool")
+@ConditionalOnProperty(name = "batch.spool.enabled", havingValue = "true")
+public class SpoolAdminController {
+
+	private final WriteAheadSpool spool;
+
+	public SpoolAdminController(WriteAheadSpool spool) {
+		this.spool = spool;
+	}
+
+	@GetMapping("/status")
+	public ResponseEntity<Map<String, Object>> getStatus() {
+		Map<String, Object> status = new HashMap<>();
+		status.put("depth", spool.depth());
+		status.put("sizeBytes", spool.sizeBytes());
+		status.put("segments", spool.segmentCount());
+		status.put("spilling", spool.isSpilling());
+		status.put("droppedRecords", spool.droppedRecords());
+		status.put("timestamp", LocalDateTime.now());
+		return ResponseEntity.ok(status);
+	}
+}
@@ -0,0 +1,133 @@
+package com.aton.proj.oneGasMeteor.controller;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.aton.proj.oneGasMeteor.codec.DecodedDataReader;
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+import com.aton.proj.oneGasMeteor.repository.TelemetryRepository;
+import com.aton.proj.oneGasMeteor.service.query.TelemetryQueryService;
+import com.aton.proj.oneGasMeteor.service.query.TelemetryQueryService.ExportFormat;
+import com.aton.proj.oneGasMeteor.service.query.TelemetryQueryService.Page;
+
+/**
+ * REST Controller per la lettura dei dati di telemetria.
+ *
+ * GET /api/telemetry?deviceId=&imei=&deviceType=&messageType=&from=&to=
+ *     &fields=raw,decoded&cursor=&limit=100
+ *                                 - pagina in ordine di received_at
+ *                                   decrescente; la successiva parte da
+ *                                   cursor=nextCursor
+ * GET /api/telemetry/export?format=ndjson|csv&...
+ *                                 - stessi filtri, tutti i record in streaming
+ * GET /api/telemetry/{id}/decoded - DecodedMessage del record (JSON), espanso
+ *                                   da decoded_data_bin o decoded_data
+ *
+ * from/to in ISO-8601 (from incluso, to escluso); raw_message e decoded_data
+ * sono restituiti solo se elencati in fields.
+ */
+@RestController
+@RequestMapping("/api/telemetry")
+public class TelemetryController {
+
+	private static final Logger log = LoggerFactory.getLogger(TelemetryController.class);
+
+	private final TelemetryRepository telemetryRepository;
+	private final DecodedDataReader decodedDataReader;
+	private final TelemetryQueryService telemetryQueryService;
+
+	public TelemetryController(TelemetryRepository telemetryRepository, DecodedDataReader decodedDataReader,
+			TelemetryQueryService telemetryQueryService) {
+		this.telemetryRepository = telemetryRepository;
+		this.decodedDataReader = decodedDataReader;
+		this.telemetryQueryService = telemetryQueryService;
+		log.info("TelemetryController initialized");
+	}
+
+	@GetMapping
+	public ResponseEntity<Page> search(@RequestParam(required = false) String deviceId,
+			@RequestParam(required = false) String imei,
+			@RequestParam(required = false) String deviceType,
+			@RequestParam(required = false) String messageType,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+			@RequestParam(required = false) String fields,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "100") int limit) {
+		log.debug("GET /api/telemetry?deviceId={}&deviceType={}&limit={}", deviceId, deviceType, limit);
+		TelemetryQuery query = query(deviceId, imei, deviceType, messageType, from, to, fields);
+		return ResponseEntity.ok(telemetryQueryService.page(query, cursor, limit));
+	}
+
+	@GetMapping("/export")
+	public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+			@RequestParam(required = false) String deviceId,
+			@RequestParam(required = false) String imei,
+			@RequestParam(required = false) String deviceType,
+			@RequestParam(required = false) String messageType,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+			@RequestParam(required = false) String fields) {
+		log.debug("GET /api/telemetry/export?format={}&deviceId={}&deviceType={}", format, deviceId, deviceType);
+		// formato e filtri validati prima di iniziare la risposta: dopo non si può più restituire 400
+		ExportFormat exportFormat = ExportFormat.of(format);
+		TelemetryQuery query = query(deviceId, imei, deviceType, messageType, from, to, fields);
+		StreamingResponseBody body = out -> telemetryQueryService.export(query, exportFormat, out);
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+				.header(HttpHeaders.CONTENT_DISPOSITION,
+						"attachment; filename=\"telemetry." + exportFormat.getExtension() + "\"")
+				.body(body);
+	}
+
+	@GetMapping("/{id}/decoded")
+	public ResponseEntity<DecodedMessage> getDecoded(@PathVariable Long id) {
+		log.debug("GET /api/telemetry/{}/decoded", id);
+
+		return telemetryRepository.findById(id)
+				.map(decodedDataReader::read)
+				.map(ResponseEntity::ok)
+				.orElse(ResponseEntity.notFound().build());
+	}
+
+	private static TelemetryQuery query(String deviceId, String imei, String deviceType, String messageType,
+			LocalDateTime from, LocalDateTime to, String fields) {
+		if (from != null && to != null && !from.isBefore(to)) {
+			throw new IllegalArgumentException("from must be before to");
+		}
+		List<String> requested = fields == null ? List.of()
+				: Arrays.stream(fields.split(",")).map(String::trim).filter(f -> !f.isEmpty()).toList();
+		for (String field : requested) {
+			if (!field.equals("raw") && !field.equals("decoded")) {
+				throw new IllegalArgumentException("fields must be a list of raw, decoded");
+			}
+		}
+		return new TelemetryQuery(deviceId, imei, deviceType, messageType, from, to, requested.contains("raw"),
+				requested.contains("decoded"));
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException ex) {
+		return ResponseEntity.badRequest().body(Map.of(
+				"status", "ERROR",
+				"message", ex.getMessage(),
+				"timestamp", LocalDateTime.now().toString()));
+	}
+}
@@ -0,0 +1,81 @@
+package com.aton.proj.oneGasMeteor.controller;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.aton.proj.oneGasMeteor.service.wakeup.WakeupPlanService;
+import com.aton.proj.oneGasMeteor.service.wakeup.WakeupPlanService.WakeupReport;
+
+/**
+ * Pianificazione dei risvegli della flotta
+ *
+ * POST /admin/wakeup/plan?days=7 - calcola il piano dagli arrivi degli ultimi
+ *                                  giorni (nessun comando accodato)
+ * POST /admin/wakeup/apply       - accoda i SET_SCHEDULE del piano a ondate
+ * POST /admin/wakeup/cancel      - ferma le ondate non ancora inviate
+ * GET  /admin/wakeup/report?days=1 - picco previsto dal piano e picco reale
+ *                                    degli ultimi giorni
+ */
+@RestController
+@RequestMapping("/admin/wakeup")
+@ConditionalOnProperty(name = "wakeup.planner.enabled", havingValue = "true")
+public class WakeupAdminController {
+
+	private static final Logger log = LoggerFactory.getLogger(WakeupAdminController.class);
+
+	private final WakeupPlanService wakeupPlanService;
+
+	public WakeupAdminController(WakeupPlanService wakeupPlanService) {
+		this.wakeupPlanService = wakeupPlanService;
+	}
+
+	@PostMapping("/plan")
+	public ResponseEntity<WakeupReport> plan(@RequestParam(required = false) Integer days) {
+		log.info("Wake-up plan requested via API");
+		return ResponseEntity.ok(wakeupPlanService.plan(days));
+	}
+
+	@PostMapping("/apply")
+	public ResponseEntity<WakeupReport> apply() {
+		log.info("Wake-up rollout requested via API");
+		return ResponseEntity.ok(wakeupPlanService.apply());
+	}
+
+	@PostMapping("/cancel")
+	public ResponseEntity<WakeupReport> cancel() {
+		return ResponseEntity.ok(wakeupPlanService.cancel());
+	}
+
+	@GetMapping("/report")
+	public ResponseEntity<WakeupReport> report(@RequestParam(defaultValue = "1") int days) {
+		return ResponseEntity.ok(wakeupPlanService.report(days));
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException ex) {
+		return ResponseEntity.badRequest().body(Map.of(
+				"status", "ERROR",
+				"message", ex.getMessage(),
+				"timestamp", LocalDateTime.now().toString()));
+	}
+
+	@ExceptionHandler(IllegalStateException.class)
+	public ResponseEntity<Map<String, Object>> handleConflict(IllegalStateException ex) {
+		return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+				"status", "ERROR",
+				"message", ex.getMessage(),
+				"timestamp", LocalDateTime.now().toString()));
+	}
+}
@@ -0,0 +1,221 @@
+package com.aton.proj.oneGasMeteor.decoder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Campi separati da virgola di un body ASCII (Message Type 16 e 17), letti
+ * direttamente dai byte del frame.
+ *
+ * {@link #split} trova i limiti dei primi maxFields campi in una sola
+ * scansione; gli accessor leggono i numeri dai byte senza creare String
+ * intermedie. Il risultato è lo stesso di {@code String.split(",")} seguito
+ * da {@code trim()} e {@code Integer/Long/Double.parseXxx} (null se il campo
+ * non è un numero valido): per i casi fuori dal percorso veloce (es.
+ * esponenti, più di 18 cifre) si ricade sul parse della String.
+ */
+final class AsciiFields {
+
+	// Esiti di parseLong: non ottenibili con 18 cifre al massimo
+	private static final long INVALID = Long.MIN_VALUE;
+	private static final long TOO_LONG = Long.MIN_VALUE + 1;
+
+	/** 10^0..10^22: valori esatti in double */
+	private static final double[] POWERS_OF_TEN = new double[23];
+
+	static {
+		double p = 1;
+		for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = p;
+			p *= 10;
+		}
+	}
+
+	private final byte[] data;
+	private final int[] starts;
+	private final int[] ends;
+	private int count;
+
+	private AsciiFields(byte[] data, int maxFields) {
+		this.data = data;
+		this.starts = new int[maxFields];
+		this.ends = new int[maxFields];
+	}
+
+	/**
+	 * Divide {@code data[offset..offset+length)} in campi, ignorando una virgola
+	 * iniziale. Vengono conservati i primi maxFields campi (già privati degli
+	 * spazi iniziali e finali).
+	 */
+	static AsciiFields split(byte[] data, int offset, int length, int maxFields) {
+		AsciiFields fields = new AsciiFields(data, maxFields);
+		int end = offset + Math.max(0, length);
+		int pos = offset;
+		if (pos < end && data[pos] == ',') {
+			pos++;
+		}
+
+		// Come String.split: i campi vuoti in coda non contano
+		int field = 0;
+		int lastNonEmpty = -1;
+		while (pos <= end && field < maxFields) {
+			int stop = pos;
+			while (stop < end && data[stop] != ',') {
+				stop++;
+			}
+			if (stop > pos) {
+				lastNonEmpty = field;
+			}
+			int s = pos;
+			int e = stop;
+			while (s < e && (data[s] & 0xFF) <= ' ') {
+				s++;
+			}
+			while (e > s && (data[e - 1] & 0xFF) <= ' ') {
+				e--;
+			}
+			fields.starts[field] = s;
+			fields.ends[field] = e;
+			field++;
+			pos = stop + 1;
+		}
+		fields.count = lastNonEmpty + 1;
+
+		// Oltre maxFields basta sapere se c'è ancora un campo non vuoto
+		for (; pos < end; pos++) {
+			if (data[pos] != ',') {
+				fields.count = maxFields + 1;
+				break;
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Numero di campi come {@code String.split(",").length} (maxFields + 1 se ce
+	 * ne sono altri oltre quelli conservati)
+	 */
+	int count() {
+		return count;
+	}
+
+	boolean isEmpty(int field) {
+		return starts[field] == ends[field];
+	}
+
+	String text(int field) {
+		return new String(data, starts[field], ends[field] - starts[field], StandardCharsets.ISO_8859_1);
+	}
+
+	byte byteAt(int field, int index) {
+		return data[starts[field] + index];
+	}
+
+	int length(int field) {
+		return ends[field] - starts[field];
+	}
+
+	Integer intValue(int field) {
+		long value = parseLong(starts[field], ends[field]);
+		if (value == INVALID) {
+			return null;
+		}
+		if (value != TOO_LONG) {
+			return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (int) value : null;
+		}
+		try {
+			return Integer.parseInt(text(field));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	Long longValue(int field) {
+		long value = parseLong(starts[field], ends[field]);
+		if (value == INVALID) {
+			return null;
+		}
+		if (value != TOO_LONG) {
+			return value;
+		}
+		try {
+			return Long.parseLong(text(field));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	Double doubleValue(int field) {
+		int start = starts[field];
+		int end = ends[field];
+		if (start == end) {
+			return null;
+		}
+
+		// Percorso veloce: [+-]cifre[.cifre] con al massimo 15 cifre. Mantissa e
+		// potenza di 10 sono esatte in double, quindi una sola divisione dà lo
+		// stesso arrotondamento di Double.parseDouble
+		int pos = start;
+		boolean negative = false;
+		if (data[pos] == '-' || data[pos] == '+') {
+			negative = data[pos] == '-';
+			pos++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (; pos < end; pos++) {
+			byte b = data[pos];
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			} else if (b == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else {
+				break;
+			}
+		}
+		if (pos == end && digits > 0 && digits <= 15) {
+			double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+			return negative ? -value : value;
+		}
+
+		try {
+			return Double.parseDouble(text(field));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * [+-]cifre: il valore se le cifre sono al massimo 18 (nessun overflow
+	 * possibile), {@link #TOO_LONG} se sono di più (parse della String, es.
+	 * zeri iniziali), {@link #INVALID} se il campo non è un intero
+	 */
+	private long parseLong(int start, int end) {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (data[pos] == '-' || data[pos] == '+')) {
+			negative = data[pos] == '-';
+			pos++;
+		}
+		if (pos == end) {
+			return INVALID;
+		}
+		int digitsStart = pos;
+		long value = 0;
+		for (; pos < end; pos++) {
+			byte b = data[pos];
+			if (b < '0' || b > '9') {
+				return INVALID;
+			}
+			value = value * 10 + (b - '0');
+		}
+		if (end - digitsStart > 18) {
+			return TOO_LONG;
+		}
+		return negative ? -value : value;
+	}
+}
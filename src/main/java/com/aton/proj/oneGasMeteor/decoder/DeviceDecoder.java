@@ -24,6 +24,15 @@ public interface DeviceDecoder {
      */
     DecodedMessage decode(TelemetryMessage message);
     
+    /**
+     * Vista read-only sul frame, senza costruire il grafo DecodedMessage
+     * @param message Messaggio da decodificare
+     * @return Vista flyweight, o null se il decoder non la supporta
+     */
+    default TekFrameView view(TelemetryMessage message) {
+        return null;
+    }
+    
     /**
      * Ritorna i tipi di device supportati da questo decoder
      * @return Lista di device types (es. "TEK822V1", "TEK822V2")
@@ -1,5 +1,6 @@
 package com.aton.proj.oneGasMeteor.decoder;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalTime;
 
 import org.slf4j.Logger;
@@ -12,7 +13,12 @@ import com.aton.proj.oneGasMeteor.model.MessageType6Response;
 
 /**
  * Parser per Message Type 6, 16 e 17 Questi messaggi contengono dati ASCII
- * hex-encoded
+ * hex-encoded. Le varianti con {@code byte[]} leggono l'ASCII direttamente dal
+ * frame, senza passare dalla rappresentazione HEX.
+ *
+ * Il body viene letto in una sola scansione dei byte ({@link AsciiFields}):
+ * nessuna String intermedia per i campi numerici, stessi risultati del
+ * parsing con split/trim/parseXxx.
  */
 @Component
 public class MessageTypeParser {
@@ -20,21 +26,66 @@ public class MessageTypeParser {
 	private static final Logger log = LoggerFactory.getLogger(MessageTypeParser.class);
 
 	/**
-	 * Converte hex string in ASCII string
+	 * Converte hex string nei byte ASCII corrispondenti (una cifra finale
+	 * isolata vale come coppia "0x")
 	 */
-	private String hexToAscii(String hexString) {
+	private static byte[] hexToBytes(String hexString) {
 		if (hexString == null || hexString.isEmpty()) {
-			return "";
+			return new byte[0];
 		}
 
-		StringBuilder ascii = new StringBuilder();
+		byte[] bytes = new byte[(hexString.length() + 1) / 2];
 		for (int i = 0; i < hexString.length(); i += 2) {
-			String hex = hexString.substring(i, Math.min(i + 2, hexString.length()));
-			int decimal = Integer.parseInt(hex, 16);
-			ascii.append((char) decimal);
+			int high = hexDigit(hexString, i);
+			bytes[i / 2] = (byte) (i + 1 < hexString.length() ? high << 4 | hexDigit(hexString, i + 1) : high);
+		}
+		return bytes;
+	}
+
+	/**
+	 * hexToBytes per gli overload String: con HEX non valido il body è vuoto e
+	 * la risposta resta vuota, senza eccezione
+	 */
+	private static byte[] hexBody(String hexPayload, int messageType) {
+		try {
+			return hexToBytes(hexPayload);
+		} catch (NumberFormatException e) {
+			log.error("  Failed to parse Message Type {}: {}", messageType, e.getMessage());
+			return new byte[0];
+		}
+	}
+
+	private static int hexDigit(String hexString, int index) {
+		int digit = Character.digit(hexString.charAt(index), 16);
+		if (digit < 0) {
+			throw new NumberFormatException("Carattere HEX non valido in posizione " + index + ": " + hexString);
+		}
+		return digit;
+	}
+
+	/**
+	 * Legge l'ASCII direttamente dai byte del frame (ISO-8859-1 mappa ogni byte
+	 * sul carattere con lo stesso codice)
+	 */
+	private String bytesToAscii(byte[] payload, int offset, int length) {
+		if (payload == null || length <= 0) {
+			return "";
 		}
+		return new String(payload, offset, length, StandardCharsets.ISO_8859_1);
+	}
 
-		return ascii.toString();
+	/**
+	 * Testo di {@code payload[start..end)} senza spazi iniziali e finali (come
+	 * {@code String.trim()})
+	 */
+	private static String trimmedAscii(byte[] payload, int start, int end) {
+		while (start < end && (payload[start] & 0xFF) <= ' ') {
+			start++;
+		}
+		while (end > start && (payload[end - 1] & 0xFF) <= ' ') {
+			end--;
+		}
+		return new String(payload, start, end - start, StandardCharsets.ISO_8859_1);
 	}
 
 	/**
@@ -43,6 +94,15 @@ public class MessageTypeParser {
 	 * S0=80,S1=05,S2=7F0038,...
 	 */
 	public MessageType6Response parseMessageType6(String hexPayload, String deviceId, String deviceType) {
+		byte[] body = hexBody(hexPayload, 6);
+		return parseMessageType6(body, 0, body.length, deviceId, deviceType);
+	}
+
+	/**
+	 * Parse Message Type 6 leggendo l'ASCII da {@code payload[offset..offset+length)}
+	 */
+	public MessageType6Response parseMessageType6(byte[] payload, int offset, int length, String deviceId,
+			String deviceType) {
 		log.debug(" Parsing Message Type 6 for device: {}", deviceId);
 
 		MessageType6Response response = new MessageType6Response();
@@ -50,25 +110,27 @@ public class MessageTypeParser {
 		response.setDeviceType(deviceType);
 
 		try {
-			// Converti hex in ASCII
-			String asciiData = hexToAscii(hexPayload);
-			log.debug("   ASCII data: {}", asciiData);
-
-			// Rimuovi leading comma se presente
-			if (asciiData.startsWith(",")) {
-				asciiData = asciiData.substring(1);
+			if (log.isDebugEnabled()) {
+				log.debug("   ASCII data: {}", bytesToAscii(payload, offset, length));
 			}
 
-			// Parse settings (formato: S0=80,S1=05,S2=7F0038,...)
-			String[] settings = asciiData.split(",");
-
-			for (String setting : settings) {
-				if (setting.contains("=")) {
-					String[] parts = setting.split("=", 2);
-					String key = parts[0].trim();
-					String value = parts.length > 1 ? parts[1].trim() : "";
-					response.addSetting(key, value);
+			// Parse settings (formato: S0=80,S1=05,S2=7F0038,...): i campi senza '='
+			// (compresa l'eventuale virgola iniziale) vengono ignorati
+			int end = payload != null ? offset + Math.max(0, length) : offset;
+			int start = offset;
+			while (start < end) {
+				int stop = start;
+				int equals = -1;
+				while (stop < end && payload[stop] != ',') {
+					if (equals < 0 && payload[stop] == '=') {
+						equals = stop;
+					}
+					stop++;
 				}
+				if (equals >= 0) {
+					response.addSetting(trimmedAscii(payload, start, equals), trimmedAscii(payload, equals + 1, stop));
+				}
+				start = stop + 1;
 			}
 
 			log.info("  Parsed {} settings from Message Type 6", response.getSettings().size());
@@ -86,6 +148,15 @@ public class MessageTypeParser {
 	 * ICCID,energyUsed,minTemp,maxTemp,...
 	 */
 	public MessageType16Response parseMessageType16(String hexPayload, String deviceId, String deviceType) {
+		byte[] body = hexBody(hexPayload, 16);
+		return parseMessageType16(body, 0, body.length, deviceId, deviceType);
+	}
+
+	/**
+	 * Parse Message Type 16 leggendo l'ASCII da {@code payload[offset..offset+length)}
+	 */
+	public MessageType16Response parseMessageType16(byte[] payload, int offset, int length, String deviceId,
+			String deviceType) {
 		log.debug("  Parsing Message Type 16 for device: {}", deviceId);
 
 		MessageType16Response response = new MessageType16Response();
@@ -93,31 +164,26 @@ public class MessageTypeParser {
 		response.setDeviceType(deviceType);
 
 		try {
-			// Converti hex in ASCII
-			String asciiData = hexToAscii(hexPayload);
-			log.debug("  ASCII data: {}", asciiData);
-
-			// Rimuovi leading comma se presente
-			if (asciiData.startsWith(",")) {
-				asciiData = asciiData.substring(1);
+			if (log.isDebugEnabled()) {
+				log.debug("  ASCII data: {}", bytesToAscii(payload, offset, length));
 			}
 
-			// Parse CSV format
-			String[] fields = asciiData.split(",");
-
-			if (fields.length >= 12) {
-				response.setIccid(fields[0].trim());
-				response.setEnergyUsed(parseLong(fields[1]));
-				response.setMinTemperature(parseInteger(fields[2]));
-				response.setMaxTemperature(parseInteger(fields[3]));
-				response.setMessageCount(parseInteger(fields[4]));
-				response.setDeliveryFailCount(parseInteger(fields[5]));
-				response.setTotalSendTime(parseLong(fields[6]));
-				response.setMaxSendTime(parseLong(fields[7]));
-				response.setMinSendTime(parseLong(fields[8]));
-				response.setRssiTotal(parseLong(fields[9]));
-				response.setRssiValidCount(parseInteger(fields[10]));
-				response.setRssiFailCount(parseInteger(fields[11]));
+			// Parse CSV format (virgola iniziale ignorata)
+			AsciiFields fields = AsciiFields.split(payload, offset, payload != null ? length : 0, 12);
+
+			if (fields.count() >= 12) {
+				response.setIccid(fields.text(0));
+				response.setEnergyUsed(fields.longValue(1));
+				response.setMinTemperature(fields.intValue(2));
+				response.setMaxTemperature(fields.intValue(3));
+				response.setMessageCount(fields.intValue(4));
+				response.setDeliveryFailCount(fields.intValue(5));
+				response.setTotalSendTime(fields.longValue(6));
+				response.setMaxSendTime(fields.longValue(7));
+				response.setMinSendTime(fields.longValue(8));
+				response.setRssiTotal(fields.longValue(9));
+				response.setRssiValidCount(fields.intValue(10));
+				response.setRssiFailCount(fields.intValue(11));
 
 				// Calcola campi derivati
 				response.calculateDerivedFields();
@@ -125,7 +191,7 @@ public class MessageTypeParser {
 				log.info("  Parsed Message Type 16: ICCID={}, Energy={}mAh, SuccessRate={}%", response.getIccid(),
 						response.getEnergyUsed(), String.format("%.2f", response.getDeliverySuccessRate()));
 			} else {
-				log.warn("   Unexpected field count in Message Type 16: {} (expected 12)", fields.length);
+				log.warn("   Unexpected field count in Message Type 16: {} (expected 12)", fields.count());
 			}
 
 		} catch (Exception e) {
@@ -140,6 +206,15 @@ public class MessageTypeParser {
 	 * 2C39352C3133343434322E302C353235352E393935304E2C... Output: GPS data fields
 	 */
 	public MessageType17Response parseMessageType17(String hexPayload, String deviceId, String deviceType) {
+		byte[] body = hexBody(hexPayload, 17);
+		return parseMessageType17(body, 0, body.length, deviceId, deviceType);
+	}
+
+	/**
+	 * Parse Message Type 17 leggendo l'ASCII da {@code payload[offset..offset+length)}
+	 */
+	public MessageType17Response parseMessageType17(byte[] payload, int offset, int length, String deviceId,
+			String deviceType) {
 		log.debug("🔍 Parsing Message Type 17 for device: {}", deviceId);
 
 		MessageType17Response response = new MessageType17Response();
@@ -147,46 +222,37 @@ public class MessageTypeParser {
 		response.setDeviceType(deviceType);
 
 		try {
-			// Converti hex in ASCII
-			String asciiData = hexToAscii(hexPayload);
-			log.debug("   ASCII data: {}", asciiData);
-
-			// Rimuovi leading comma se presente
-			if (asciiData.startsWith(",")) {
-				asciiData = asciiData.substring(1);
+			if (log.isDebugEnabled()) {
+				log.debug("   ASCII data: {}", bytesToAscii(payload, offset, length));
 			}
 
-			// Parse CSV format
-			String[] fields = asciiData.split(",");
+			// Parse CSV format (virgola iniziale ignorata)
+			AsciiFields fields = AsciiFields.split(payload, offset, payload != null ? length : 0, 12);
 
-			if (fields.length >= 12) {
-				response.setTimeToFixSeconds(parseInteger(fields[0]));
+			if (fields.count() >= 12) {
+				response.setTimeToFixSeconds(fields.intValue(0));
 
-				// Parse UTC time (format: hhmmss.s)
-				String utcTimeStr = fields[1].trim().replace(".", "");
-				if (utcTimeStr.length() >= 6) {
-					int hours = Integer.parseInt(utcTimeStr.substring(0, 2));
-					int minutes = Integer.parseInt(utcTimeStr.substring(2, 4));
-					int seconds = Integer.parseInt(utcTimeStr.substring(4, 6));
-					response.setUtcTime(LocalTime.of(hours, minutes, seconds));
+				LocalTime utcTime = utcTime(fields, 1);
+				if (utcTime != null) {
+					response.setUtcTime(utcTime);
 				}
 
-				response.setLatitudeRaw(fields[2].trim());
-				response.setLongitudeRaw(fields[3].trim());
-				response.setHorizontalPrecision(parseDouble(fields[4]));
-				response.setAltitude(parseDouble(fields[5]));
-				response.setGnssPositioningMode(parseInteger(fields[6]));
-				response.setGroundHeading(parseDouble(fields[7]));
-				response.setSpeedKmh(parseDouble(fields[8]));
-				response.setSpeedKnots(parseDouble(fields[9]));
-				response.setDate(fields[10].trim());
-				response.setNumberOfSatellites(parseInteger(fields[11]));
+				response.setLatitudeRaw(fields.text(2));
+				response.setLongitudeRaw(fields.text(3));
+				response.setHorizontalPrecision(fields.doubleValue(4));
+				response.setAltitude(fields.doubleValue(5));
+				response.setGnssPositioningMode(fields.intValue(6));
+				response.setGroundHeading(fields.doubleValue(7));
+				response.setSpeedKmh(fields.doubleValue(8));
+				response.setSpeedKnots(fields.doubleValue(9));
+				response.setDate(fields.text(10));
+				response.setNumberOfSatellites(fields.intValue(11));
 
 				log.info("  Parsed Message Type 17: GPS({}, {}) alt={}m, sats={}", response.getLatitude(),
 						response.getLongitude(), response.getAltitude(), response.getNumberOfSatellites());
 				log.info("   📍 Google Maps: {}", response.getGoogleMapsLink());
 			} else {
-				log.warn("   Unexpected field count in Message Type 17: {} (expected 12)", fields.length);
+				log.warn("   Unexpected field count in Message Type 17: {} (expected 12)", fields.count());
 			}
 
 		} catch (Exception e) {
@@ -196,28 +262,44 @@ public class MessageTypeParser {
 		return response;
 	}
 
-	// Helper methods
-	private Integer parseInteger(String value) {
-		try {
-			return value != null && !value.trim().isEmpty() ? Integer.parseInt(value.trim()) : null;
-		} catch (NumberFormatException e) {
+	/**
+	 * Ora UTC (formato hhmmss.s): prime 6 cifre del campo ignorando i punti, null
+	 * se sono meno di 6. Ore/minuti/secondi non validi sollevano eccezione.
+	 */
+	private static LocalTime utcTime(AsciiFields fields, int field) {
+		int length = fields.length(field);
+		int digits = 0;
+		for (int i = 0; i < length; i++) {
+			if (fields.byteAt(field, i) != '.') {
+				digits++;
+			}
+		}
+		if (digits < 6) {
 			return null;
 		}
-	}
 
-	private Long parseLong(String value) {
-		try {
-			return value != null && !value.trim().isEmpty() ? Long.parseLong(value.trim()) : null;
-		} catch (NumberFormatException e) {
-			return null;
+		int[] values = new int[3];
+		int taken = 0;
+		byte first = 0;
+		for (int i = 0; taken < 6; i++) {
+			byte b = fields.byteAt(field, i);
+			if (b == '.') {
+				continue;
+			}
+			if (taken % 2 == 0) {
+				first = b;
+			} else {
+				values[taken / 2] = twoDigits(first, b);
+			}
+			taken++;
 		}
+		return LocalTime.of(values[0], values[1], values[2]);
 	}
 
-	private Double parseDouble(String value) {
-		try {
-			return value != null && !value.trim().isEmpty() ? Double.parseDouble(value.trim()) : null;
-		} catch (NumberFormatException e) {
-			return null;
+	private static int twoDigits(byte tens, byte units) {
+		if (tens >= '0' && tens <= '9' && units >= '0' && units <= '9') {
+			return (tens - '0') * 10 + (units - '0');
 		}
+		return Integer.parseInt(new String(new char[] { (char) (tens & 0xFF), (char) (units & 0xFF) }));
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,261 @@
+package com.aton.proj.oneGasMeteor.decoder;
+
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+
+/**
+ * Vista read-only (flyweight) su un frame TEK.
+ *
+ * Non copia il payload e non costruisce oggetti: tutti gli accessor leggono i
+ * byte del frame e restituiscono primitivi. Il grafo {@link DecodedMessage} si
+ * ottiene con {@link #toDecodedMessage()} solo quando serve davvero (JSON per
+ * decoded_data, risposte REST).
+ *
+ * Gli indici di misura vanno da 0 a {@link #measurementSlots()} - 1 e seguono
+ * la numerazione "Data i" del decoder completo, compresi gli slot vuoti.
+ */
+public final class TekFrameView {
+
+	/** Numero massimo di slot di misura nei messaggi 4/8/9 */
+	public static final int MEASUREMENT_SLOTS = 28;
+
+	private static final int MEASUREMENT_OFFSET = 26;
+
+	private static final TekMessageDecoder DECODER = new TekMessageDecoder();
+
+	private final byte[] payload;
+	private final long serverTimeInMs;
+	private final int messageType;
+	private final int measurementSlots;
+
+	// Valorizzati solo per i messaggi con misure (4/8/9)
+	private final long loggerSpeedMs;
+	private final long baseTimestampMs;
+
+	/**
+	 * @param payload        Frame TEK completo (header + body)
+	 * @param serverTimeInMs Ora di ricezione lato server, base per i timestamp
+	 */
+	public TekFrameView(byte[] payload, long serverTimeInMs) {
+		TekMessageDecoder.checkDeclaredLength(payload);
+		this.payload = payload;
+		this.serverTimeInMs = serverTimeInMs;
+		this.messageType = payload[15] & 0x3F;
+
+		if (hasMeasurements()) {
+			this.loggerSpeedMs = TekMessageDecoder.loggerSpeedMs(messageType, payload, isManual());
+			this.baseTimestampMs = TekMessageDecoder.baseTimestampMs(payload, serverTimeInMs);
+			int available = (payload.length - MEASUREMENT_OFFSET) / 4;
+			this.measurementSlots = Math.max(0, Math.min(MEASUREMENT_SLOTS, available));
+		} else {
+			this.loggerSpeedMs = 0;
+			this.baseTimestampMs = 0;
+			this.measurementSlots = 0;
+		}
+	}
+
+	// ====================== Header ======================
+
+	public int productCode() {
+		return payload[0] & 0xFF;
+	}
+
+	/**
+	 * @return nome del prodotto (es. "TEK822V2"), null se il codice è sconosciuto.
+	 *         Stringa costante, nessuna allocazione.
+	 */
+	public String productType() {
+		return TekMessageDecoder.productType(productCode());
+	}
+
+	public int hardwareMajor() {
+		return payload[1] & 0x07;
+	}
+
+	public int hardwareMinor() {
+		return (payload[1] >> 3) & 0x1F;
+	}
+
+	public int firmwareMajor() {
+		return payload[2] & 0x1F;
+	}
+
+	public int firmwareMinor() {
+		return (payload[2] >> 5) & 0x07;
+	}
+
+	/**
+	 * @return firmware nel formato "major.minor" usato da {@link DecodedMessage}
+	 */
+	public String firmwareRevision() {
+		return firmwareMajor() + "." + firmwareMinor();
+	}
+
+	public int messageType() {
+		return messageType;
+	}
+
+	/**
+	 * @return byte grezzo del contact reason (bit 0 scheduled ... bit 7 dynamic2)
+	 */
+	public int contactReasonFlags() {
+		return payload[3] & 0xFF;
+	}
+
+	public boolean isManual() {
+		return (payload[3] & 0x08) != 0;
+	}
+
+	/**
+	 * IMEI dai byte 7-14 in BCD, senza lo zero iniziale. Alloca la sola stringa
+	 * risultato.
+	 */
+	public String imei() {
+		return imei(payload);
+	}
+
+	/**
+	 * IMEI letto direttamente dall'header, senza validare il resto del frame:
+	 * disponibile appena letti i primi 15 byte.
+	 */
+	public static String imei(byte[] payload) {
+		char[] digits = new char[15];
+		int pos = 0;
+		for (int i = 7; i < 15; i++) {
+			int high = (payload[i] >> 4) & 0x0F;
+			int low = payload[i] & 0x0F;
+			if (i > 7) {
+				digits[pos++] = (char) ('0' + high); // il primo nibble è lo zero iniziale
+			}
+			digits[pos++] = (char) ('0' + low);
+		}
+		return new String(digits);
+	}
+
+	/**
+	 * @return CSQ o RSSI a seconda del prodotto, -1 se il prodotto non lo prevede
+	 */
+	public int signalStrength() {
+		return switch (productCode()) {
+		case 2, 5, 6, 9, 7, 8, 10, 11, 23, 24, 25, 26, 27, 28 -> payload[5] & 0xFF;
+		default -> -1;
+		};
+	}
+
+	/**
+	 * @return percentuale batteria residua, NaN se il prodotto riporta la tensione
+	 */
+	public double batteryPercentage() {
+		return switch (productCode()) {
+		case 6, 8, 10, 23, 24, 27, 28 -> TekMessageDecoder.batteryPercentage(payload[6] & 0x1F);
+		default -> Double.NaN;
+		};
+	}
+
+	/**
+	 * @return tensione batteria in V, NaN se il prodotto riporta la percentuale
+	 */
+	public double batteryVoltage() {
+		return switch (productCode()) {
+		case 2, 5, 9, 7, 11, 25, 26 -> TekMessageDecoder.batteryVoltage(payload[6] & 0x1F);
+		default -> Double.NaN;
+		};
+	}
+
+	// ====================== Diagnostica (4/8/9) ======================
+
+	public boolean hasMeasurements() {
+		return messageType == 4 || messageType == 8 || messageType == 9;
+	}
+
+	public int messageCount() {
+		return ((payload[17] & 0xFF) << 8) | (payload[18] & 0xFF);
+	}
+
+	public long loggerSpeedMs() {
+		return loggerSpeedMs;
+	}
+
+	// ====================== Misure ======================
+
+	/**
+	 * @return numero di slot presenti nel frame (vuoti compresi)
+	 */
+	public int measurementSlots() {
+		return measurementSlots;
+	}
+
+	/**
+	 * @return numero di slot non vuoti, come la lista di {@link DecodedMessage}
+	 */
+	public int measurementCount() {
+		int count = 0;
+		for (int i = 0; i < measurementSlots; i++) {
+			if (!isVoid(i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Slot con tutti e 4 i byte a zero: lettura assente
+	 */
+	public boolean isVoid(int slot) {
+		int j = offset(slot);
+		return (payload[j] | payload[j + 1] | payload[j + 2] | payload[j + 3]) == 0;
+	}
+
+	public double temperatureC(int slot) {
+		return TekMessageDecoder.temperatureC(payload[offset(slot) + 1] & 0x7F);
+	}
+
+	public int distanceCm(int slot) {
+		int j = offset(slot);
+		return ((payload[j + 2] & 0x03) << 8) | (payload[j + 3] & 0xFF);
+	}
+
+	public int sonicRssi(int slot) {
+		return payload[offset(slot)] & 0x0F;
+	}
+
+	public int sonicSrc(int slot) {
+		return (payload[offset(slot) + 2] >> 2) & 0x0F;
+	}
+
+	/**
+	 * @return timestamp della misura in epoch millis (UTC)
+	 */
+	public long timestampMillis(int slot) {
+		checkSlot(slot);
+		return baseTimestampMs - (loggerSpeedMs * slot);
+	}
+
+	// ====================== Materializzazione ======================
+
+	/**
+	 * Costruisce il grafo completo, identico a quello di
+	 * {@link TekMessageDecoder#decode(com.aton.proj.oneGasMeteor.model.TelemetryMessage)}
+	 */
+	public DecodedMessage toDecodedMessage() {
+		return DECODER.decode(payload, serverTimeInMs);
+	}
+
+	public byte[] payload() {
+		return payload;
+	}
+
+	public long serverTimeInMs() {
+		return serverTimeInMs;
+	}
+
+	private int offset(int slot) {
+		checkSlot(slot);
+		return MEASUREMENT_OFFSET + slot * 4;
+	}
+
+	private void checkSlot(int slot) {
+		if (slot < 0 || slot >= measurementSlots) {
+			throw new IndexOutOfBoundsException("Slot " + slot + " fuori range [0, " + measurementSlots + ")");
+		}
+	}
+}
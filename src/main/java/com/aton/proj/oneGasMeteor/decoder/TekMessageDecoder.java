@@ -1,9 +1,6 @@
 package com.aton.proj.oneGasMeteor.decoder;
 
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,19 +9,79 @@ import com.aton.proj.oneGasMeteor.model.DecodedMessage;
 import com.aton.proj.oneGasMeteor.model.TelemetryMessage;
 
 /**
- * Decoder per messaggi TEK
+ * Decoder per messaggi TEK.
+ *
+ * {@link #decode(TelemetryMessage)} costruisce il grafo completo
+ * {@link DecodedMessage}; {@link #view(TelemetryMessage)} restituisce invece una
+ * vista read-only sui byte del frame ({@link TekFrameView}) che non alloca
+ * nulla finché non serve il POJO.
  */
 public class TekMessageDecoder {
 
+	private static final long ONE_MINUTE_MS = 60 * 1000L;
+	private static final long FIFTEEN_MINUTES_MS = 15 * ONE_MINUTE_MS;
+	private static final long ONE_DAY_MS = 24 * 60 * ONE_MINUTE_MS;
+
+	/** Product type indicizzato per codice prodotto (byte 0) */
+	private static final String[] PRODUCT_TYPES = new String[29];
+
+	/** Etichette "Data i" degli slot di misura, calcolate una sola volta */
+	private static final String[] MEASUREMENT_LABELS = new String[TekFrameView.MEASUREMENT_SLOTS];
+
+	// Valori formattati "%.2f" per tutti i possibili valori grezzi (5 e 7 bit)
+	private static final String[] BATTERY_PERCENTAGE_LABELS = new String[32];
+	private static final String[] BATTERY_VOLTAGE_LABELS = new String[32];
+	private static final String[] TEMPERATURE_F_LABELS = new String[128];
+
+	static {
+		PRODUCT_TYPES[2] = "TEK586";
+		PRODUCT_TYPES[5] = "TEK733";
+		PRODUCT_TYPES[6] = "TEK643";
+		PRODUCT_TYPES[7] = "TEK811";
+		PRODUCT_TYPES[8] = "TEK822V1";
+		PRODUCT_TYPES[9] = "TEK733A";
+		PRODUCT_TYPES[10] = "TEK871";
+		PRODUCT_TYPES[11] = "TEK811A";
+		PRODUCT_TYPES[23] = "TEK822V1BTN";
+		PRODUCT_TYPES[24] = "TEK822V2";
+		PRODUCT_TYPES[25] = "TEK900";
+		PRODUCT_TYPES[26] = "TEK880";
+		PRODUCT_TYPES[27] = "TEK898V2";
+		PRODUCT_TYPES[28] = "TEK898V1";
+
+		for (int i = 0; i < MEASUREMENT_LABELS.length; i++) {
+			MEASUREMENT_LABELS[i] = "Data " + i;
+		}
+		for (int raw = 0; raw < 32; raw++) {
+			BATTERY_PERCENTAGE_LABELS[raw] = String.format("%.2f", batteryPercentage(raw));
+			BATTERY_VOLTAGE_LABELS[raw] = String.format("%.2f", batteryVoltage(raw));
+		}
+		for (int raw = 0; raw < 128; raw++) {
+			double temperatureC = temperatureC(raw);
+			TEMPERATURE_F_LABELS[raw] = String.format("%.2f", (temperatureC * 9 / 5) + 32);
+		}
+	}
+
 	public DecodedMessage decode(TelemetryMessage msg) {
-		DecodedMessage decode = new DecodedMessage();
-		byte[] payload = msg.getPayload();
+		return decode(msg.getPayload(), msg.getServerTimeInMs());
+	}
 
-		int declaredLength = ((payload[15] >> 6) & 0x03) * 256 + (payload[16] & 0xFF);
-//		System.err.println(declaredLength);
-		if (payload.length < 17 + declaredLength) {
-			throw new DecodingException("Payload troncato: attesi " + declaredLength + " bytes");
-		}
+	/**
+	 * Vista flyweight sul frame: accessor primitivi, nessun grafo di oggetti.
+	 */
+	public TekFrameView view(TelemetryMessage msg) {
+		return new TekFrameView(msg.getPayload(), msg.getServerTimeInMs());
+	}
+
+	/**
+	 * Decodifica completa del frame nel grafo {@link DecodedMessage}
+	 *
+	 * @param payload       Frame TEK (header + body)
+	 * @param serverTimeInMs Ora di ricezione lato server, base per i timestamp
+	 */
+	public DecodedMessage decode(byte[] payload, long serverTimeInMs) {
+		checkDeclaredLength(payload);
+		DecodedMessage decode = new DecodedMessage();
 
 		// DECODING MESSAGE HEADER
 		decodeProductType(payload, decode);
@@ -45,31 +102,100 @@ public class TekMessageDecoder {
 		// DECODING MESSAGE 4/8/9
 		if (msgType == 4 || msgType == 8 || msgType == 9) {
 			decodeDiagnosticData(payload, decode);
-			decodeMeasurementData(msg, payload, decode, msgType);
+			decodeMeasurementData(serverTimeInMs, payload, decode, msgType);
 		}
 
 		return decode;
 	}
 
+	// ====================== Helper condivisi con TekFrameView ======================
+
+	static void checkDeclaredLength(byte[] payload) {
+		if (payload == null || payload.length < 17) {
+			throw new DecodingException("Payload troncato: header incompleto");
+		}
+		int declaredLength = ((payload[15] >> 6) & 0x03) * 256 + (payload[16] & 0xFF);
+		if (payload.length < 17 + declaredLength) {
+			throw new DecodingException("Payload troncato: attesi " + declaredLength + " bytes");
+		}
+	}
+
+	static String productType(int productCode) {
+		return productCode >= 0 && productCode < PRODUCT_TYPES.length ? PRODUCT_TYPES[productCode] : null;
+	}
+
+	/**
+	 * Confronto numerico equivalente a {@code Double.parseDouble(fw) > 3.0} con
+	 * fw = "major.minor" (minor su 3 bit, quindi sempre una sola cifra)
+	 */
+	static boolean isFirmwareAbove3(int major, int minor) {
+		return major > 3 || (major == 3 && minor > 0);
+	}
+
+	/**
+	 * Come {@link #isFirmwareAbove3(int, int)} ma sulla stringa "major.minor" già
+	 * decodificata, senza passare da {@code Double.parseDouble}
+	 */
+	static boolean isFirmwareAbove3(String firmwareRevision) {
+		int major = 0;
+		int minor = 0;
+		boolean afterDot = false;
+		for (int i = 0; i < firmwareRevision.length(); i++) {
+			char c = firmwareRevision.charAt(i);
+			if (c == '.') {
+				afterDot = true;
+			} else if (c >= '0' && c <= '9') {
+				if (afterDot) {
+					if (minor == 0) {
+						minor = c - '0'; // basta la prima cifra decimale per il confronto con 3.0
+					}
+				} else {
+					major = major * 10 + (c - '0');
+				}
+			} else {
+				throw new NumberFormatException("Firmware revision non valida: " + firmwareRevision);
+			}
+		}
+		return isFirmwareAbove3(major, minor);
+	}
+
+	static double batteryPercentage(int raw) {
+		return (raw * 100.0) / 31.0;
+	}
+
+	static double batteryVoltage(int raw) {
+		return (raw + 30.0) / 10.0;
+	}
+
+	static double temperatureC(int raw) {
+		return (raw / 2.0) - 30.0;
+	}
+
+	/**
+	 * Timestamp base (slot 0): data dal server + ora/minuti dal RTC del device
+	 * (PDF sezione 2.2.2). Ore: minor 5 bits di byte 19 (es: 0x97 -> 10111 = 23),
+	 * minuti: byte 25 (es: 0x0F = 15).
+	 */
+	static long baseTimestampMs(byte[] payload, long serverTimeMs) {
+		int rtcHours = payload[19] & 0x1F;
+		int rtcMinutes = payload[25] & 0xFF;
+		if (rtcHours > 23 || rtcMinutes > 59) {
+			throw new DecodingException("RTC non valido: " + rtcHours + ":" + rtcMinutes);
+		}
+
+		long dayStartMs = Math.floorDiv(serverTimeMs, ONE_DAY_MS) * ONE_DAY_MS;
+		long baseTimestampMs = dayStartMs + rtcHours * 60 * ONE_MINUTE_MS + rtcMinutes * ONE_MINUTE_MS;
+
+		// Gestione attraversamento mezzanotte: se RTC è molto avanti rispetto al
+		// server time (es: RTC=23:50, server=00:10) il device ha misurato ieri
+		if (baseTimestampMs - serverTimeMs > 12 * 60 * ONE_MINUTE_MS) {
+			baseTimestampMs -= ONE_DAY_MS; // sottrai un giorno
+		}
+		return baseTimestampMs;
+	}
+
 	private void decodeProductType(byte[] payload, DecodedMessage decode) {
-		String productType = switch (payload[0] & 0xFF) {
-		case 2 -> "TEK586";
-		case 5 -> "TEK733";
-		case 6 -> "TEK643";
-		case 7 -> "TEK811";
-		case 8 -> "TEK822V1";
-		case 9 -> "TEK733A";
-		case 10 -> "TEK871";
-		case 11 -> "TEK811A";
-		case 23 -> "TEK822V1BTN";
-		case 24 -> "TEK822V2";
-		case 25 -> "TEK900";
-		case 26 -> "TEK880";
-		case 27 -> "TEK898V2";
-		case 28 -> "TEK898V1";
-		default -> null;
-		};
-		decode.getUnitInfo().setProductType(productType);
+		decode.getUnitInfo().setProductType(productType(payload[0] & 0xFF));
 	}
 
 	private void decodeVersions(byte[] payload, DecodedMessage decode) {
@@ -150,14 +276,10 @@ public class TekMessageDecoder {
 		var batteryStatus = decode.getBatteryStatus();
 
 		switch (productType) {
-		case 6, 8, 10, 23, 24, 27, 28 -> { // Battery percentage
-			double percentage = ((payload[6] & 0x1F) * 100.0) / 31.0;
-			batteryStatus.setBatteryRemainingPercentage(String.format("%.2f", percentage));
-		}
-		case 2, 5, 9, 7, 11, 25, 26 -> { // Battery voltage
-			double voltage = ((payload[6] & 0x1F) + 30.0) / 10.0;
-			batteryStatus.setBatteryVoltage(String.format("%.2f", voltage));
-		}
+		case 6, 8, 10, 23, 24, 27, 28 -> // Battery percentage
+			batteryStatus.setBatteryRemainingPercentage(BATTERY_PERCENTAGE_LABELS[payload[6] & 0x1F]);
+		case 2, 5, 9, 7, 11, 25, 26 -> // Battery voltage
+			batteryStatus.setBatteryVoltage(BATTERY_VOLTAGE_LABELS[payload[6] & 0x1F]);
 		}
 	}
 	
@@ -171,10 +293,7 @@ public class TekMessageDecoder {
 			diagnosticInfo.setEnergyUsedLastContactMaSeconds(((payload[20] & 0xFF) << 8) | (payload[21] & 0xFF));
 
 		case 8, 23, 24, 27, 28 -> { // TEK822V1, TEK822V1BTN, TEK822V2, TEK898V2, TEK898V1
-			double fwVersion = Double.parseDouble(decode.getUnitInfo().getFirmwareRevision());
-//			printHex(payload, 20, 1);
-//			printHex(payload, 21, 1);
-			if (fwVersion > 3.0) {
+			if (isFirmwareAbove3(decode.getUnitInfo().getFirmwareRevision())) {
 				diagnosticInfo.setEnergyUsedLastContactMaSeconds(((payload[20] & 0xFF) << 8) | (payload[21] & 0xFF));
 			} else {
 				diagnosticInfo.setLastErrorCode(((payload[20] & 0xFF) << 8) | (payload[21] & 0xFF));
@@ -192,36 +311,18 @@ public class TekMessageDecoder {
 	}
 
 	private void decodeMeasurementData(TelemetryMessage msg, byte[] payload, DecodedMessage decode, int msgType) {
+		decodeMeasurementData(msg.getServerTimeInMs(), payload, decode, msgType);
+	}
+
+	private void decodeMeasurementData(long serverTimeInMs, byte[] payload, DecodedMessage decode, int msgType) {
 		long loggerSpeedMs = calculateLoggerSpeed(msgType, payload, decode);
 		decode.getUnitSetup().setLoggerSpeedMinutes((int) (loggerSpeedMs / 60000));
 
-		// Estrai RTC dal payload (PDF sezione 2.2.2)
-		// Ore: minor 5 bits di byte 19 (es: 0x97 -> 10111 = 23)
-		// Minuti: byte 25 (es: 0x0F = 15)
-		int rtcHours = payload[19] & 0x1F;
-		int rtcMinutes = payload[25] & 0xFF;
-		
-//		printHex(payload, 19, 1);
-//		System.out.println(rtcHours);
-//		printHex(payload, 25, 1);
-//		System.out.println(rtcMinutes);
+		long baseTimestampMs = baseTimestampMs(payload, serverTimeInMs);
 
-		// Costruisci timestamp base: data dal server + ora/minuti dal RTC del device
-		LocalDate serverDate = Instant.ofEpochMilli(msg.getServerTimeInMs()).atZone(ZoneOffset.UTC).toLocalDate();
-		LocalTime rtcTime = LocalTime.of(rtcHours, rtcMinutes, 0);
-		long baseTimestampMs = serverDate.atTime(rtcTime).atZone(ZoneOffset.UTC).toInstant().toEpochMilli();
-//		System.out.println(baseTimestampMs + "  #  " + loggerSpeedMs);
+		List<DecodedMessage.MeasurementData> measurements = new ArrayList<>(TekFrameView.MEASUREMENT_SLOTS);
 
-		// Gestione attraversamento mezzanotte: se RTC è molto avanti rispetto al
-		// server time (es: RTC=23:50, server=00:10) il device ha misurato ieri
-		long serverTimeMs = msg.getServerTimeInMs();
-		if (baseTimestampMs - serverTimeMs > 12 * 60 * 60 * 1000) {
-			baseTimestampMs -= 24 * 60 * 60 * 1000; // sottrai un giorno
-		}
-
-		List<DecodedMessage.MeasurementData> measurements = new ArrayList<>();
-
-		for (int i = 0; i < 28; i++) {
+		for (int i = 0; i < TekFrameView.MEASUREMENT_SLOTS; i++) {
 			int j = (i * 4) + 26;
 
 			if (j + 3 >= payload.length) {
@@ -235,11 +336,10 @@ public class TekMessageDecoder {
 				continue; // Ignore void readings
 			}
 
-			// double temperatureC = ((payload[j + 1] >> 1) & 0x7F) - 30.0;
-			double temperatureC = ((payload[j + 1] & 0x7F) / 2.0) - 30.0;
+			int temperatureRaw = payload[j + 1] & 0x7F;
 
 			var measurement = new DecodedMessage.MeasurementData();
-			measurement.setMeasurementNum("Data " + i);
+			measurement.setMeasurementNum(MEASUREMENT_LABELS[i]);
 
 			int distance = ((payload[j + 2] & 0x03) << 8) | (payload[j + 3] & 0xFF);
 			measurement.setMeasuredValue(distance);
@@ -248,8 +348,8 @@ public class TekMessageDecoder {
 			measurement.setPayloadValue(null);
 			measurement.setSonicSrc((payload[j + 2] >> 2) & 0x0F);
 			measurement.setSonicRssi(payload[j] & 0x0F);
-			measurement.setTemperatureC(temperatureC);
-			measurement.setTemperatureF(String.format("%.2f", (temperatureC * 9 / 5) + 32));
+			measurement.setTemperatureC(temperatureC(temperatureRaw));
+			measurement.setTemperatureF(TEMPERATURE_F_LABELS[temperatureRaw]);
 			measurement.setTemperatureCode(null);
 			measurement.setAuxdata1(null);
 			measurement.setAuxdata2(null);
@@ -264,10 +364,14 @@ public class TekMessageDecoder {
 	}
 
 	private long calculateLoggerSpeed(int msgType, byte[] payload, DecodedMessage decode) {
+		return loggerSpeedMs(msgType, payload, Boolean.TRUE.equals(decode.getContactReason().getManual()));
+	}
+
+	static long loggerSpeedMs(int msgType, byte[] payload, boolean manual) {
 		long loggerSpeedMs;
 
 		if (msgType == 8) {
-			if (Boolean.TRUE.equals(decode.getContactReason().getManual())) {
+			if (manual) {
 				// NOTE: in this case the logger runs at 1sec
 				loggerSpeedMs = 1 * 1000;
 			} else if ((payload[23] & 0x80) == 0) {
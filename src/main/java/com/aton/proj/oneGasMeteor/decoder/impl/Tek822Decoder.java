@@ -7,6 +7,7 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import com.aton.proj.oneGasMeteor.decoder.DeviceDecoder;
+import com.aton.proj.oneGasMeteor.decoder.TekFrameView;
 import com.aton.proj.oneGasMeteor.decoder.TekMessageDecoder;
 import com.aton.proj.oneGasMeteor.exception.DecodingException;
 import com.aton.proj.oneGasMeteor.model.DecodedMessage;
@@ -58,6 +59,15 @@ public class Tek822Decoder implements DeviceDecoder {
         }
     }
     
+    @Override
+    public TekFrameView view(TelemetryMessage message) {
+        try {
+            return telemetryMessageDecoder.view(message);
+        } catch (Exception e) {
+            throw new DecodingException("Failed to decode message", e);
+        }
+    }
+    
     @Override
     public List<String> getSupportedDeviceTypes() {
         return Arrays.asList(
@@ -0,0 +1,113 @@
+package com.aton.proj.oneGasMeteor.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity per le singole letture dei Message Type 4/8/9 (fino a 28 per
+ * messaggio), una riga per lettura. Le stesse letture restano anche in
+ * decoded_data di telemetry_data; questa tabella serve alle query sui trend
+ * (range scan su device_id, measured_at invece del parsing del JSON).
+ *
+ * measured_at è in UTC: è il timestamp della lettura calcolato dal decoder
+ * (RTC del device e logger speed), non l'istante di ricezione.
+ *
+ * Non mappata da JPA: le righe sono scritte solo da BatchWriteService (batch
+ * JDBC, COPY o InfluxDB), così ddl-auto=validate non richiede la tabella
+ * finché telemetry.measurements.enabled=false. Prima di attivarla va eseguito
+ * db-migration-measurements.sql (su H2 la crea db-h2mem-schema.sql).
+ */
+public class MeasurementEntity {
+
+    private Long id;
+
+    private String deviceId;
+
+    private LocalDateTime measuredAt;
+
+    private Integer distanceCm;
+
+    private Double temperatureC;
+
+    private Integer sonicRssi;
+
+    private Integer sonicSrc;
+
+    public MeasurementEntity() {
+    }
+
+    public MeasurementEntity(String deviceId, LocalDateTime measuredAt, Integer distanceCm, Double temperatureC,
+            Integer sonicRssi, Integer sonicSrc) {
+        this.deviceId = deviceId;
+        this.measuredAt = measuredAt;
+        this.distanceCm = distanceCm;
+        this.temperatureC = temperatureC;
+        this.sonicRssi = sonicRssi;
+        this.sonicSrc = sonicSrc;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public LocalDateTime getMeasuredAt() {
+        return measuredAt;
+    }
+
+    public void setMeasuredAt(LocalDateTime measuredAt) {
+        this.measuredAt = measuredAt;
+    }
+
+    public Integer getDistanceCm() {
+        return distanceCm;
+    }
+
+    public void setDistanceCm(Integer distanceCm) {
+        this.distanceCm = distanceCm;
+    }
+
+    public Double getTemperatureC() {
+        return temperatureC;
+    }
+
+    public void setTemperatureC(Double temperatureC) {
+        this.temperatureC = temperatureC;
+    }
+
+    public Integer getSonicRssi() {
+        return sonicRssi;
+    }
+
+    public void setSonicRssi(Integer sonicRssi) {
+        this.sonicRssi = sonicRssi;
+    }
+
+    public Integer getSonicSrc() {
+        return sonicSrc;
+    }
+
+    public void setSonicSrc(Integer sonicSrc) {
+        this.sonicSrc = sonicSrc;
+    }
+
+    @Override
+    public String toString() {
+        return "MeasurementEntity{" +
+                "id=" + id +
+                ", deviceId='" + deviceId + '\'' +
+                ", measuredAt=" + measuredAt +
+                ", distanceCm=" + distanceCm +
+                '}';
+    }
+}
@@ -11,7 +11,9 @@ import java.time.LocalDateTime;
 	    @Index(name = "idx_device_id", columnList = "device_id"),
 	    @Index(name = "idx_device_type", columnList = "device_type"),
 	    @Index(name = "idx_received_at", columnList = "received_at"),
-	    @Index(name = "idx_imei", columnList = "imei")
+	    @Index(name = "idx_imei", columnList = "imei"),
+	    @Index(name = "idx_device_received_at", columnList = "device_id, received_at DESC, id DESC"),
+	    @Index(name = "idx_device_type_received_at", columnList = "device_type, received_at DESC, id DESC")
 })
 public class TelemetryEntity {
     
@@ -31,6 +33,12 @@ public class TelemetryEntity {
     @Column(name = "decoded_data", columnDefinition = "NVARCHAR(MAX)")
     private String decodedDataJson; // JSON serializzato di DecodedMessage
     
+    // DecodedMessage in formato binario (DecodedMessageCodec). Non mappato da JPA:
+    // la colonna esiste solo dopo db-migration-decoded-data-bin.sql e viene letta/scritta
+    // via JDBC solo con telemetry.decoded-data.format=binary
+    @Transient
+    private byte[] decodedDataBin;
+    
     @Column(name = "received_at", nullable = false)
     private LocalDateTime receivedAt;
     
@@ -104,6 +112,14 @@ public class TelemetryEntity {
         this.decodedDataJson = decodedDataJson;
     }
     
+    public byte[] getDecodedDataBin() {
+        return decodedDataBin;
+    }
+    
+    public void setDecodedDataBin(byte[] decodedDataBin) {
+        this.decodedDataBin = decodedDataBin;
+    }
+    
     public LocalDateTime getReceivedAt() {
         return receivedAt;
     }
@@ -12,29 +12,40 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
+import com.aton.proj.oneGasMeteor.config.tcpServer.TcpServerProperties;
+import com.aton.proj.oneGasMeteor.model.DeviceSession;
 import com.aton.proj.oneGasMeteor.model.ProcessingContext;
 import com.aton.proj.oneGasMeteor.model.TelemetryMessage;
 import com.aton.proj.oneGasMeteor.model.TelemetryResponse;
-import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository;
+import com.aton.proj.oneGasMeteor.service.ProcessingMetricsWriter;
 import com.aton.proj.oneGasMeteor.service.TelemetryService;
+import com.aton.proj.oneGasMeteor.service.capture.FrameCaptureTap;
+import com.aton.proj.oneGasMeteor.service.metrics.StageLatencyRegistry;
 import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
 
 @Component
 public class TcpConnectionHandlerReadExactly {
 
 	private static final Logger log = LoggerFactory.getLogger(TcpConnectionHandlerReadExactly.class);
-	private static final int HEADER_SIZE = 17;
+	public static final int HEADER_SIZE = 17;
+	/** Header + body massimo (campo lunghezza a 10 bit) */
+	public static final int MAX_FRAME_SIZE = HEADER_SIZE + 1023;
 
 	@Value("${tcp.server.port:8091}")
 	private int tcpPort;
 
 	private final TelemetryService telemetryService;
-	private final ProcessingMetricsRepository metricsRepository;
+	private final ProcessingMetricsWriter metricsWriter;
+	private final StageLatencyRegistry latencyRegistry;
+	private final FrameCaptureTap frameCapture;
 
 	public TcpConnectionHandlerReadExactly(TelemetryService telemetryService,
-			@Nullable ProcessingMetricsRepository metricsRepository) {
+			@Nullable ProcessingMetricsWriter metricsWriter, @Nullable StageLatencyRegistry latencyRegistry,
+			@Nullable FrameCaptureTap frameCapture) {
 		this.telemetryService = telemetryService;
-		this.metricsRepository = metricsRepository;
+		this.metricsWriter = metricsWriter;
+		this.latencyRegistry = latencyRegistry;
+		this.frameCapture = frameCapture;
 	}
 
 	/**
@@ -55,37 +66,11 @@ public class TcpConnectionHandlerReadExactly {
 			byte[] receivedData = readData(socket.getInputStream(), context);
 			context.endRead();
 
-			context.setPayloadLengthBytes(receivedData.length);
-			log.trace("[TCP PORT {}] Messaggio ricevuto: {} byte (header 17 + body {})",
-					socket.getPort(), receivedData.length, receivedData.length - HEADER_SIZE);
+			// 2. Decodifica, accoda e prepara la risposta con i comandi
+			response = processFrame(receivedData, clientAddress, context);
+			byte[] replyBytes = buildReply(response);
 
-			// 2. Crea il messaggio di telemetria
-			TelemetryMessage message = new TelemetryMessage(receivedData, clientAddress);
-			response = telemetryService.processTelemetry(message, context);
-
-			log.debug("[TCP PORT {}] Telemetry processed successfully for device: {} (type: {})", tcpPort,
-					response.getDeviceId(), response.getDeviceType());
-
-			// GENERA RISPOSTA CON COMANDI
-			byte[] replyBytes;
-
-			if (response.getCommands() != null && !response.getCommands().isEmpty()) {
-
-				ControllerUtils.enrichResponseWithConcatenatedCommands(response);
-
-				log.debug("Sending {} commands back to device: {}", response.getCommands().size(),
-						response.getConcatenatedCommandsAscii());
-				log.trace("Commands bytes: {} bytes", response.getConcatenatedCommandsAscii().getBytes().length);
-				log.trace("Commands ASCII: {}", response.getConcatenatedCommandsAscii());
-				replyBytes = response.getConcatenatedCommandsAscii().getBytes();
-
-			} else {
-				// Nessun comando: risposta vuota
-				log.debug("No commands for device, sending empty response");
-				replyBytes = new byte[0];
-			}
-
-			// 4. Invia risposta
+			// 3. Invia risposta
 			context.startSend();
 			sendResponse(socket.getOutputStream(), replyBytes);
 			context.endSend();
@@ -105,15 +90,199 @@ public class TcpConnectionHandlerReadExactly {
 			context.complete(false, e.getClass().getSimpleName() + ": " + e.getMessage());
 		} finally {
 			closeSocket(socket, clientAddress);
+			completeConnection(response, context);
+		}
+	}
 
-			if (response != null && response.getCommands() != null && !response.getCommands().isEmpty()) {
-				telemetryService.markCommandsAsSent(response.getCommands());
-				log.debug("Successfully updated {} commands. Marked as SENT", response.getCommands().size());
+	/**
+	 * Gestisce una connessione multi-frame (tcp.server.session-enabled=true).
+	 *
+	 * Legge frame in sequenza finché il device chiude la connessione, resta
+	 * inattivo per session-idle-timeout ms o si raggiunge session-max-frames.
+	 * Ogni frame riceve subito la propria risposta (con i comandi) e i comandi
+	 * inviati vengono marcati SENT senza attendere la chiusura; metriche e
+	 * latenze sono per frame. Chiusura e timeout tra un frame e l'altro sono la
+	 * fine normale della sessione; a metà frame sono un errore. Un timeout prima
+	 * del primo frame viene registrato come in {@link #handleConnection}.
+	 */
+	public void handleSession(Socket socket, TcpServerProperties properties) {
+		String clientAddress = socket.getRemoteSocketAddress().toString();
+		log.info("New session from: {}", clientAddress);
+
+		DeviceSession session = new DeviceSession(properties.getSessionCommandRefreshMs(),
+				properties.getSessionFlushFrames());
+		// Metriche della connessione se scade il timeout prima del primo frame
+		ProcessingContext connectContext = new ProcessingContext(clientAddress);
+		connectContext.startRead();
+
+		try {
+			socket.setSoTimeout(properties.getTimeout());
+			InputStream inputStream = socket.getInputStream();
+			OutputStream outputStream = socket.getOutputStream();
+
+			while (session.getFrames() < properties.getSessionMaxFrames()) {
+				// Attesa del frame successivo: fuori dai tempi del frame
+				int first;
+				try {
+					first = inputStream.read();
+				} catch (SocketTimeoutException e) {
+					if (session.getFrames() == 0) {
+						log.error("Timeout reading from {}", clientAddress);
+						connectContext.complete(false, "Timeout: " + e.getMessage());
+						completeConnection(null, connectContext);
+					} else {
+						log.debug("Session idle, closing {} after {} frames", clientAddress, session.getFrames());
+					}
+					break;
+				}
+				if (first == -1) {
+					log.debug("Session closed by {} after {} frames", clientAddress, session.getFrames());
+					break;
+				}
+
+				session.frameReceived();
+				if (!handleSessionFrame(first, inputStream, outputStream, clientAddress, session)) {
+					break;
+				}
+				if (session.getFrames() == 1) {
+					socket.setSoTimeout(properties.getSessionIdleTimeout());
+				}
 			}
+		} catch (IOException e) {
+			log.error("Error handling session from {}: {}", clientAddress, e.getMessage());
+		} finally {
+			closeSocket(socket, clientAddress);
+			try {
+				telemetryService.flushSession(session);
+			} catch (Exception e) {
+				log.error("Failed to enqueue session telemetry from {}: {}", clientAddress, e.getMessage());
+			}
+		}
+	}
 
-			// Salva metriche su DB (in try-catch isolato per non impattare il flusso)
-			saveMetrics(context);
+	/**
+	 * Legge, elabora e risponde a un frame della sessione
+	 *
+	 * @param first Primo byte dell'header, già letto
+	 * @return false se la sessione va chiusa
+	 */
+	private boolean handleSessionFrame(int first, InputStream inputStream, OutputStream outputStream,
+			String clientAddress, DeviceSession session) {
+		ProcessingContext context = new ProcessingContext(clientAddress);
+		TelemetryResponse response = null;
+		boolean success = false;
+
+		try {
+			context.startRead();
+			byte[] header = new byte[HEADER_SIZE];
+			header[0] = (byte) first;
+			readFully(inputStream, header, 1);
+			byte[] receivedData = readData(inputStream, header, context);
+			context.endRead();
+
+			response = processFrame(receivedData, clientAddress, context, session);
+			byte[] replyBytes = buildReply(response);
+
+			context.startSend();
+			sendResponse(outputStream, replyBytes);
+			context.endSend();
+			context.setResponseSizeBytes(replyBytes.length);
+
+			context.complete(true, null);
+			success = true;
+
+		} catch (SocketTimeoutException e) {
+			log.error("Timeout reading frame {} from {}", session.getFrames(), clientAddress);
+			context.complete(false, "Timeout: " + e.getMessage());
+		} catch (IOException e) {
+			log.error("Error handling frame {} from {}: {}", session.getFrames(), clientAddress, e.getMessage());
+			context.complete(false, "IOException: " + e.getMessage());
+		} catch (Exception e) {
+			log.error("Unexpected error handling frame {} from {}: {}", session.getFrames(), clientAddress,
+					e.getMessage());
+			context.complete(false, e.getClass().getSimpleName() + ": " + e.getMessage());
+		} finally {
+			if (success && response.getCommands() != null) {
+				session.markDelivered(response.getCommands());
+			}
+			// Risposta non inviata: i comandi restano PENDING
+			completeConnection(success ? response : null, context);
+		}
+		return success;
+	}
+
+	/**
+	 * Elabora un frame completo (header + body) indipendentemente dal motore di
+	 * I/O che lo ha letto. Usato sia dal percorso bloccante sia da
+	 * {@code NioTcpServer}.
+	 */
+	public TelemetryResponse processFrame(byte[] receivedData, String clientAddress, ProcessingContext context) {
+		return processFrame(receivedData, clientAddress, context, null);
+	}
+
+	private TelemetryResponse processFrame(byte[] receivedData, String clientAddress, ProcessingContext context,
+			DeviceSession session) {
+		context.setPayloadLengthBytes(receivedData.length);
+		log.trace("[TCP PORT {}] Messaggio ricevuto da {}: {} byte (header 17 + body {})",
+				tcpPort, clientAddress, receivedData.length, receivedData.length - HEADER_SIZE);
+
+		if (frameCapture != null) {
+			frameCapture.capture(clientAddress, receivedData);
+		}
+
+		TelemetryMessage message = new TelemetryMessage(receivedData, clientAddress);
+		TelemetryResponse response = telemetryService.processTelemetry(message, context, session);
+
+		log.debug("[TCP PORT {}] Telemetry processed successfully for device: {} (type: {})", tcpPort,
+				response.getDeviceId(), response.getDeviceType());
+		return response;
+	}
+
+	/**
+	 * Genera i byte di risposta con i comandi concatenati (vuota se non ci sono
+	 * comandi pendenti)
+	 */
+	public byte[] buildReply(TelemetryResponse response) {
+		if (response.getCommands() != null && !response.getCommands().isEmpty()) {
+
+			ControllerUtils.enrichResponseWithConcatenatedCommands(response);
+
+			log.debug("Sending {} commands back to device: {}", response.getCommands().size(),
+					response.getConcatenatedCommandsAscii());
+			log.trace("Commands bytes: {} bytes", response.getConcatenatedCommandsAscii().getBytes().length);
+			log.trace("Commands ASCII: {}", response.getConcatenatedCommandsAscii());
+			return response.getConcatenatedCommandsAscii().getBytes();
+		}
+
+		// Nessun comando: risposta vuota
+		log.debug("No commands for device, sending empty response");
+		return new byte[0];
+	}
+
+	/**
+	 * Operazioni a connessione chiusa: marca i comandi inviati come SENT e salva
+	 * le metriche. Response null se l'elaborazione non è arrivata alla risposta.
+	 */
+	public void completeConnection(TelemetryResponse response, ProcessingContext context) {
+		if (response != null && response.getCommands() != null && !response.getCommands().isEmpty()) {
+			telemetryService.markCommandsAsSent(response.getCommands());
+			log.debug("Successfully updated {} commands. Marked as SENT", response.getCommands().size());
+		}
+
+		if (latencyRegistry != null) {
+			latencyRegistry.record(context);
 		}
+
+		// Accoda le metriche (scritte a blocchi da ProcessingMetricsWriter)
+		saveMetrics(context);
+	}
+
+	/**
+	 * Lunghezza del body dichiarata nell'header. Campo 10-bit: bit[7:6] di byte
+	 * 15 (high 2 bit) + byte 16 (low 8 bit)
+	 */
+	public static int declaredBodyLength(byte b15, byte b16) {
+		return ((b15 >> 6) & 0x03) * 256 + (b16 & 0xFF);
 	}
 
 	/**
@@ -128,10 +297,17 @@ public class TcpConnectionHandlerReadExactly {
 
 		// Fase 1: leggi esattamente 17 byte di header
 		byte[] header = readExactly(inputStream, HEADER_SIZE);
+		return readData(inputStream, header, context);
+	}
+
+	/**
+	 * Fasi 2-4 di {@link #readData(InputStream, ProcessingContext)} a header già
+	 * letto
+	 */
+	private byte[] readData(InputStream inputStream, byte[] header, ProcessingContext context) throws IOException {
 
 		// Fase 2: estrai la lunghezza del body dall'header
-		// Campo 10-bit: bit[7:6] di byte 15 (high 2 bit) + byte 16 (low 8 bit)
-		int declaredLength = ((header[15] >> 6) & 0x03) * 256 + (header[16] & 0xFF);
+		int declaredLength = declaredBodyLength(header[15], header[16]);
 		context.setDeclaredBodyLength(declaredLength);
 		log.debug("Header letto — payload dichiarato: {} byte", declaredLength);
 
@@ -159,7 +335,17 @@ public class TcpConnectionHandlerReadExactly {
 	 */
 	private byte[] readExactly(InputStream inputStream, int n) throws IOException {
 		byte[] buf = new byte[n];
-		int offset = 0;
+		readFully(inputStream, buf, 0);
+		return buf;
+	}
+
+	/**
+	 * Riempie buf a partire da offset
+	 *
+	 * @throws IOException se lo stream viene chiuso prima di riempire il buffer
+	 */
+	private void readFully(InputStream inputStream, byte[] buf, int offset) throws IOException {
+		int n = buf.length;
 		while (offset < n) {
 			int read = inputStream.read(buf, offset, n - offset);
 			if (read == -1) {
@@ -168,7 +354,6 @@ public class TcpConnectionHandlerReadExactly {
 			}
 			offset += read;
 		}
-		return buf;
 	}
 
 	private void sendResponse(OutputStream outputStream, byte[] response) throws IOException {
@@ -188,12 +373,12 @@ public class TcpConnectionHandlerReadExactly {
 	}
 
 	private void saveMetrics(ProcessingContext context) {
-		if (metricsRepository == null) {
+		if (metricsWriter == null) {
 			return;
 		}
 		try {
-			metricsRepository.save(context.toEntity());
-			log.debug("Processing metrics saved: deviceId={}, totalMs={}",
+			metricsWriter.record(context);
+			log.debug("Processing metrics queued: deviceId={}, totalMs={}",
 					context.getDeviceId(), context.getTotalProcessingTimeMs());
 		} catch (Exception e) {
 			log.warn("Failed to save processing metrics: {}", e.getMessage());
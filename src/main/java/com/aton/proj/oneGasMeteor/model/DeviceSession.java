@@ -0,0 +1,145 @@
+package com.aton.proj.oneGasMeteor.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import com.aton.proj.oneGasMeteor.entity.CommandEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.model.TelemetryResponse.EncodedCommand;
+
+/**
+ * Stato di una connessione TCP multi-frame (tcp.server.session-enabled=true).
+ *
+ * Creato dal handler all'apertura della connessione e passato a
+ * {@code TelemetryService} per ogni frame: tiene in cache i comandi pendenti del
+ * device (una query ogni commandRefreshMs invece di una per frame), gli id già
+ * consegnati nella sessione e le telemetrie da accodare in blocco.
+ *
+ * Usato da un solo thread (quello della connessione), non thread-safe.
+ */
+public class DeviceSession {
+
+	private final long commandRefreshMs;
+	private final int flushFrames;
+
+	private int frames;
+
+	// Cache dei comandi pendenti (deviceId a cui si riferisce + istante di lettura)
+	private String commandsDeviceId;
+	private List<CommandEntity> pendingCommands;
+	private long commandsLoadedAtMs;
+	private final Set<Long> deliveredCommandIds = new HashSet<>();
+
+	private final List<TelemetryEntity> telemetryBuffer = new ArrayList<>();
+
+	// Azioni da eseguire solo dopo l'accodamento del buffer (es. registrazione dedup)
+	private final List<Runnable> afterFlush = new ArrayList<>();
+
+	/**
+	 * @param commandRefreshMs Validità della cache dei comandi pendenti
+	 * @param flushFrames      Telemetrie bufferizzate oltre le quali accodarle
+	 *                         senza attendere la fine della sessione
+	 */
+	public DeviceSession(long commandRefreshMs, int flushFrames) {
+		this.commandRefreshMs = commandRefreshMs;
+		this.flushFrames = Math.max(1, flushFrames);
+	}
+
+	/**
+	 * Conta un frame letto
+	 */
+	public void frameReceived() {
+		frames++;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	// ====================== Comandi ======================
+
+	/**
+	 * @return true se la cache è per questo device e non ancora scaduta
+	 */
+	public boolean hasFreshCommands(String deviceId, long nowMs) {
+		return pendingCommands != null && Objects.equals(commandsDeviceId, deviceId)
+				&& nowMs - commandsLoadedAtMs < commandRefreshMs;
+	}
+
+	public void cacheCommands(String deviceId, List<CommandEntity> commands, long nowMs) {
+		this.commandsDeviceId = deviceId;
+		this.pendingCommands = commands;
+		this.commandsLoadedAtMs = nowMs;
+	}
+
+	/**
+	 * Comandi in cache non ancora consegnati in questa sessione
+	 */
+	public List<CommandEntity> undeliveredCommands() {
+		if (pendingCommands == null || pendingCommands.isEmpty()) {
+			return List.of();
+		}
+		if (deliveredCommandIds.isEmpty()) {
+			return pendingCommands;
+		}
+		return pendingCommands.stream().filter(c -> !deliveredCommandIds.contains(c.getId())).toList();
+	}
+
+	/**
+	 * Registra i comandi inviati nella risposta di un frame: non verranno
+	 * riproposti nei frame successivi anche se la cache li contiene ancora
+	 */
+	public void markDelivered(List<EncodedCommand> commands) {
+		for (EncodedCommand command : commands) {
+			if (command.getCommandId() != null) {
+				deliveredCommandIds.add(command.getCommandId());
+			}
+		}
+	}
+
+	// ====================== Telemetrie ======================
+
+	/**
+	 * Aggiunge una telemetria al buffer della sessione
+	 *
+	 * @return true se il buffer ha raggiunto la soglia e va svuotato
+	 */
+	public boolean bufferTelemetry(TelemetryEntity entity) {
+		telemetryBuffer.add(entity);
+		return telemetryBuffer.size() >= flushFrames;
+	}
+
+	/**
+	 * Restituisce e svuota il buffer delle telemetrie
+	 */
+	public List<TelemetryEntity> drainTelemetry() {
+		if (telemetryBuffer.isEmpty()) {
+			return List.of();
+		}
+		List<TelemetryEntity> drained = new ArrayList<>(telemetryBuffer);
+		telemetryBuffer.clear();
+		return drained;
+	}
+
+	/**
+	 * Rimanda un'azione al prossimo svuotamento del buffer delle telemetrie
+	 */
+	public void runAfterFlush(Runnable action) {
+		afterFlush.add(action);
+	}
+
+	/**
+	 * Restituisce e svuota le azioni rimandate con {@link #runAfterFlush}
+	 */
+	public List<Runnable> drainAfterFlush() {
+		if (afterFlush.isEmpty()) {
+			return List.of();
+		}
+		List<Runnable> drained = new ArrayList<>(afterFlush);
+		afterFlush.clear();
+		return drained;
+	}
+}
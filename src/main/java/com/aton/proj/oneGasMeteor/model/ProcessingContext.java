@@ -3,6 +3,7 @@ package com.aton.proj.oneGasMeteor.model;
 import java.time.LocalDateTime;
 import java.util.concurrent.TimeUnit;
 
+import com.aton.proj.oneGasMeteor.decoder.TekFrameView;
 import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
 
 /**
@@ -11,6 +12,9 @@ import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
  */
 public class ProcessingContext {
 
+	private static final String[] CONTACT_REASONS = { "SCHEDULED", "ALARM", "SERVER_REQUEST", "MANUAL", "REBOOT",
+			"TSP_REQUESTED", "DYNAMIC1", "DYNAMIC2" };
+
 	private final LocalDateTime receivedAt;
 	private final long startNanos;
 
@@ -43,6 +47,7 @@ public class ProcessingContext {
 	private long commandEncodeTimeNanos;
 	private long sendStartNanos;
 	private long sendTimeNanos;
+	private long totalTimeNanos;
 
 	// Device health snapshot
 	private Double batteryVoltage;
@@ -117,6 +122,7 @@ public class ProcessingContext {
 	 */
 	public void complete(boolean success, String errorMessage) {
 		this.completedAt = LocalDateTime.now();
+		this.totalTimeNanos = System.nanoTime() - startNanos;
 		this.success = success;
 		this.errorMessage = errorMessage;
 	}
@@ -170,16 +176,56 @@ public class ProcessingContext {
 		}
 	}
 
+	/**
+	 * Popola i campi dalla vista flyweight, senza materializzare il
+	 * DecodedMessage. Valori identici a {@link #extractFromDecoded}.
+	 */
+	public void extractFromView(TekFrameView view) {
+		if (view == null) return;
+
+		this.deviceId = view.imei();
+		this.deviceType = view.productType();
+		this.firmwareVersion = view.firmwareRevision();
+
+		// Stesso arrotondamento a 2 decimali del formato "%.2f" del decoder
+		double voltage = view.batteryVoltage();
+		if (!Double.isNaN(voltage)) {
+			this.batteryVoltage = Math.round(voltage * 100.0) / 100.0;
+		}
+		double percentage = view.batteryPercentage();
+		if (!Double.isNaN(percentage)) {
+			this.batteryPercentage = Math.round(percentage * 100.0) / 100.0;
+		}
+
+		int signal = view.signalStrength();
+		if (signal >= 0) {
+			this.signalStrength = signal;
+		}
+		this.contactReason = buildContactReasonString(view.contactReasonFlags());
+		this.measurementCount = view.measurementCount();
+	}
+
 	private String buildContactReasonString(DecodedMessage.ContactReason cr) {
+		int flags = 0;
+		if (Boolean.TRUE.equals(cr.getScheduled())) flags |= 0x01;
+		if (Boolean.TRUE.equals(cr.getAlarm())) flags |= 0x02;
+		if (Boolean.TRUE.equals(cr.getServerRequest())) flags |= 0x04;
+		if (Boolean.TRUE.equals(cr.getManual())) flags |= 0x08;
+		if (Boolean.TRUE.equals(cr.getReboot())) flags |= 0x10;
+		if (Boolean.TRUE.equals(cr.getTspRequested())) flags |= 0x20;
+		if (Boolean.TRUE.equals(cr.getDynamic1())) flags |= 0x40;
+		if (Boolean.TRUE.equals(cr.getDynamic2())) flags |= 0x80;
+		return buildContactReasonString(flags);
+	}
+
+	/**
+	 * Contact reason dal byte 3 del frame (bit 0 = SCHEDULED ... bit 7 = DYNAMIC2)
+	 */
+	private String buildContactReasonString(int flags) {
 		StringBuilder sb = new StringBuilder();
-		if (Boolean.TRUE.equals(cr.getScheduled())) sb.append("SCHEDULED,");
-		if (Boolean.TRUE.equals(cr.getAlarm())) sb.append("ALARM,");
-		if (Boolean.TRUE.equals(cr.getServerRequest())) sb.append("SERVER_REQUEST,");
-		if (Boolean.TRUE.equals(cr.getManual())) sb.append("MANUAL,");
-		if (Boolean.TRUE.equals(cr.getReboot())) sb.append("REBOOT,");
-		if (Boolean.TRUE.equals(cr.getTspRequested())) sb.append("TSP_REQUESTED,");
-		if (Boolean.TRUE.equals(cr.getDynamic1())) sb.append("DYNAMIC1,");
-		if (Boolean.TRUE.equals(cr.getDynamic2())) sb.append("DYNAMIC2,");
+		for (int bit = 0; bit < CONTACT_REASONS.length; bit++) {
+			if ((flags & (1 << bit)) != 0) sb.append(CONTACT_REASONS[bit]).append(',');
+		}
 		if (sb.length() > 0) sb.setLength(sb.length() - 1); // rimuovi ultima virgola
 		return sb.toString();
 	}
@@ -307,4 +353,38 @@ public class ProcessingContext {
 	public String getErrorMessage() {
 		return errorMessage;
 	}
+
+	// --- Tempi per fase in nanosecondi (0 se la fase non è stata eseguita) ---
+
+	public long getReadTimeNanos() {
+		return readTimeNanos;
+	}
+
+	public long getDecodeTimeNanos() {
+		return decodeTimeNanos;
+	}
+
+	public long getDbSaveTimeNanos() {
+		return dbSaveTimeNanos;
+	}
+
+	public long getCommandQueryTimeNanos() {
+		return commandQueryTimeNanos;
+	}
+
+	public long getCommandEncodeTimeNanos() {
+		return commandEncodeTimeNanos;
+	}
+
+	public long getSendTimeNanos() {
+		return sendTimeNanos;
+	}
+
+	/**
+	 * Tempo dalla creazione a {@link #complete(boolean, String)} (0 se non
+	 * ancora completato)
+	 */
+	public long getTotalTimeNanos() {
+		return totalTimeNanos;
+	}
 }
@@ -0,0 +1,46 @@
+package com.aton.proj.oneGasMeteor.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posizione nella lettura paginata per (received_at, key) decrescenti: la
+ * pagina successiva parte dal primo record strettamente precedente.
+ *
+ * key rompe la parità su received_at: id su database relazionale, device_id su
+ * InfluxDB (dove un punto è identificato da serie e timestamp). Ai client
+ * arriva come stringa opaca ({@link #encode()}).
+ */
+public record TelemetryCursor(LocalDateTime receivedAt, String key) {
+
+	/**
+	 * Cursore posizionato sull'ultimo record di una pagina
+	 */
+	public static TelemetryCursor after(TelemetryRow row) {
+		return new TelemetryCursor(row.receivedAt(), row.id() != null ? row.id().toString() : row.deviceId());
+	}
+
+	public String encode() {
+		byte[] value = (receivedAt + "|" + key).getBytes(StandardCharsets.UTF_8);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+	}
+
+	/**
+	 * @throws IllegalArgumentException se il cursore non è stato prodotto da
+	 *                                  {@link #encode()}
+	 */
+	public static TelemetryCursor decode(String cursor) {
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int sep = value.indexOf('|');
+			if (sep < 0) {
+				throw new IllegalArgumentException("Invalid cursor: " + cursor);
+			}
+			return new TelemetryCursor(LocalDateTime.parse(value.substring(0, sep)), value.substring(sep + 1));
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+		}
+	}
+}
@@ -2,16 +2,24 @@ package com.aton.proj.oneGasMeteor.model;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.Objects;
 
 public class TelemetryMessage {
 
+	/** Dimensione fissa dell'header TEK */
+	public static final int HEADER_SIZE = 17;
+
+	private static final HexFormat HEX = HexFormat.of().withUpperCase();
+
 	private final byte[] payload;
-	private final String hexData;
 	private final LocalDateTime receivedAt;
 	private final String sourceAddress;
 	private final long serverTimeInMs;
 
+	// Rappresentazione HEX calcolata solo se richiesta (es. raw_message)
+	private String hexData;
+
 	public TelemetryMessage(byte[] payload, String hexData, LocalDateTime receivedAt, String sourceAddress) {
 		this.payload = payload;
 		this.hexData = hexData;
@@ -21,23 +29,38 @@ public class TelemetryMessage {
 	}
 
 	public TelemetryMessage(byte[] rawData, String sourceAddress) {
-		this(rawData, bytesToHex(rawData), LocalDateTime.now(), sourceAddress);
-	}
-
-	private static String bytesToHex(byte[] bytes) {
-		StringBuilder sb = new StringBuilder();
-		for (byte b : bytes) {
-			sb.append(String.format("%02X", b));
-		}
-		return sb.toString();
+		this(rawData, null, LocalDateTime.now(), sourceAddress);
 	}
 
 	public byte[] getPayload() {
 		return payload;
 	}
 
+	/**
+	 * Payload in HEX maiuscolo. Calcolato alla prima richiesta e poi riusato: il
+	 * percorso di elaborazione lavora sui byte, l'HEX serve solo per raw_message.
+	 */
 	public String getHexData() {
-		return hexData;
+		String hex = hexData;
+		if (hex == null) {
+			hex = HEX.formatHex(payload);
+			hexData = hex;
+		}
+		return hex;
+	}
+
+	/**
+	 * Offset del body (primo byte dopo l'header)
+	 */
+	public int getBodyOffset() {
+		return HEADER_SIZE;
+	}
+
+	/**
+	 * Numero di byte dopo l'header (0 se il messaggio contiene solo l'header)
+	 */
+	public int getBodyLength() {
+		return Math.max(0, payload.length - HEADER_SIZE);
 	}
 
 	public LocalDateTime getReceivedAt() {
@@ -57,7 +80,7 @@ public class TelemetryMessage {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + Arrays.hashCode(payload);
-		result = prime * result + Objects.hash(hexData, receivedAt, serverTimeInMs, sourceAddress);
+		result = prime * result + Objects.hash(receivedAt, serverTimeInMs, sourceAddress);
 		return result;
 	}
 
@@ -70,15 +93,14 @@ public class TelemetryMessage {
 		if (getClass() != obj.getClass())
 			return false;
 		TelemetryMessage other = (TelemetryMessage) obj;
-		return Objects.equals(hexData, other.hexData) && Arrays.equals(payload, other.payload)
-				&& Objects.equals(receivedAt, other.receivedAt) && serverTimeInMs == other.serverTimeInMs
-				&& Objects.equals(sourceAddress, other.sourceAddress);
+		return Arrays.equals(payload, other.payload) && Objects.equals(receivedAt, other.receivedAt)
+				&& serverTimeInMs == other.serverTimeInMs && Objects.equals(sourceAddress, other.sourceAddress);
 	}
 
 	@Override
 	public String toString() {
-		return "TelemetryMessage [payload=" + Arrays.toString(payload) + ", hexData=" + hexData + ", receivedAt="
+		return "TelemetryMessage [payload=" + Arrays.toString(payload) + ", hexData=" + getHexData() + ", receivedAt="
 				+ receivedAt + ", sourceAddress=" + sourceAddress + ", serverTimeInMs=" + serverTimeInMs + "]";
 	}
 
-}
\ No newline at end of file
+}
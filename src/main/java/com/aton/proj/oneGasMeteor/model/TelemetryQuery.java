@@ -0,0 +1,15 @@
+package com.aton.proj.oneGasMeteor.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filtri e colonne di una lettura di telemetry_data (API REST ed export).
+ * I filtri null non vengono applicati; raw_message e decoded_data vengono
+ * letti solo con includeRaw / includeDecoded, le altre colonne sempre.
+ *
+ * @param from received_at incluso (null = nessun limite)
+ * @param to   received_at escluso (null = nessun limite)
+ */
+public record TelemetryQuery(String deviceId, String imei, String deviceType, String messageType,
+		LocalDateTime from, LocalDateTime to, boolean includeRaw, boolean includeDecoded) {
+}
@@ -0,0 +1,17 @@
+package com.aton.proj.oneGasMeteor.model;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Record di telemetry_data restituito dall'API di lettura. rawMessage e
+ * decodedData (JSON, anche per i record salvati in decoded_data_bin) sono
+ * valorizzati solo se richiesti; id è null su InfluxDB.
+ */
+public record TelemetryRow(Long id, String deviceId, String deviceType, String messageType,
+		LocalDateTime receivedAt, String imei, String firmwareVersion, Double batteryVoltage,
+		Double batteryPercentage, Integer signalStrength, Integer measurementCount,
+		@JsonInclude(JsonInclude.Include.NON_NULL) String rawMessage,
+		@JsonInclude(JsonInclude.Include.NON_NULL) String decodedData) {
+}
@@ -3,6 +3,8 @@ package com.aton.proj.oneGasMeteor.repository;
 import com.aton.proj.oneGasMeteor.entity.CommandEntity;
 import com.aton.proj.oneGasMeteor.model.DeviceCommand;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +29,14 @@ public interface CommandRepository {
      */
     List<CommandEntity> findPendingCommands(String deviceId);
     
+    /**
+     * False solo se è certo che il device non ha comandi pendenti, cioè se
+     * findPendingCommands() risponderebbe vuoto senza interrogare il database
+     */
+    default boolean mightHavePending(String deviceId) {
+        return true;
+    }
+    
     /**
      * Recupera comandi pendenti per device type
      */
@@ -42,6 +52,14 @@ public interface CommandRepository {
      */
     void markAsSent(Long commandId);
     
+    /**
+     * Marca come inviati, con un solo UPDATE, i comandi ancora PENDING tra
+     * quelli indicati (gli altri restano invariati)
+     *
+     * @return comandi effettivamente passati a SENT
+     */
+    int markAllAsSent(Collection<Long> commandIds, LocalDateTime sentAt);
+    
     /**
      * Marca comando come consegnato
      */
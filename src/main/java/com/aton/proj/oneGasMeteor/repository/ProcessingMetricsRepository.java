@@ -3,6 +3,7 @@ package com.aton.proj.oneGasMeteor.repository;
 import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Repository astratto per le metriche di performance.
@@ -10,11 +11,30 @@ import java.time.LocalDateTime;
  */
 public interface ProcessingMetricsRepository {
 
+	/**
+	 * Connessioni riuscite di un device in un minuto del giorno (0-1439, ora
+	 * locale del server), sommate su tutti i giorni del periodo
+	 */
+	record ArrivalCount(String deviceId, String deviceType, int minuteOfDay, long count) {
+	}
+
 	/**
 	 * Salva le metriche di una singola elaborazione
 	 */
 	ProcessingMetricsEntity save(ProcessingMetricsEntity entity);
 
+	/**
+	 * Salva un blocco di metriche con una sola scrittura batch (usato da
+	 * ProcessingMetricsWriter)
+	 */
+	void saveAll(List<ProcessingMetricsEntity> entities);
+
+	/**
+	 * Istogramma degli arrivi per device e minuto del giorno dal momento
+	 * indicato (usato da WakeupPlanService)
+	 */
+	List<ArrivalCount> countArrivalsByMinuteOfDay(LocalDateTime from);
+
 	/**
 	 * Elimina metriche piu' vecchie della soglia (per cleanup)
 	 */
@@ -2,10 +2,14 @@ package com.aton.proj.oneGasMeteor.repository;
 
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.model.TelemetryCursor;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+import com.aton.proj.oneGasMeteor.model.TelemetryRow;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Repository astratto per dati di telemetria
@@ -29,7 +33,8 @@ public interface TelemetryRepository {
     Optional<TelemetryEntity> findById(Long id);
     
     /**
-     * Trova per device ID
+     * Trova per device ID (tutti i record, colonne TEXT comprese: per device
+     * con molto storico usare {@link #findPage} o {@link #stream})
      */
     List<TelemetryEntity> findByDeviceId(String deviceId);
     
@@ -44,10 +49,24 @@ public interface TelemetryRepository {
     List<TelemetryEntity> findByImei(String imei);
     
     /**
-     * Trova tutti i messaggi di un certo tipo
+     * Trova tutti i messaggi di un certo tipo (lista non limitata, vedi
+     * {@link #findPage})
      */
     List<TelemetryEntity> findByDeviceType(String deviceType);
     
+    /**
+     * Al massimo limit record della query in ordine di (received_at, chiave)
+     * decrescenti, a partire dal primo successivo ad after (null = dal più
+     * recente). Legge solo le colonne richieste dalla query.
+     */
+    List<TelemetryRow> findPage(TelemetryQuery query, TelemetryCursor after, int limit);
+
+    /**
+     * Tutti i record della query nello stesso ordine di {@link #findPage},
+     * passati a consumer uno alla volta senza accumularli in memoria
+     */
+    void stream(TelemetryQuery query, Consumer<TelemetryRow> consumer);
+
     /**
      * Conta messaggi per device
      */
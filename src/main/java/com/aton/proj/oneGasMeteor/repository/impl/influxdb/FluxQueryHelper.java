@@ -4,6 +4,9 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 
+import com.aton.proj.oneGasMeteor.model.TelemetryCursor;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+
 /**
  * Helper per costruire query Flux per InfluxDB 2.x.
  * Le query Flux usano una sintassi pipe-based funzionale.
@@ -86,6 +89,80 @@ public final class FluxQueryHelper {
                 bucket, DEFAULT_RANGE, measurement, deviceId);
     }
 
+    /**
+     * Istanti delle connessioni riuscite da from, una riga per punto (i field
+     * dello stesso punto condividono _time), raggruppate per device.
+     */
+    public static String successfulArrivalsSince(String bucket, String measurement, LocalDateTime from) {
+        String startTime = from.toInstant(ZoneOffset.UTC).toString();
+        return String.format(
+                "from(bucket: \"%s\") |> range(start: %s) " +
+                        "|> filter(fn: (r) => r._measurement == \"%s\") " +
+                        "|> filter(fn: (r) => r.success == \"true\") " +
+                        "|> keep(columns: [\"_time\", \"device_id\", \"device_type\"]) " +
+                        "|> group(columns: [\"device_id\", \"device_type\"]) " +
+                        "|> unique(column: \"_time\")",
+                bucket, startTime, measurement);
+    }
+
+    /**
+     * Pagina di telemetria in ordine di (_time, device_id) decrescenti: i primi
+     * limit punti strettamente precedenti ad after (null = dal più recente).
+     * Il cursore restringe anche lo stop del range, così InfluxDB legge solo
+     * la parte di bucket non ancora restituita. raw_message e decoded_data
+     * vengono scartati prima del pivot se non richiesti.
+     */
+    public static String telemetryPage(String bucket, String measurement, TelemetryQuery query,
+            TelemetryCursor after, int limit) {
+        String start = query.from() != null ? query.from().toInstant(ZoneOffset.UTC).toString() : DEFAULT_RANGE;
+        LocalDateTime stop = query.to();
+        if (after != null && (stop == null || after.receivedAt().isBefore(stop))) {
+            // stop è escluso: il punto del cursore resta nel range per la parità su _time
+            stop = after.receivedAt().plusNanos(1);
+        }
+        StringBuilder flux = new StringBuilder();
+        flux.append(String.format("from(bucket: %s) |> range(start: %s%s) ", quote(bucket), start,
+                stop != null ? ", stop: " + stop.toInstant(ZoneOffset.UTC) : ""));
+        flux.append(String.format("|> filter(fn: (r) => r._measurement == %s) ", quote(measurement)));
+        appendTagFilter(flux, "device_id", query.deviceId());
+        appendTagFilter(flux, "device_type", query.deviceType());
+        appendTagFilter(flux, "message_type", query.messageType());
+        if (!query.includeRaw()) {
+            flux.append("|> filter(fn: (r) => r._field != \"raw_message\") ");
+        }
+        if (!query.includeDecoded()) {
+            flux.append("|> filter(fn: (r) => r._field != \"decoded_data\") ");
+        }
+        flux.append("|> pivot(rowKey: [\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\") ");
+        if (query.imei() != null) {
+            // imei è un field: filtrabile solo dopo il pivot
+            flux.append(String.format("|> filter(fn: (r) => r.imei == %s) ", quote(query.imei())));
+        }
+        if (after != null) {
+            String time = "time(v: " + quote(after.receivedAt().toInstant(ZoneOffset.UTC).toString()) + ")";
+            flux.append(String.format("|> filter(fn: (r) => r._time < %s or (r._time == %s and r.device_id < %s)) ",
+                    time, time, quote(after.key())));
+        }
+        flux.append("|> group() ");
+        flux.append("|> sort(columns: [\"_time\", \"device_id\"], desc: true) ");
+        flux.append(String.format("|> limit(n: %d)", limit));
+        return flux.toString();
+    }
+
+    private static void appendTagFilter(StringBuilder flux, String tag, String value) {
+        if (value != null) {
+            flux.append(String.format("|> filter(fn: (r) => r.%s == %s) ", tag, quote(value)));
+        }
+    }
+
+    /**
+     * Stringa Flux tra virgolette con backslash e virgolette escapate (i
+     * valori arrivano dai parametri REST)
+     */
+    static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
     /**
      * Costruisce il predicate per la Delete API di InfluxDB.
      * Formato: _measurement="xxx"
@@ -5,6 +5,7 @@ import java.time.ZoneOffset;
 import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
 import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.influxdb.client.domain.WritePrecision;
@@ -22,6 +23,7 @@ public final class InfluxDBPointMapper {
     public static final String MEASUREMENT_STATISTICS = "device_statistics";
     public static final String MEASUREMENT_LOCATIONS = "device_locations";
     public static final String MEASUREMENT_METRICS = "processing_metrics";
+    public static final String MEASUREMENT_MEASUREMENTS = "measurements";
 
     private InfluxDBPointMapper() {
     }
@@ -110,6 +112,19 @@ public final class InfluxDBPointMapper {
         return p;
     }
 
+    public static Point toPoint(MeasurementEntity e) {
+        Point p = Point.measurement(MEASUREMENT_MEASUREMENTS)
+                .addTag("device_id", e.getDeviceId())
+                .time(e.getMeasuredAt().toInstant(ZoneOffset.UTC), WritePrecision.MS);
+
+        addIntField(p, "distance_cm", e.getDistanceCm());
+        addDoubleField(p, "temperature_c", e.getTemperatureC());
+        addIntField(p, "sonic_rssi", e.getSonicRssi());
+        addIntField(p, "sonic_src", e.getSonicSrc());
+
+        return p;
+    }
+
     public static Point toPoint(ProcessingMetricsEntity e) {
         Point p = Point.measurement(MEASUREMENT_METRICS)
                 .addTag("device_id", e.getDeviceId() != null ? e.getDeviceId() : "unknown")
@@ -3,6 +3,10 @@ package com.aton.proj.oneGasMeteor.repository.impl.influxdb;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +19,8 @@ import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
 import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository;
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.WriteApiBlocking;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
 
 /**
  * Implementazione InfluxDB per ProcessingMetricsRepository.
@@ -54,6 +60,60 @@ public class InfluxDBProcessingMetricsRepository implements ProcessingMetricsRep
         }
     }
 
+    @Override
+    public void saveAll(List<ProcessingMetricsEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        try {
+            writeApi.writePoints(entities.stream().map(InfluxDBPointMapper::toPoint).toList());
+            log.trace("Saved {} processing metrics to InfluxDB", entities.size());
+        } catch (Exception e) {
+            log.error("Failed to save {} processing metrics to InfluxDB", entities.size(), e);
+            throw new RuntimeException("Failed to save processing metrics to InfluxDB", e);
+        }
+    }
+
+    /**
+     * Flux restituisce un record per connessione: il conteggio per minuto del
+     * giorno è fatto qui
+     */
+    @Override
+    public List<ArrivalCount> countArrivalsByMinuteOfDay(LocalDateTime from) {
+        String query = FluxQueryHelper.successfulArrivalsSince(bucket, InfluxDBPointMapper.MEASUREMENT_METRICS, from);
+        Map<String, long[]> perDevice = new HashMap<>();
+        Map<String, String> deviceTypes = new HashMap<>();
+        try {
+            List<FluxTable> tables = influxDBClient.getQueryApi().query(query, org);
+            for (FluxTable table : tables) {
+                for (FluxRecord record : table.getRecords()) {
+                    Object deviceId = record.getValueByKey("device_id");
+                    if (deviceId == null || "unknown".equals(deviceId) || record.getTime() == null) {
+                        continue;
+                    }
+                    LocalDateTime receivedAt = LocalDateTime.ofInstant(record.getTime(), ZoneOffset.UTC);
+                    int minuteOfDay = receivedAt.getHour() * 60 + receivedAt.getMinute();
+                    perDevice.computeIfAbsent(deviceId.toString(), k -> new long[24 * 60])[minuteOfDay]++;
+                    Object deviceType = record.getValueByKey("device_type");
+                    deviceTypes.putIfAbsent(deviceId.toString(), deviceType != null ? deviceType.toString() : null);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to query processing metrics arrivals from InfluxDB", e);
+            throw new RuntimeException("Failed to query processing metrics arrivals from InfluxDB", e);
+        }
+
+        List<ArrivalCount> arrivals = new ArrayList<>();
+        perDevice.forEach((deviceId, counts) -> {
+            for (int minute = 0; minute < counts.length; minute++) {
+                if (counts[minute] > 0) {
+                    arrivals.add(new ArrivalCount(deviceId, deviceTypes.get(deviceId), minute, counts[minute]));
+                }
+            }
+        });
+        return arrivals;
+    }
+
     @Override
     public void deleteOlderThan(LocalDateTime threshold) {
         try {
@@ -6,15 +6,20 @@ import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import com.aton.proj.oneGasMeteor.config.InfluxDBConfig.InfluxDBProperties;
 import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnInfluxDatabase;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.model.TelemetryCursor;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+import com.aton.proj.oneGasMeteor.model.TelemetryRow;
 import com.aton.proj.oneGasMeteor.repository.TelemetryRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.influxdb.client.InfluxDBClient;
@@ -39,6 +44,10 @@ public class InfluxDBTelemetryRepository implements TelemetryRepository {
     private final String bucket;
     private final String org;
 
+    /** Punti per query Flux in {@link #stream}: la memoria resta limitata a un blocco */
+    @Value("${telemetry.query.influx-chunk-size:1000}")
+    private int chunkSize = 1000;
+
     public InfluxDBTelemetryRepository(InfluxDBClient influxDBClient, WriteApiBlocking writeApi,
             ObjectMapper objectMapper, InfluxDBProperties properties) {
         this.influxDBClient = influxDBClient;
@@ -144,6 +153,42 @@ public class InfluxDBTelemetryRepository implements TelemetryRepository {
         return queryTelemetry(query);
     }
 
+    @Override
+    public List<TelemetryRow> findPage(TelemetryQuery query, TelemetryCursor after, int limit) {
+        String flux = FluxQueryHelper.telemetryPage(bucket, InfluxDBPointMapper.MEASUREMENT_TELEMETRY, query, after,
+                limit);
+        List<TelemetryRow> rows = new ArrayList<>(limit);
+        try {
+            for (FluxTable table : influxDBClient.getQueryApi().query(flux, org)) {
+                for (FluxRecord record : table.getRecords()) {
+                    rows.add(mapToTelemetryRow(record, query));
+                }
+            }
+        } catch (Exception e) {
+            // a differenza di queryTelemetry non si restituisce una lista vuota: l'export risulterebbe troncato
+            log.error("Failed to query telemetry page from InfluxDB", e);
+            throw new RuntimeException("Failed to query telemetry page from InfluxDB", e);
+        }
+        return rows;
+    }
+
+    /**
+     * InfluxDB non ha un cursore lato server per le query Flux: si legge a
+     * blocchi di chunkSize punti con lo stesso cursore di {@link #findPage}.
+     */
+    @Override
+    public void stream(TelemetryQuery query, Consumer<TelemetryRow> consumer) {
+        TelemetryCursor after = null;
+        List<TelemetryRow> chunk;
+        do {
+            chunk = findPage(query, after, chunkSize);
+            chunk.forEach(consumer);
+            if (!chunk.isEmpty()) {
+                after = TelemetryCursor.after(chunk.get(chunk.size() - 1));
+            }
+        } while (chunk.size() == chunkSize);
+    }
+
     @Override
     public long countByDeviceId(String deviceId) {
         String query = FluxQueryHelper.countByDeviceId(
@@ -209,6 +254,22 @@ public class InfluxDBTelemetryRepository implements TelemetryRepository {
         return entity;
     }
 
+    private TelemetryRow mapToTelemetryRow(FluxRecord record, TelemetryQuery query) {
+        return new TelemetryRow(null,
+                getStringTag(record, "device_id"),
+                getStringTag(record, "device_type"),
+                getStringTag(record, "message_type"),
+                record.getTime() != null ? LocalDateTime.ofInstant(record.getTime(), ZoneOffset.UTC) : null,
+                getStringValue(record, "imei"),
+                getStringValue(record, "firmware_version"),
+                getDoubleValue(record, "battery_voltage"),
+                getDoubleValue(record, "battery_percentage"),
+                getIntValue(record, "signal_strength"),
+                getIntValue(record, "measurement_count"),
+                query.includeRaw() ? getStringValue(record, "raw_message") : null,
+                query.includeDecoded() ? getStringValue(record, "decoded_data") : null);
+    }
+
     // -- Helper methods for FluxRecord value extraction --
 
     private String getStringTag(FluxRecord record, String key) {
@@ -1,6 +1,7 @@
 package com.aton.proj.oneGasMeteor.repository.impl.sql;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -27,6 +28,26 @@ public interface CommandJpaRepository extends JpaRepository<CommandEntity, Long>
     List<CommandEntity> findByDeviceTypeAndStatusOrderByCreatedAtAsc(
         String deviceType, CommandEntity.CommandStatus status);
     
+    /**
+     * Coppie (id, deviceId) dei comandi nello stato dato con id oltre la soglia,
+     * per {@link PendingCommandIndex}
+     */
+    @Query("SELECT c.id, c.deviceId FROM CommandEntity c WHERE c.status = :status AND c.id > :afterId")
+    List<Object[]> findPendingIdsAfter(@Param("status") CommandEntity.CommandStatus status,
+        @Param("afterId") Long afterId);
+    
+    /**
+     * Transizione in blocco: solo i comandi ancora nello stato {@code from}
+     * vengono aggiornati, quindi ripetere lo stesso UPDATE non ha effetto
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE CommandEntity c SET c.status = :to, c.sentAt = :sentAt " +
+           "WHERE c.id IN :ids AND c.status = :from")
+    int updateStatusAndSentAt(@Param("ids") Collection<Long> ids,
+        @Param("from") CommandEntity.CommandStatus from,
+        @Param("to") CommandEntity.CommandStatus to,
+        @Param("sentAt") LocalDateTime sentAt);
+    
     @Modifying
     @Query("DELETE FROM CommandEntity c WHERE c.createdAt < :threshold " +
            "AND (c.status = 'DELIVERED' OR c.status = 'FAILED')")
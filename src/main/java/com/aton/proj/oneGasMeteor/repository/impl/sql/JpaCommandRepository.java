@@ -1,11 +1,14 @@
 package com.aton.proj.oneGasMeteor.repository.impl.sql;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,6 +22,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * Implementazione SQL per CommandRepository.
  * Attivo per tutti i database.type che usano SQL per i comandi
  * (sqlserver, timescaledb, influxdb).
+ *
+ * Con {@link PendingCommandIndex} attivo findPendingCommands() non interroga
+ * il database per i device senza comandi PENDING noti.
  */
 @Repository
 @ConditionalOnSqlCommands
@@ -28,11 +34,14 @@ public class JpaCommandRepository implements CommandRepository {
 
 	private final CommandJpaRepository jpaRepository;
 	private final ObjectMapper objectMapper;
+	private final PendingCommandIndex pendingIndex;
 
-	public JpaCommandRepository(CommandJpaRepository jpaRepository, ObjectMapper objectMapper) {
+	public JpaCommandRepository(CommandJpaRepository jpaRepository, ObjectMapper objectMapper,
+			@Nullable PendingCommandIndex pendingIndex) {
 		this.jpaRepository = jpaRepository;
 		this.objectMapper = objectMapper;
-		log.info("JpaCommandRepository initialized");
+		this.pendingIndex = pendingIndex;
+		log.info("JpaCommandRepository initialized (pending index {})", pendingIndex != null ? "enabled" : "disabled");
 	}
 
 	@Override
@@ -48,6 +57,9 @@ public class JpaCommandRepository implements CommandRepository {
 			}
 
 			CommandEntity saved = jpaRepository.save(entity);
+			if (pendingIndex != null) {
+				pendingIndex.add(saved.getDeviceId(), saved.getId());
+			}
 			log.debug("Saved command: id={}, type={}, deviceId={}", saved.getId(), saved.getCommandType(),
 					saved.getDeviceId());
 
@@ -66,7 +78,23 @@ public class JpaCommandRepository implements CommandRepository {
 
 	@Override
 	public List<CommandEntity> findPendingCommands(String deviceId) {
-		return jpaRepository.findByDeviceIdAndStatusOrderByCreatedAtAsc(deviceId, CommandEntity.CommandStatus.PENDING);
+		if (pendingIndex == null) {
+			return jpaRepository.findByDeviceIdAndStatusOrderByCreatedAtAsc(deviceId,
+					CommandEntity.CommandStatus.PENDING);
+		}
+		if (!pendingIndex.mightHavePending(deviceId)) {
+			return List.of();
+		}
+		Set<Long> before = pendingIndex.snapshot(deviceId);
+		List<CommandEntity> pending = jpaRepository.findByDeviceIdAndStatusOrderByCreatedAtAsc(deviceId,
+				CommandEntity.CommandStatus.PENDING);
+		pendingIndex.reconcile(deviceId, before, pending);
+		return pending;
+	}
+
+	@Override
+	public boolean mightHavePending(String deviceId) {
+		return pendingIndex == null || pendingIndex.mightHavePending(deviceId);
 	}
 
 	@Override
@@ -81,6 +109,13 @@ public class JpaCommandRepository implements CommandRepository {
 		jpaRepository.findById(commandId).ifPresent(entity -> {
 			entity.setStatus(status);
 			jpaRepository.save(entity);
+			if (pendingIndex != null) {
+				if (status == CommandEntity.CommandStatus.PENDING) {
+					pendingIndex.add(entity.getDeviceId(), commandId);
+				} else {
+					pendingIndex.remove(entity.getDeviceId(), commandId);
+				}
+			}
 			log.debug("Updated command {} status to {}", commandId, status);
 		});
 	}
@@ -92,10 +127,27 @@ public class JpaCommandRepository implements CommandRepository {
 			entity.setStatus(CommandEntity.CommandStatus.SENT);
 			entity.setSentAt(LocalDateTime.now());
 			jpaRepository.save(entity);
+			removeFromIndex(entity);
 			log.debug("Marked command {} as SENT", commandId);
 		});
 	}
 
+	/**
+	 * I device dei comandi aggiornati restano nell'indice: la prossima
+	 * findPendingCommands() li riallinea con una query.
+	 */
+	@Override
+	@Transactional
+	public int markAllAsSent(Collection<Long> commandIds, LocalDateTime sentAt) {
+		if (commandIds.isEmpty()) {
+			return 0;
+		}
+		int updated = jpaRepository.updateStatusAndSentAt(commandIds, CommandEntity.CommandStatus.PENDING,
+				CommandEntity.CommandStatus.SENT, sentAt);
+		log.debug("Marked {} of {} commands as SENT", updated, commandIds.size());
+		return updated;
+	}
+
 	@Override
 	@Transactional
 	public void markAsDelivered(Long commandId) {
@@ -103,6 +155,7 @@ public class JpaCommandRepository implements CommandRepository {
 			entity.setStatus(CommandEntity.CommandStatus.DELIVERED);
 			entity.setDeliveredAt(LocalDateTime.now());
 			jpaRepository.save(entity);
+			removeFromIndex(entity);
 			log.debug("Marked command {} as DELIVERED", commandId);
 		});
 	}
@@ -114,6 +167,7 @@ public class JpaCommandRepository implements CommandRepository {
 			entity.setStatus(CommandEntity.CommandStatus.FAILED);
 			entity.setErrorMessage(errorMessage);
 			jpaRepository.save(entity);
+			removeFromIndex(entity);
 			log.warn("Marked command {} as FAILED: {}", commandId, errorMessage);
 		});
 	}
@@ -137,4 +191,9 @@ public class JpaCommandRepository implements CommandRepository {
 		log.info("Deleted {} old completed commands before {}", deleted, threshold);
 	}
 
+	private void removeFromIndex(CommandEntity entity) {
+		if (pendingIndex != null) {
+			pendingIndex.remove(entity.getDeviceId(), entity.getId());
+		}
+	}
 }
\ No newline at end of file
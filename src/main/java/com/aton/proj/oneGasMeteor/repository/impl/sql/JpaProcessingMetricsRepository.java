@@ -1,10 +1,17 @@
 package com.aton.proj.oneGasMeteor.repository.impl.sql;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,10 +30,21 @@ public class JpaProcessingMetricsRepository implements ProcessingMetricsReposito
 
 	private static final Logger log = LoggerFactory.getLogger(JpaProcessingMetricsRepository.class);
 
+	private static final String INSERT_SQL = "INSERT INTO processing_metrics "
+			+ "(device_id, device_type, message_type, client_address, payload_length_bytes, "
+			+ "declared_body_length, measurement_count, pending_commands_found, commands_sent, "
+			+ "response_size_bytes, total_processing_time_ms, read_time_ms, decode_time_ms, "
+			+ "db_save_time_ms, command_query_time_ms, command_encode_time_ms, send_time_ms, "
+			+ "battery_voltage, battery_percentage, signal_strength, contact_reason, firmware_version, "
+			+ "success, error_message, received_at, completed_at) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
 	private final ProcessingMetricsJpaRepository jpaRepository;
+	private final JdbcTemplate jdbcTemplate;
 
-	public JpaProcessingMetricsRepository(ProcessingMetricsJpaRepository jpaRepository) {
+	public JpaProcessingMetricsRepository(ProcessingMetricsJpaRepository jpaRepository, JdbcTemplate jdbcTemplate) {
 		this.jpaRepository = jpaRepository;
+		this.jdbcTemplate = jdbcTemplate;
 		log.info("JpaProcessingMetricsRepository initialized");
 	}
 
@@ -43,10 +61,95 @@ public class JpaProcessingMetricsRepository implements ProcessingMetricsReposito
 		}
 	}
 
+	/**
+	 * INSERT batch via JdbcTemplate: con id IDENTITY saveAll() di JPA
+	 * eseguirebbe comunque un INSERT per riga.
+	 */
+	@Override
+	public void saveAll(List<ProcessingMetricsEntity> entities) {
+		if (entities.isEmpty()) {
+			return;
+		}
+		jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ProcessingMetricsEntity e = entities.get(i);
+				ps.setString(1, e.getDeviceId());
+				ps.setString(2, e.getDeviceType());
+				setNullableInt(ps, 3, e.getMessageType());
+				ps.setString(4, e.getClientAddress());
+				setNullableInt(ps, 5, e.getPayloadLengthBytes());
+				setNullableInt(ps, 6, e.getDeclaredBodyLength());
+				setNullableInt(ps, 7, e.getMeasurementCount());
+				setNullableInt(ps, 8, e.getPendingCommandsFound());
+				setNullableInt(ps, 9, e.getCommandsSent());
+				setNullableInt(ps, 10, e.getResponseSizeBytes());
+				setNullableLong(ps, 11, e.getTotalProcessingTimeMs());
+				setNullableLong(ps, 12, e.getReadTimeMs());
+				setNullableLong(ps, 13, e.getDecodeTimeMs());
+				setNullableLong(ps, 14, e.getDbSaveTimeMs());
+				setNullableLong(ps, 15, e.getCommandQueryTimeMs());
+				setNullableLong(ps, 16, e.getCommandEncodeTimeMs());
+				setNullableLong(ps, 17, e.getSendTimeMs());
+				setNullableDouble(ps, 18, e.getBatteryVoltage());
+				setNullableDouble(ps, 19, e.getBatteryPercentage());
+				setNullableInt(ps, 20, e.getSignalStrength());
+				ps.setString(21, e.getContactReason());
+				ps.setString(22, e.getFirmwareVersion());
+				ps.setBoolean(23, Boolean.TRUE.equals(e.getSuccess()));
+				ps.setString(24, e.getErrorMessage());
+				ps.setTimestamp(25, toTimestamp(e.getReceivedAt()));
+				ps.setTimestamp(26, toTimestamp(e.getCompletedAt()));
+			}
+
+			@Override
+			public int getBatchSize() {
+				return entities.size();
+			}
+		});
+		log.debug("Saved {} processing metrics in batch", entities.size());
+	}
+
+	@Override
+	public List<ArrivalCount> countArrivalsByMinuteOfDay(LocalDateTime from) {
+		return jpaRepository.countArrivalsByMinuteOfDay(from).stream()
+				.map(row -> new ArrivalCount((String) row[0], (String) row[1],
+						((Number) row[2]).intValue() * 60 + ((Number) row[3]).intValue(), ((Number) row[4]).longValue()))
+				.toList();
+	}
+
 	@Override
 	@Transactional
 	public void deleteOlderThan(LocalDateTime threshold) {
 		int deleted = jpaRepository.deleteByReceivedAtBefore(threshold);
 		log.info("Deleted {} old processing metrics records before {}", deleted, threshold);
 	}
+
+	private static Timestamp toTimestamp(LocalDateTime value) {
+		return value != null ? Timestamp.valueOf(value) : null;
+	}
+
+	private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+		if (value != null) {
+			ps.setInt(index, value);
+		} else {
+			ps.setNull(index, Types.INTEGER);
+		}
+	}
+
+	private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+		if (value != null) {
+			ps.setLong(index, value);
+		} else {
+			ps.setNull(index, Types.BIGINT);
+		}
+	}
+
+	private static void setNullableDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+		if (value != null) {
+			ps.setDouble(index, value);
+		} else {
+			ps.setNull(index, Types.DOUBLE);
+		}
+	}
 }
@@ -1,22 +1,39 @@
 package com.aton.proj.oneGasMeteor.repository.impl.sql;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.aton.proj.oneGasMeteor.codec.DecodedMessageCodec;
 import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnJpaDatabase;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.model.TelemetryCursor;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+import com.aton.proj.oneGasMeteor.model.TelemetryRow;
 import com.aton.proj.oneGasMeteor.repository.TelemetryRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Implementazione SQL per TelemetryRepository
+ *
+ * findPage e stream usano JdbcTemplate: paginazione keyset su
+ * (received_at, id) con OFFSET/FETCH (sintassi comune a SQL Server,
+ * PostgreSQL e H2) e solo le colonne richieste.
  */
 @Repository
 @ConditionalOnJpaDatabase
@@ -24,21 +41,47 @@ public class JpaTelemetryRepository implements TelemetryRepository {
 
 	private static final Logger log = LoggerFactory.getLogger(JpaTelemetryRepository.class);
 
+	private static final String COLUMNS = "id, device_id, device_type, message_type, received_at, imei, "
+			+ "firmware_version, battery_voltage, battery_percentage, signal_strength, measurement_count";
+
+	private static final String ORDER_BY = " ORDER BY received_at DESC, id DESC";
+
 	private final TelemetryJpaRepository jpaRepository;
 	private final ObjectMapper objectMapper;
+	private final JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Stesso DataSource con fetch size: il driver legge il ResultSet a blocchi
+	 * invece di caricarlo tutto (su PostgreSQL solo dentro una transazione)
+	 */
+	private final JdbcTemplate streamingJdbcTemplate;
 
-	public JpaTelemetryRepository(TelemetryJpaRepository jpaRepository, ObjectMapper objectMapper) {
+	// json = decoded_data (TEXT), binary = decoded_data_bin (DecodedMessageCodec).
+	// decoded_data_bin non è mappata nell'entity: con binary è letta/scritta via JDBC
+	@Value("${telemetry.decoded-data.format:json}")
+	private String decodedDataFormat = "json";
+
+	public JpaTelemetryRepository(TelemetryJpaRepository jpaRepository, ObjectMapper objectMapper,
+			JdbcTemplate jdbcTemplate, @Value("${telemetry.query.fetch-size:500}") int fetchSize) {
 		this.jpaRepository = jpaRepository;
 		this.objectMapper = objectMapper;
+		this.jdbcTemplate = jdbcTemplate;
+		this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+		this.streamingJdbcTemplate.setFetchSize(fetchSize);
 		log.info("JpaTelemetryRepository initialized");
 	}
 
 	@Override
+	@Transactional
 	public TelemetryEntity save(String deviceId, String deviceType, String rawMessage, DecodedMessage decoded) {
 		try {
 			TelemetryEntity entity = buildEntity(deviceId, deviceType, rawMessage, decoded);
 
-			TelemetryEntity saved = jpaRepository.save(entity);
+			TelemetryEntity saved = jpaRepository.saveAndFlush(entity);
+			if (entity.getDecodedDataBin() != null) {
+				jdbcTemplate.update("UPDATE telemetry_data SET decoded_data_bin = ? WHERE id = ?",
+						entity.getDecodedDataBin(), saved.getId());
+			}
 			log.debug("Saved telemetry: id={}, deviceId={}", saved.getId(), deviceId);
 
 			return saved;
@@ -61,9 +104,13 @@ public class JpaTelemetryRepository implements TelemetryRepository {
 			entity.setReceivedAt(LocalDateTime.now());
 			entity.setProcessedAt(LocalDateTime.now());
 
-			// Serializza DecodedMessage in JSON
-			String decodedJson = objectMapper.writeValueAsString(decoded);
-			entity.setDecodedDataJson(decodedJson);
+			// Serializza DecodedMessage in JSON o nel formato binario compatto
+			if (isBinary()) {
+				entity.setDecodedDataBin(DecodedMessageCodec.encode(decoded));
+			} else {
+				String decodedJson = objectMapper.writeValueAsString(decoded);
+				entity.setDecodedDataJson(decodedJson);
+			}
 
 			// Estrai campi principali per query veloci
 			extractMainFields(entity, decoded);
@@ -117,7 +164,12 @@ public class JpaTelemetryRepository implements TelemetryRepository {
 
 	@Override
 	public Optional<TelemetryEntity> findById(Long id) {
-		return jpaRepository.findById(id);
+		Optional<TelemetryEntity> entity = jpaRepository.findById(id);
+		if (isBinary() && entity.isPresent()) {
+			entity.get().setDecodedDataBin(jdbcTemplate.query("SELECT decoded_data_bin FROM telemetry_data WHERE id = ?",
+					rs -> rs.next() ? rs.getBytes(1) : null, id));
+		}
+		return entity;
 	}
 
 	@Override
@@ -140,6 +192,89 @@ public class JpaTelemetryRepository implements TelemetryRepository {
 		return jpaRepository.findByDeviceTypeOrderByReceivedAtDesc(deviceType);
 	}
 
+	@Override
+	public List<TelemetryRow> findPage(TelemetryQuery query, TelemetryCursor after, int limit) {
+		List<Object> args = new ArrayList<>();
+		String sql = select(query) + where(query, after, args) + ORDER_BY + " OFFSET 0 ROWS FETCH NEXT " + limit
+				+ " ROWS ONLY";
+		return jdbcTemplate.query(sql, (rs, rowNum) -> mapRow(rs, query), args.toArray());
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void stream(TelemetryQuery query, Consumer<TelemetryRow> consumer) {
+		List<Object> args = new ArrayList<>();
+		String sql = select(query) + where(query, null, args) + ORDER_BY;
+		streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(mapRow(rs, query)),
+				args.toArray());
+	}
+
+	private String select(TelemetryQuery query) {
+		return "SELECT " + COLUMNS + (query.includeRaw() ? ", raw_message" : "")
+				+ (query.includeDecoded() ? ", decoded_data" : "")
+				+ (query.includeDecoded() && isBinary() ? ", decoded_data_bin" : "") + " FROM telemetry_data";
+	}
+
+	private boolean isBinary() {
+		return "binary".equalsIgnoreCase(decodedDataFormat);
+	}
+
+	private static String where(TelemetryQuery query, TelemetryCursor after, List<Object> args) {
+		List<String> conditions = new ArrayList<>();
+		addEquals(conditions, args, "device_id", query.deviceId());
+		addEquals(conditions, args, "imei", query.imei());
+		addEquals(conditions, args, "device_type", query.deviceType());
+		addEquals(conditions, args, "message_type", query.messageType());
+		if (query.from() != null) {
+			conditions.add("received_at >= ?");
+			args.add(Timestamp.valueOf(query.from()));
+		}
+		if (query.to() != null) {
+			conditions.add("received_at < ?");
+			args.add(Timestamp.valueOf(query.to()));
+		}
+		if (after != null) {
+			Timestamp receivedAt = Timestamp.valueOf(after.receivedAt());
+			conditions.add("(received_at < ? OR (received_at = ? AND id < ?))");
+			args.add(receivedAt);
+			args.add(receivedAt);
+			args.add(Long.parseLong(after.key()));
+		}
+		return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+	}
+
+	private static void addEquals(List<String> conditions, List<Object> args, String column, String value) {
+		if (value != null) {
+			conditions.add(column + " = ?");
+			args.add(value);
+		}
+	}
+
+	private TelemetryRow mapRow(ResultSet rs, TelemetryQuery query) throws SQLException {
+		String decoded = null;
+		if (query.includeDecoded()) {
+			byte[] bin = isBinary() ? rs.getBytes("decoded_data_bin") : null;
+			decoded = bin != null ? toJson(DecodedMessageCodec.decode(bin), rs.getLong("id"))
+					: rs.getString("decoded_data");
+		}
+		return new TelemetryRow(rs.getLong("id"), rs.getString("device_id"), rs.getString("device_type"),
+				rs.getString("message_type"), rs.getTimestamp("received_at").toLocalDateTime(), rs.getString("imei"),
+				rs.getString("firmware_version"),
+				rs.getObject("battery_voltage") != null ? rs.getDouble("battery_voltage") : null,
+				rs.getObject("battery_percentage") != null ? rs.getDouble("battery_percentage") : null,
+				rs.getObject("signal_strength") != null ? rs.getInt("signal_strength") : null,
+				rs.getObject("measurement_count") != null ? rs.getInt("measurement_count") : null,
+				query.includeRaw() ? rs.getString("raw_message") : null, decoded);
+	}
+
+	private String toJson(DecodedMessage decoded, long id) {
+		try {
+			return objectMapper.writeValueAsString(decoded);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("decoded_data_bin non convertibile per telemetry id=" + id, e);
+		}
+	}
+
 	@Override
 	public long countByDeviceId(String deviceId) {
 		return jpaRepository.countByDeviceId(deviceId);
@@ -0,0 +1,239 @@
+package com.aton.proj.oneGasMeteor.repository.impl.sql;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnSqlCommands;
+import com.aton.proj.oneGasMeteor.entity.CommandEntity;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Indice in memoria dei comandi PENDING per device (deviceId → id comandi).
+ *
+ * Usato da {@link JpaCommandRepository#findPendingCommands(String)}: se il
+ * device non ha comandi nell'indice la risposta è vuota senza query, cioè il
+ * caso di gran lunga più frequente sul percorso di risposta al device.
+ *
+ * L'indice può avere falsi positivi (costano una query, che poi lo riallinea)
+ * ma non falsi negativi:
+ * <ul>
+ * <li>i nuovi comandi sono aggiunti subito da save() e di nuovo dopo il
+ * commit: un riallineamento concorrente che non vede ancora la riga non li
+ * lascia fuori dall'indice</li>
+ * <li>le uscite da PENDING sono applicate solo dopo il commit</li>
+ * <li>i comandi inseriti da altre istanze arrivano con il polling a watermark
+ * su device_commands.id (con una finestra all'indietro per i commit fuori
+ * ordine) e con il riallineamento completo periodico</li>
+ * </ul>
+ * Finché il caricamento iniziale non è riuscito ogni device risulta "da
+ * interrogare".
+ */
+@Component
+@ConditionalOnSqlCommands
+@ConditionalOnProperty(name = "commands.pending-index.enabled", havingValue = "true", matchIfMissing = true)
+public class PendingCommandIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(PendingCommandIndex.class);
+
+	private final CommandJpaRepository jpaRepository;
+
+	/** Id rilette a ogni polling sotto il watermark (commit fuori ordine) */
+	@Value("${commands.pending-index.id-lookback:1000}")
+	private long idLookback = 1000;
+
+	/** Ogni quanti polling ricaricare l'indice da zero */
+	@Value("${commands.pending-index.full-reload-every:150}")
+	private int fullReloadEvery = 150;
+
+	private final Map<String, Set<Long>> pendingByDevice = new ConcurrentHashMap<>();
+
+	private volatile boolean loaded;
+	private volatile long watermark;
+	private int pollCount;
+
+	public PendingCommandIndex(CommandJpaRepository jpaRepository) {
+		this.jpaRepository = jpaRepository;
+	}
+
+	@PostConstruct
+	void load() {
+		try {
+			reload();
+		} catch (Exception e) {
+			log.warn("PendingCommandIndex: initial load failed ({}), every lookup hits the DB until next poll",
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * @return false solo se il device non ha sicuramente comandi PENDING
+	 */
+	public boolean mightHavePending(String deviceId) {
+		if (!loaded) {
+			return true;
+		}
+		Set<Long> ids = pendingByDevice.get(deviceId);
+		return ids != null && !ids.isEmpty();
+	}
+
+	/**
+	 * Nuovo comando PENDING (anche se la transazione non è ancora confermata:
+	 * nel caso peggiore è un falso positivo). Dentro una transazione viene
+	 * aggiunto di nuovo dopo il commit: {@link #reconcile} o {@link #reload()}
+	 * concorrenti, con una query che non vede ancora la riga, potrebbero averlo
+	 * rimosso nel frattempo.
+	 */
+	public void add(String deviceId, Long commandId) {
+		if (deviceId == null || commandId == null) {
+			return;
+		}
+		addNow(deviceId, commandId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					addNow(deviceId, commandId);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Comando uscito da PENDING. Dentro una transazione la rimozione avviene
+	 * dopo il commit, così un rollback non lascia il comando fuori dall'indice.
+	 */
+	public void remove(String deviceId, Long commandId) {
+		if (deviceId == null || commandId == null) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					removeNow(deviceId, commandId);
+				}
+			});
+		} else {
+			removeNow(deviceId, commandId);
+		}
+	}
+
+	/**
+	 * Riallinea il device al risultato di una query: toglie gli id presenti in
+	 * {@code before} (snapshot preso prima della query) e non più PENDING. Gli id
+	 * aggiunti durante la query restano.
+	 */
+	public void reconcile(String deviceId, Set<Long> before, Collection<CommandEntity> pending) {
+		Set<Long> stillPending = new HashSet<>();
+		for (CommandEntity c : pending) {
+			stillPending.add(c.getId());
+			addNow(deviceId, c.getId());
+		}
+		for (Long id : before) {
+			if (!stillPending.contains(id)) {
+				removeNow(deviceId, id);
+			}
+		}
+	}
+
+	/**
+	 * @return copia degli id PENDING noti per il device
+	 */
+	public Set<Long> snapshot(String deviceId) {
+		Set<Long> ids = pendingByDevice.get(deviceId);
+		return ids == null ? Set.of() : Set.copyOf(ids);
+	}
+
+	/**
+	 * Polling dei comandi creati da altre istanze (id oltre il watermark).
+	 */
+	@Scheduled(fixedDelayString = "${commands.pending-index.poll-interval-ms:2000}")
+	public void poll() {
+		try {
+			if (!loaded || ++pollCount >= fullReloadEvery) {
+				reload();
+				return;
+			}
+			List<Object[]> rows = jpaRepository.findPendingIdsAfter(CommandEntity.CommandStatus.PENDING,
+					Math.max(0, watermark - idLookback));
+			long max = watermark;
+			for (Object[] row : rows) {
+				Long id = (Long) row[0];
+				addNow((String) row[1], id);
+				max = Math.max(max, id);
+			}
+			watermark = max;
+		} catch (Exception e) {
+			log.warn("PendingCommandIndex: poll failed: {}", e.getMessage());
+		}
+	}
+
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	public int getDeviceCount() {
+		return pendingByDevice.size();
+	}
+
+	/**
+	 * Ricarica completa, con la stessa logica a snapshot di
+	 * {@link #reconcile(String, Set, Collection)} applicata a tutti i device.
+	 */
+	private void reload() {
+		Map<String, Set<Long>> before = new HashMap<>();
+		pendingByDevice.forEach((deviceId, ids) -> before.put(deviceId, Set.copyOf(ids)));
+
+		List<Object[]> rows = jpaRepository.findPendingIdsAfter(CommandEntity.CommandStatus.PENDING, 0L);
+		Set<Long> stillPending = new HashSet<>(rows.size() * 2);
+		long max = 0;
+		for (Object[] row : rows) {
+			Long id = (Long) row[0];
+			addNow((String) row[1], id);
+			stillPending.add(id);
+			max = Math.max(max, id);
+		}
+		before.forEach((deviceId, ids) -> ids.stream()
+				.filter(id -> !stillPending.contains(id))
+				.forEach(id -> removeNow(deviceId, id)));
+
+		watermark = Math.max(watermark, max);
+		pollCount = 0;
+		if (!loaded) {
+			loaded = true;
+			log.info("PendingCommandIndex loaded: {} pending commands on {} devices", rows.size(),
+					pendingByDevice.size());
+		} else {
+			log.debug("PendingCommandIndex reloaded: {} pending commands on {} devices", rows.size(),
+					pendingByDevice.size());
+		}
+	}
+
+	private void addNow(String deviceId, Long commandId) {
+		if (deviceId != null && commandId != null) {
+			pendingByDevice.computeIfAbsent(deviceId, d -> ConcurrentHashMap.newKeySet()).add(commandId);
+		}
+	}
+
+	private void removeNow(String deviceId, Long commandId) {
+		pendingByDevice.computeIfPresent(deviceId, (d, ids) -> {
+			ids.remove(commandId);
+			return ids.isEmpty() ? null : ids;
+		});
+	}
+}
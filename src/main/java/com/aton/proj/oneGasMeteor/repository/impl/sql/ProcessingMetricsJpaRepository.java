@@ -1,6 +1,7 @@
 package com.aton.proj.oneGasMeteor.repository.impl.sql;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -18,6 +19,15 @@ import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
 @ConditionalOnJpaDatabase
 public interface ProcessingMetricsJpaRepository extends JpaRepository<ProcessingMetricsEntity, Long> {
 
+	/**
+	 * Righe [deviceId, deviceType, ora, minuto, connessioni]
+	 */
+	@Query("SELECT p.deviceId, MAX(p.deviceType), EXTRACT(HOUR FROM p.receivedAt), EXTRACT(MINUTE FROM p.receivedAt), COUNT(p) "
+			+ "FROM ProcessingMetricsEntity p "
+			+ "WHERE p.receivedAt >= :from AND p.success = true AND p.deviceId IS NOT NULL "
+			+ "GROUP BY p.deviceId, EXTRACT(HOUR FROM p.receivedAt), EXTRACT(MINUTE FROM p.receivedAt)")
+	List<Object[]> countArrivalsByMinuteOfDay(@Param("from") LocalDateTime from);
+
 	@Modifying
 	@Query("DELETE FROM ProcessingMetricsEntity p WHERE p.receivedAt < :threshold")
 	int deleteByReceivedAtBefore(@Param("threshold") LocalDateTime threshold);
@@ -0,0 +1,262 @@
+package com.aton.proj.oneGasMeteor.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.service.BatchWriteService;
+import com.aton.proj.oneGasMeteor.service.spool.WriteAheadSpool;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Controllo di ammissione tra i batch writer e i motori TCP
+ * (tcp.admission.enabled=true).
+ *
+ * Ogni tcp.admission.evaluate-interval-ms calcola la pressione come massimo
+ * tra i rapporti segnale/soglia di:
+ * <ul>
+ * <li>entity in coda nei batch writer (tcp.admission.queue-threshold)</li>
+ * <li>byte sullo spool su disco (tcp.admission.spool-threshold-mb)</li>
+ * <li>thread in attesa di una connessione Hikari
+ * (tcp.admission.pool-wait-threshold)</li>
+ * </ul>
+ * Livelli:
+ * <ul>
+ * <li>NORMAL (pressione &lt; 1): nessun intervento</li>
+ * <li>THROTTLE: accept() ritardato proporzionalmente alla pressione (le
+ * connessioni restano nel backlog del kernel, che quando è pieno rifiuta le
+ * nuove) e limite di connessioni attive ridotto a max-connections /
+ * pressione</li>
+ * <li>SHED (pressione &ge; tcp.admission.shed-factor): connessioni chiuse
+ * subito dopo l'accept, prima di leggere, così il dispositivo riprova più
+ * tardi</li>
+ * </ul>
+ * Per evitare oscillazioni si scende di livello solo sotto l'80% della soglia.
+ */
+@Component
+@ConditionalOnProperty(name = "tcp.admission.enabled", havingValue = "true")
+public class AdmissionControl {
+
+	private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+	private static final double RECOVERY_RATIO = 0.8;
+
+	public enum Level {
+		NORMAL, THROTTLE, SHED
+	}
+
+	private final BatchWriteService batchWriteService;
+	private final WriteAheadSpool spool;
+	private final HikariDataSource hikari;
+
+	private final int maxConnections;
+	private final long queueThreshold;
+	private final long spoolThresholdBytes;
+	private final int poolWaitThreshold;
+	private final double shedFactor;
+	private final long maxThrottleDelayMs;
+
+	private volatile Level level = Level.NORMAL;
+	private volatile double pressure;
+	private volatile long lastQueued;
+	private volatile long lastSpoolBytes;
+	private volatile int lastPoolWaiting;
+
+	private final AtomicLong admitted = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+	private final AtomicLong throttleDelayTotalMs = new AtomicLong();
+	private final AtomicLong rejectedOverLimit = new AtomicLong();
+	private final AtomicLong shed = new AtomicLong();
+	private final AtomicLong levelChanges = new AtomicLong();
+
+	public AdmissionControl(@Nullable BatchWriteService batchWriteService, @Nullable WriteAheadSpool spool,
+			@Nullable DataSource dataSource,
+			@Value("${tcp.server.max-connections:10000}") int maxConnections,
+			@Value("${tcp.admission.queue-threshold:20000}") long queueThreshold,
+			@Value("${tcp.admission.spool-threshold-mb:512}") long spoolThresholdMb,
+			@Value("${tcp.admission.pool-wait-threshold:5}") int poolWaitThreshold,
+			@Value("${tcp.admission.shed-factor:2.0}") double shedFactor,
+			@Value("${tcp.admission.max-throttle-delay-ms:200}") long maxThrottleDelayMs) {
+		this.batchWriteService = batchWriteService;
+		this.spool = spool;
+		this.hikari = dataSource instanceof HikariDataSource h ? h : null;
+		this.maxConnections = maxConnections;
+		this.queueThreshold = queueThreshold;
+		this.spoolThresholdBytes = spoolThresholdMb * 1024 * 1024;
+		this.poolWaitThreshold = poolWaitThreshold;
+		this.shedFactor = shedFactor;
+		this.maxThrottleDelayMs = maxThrottleDelayMs;
+
+		log.info("AdmissionControl initialized: queue>={}, spool>={} MB, poolWaiting>={}, shedFactor={}, spool {}, hikari {}",
+				queueThreshold, spoolThresholdMb, poolWaitThreshold, shedFactor,
+				spool != null ? "monitored" : "n/a", hikari != null ? "monitored" : "n/a");
+	}
+
+	// -------------------------------------------------------------------------
+	// Valutazione
+	// -------------------------------------------------------------------------
+
+	@Scheduled(fixedDelayString = "${tcp.admission.evaluate-interval-ms:500}")
+	public void evaluate() {
+		long queued = batchWriteService != null ? batchWriteService.getQueuedCount() : 0;
+		long spoolBytes = spool != null ? spool.sizeBytes() : 0;
+		int poolWaiting = 0;
+		if (hikari != null) {
+			HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+			poolWaiting = pool != null ? pool.getThreadsAwaitingConnection() : 0;
+		}
+		evaluate(queued, spoolBytes, poolWaiting);
+	}
+
+	/**
+	 * Aggiorna pressione e livello dai valori dei segnali
+	 */
+	void evaluate(long queued, long spoolBytes, int poolWaiting) {
+		lastQueued = queued;
+		lastSpoolBytes = spoolBytes;
+		lastPoolWaiting = poolWaiting;
+
+		double p = ratio(queued, queueThreshold);
+		p = Math.max(p, ratio(spoolBytes, spoolThresholdBytes));
+		p = Math.max(p, ratio(poolWaiting, poolWaitThreshold));
+		pressure = p;
+
+		Level current = level;
+		Level next = switch (current) {
+		case NORMAL -> p >= shedFactor ? Level.SHED : p >= 1 ? Level.THROTTLE : Level.NORMAL;
+		case THROTTLE -> p >= shedFactor ? Level.SHED : p < RECOVERY_RATIO ? Level.NORMAL : Level.THROTTLE;
+		case SHED -> p >= shedFactor * RECOVERY_RATIO ? Level.SHED : p < RECOVERY_RATIO ? Level.NORMAL
+				: Level.THROTTLE;
+		};
+
+		if (next != current) {
+			level = next;
+			levelChanges.incrementAndGet();
+			if (next == Level.NORMAL) {
+				log.info("Admission level {} -> {} (pressure {}, queued={}, spoolBytes={}, poolWaiting={})", current,
+						next, String.format("%.2f", p), queued, spoolBytes, poolWaiting);
+			} else {
+				log.warn("Admission level {} -> {} (pressure {}, queued={}, spoolBytes={}, poolWaiting={})", current,
+						next, String.format("%.2f", p), queued, spoolBytes, poolWaiting);
+			}
+		}
+	}
+
+	private static double ratio(long value, long threshold) {
+		return threshold > 0 ? (double) value / threshold : 0;
+	}
+
+	// -------------------------------------------------------------------------
+	// Decisioni per i motori TCP
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Ritardo da applicare prima di accept(): 0 in NORMAL, proporzionale alla
+	 * pressione in THROTTLE, massimo in SHED.
+	 */
+	public long acceptDelayMs() {
+		Level current = level;
+		if (current == Level.NORMAL) {
+			return 0;
+		}
+		long delay = current == Level.SHED ? maxThrottleDelayMs
+				: (long) Math.min(maxThrottleDelayMs, maxThrottleDelayMs * (pressure - RECOVERY_RATIO) / shedFactor);
+		delay = Math.max(1, delay);
+		throttled.incrementAndGet();
+		throttleDelayTotalMs.addAndGet(delay);
+		return delay;
+	}
+
+	/**
+	 * Decide se servire una connessione appena accettata.
+	 *
+	 * @param activeConnections connessioni attive, compresa quella appena
+	 *                          accettata
+	 * @return false se la connessione va chiusa senza leggere
+	 */
+	public boolean admit(int activeConnections) {
+		Level current = level;
+		if (current == Level.SHED) {
+			shed.incrementAndGet();
+			return false;
+		}
+		if (current == Level.THROTTLE && activeConnections > effectiveConnectionLimit()) {
+			rejectedOverLimit.incrementAndGet();
+			return false;
+		}
+		admitted.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Limite di connessioni attive: max-connections in NORMAL, ridotto in base
+	 * alla pressione in THROTTLE
+	 */
+	public int effectiveConnectionLimit() {
+		Level current = level;
+		if (current == Level.NORMAL) {
+			return maxConnections;
+		}
+		if (current == Level.SHED) {
+			return 0;
+		}
+		return (int) Math.max(1, maxConnections / Math.max(1, pressure));
+	}
+
+	// -------------------------------------------------------------------------
+	// Metriche
+	// -------------------------------------------------------------------------
+
+	public Level getLevel() {
+		return level;
+	}
+
+	public double getPressure() {
+		return pressure;
+	}
+
+	public long getLastQueued() {
+		return lastQueued;
+	}
+
+	public long getLastSpoolBytes() {
+		return lastSpoolBytes;
+	}
+
+	public int getLastPoolWaiting() {
+		return lastPoolWaiting;
+	}
+
+	public long getAdmitted() {
+		return admitted.get();
+	}
+
+	public long getThrottled() {
+		return throttled.get();
+	}
+
+	public long getThrottleDelayTotalMs() {
+		return throttleDelayTotalMs.get();
+	}
+
+	public long getRejectedOverLimit() {
+		return rejectedOverLimit.get();
+	}
+
+	public long getShed() {
+		return shed.get();
+	}
+
+	public long getLevelChanges() {
+		return levelChanges.get();
+	}
+}
@@ -0,0 +1,125 @@
+package com.aton.proj.oneGasMeteor.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import com.aton.proj.oneGasMeteor.model.TelemetryMessage;
+
+/**
+ * Riconosce le ritrasmissioni dei datagrammi UDP.
+ *
+ * Un device che non riceve la risposta rimanda lo stesso body: la chiave è
+ * l'impronta del frame (IMEI dei byte 7-14, CRC32C e lunghezza del body), come
+ * in {@code TelemetryDeduplicator}. L'header è escluso perché CSQ, batteria e
+ * motivo di contatto possono cambiare tra un tentativo e l'altro; l'indirizzo
+ * sorgente pure, perché su NB-IoT il NAT può cambiare porta
+ * tra un tentativo e l'altro. La risposta del primo invio viene conservata per la
+ * finestra di deduplicazione e rispedita ai duplicati, senza rielaborare il
+ * frame (nessuna doppia riga a DB, nessun comando rimarcato).
+ *
+ * Le chiavi sono in ordine di inserimento, quindi di scadenza: la pulizia
+ * avviene dalla testa a ogni accesso.
+ */
+public class DatagramDeduplicator {
+
+	/** Esito di {@link #begin} */
+	public sealed interface Outcome permits First, InProgress, Duplicate {
+	}
+
+	/** Primo arrivo: il chiamante elabora e poi chiama complete/abort */
+	public record First(Key key) implements Outcome {
+	}
+
+	/** Duplicato di un frame ancora in elaborazione: da scartare */
+	public record InProgress() implements Outcome {
+	}
+
+	/** Duplicato di un frame già elaborato: rispedire la risposta */
+	public record Duplicate(byte[] reply) implements Outcome {
+	}
+
+	public record Key(long imei, long crcAndLength) {
+	}
+
+	private static final class Entry {
+		final long expiresAtMs;
+		byte[] reply; // null finché il primo invio è in elaborazione
+
+		Entry(long expiresAtMs) {
+			this.expiresAtMs = expiresAtMs;
+		}
+	}
+
+	private final long windowMs;
+	private final int maxEntries;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>();
+
+	public DatagramDeduplicator(long windowMs, int maxEntries) {
+		this.windowMs = windowMs;
+		this.maxEntries = Math.max(1, maxEntries);
+	}
+
+	/**
+	 * Impronta di un frame: IMEI, CRC32C e lunghezza del body. Un frame di solo
+	 * header non ha body da confrontare: l'impronta copre l'header intero.
+	 */
+	public static Key keyOf(byte[] frame) {
+		long imei = 0;
+		for (int i = 7; i < 15 && i < frame.length; i++) {
+			imei = (imei << 8) | (frame[i] & 0xFF);
+		}
+		int bodyOffset = frame.length > TelemetryMessage.HEADER_SIZE ? TelemetryMessage.HEADER_SIZE : 0;
+		int bodyLength = frame.length - bodyOffset;
+		CRC32C crc = new CRC32C();
+		crc.update(frame, bodyOffset, bodyLength);
+		return new Key(imei, (crc.getValue() << 32) | bodyLength);
+	}
+
+	public synchronized Outcome begin(byte[] frame, long nowMs) {
+		evictExpired(nowMs);
+
+		Key key = keyOf(frame);
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			return entry.reply != null ? new Duplicate(entry.reply) : new InProgress();
+		}
+
+		entries.put(key, new Entry(nowMs + windowMs));
+		if (entries.size() > maxEntries) {
+			Iterator<Entry> it = entries.values().iterator();
+			it.next();
+			it.remove();
+		}
+		return new First(key);
+	}
+
+	/**
+	 * Elaborazione riuscita: i duplicati successivi riceveranno reply
+	 */
+	public synchronized void complete(Key key, byte[] reply) {
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			entry.reply = reply;
+		}
+	}
+
+	/**
+	 * Elaborazione fallita: la ritrasmissione verrà elaborata di nuovo
+	 */
+	public synchronized void abort(Key key) {
+		entries.remove(key);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private void evictExpired(long nowMs) {
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext() && it.next().getValue().expiresAtMs <= nowMs) {
+			it.remove();
+		}
+	}
+}
@@ -0,0 +1,537 @@
+package com.aton.proj.oneGasMeteor.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.config.tcpServer.TcpServerProperties;
+import com.aton.proj.oneGasMeteor.handler.TcpConnectionHandlerReadExactly;
+import com.aton.proj.oneGasMeteor.model.ProcessingContext;
+import com.aton.proj.oneGasMeteor.model.TelemetryResponse;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Motore TCP a selector (tcp.server.engine=nio).
+ * <p>
+ * Un thread acceptor distribuisce le connessioni in round-robin su pochi
+ * selector loop. Ogni loop legge header (17 byte) + body dichiarato in
+ * ByteBuffer riutilizzabili, senza thread parcheggiati per le connessioni in
+ * attesa di dati. I frame completi passano a un pool di decodifica limitato;
+ * la risposta viene poi scritta dal selector loop che possiede la connessione.
+ */
+@Component
+@ConditionalOnProperty(name = "tcp.server.engine", havingValue = "nio")
+public class NioTcpServer implements CommandLineRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(NioTcpServer.class);
+
+	private static final long SELECT_TIMEOUT_MS = 500;
+	private static final int MAX_POOLED_BUFFERS_PER_LOOP = 1024;
+	/** Intervallo massimo tra due scansioni delle connessioni inattive */
+	private static final long IDLE_CHECK_MAX_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final TcpServerProperties properties;
+	private final TcpConnectionHandlerReadExactly connectionHandler;
+	private final Semaphore connectionLimiter;
+	private final ThreadPoolExecutor decodePool;
+	private final ExecutorService completionExecutor;
+	private final AdmissionControl admissionControl;
+
+	private ServerSocketChannel serverChannel;
+	private SelectorLoop[] loops;
+	private Thread acceptorThread;
+	private volatile boolean running = false;
+
+	public NioTcpServer(TcpServerProperties properties, TcpConnectionHandlerReadExactly connectionHandler,
+			@Nullable AdmissionControl admissionControl) {
+		this.properties = properties;
+		this.admissionControl = admissionControl;
+		this.connectionHandler = connectionHandler;
+		this.connectionLimiter = new Semaphore(properties.getMaxConnections());
+		this.decodePool = new ThreadPoolExecutor(properties.getDecodeThreads(), properties.getDecodeThreads(), 60L,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getDecodeQueueCapacity()),
+				Thread.ofPlatform().name("nio-decode-", 0).factory(), new ThreadPoolExecutor.AbortPolicy());
+		// markAsSent e salvataggio metriche: I/O su DB da non eseguire sul selector
+		this.completionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+	}
+
+	@Override
+	public void run(String... args) {
+		startServer();
+	}
+
+	public void startServer() {
+		try {
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(properties.getPort()), properties.getBacklog());
+			running = true;
+
+			loops = new SelectorLoop[Math.max(1, properties.getSelectorThreads())];
+			for (int i = 0; i < loops.length; i++) {
+				loops[i] = new SelectorLoop(i);
+				loops[i].start();
+			}
+			acceptorThread = Thread.ofPlatform().name("nio-acceptor").start(this::acceptConnections);
+
+			log.info("NIO TCP Server started on port {}", getLocalPort());
+			log.info("Timeout configured: {}ms", properties.getTimeout());
+			log.info("Max concurrent connections: {}", properties.getMaxConnections());
+			log.info("ServerSocket backlog: {}", properties.getBacklog());
+			log.info("Selector loops: {}, decode threads: {}, decode queue: {}", loops.length,
+					properties.getDecodeThreads(), properties.getDecodeQueueCapacity());
+			if (properties.isSessionEnabled()) {
+				log.warn("tcp.server.session-enabled is only supported by the blocking engine, nio serves one frame per connection");
+			}
+
+		} catch (IOException e) {
+			log.error("Failed to start NIO TCP server: {}", e.getMessage(), e);
+			throw new RuntimeException("Cannot start TCP server", e);
+		}
+	}
+
+	private void acceptConnections() {
+		int next = 0;
+		while (running) {
+			try {
+				// Backpressure: rallenta l'accept se i writer sono in ritardo
+				if (admissionControl != null) {
+					long delay = admissionControl.acceptDelayMs();
+					if (delay > 0) {
+						Thread.sleep(delay);
+					}
+				}
+
+				// Stesso limite di connessioni concorrenti del motore bloccante
+				connectionLimiter.acquire();
+
+				int availablePermits = connectionLimiter.availablePermits();
+				if (availablePermits < properties.getMaxConnections() * 0.1) {
+					log.warn("Connection limiter running low: {}/{} permits available",
+							availablePermits, properties.getMaxConnections());
+				}
+
+				SocketChannel channel = serverChannel.accept();
+
+				if (admissionControl != null && !admissionControl
+						.admit(properties.getMaxConnections() - connectionLimiter.availablePermits())) {
+					// Chiusura prima di registrarla sul selector: il dispositivo riproverà più tardi
+					log.debug("Connection shed by admission control: {}", channel.socket().getRemoteSocketAddress());
+					try {
+						channel.close();
+					} catch (IOException ignored) {
+					}
+					connectionLimiter.release();
+					continue;
+				}
+
+				loops[next].register(channel);
+				next = (next + 1) % loops.length;
+
+			} catch (InterruptedException e) {
+				if (running) {
+					log.warn("Connection limiter interrupted");
+				}
+				Thread.currentThread().interrupt();
+				return;
+			} catch (IOException e) {
+				if (running) {
+					log.error("Error accepting connection: {}", e.getMessage());
+				}
+				// Rilascia il permesso se la connessione non è stata accettata
+				connectionLimiter.release();
+			}
+		}
+	}
+
+	/**
+	 * Porta effettivamente in ascolto (utile con tcp.server.port=0)
+	 */
+	public int getLocalPort() {
+		return serverChannel != null ? serverChannel.socket().getLocalPort() : -1;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		log.info("Shutting down NIO TCP server...");
+		running = false;
+
+		try {
+			if (serverChannel != null) {
+				serverChannel.close();
+			}
+			if (acceptorThread != null) {
+				acceptorThread.interrupt();
+			}
+			if (loops != null) {
+				for (SelectorLoop loop : loops) {
+					loop.stop();
+				}
+			}
+
+			decodePool.shutdown();
+			if (!decodePool.awaitTermination(5, TimeUnit.SECONDS)) {
+				decodePool.shutdownNow();
+			}
+			completionExecutor.shutdown();
+			if (!completionExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+				completionExecutor.shutdownNow();
+			}
+
+			log.info("NIO TCP server stopped");
+			log.info("Connection limiter final state: {}/{} permits available",
+					connectionLimiter.availablePermits(), properties.getMaxConnections());
+
+		} catch (IOException | InterruptedException e) {
+			log.error("Error during shutdown: {}", e.getMessage());
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Selector loop
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Thread che possiede un Selector e tutte le connessioni registrate su di
+	 * esso. Lo stato delle connessioni è modificato solo da questo thread: gli
+	 * altri thread gli passano lavoro tramite {@link #execute(Runnable)}.
+	 */
+	private final class SelectorLoop implements Runnable {
+
+		private final Selector selector;
+		private final Thread thread;
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private final Deque<ByteBuffer> bufferPool = new ArrayDeque<>();
+
+		/** Prossima scansione delle connessioni inattive (System.nanoTime) */
+		private long nextIdleCheckNanos = System.nanoTime();
+
+		SelectorLoop(int index) throws IOException {
+			this.selector = Selector.open();
+			this.thread = Thread.ofPlatform().name("nio-selector-" + index).unstarted(this);
+		}
+
+		void start() {
+			thread.start();
+		}
+
+		void stop() throws InterruptedException {
+			selector.wakeup();
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+		}
+
+		void register(SocketChannel channel) {
+			execute(() -> {
+				try {
+					channel.configureBlocking(false);
+					Connection connection = new Connection(this, channel);
+					connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+				} catch (IOException e) {
+					log.error("Error registering connection: {}", e.getMessage());
+					try {
+						channel.close();
+					} catch (IOException ignored) {
+					}
+					connectionLimiter.release();
+				}
+			});
+		}
+
+		void execute(Runnable task) {
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+		ByteBuffer acquireBuffer() {
+			ByteBuffer buffer = bufferPool.poll();
+			return buffer != null ? buffer : ByteBuffer.allocate(TcpConnectionHandlerReadExactly.MAX_FRAME_SIZE);
+		}
+
+		void releaseBuffer(ByteBuffer buffer) {
+			if (bufferPool.size() < MAX_POOLED_BUFFERS_PER_LOOP) {
+				buffer.clear();
+				bufferPool.push(buffer);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					selector.select(SELECT_TIMEOUT_MS);
+					runTasks();
+
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						if (!key.isValid()) {
+							continue;
+						}
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isReadable()) {
+								connection.onReadable();
+							} else if (key.isWritable()) {
+								connection.onWritable();
+							}
+						} catch (IOException e) {
+							log.error("Error handling connection from {}: {}", connection.clientAddress,
+									e.getMessage());
+							connection.fail("IOException: " + e.getMessage());
+						}
+					}
+
+					closeIdleConnections();
+				}
+			} catch (IOException | ClosedSelectorException e) {
+				if (running) {
+					log.error("Selector loop {} terminated: {}", thread.getName(), e.getMessage(), e);
+				}
+			} finally {
+				closeAll();
+			}
+		}
+
+		private void runTasks() {
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				task.run();
+			}
+		}
+
+		/**
+		 * Scansione O(connessioni) di tutte le chiavi: eseguita al massimo ogni
+		 * timeout/4 (e non oltre 1 s), non a ogni risveglio del selector, così
+		 * con migliaia di connessioni il costo per evento resta costante. Una
+		 * connessione inattiva viene chiusa entro timeout + intervallo.
+		 */
+		private void closeIdleConnections() {
+			long now = System.nanoTime();
+			if (now - nextIdleCheckNanos < 0) {
+				return;
+			}
+			long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getTimeout());
+			nextIdleCheckNanos = now + Math.min(Math.max(timeoutNanos / 4, 1), IDLE_CHECK_MAX_INTERVAL_NANOS);
+			for (SelectionKey key : selector.keys()) {
+				Connection connection = (Connection) key.attachment();
+				if (connection != null && connection.isIdle(now, timeoutNanos)) {
+					log.error("Timeout reading from {}", connection.clientAddress);
+					connection.fail("Timeout: idle for more than " + properties.getTimeout() + "ms");
+				}
+			}
+		}
+
+		private void closeAll() {
+			for (SelectionKey key : selector.keys()) {
+				Connection connection = (Connection) key.attachment();
+				if (connection != null) {
+					connection.fail("Server shutdown");
+				}
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				log.warn("Error closing selector: {}", e.getMessage());
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Stato della singola connessione
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Macchina a stati di una connessione: lettura header → lettura body →
+	 * elaborazione nel decode pool → scrittura risposta → chiusura.
+	 */
+	private final class Connection {
+
+		private final SelectorLoop loop;
+		private final SocketChannel channel;
+		private final String clientAddress;
+		private final ProcessingContext context;
+
+		private SelectionKey key;
+		private ByteBuffer frame;
+		private ByteBuffer reply;
+		private TelemetryResponse response;
+		private boolean processing;
+		private boolean closed;
+		private long lastActivityNanos;
+
+		Connection(SelectorLoop loop, SocketChannel channel) throws IOException {
+			this.loop = loop;
+			this.channel = channel;
+			this.clientAddress = String.valueOf(channel.getRemoteAddress());
+			this.context = new ProcessingContext(clientAddress);
+			this.frame = loop.acquireBuffer();
+			this.frame.limit(TcpConnectionHandlerReadExactly.HEADER_SIZE);
+			this.lastActivityNanos = System.nanoTime();
+
+			log.info("New connection from: {}", clientAddress);
+			context.startRead();
+		}
+
+		void onReadable() throws IOException {
+			while (true) {
+				int read = channel.read(frame);
+				if (read == -1) {
+					fail("IOException: Stream chiuso dopo " + frame.position() + " di " + frame.limit()
+							+ " byte attesi");
+					return;
+				}
+				if (read > 0) {
+					lastActivityNanos = System.nanoTime();
+				}
+				if (frame.hasRemaining()) {
+					return; // attende il prossimo segmento TCP
+				}
+
+				if (frame.limit() == TcpConnectionHandlerReadExactly.HEADER_SIZE) {
+					int declaredLength = TcpConnectionHandlerReadExactly.declaredBodyLength(frame.get(15),
+							frame.get(16));
+					context.setDeclaredBodyLength(declaredLength);
+					log.debug("Header letto — payload dichiarato: {} byte", declaredLength);
+					if (declaredLength > 0) {
+						frame.limit(TcpConnectionHandlerReadExactly.HEADER_SIZE + declaredLength);
+						continue;
+					}
+				}
+
+				onFrameComplete();
+				return;
+			}
+		}
+
+		private void onFrameComplete() {
+			context.endRead();
+			byte[] data = Arrays.copyOf(frame.array(), frame.limit());
+			loop.releaseBuffer(frame);
+			frame = null;
+
+			processing = true;
+			key.interestOps(0);
+			try {
+				decodePool.execute(() -> process(data));
+			} catch (RejectedExecutionException e) {
+				log.warn("Decode pool saturated, dropping connection from {}", clientAddress);
+				fail("Decode pool saturated");
+			}
+		}
+
+		/**
+		 * Eseguito nel decode pool: decodifica, accodamento, lookup comandi.
+		 */
+		private void process(byte[] data) {
+			try {
+				TelemetryResponse resp = connectionHandler.processFrame(data, clientAddress, context);
+				byte[] replyBytes = connectionHandler.buildReply(resp);
+				loop.execute(() -> startWrite(resp, replyBytes));
+			} catch (Exception e) {
+				log.error("Unexpected error handling connection from {}: {}", clientAddress, e.getMessage());
+				loop.execute(() -> fail(e.getClass().getSimpleName() + ": " + e.getMessage()));
+			}
+		}
+
+		private void startWrite(TelemetryResponse resp, byte[] replyBytes) {
+			if (closed) {
+				return;
+			}
+			response = resp;
+			processing = false;
+			lastActivityNanos = System.nanoTime();
+			reply = ByteBuffer.wrap(replyBytes);
+			context.startSend();
+			try {
+				onWritable();
+			} catch (IOException e) {
+				log.error("Error handling connection from {}: {}", clientAddress, e.getMessage());
+				fail("IOException: " + e.getMessage());
+			}
+		}
+
+		void onWritable() throws IOException {
+			channel.write(reply);
+			if (reply.hasRemaining()) {
+				lastActivityNanos = System.nanoTime();
+				key.interestOps(SelectionKey.OP_WRITE);
+				return;
+			}
+
+			context.endSend();
+			context.setResponseSizeBytes(reply.limit());
+			log.debug("Sent response: {} bytes", reply.limit());
+
+			context.complete(true, null);
+			log.debug("Successfully handled connection from {}", clientAddress);
+			close();
+		}
+
+		boolean isIdle(long nowNanos, long timeoutNanos) {
+			return !processing && !closed && nowNanos - lastActivityNanos > timeoutNanos;
+		}
+
+		void fail(String errorMessage) {
+			if (closed) {
+				return;
+			}
+			context.complete(false, errorMessage);
+			close();
+		}
+
+		private void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			if (key != null) {
+				key.cancel();
+			}
+			try {
+				channel.close();
+				log.debug("Connection closed: {}", clientAddress);
+			} catch (IOException e) {
+				log.warn("Error closing socket for {}: {}", clientAddress, e.getMessage());
+			}
+			if (frame != null) {
+				loop.releaseBuffer(frame);
+				frame = null;
+			}
+			connectionLimiter.release();
+
+			TelemetryResponse resp = response;
+			try {
+				completionExecutor.execute(() -> connectionHandler.completeConnection(resp, context));
+			} catch (RejectedExecutionException e) {
+				log.warn("Completion executor stopped, skipping post-processing for {}", clientAddress);
+			}
+		}
+	}
+}
@@ -11,6 +11,8 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import com.aton.proj.oneGasMeteor.config.tcpServer.TcpServerProperties;
@@ -18,7 +20,12 @@ import com.aton.proj.oneGasMeteor.handler.TcpConnectionHandlerReadExactly;
 
 import jakarta.annotation.PreDestroy;
 
+/**
+ * Motore TCP bloccante: un virtual thread per connessione. Attivo di default
+ * (tcp.server.engine=blocking); l'alternativa a selector è {@link NioTcpServer}.
+ */
 @Component
+@ConditionalOnProperty(name = "tcp.server.engine", havingValue = "blocking", matchIfMissing = true)
 public class TcpSocketServer implements CommandLineRunner {
 
 	private static final Logger log = LoggerFactory.getLogger(TcpSocketServer.class);
@@ -27,13 +34,15 @@ public class TcpSocketServer implements CommandLineRunner {
 	private final TcpConnectionHandlerReadExactly connectionHandlerReadExactly;
 	private final ExecutorService executorService;
 	private final Semaphore connectionLimiter;
+	private final AdmissionControl admissionControl;
 
 	private ServerSocket serverSocket;
 	private volatile boolean running = false;
 
 	public TcpSocketServer(TcpServerProperties properties,
-			TcpConnectionHandlerReadExactly connectionHandlerReadExactly) {
+			TcpConnectionHandlerReadExactly connectionHandlerReadExactly, @Nullable AdmissionControl admissionControl) {
 		this.properties = properties;
+		this.admissionControl = admissionControl;
 		this.connectionHandlerReadExactly = connectionHandlerReadExactly;
 		this.executorService = Executors.newVirtualThreadPerTaskExecutor(); // Java 21 Virtual Threads
 		this.connectionLimiter = new Semaphore(properties.getMaxConnections());
@@ -53,6 +62,10 @@ public class TcpSocketServer implements CommandLineRunner {
 			log.info("Timeout configured: {}ms", properties.getTimeout());
 			log.info("Max concurrent connections: {}", properties.getMaxConnections());
 			log.info("ServerSocket backlog: {}", properties.getBacklog());
+			if (properties.isSessionEnabled()) {
+				log.info("Multi-frame sessions enabled: idle timeout {}ms, max {} frames",
+						properties.getSessionIdleTimeout(), properties.getSessionMaxFrames());
+			}
 
 			acceptConnections();
 
@@ -65,6 +78,14 @@ public class TcpSocketServer implements CommandLineRunner {
 	private void acceptConnections() {
 		while (running) {
 			try {
+				// Backpressure: rallenta l'accept se i writer sono in ritardo
+				if (admissionControl != null) {
+					long delay = admissionControl.acceptDelayMs();
+					if (delay > 0) {
+						Thread.sleep(delay);
+					}
+				}
+
 				// Acquisisce un permesso dal semaforo (blocca se raggiunto il limite)
 				connectionLimiter.acquire();
 
@@ -76,10 +97,23 @@ public class TcpSocketServer implements CommandLineRunner {
 
 				Socket clientSocket = serverSocket.accept();
 
+				if (admissionControl != null && !admissionControl
+						.admit(properties.getMaxConnections() - connectionLimiter.availablePermits())) {
+					// Chiusura prima di leggere: il dispositivo riproverà più tardi
+					log.debug("Connection shed by admission control: {}", clientSocket.getRemoteSocketAddress());
+					closeQuietly(clientSocket);
+					connectionLimiter.release();
+					continue;
+				}
+
 				// Gestisce ogni connessione in un virtual thread separato
 				executorService.submit(() -> {
 					try {
-						connectionHandlerReadExactly.handleConnection(clientSocket, properties.getTimeout());
+						if (properties.isSessionEnabled()) {
+							connectionHandlerReadExactly.handleSession(clientSocket, properties);
+						} else {
+							connectionHandlerReadExactly.handleConnection(clientSocket, properties.getTimeout());
+						}
 					} finally {
 						connectionLimiter.release();
 					}
@@ -100,6 +134,20 @@ public class TcpSocketServer implements CommandLineRunner {
 		}
 	}
 
+	private void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException ignored) {
+		}
+	}
+
+	/**
+	 * Porta effettivamente in ascolto (utile con tcp.server.port=0)
+	 */
+	public int getLocalPort() {
+		return serverSocket != null ? serverSocket.getLocalPort() : -1;
+	}
+
 	@PreDestroy
 	public void shutdown() {
 		log.info("Shutting down TCP server...");
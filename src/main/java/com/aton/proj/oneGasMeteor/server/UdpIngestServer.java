@@ -0,0 +1,323 @@
+package com.aton.proj.oneGasMeteor.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.config.udpServer.UdpServerProperties;
+import com.aton.proj.oneGasMeteor.handler.TcpConnectionHandlerReadExactly;
+import com.aton.proj.oneGasMeteor.model.ProcessingContext;
+import com.aton.proj.oneGasMeteor.model.TelemetryResponse;
+import com.aton.proj.oneGasMeteor.server.DatagramDeduplicator.Duplicate;
+import com.aton.proj.oneGasMeteor.server.DatagramDeduplicator.First;
+import com.aton.proj.oneGasMeteor.server.DatagramDeduplicator.InProgress;
+import com.aton.proj.oneGasMeteor.server.DatagramDeduplicator.Outcome;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Listener UDP per i device che inviano un frame TEK per datagramma
+ * (udp.server.enabled=true), attivo accanto al motore TCP.
+ * <p>
+ * Un solo thread di ricezione: a ogni risveglio del selector legge fino a
+ * batch-size datagrammi in buffer diretti presi da un pool fisso. Il pool
+ * limita i datagrammi in elaborazione: a pool vuoto la ricezione si ferma e il
+ * burst resta nel buffer del kernel (receive-buffer-size). Ogni datagramma
+ * passa dalla stessa pipeline del TCP ({@link TcpConnectionHandlerReadExactly})
+ * su un virtual thread e la risposta con i comandi torna al mittente come
+ * datagramma (vuoto se non ci sono comandi: vale come conferma di ricezione).
+ * <p>
+ * Le ritrasmissioni entro dedup-window-ms ricevono la risposta già calcolata
+ * senza essere rielaborate, vedi {@link DatagramDeduplicator}.
+ */
+@Component
+@ConditionalOnProperty(name = "udp.server.enabled", havingValue = "true")
+public class UdpIngestServer implements CommandLineRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(UdpIngestServer.class);
+
+	private static final long SELECT_TIMEOUT_MS = 500;
+
+	private final UdpServerProperties properties;
+	private final TcpConnectionHandlerReadExactly connectionHandler;
+	private final DatagramDeduplicator deduplicator;
+	private final BlockingQueue<ByteBuffer> bufferPool;
+	private final ExecutorService workers;
+
+	private final LongAdder received = new LongAdder();
+	private final LongAdder processed = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder malformed = new LongAdder();
+
+	private DatagramChannel channel;
+	private Selector selector;
+	private Thread receiverThread;
+	private volatile boolean running = false;
+
+	public UdpIngestServer(UdpServerProperties properties, TcpConnectionHandlerReadExactly connectionHandler) {
+		this.properties = properties;
+		this.connectionHandler = connectionHandler;
+		this.deduplicator = new DatagramDeduplicator(properties.getDedupWindowMs(),
+				properties.getDedupMaxEntries());
+
+		int poolSize = Math.max(1, properties.getBufferPoolSize());
+		this.bufferPool = new ArrayBlockingQueue<>(poolSize);
+		for (int i = 0; i < poolSize; i++) {
+			bufferPool.add(ByteBuffer.allocateDirect(TcpConnectionHandlerReadExactly.MAX_FRAME_SIZE));
+		}
+		this.workers = Executors.newVirtualThreadPerTaskExecutor();
+	}
+
+	@Override
+	public void run(String... args) {
+		startServer();
+	}
+
+	public void startServer() {
+		try {
+			channel = DatagramChannel.open();
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, properties.getReceiveBufferSize());
+			channel.bind(new InetSocketAddress(properties.getPort()));
+			channel.configureBlocking(false);
+			selector = Selector.open();
+			channel.register(selector, SelectionKey.OP_READ);
+			running = true;
+
+			receiverThread = Thread.ofPlatform().name("udp-receiver").start(this::receiveLoop);
+
+			log.info("UDP ingest server started on port {}", getLocalPort());
+			log.info("Receive buffer: {} bytes, buffer pool: {}, batch size: {}",
+					channel.getOption(StandardSocketOptions.SO_RCVBUF), bufferPool.size(), properties.getBatchSize());
+			log.info("Dedup window: {}ms (max {} frames)", properties.getDedupWindowMs(),
+					properties.getDedupMaxEntries());
+
+		} catch (IOException e) {
+			log.error("Failed to start UDP ingest server: {}", e.getMessage(), e);
+			throw new RuntimeException("Cannot start UDP server", e);
+		}
+	}
+
+	/**
+	 * Porta effettivamente in ascolto (utile con udp.server.port=0)
+	 */
+	public int getLocalPort() {
+		return channel != null ? channel.socket().getLocalPort() : -1;
+	}
+
+	public long getReceived() {
+		return received.sum();
+	}
+
+	public long getProcessed() {
+		return processed.sum();
+	}
+
+	public long getDuplicates() {
+		return duplicates.sum();
+	}
+
+	public long getMalformed() {
+		return malformed.sum();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		log.info("Shutting down UDP ingest server...");
+		running = false;
+
+		try {
+			if (selector != null) {
+				selector.wakeup();
+			}
+			// Il canale resta aperto finché i worker non hanno inviato le risposte
+			if (receiverThread != null) {
+				receiverThread.join(TimeUnit.SECONDS.toMillis(5));
+				receiverThread.interrupt();
+			}
+
+			workers.shutdown();
+			if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+				workers.shutdownNow();
+			}
+			if (channel != null) {
+				channel.close();
+			}
+			if (selector != null) {
+				selector.close();
+			}
+
+			log.info("UDP ingest server stopped — received: {}, processed: {}, duplicates: {}, malformed: {}",
+					getReceived(), getProcessed(), getDuplicates(), getMalformed());
+
+		} catch (IOException | InterruptedException e) {
+			log.error("Error during shutdown: {}", e.getMessage());
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Ricezione
+	// -------------------------------------------------------------------------
+
+	private void receiveLoop() {
+		int batchSize = Math.max(1, properties.getBatchSize());
+		try {
+			while (running) {
+				selector.select(SELECT_TIMEOUT_MS);
+				selector.selectedKeys().clear();
+
+				// Svuota il socket fino a batchSize datagrammi per risveglio
+				for (int i = 0; i < batchSize && running; i++) {
+					ByteBuffer buffer = bufferPool.take();
+					SocketAddress source = channel.receive(buffer);
+					if (source == null) {
+						bufferPool.add(buffer);
+						break;
+					}
+					received.increment();
+					buffer.flip();
+					dispatch(buffer, source);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedChannelException | ClosedSelectorException e) {
+			// shutdown
+		} catch (IOException e) {
+			if (running) {
+				log.error("UDP receive loop terminated: {}", e.getMessage(), e);
+			}
+		}
+	}
+
+	private void dispatch(ByteBuffer buffer, SocketAddress source) {
+		try {
+			workers.execute(() -> handle(buffer, source));
+		} catch (RejectedExecutionException e) {
+			releaseBuffer(buffer);
+		}
+	}
+
+	private void releaseBuffer(ByteBuffer buffer) {
+		buffer.clear();
+		bufferPool.add(buffer);
+	}
+
+	// -------------------------------------------------------------------------
+	// Elaborazione (virtual thread)
+	// -------------------------------------------------------------------------
+
+	private void handle(ByteBuffer buffer, SocketAddress source) {
+		String clientAddress = String.valueOf(source);
+		ProcessingContext context = new ProcessingContext(clientAddress);
+
+		context.startRead();
+		byte[] data;
+		try {
+			data = extractFrame(buffer);
+		} finally {
+			releaseBuffer(buffer);
+		}
+		context.endRead();
+
+		if (data == null) {
+			malformed.increment();
+			log.warn("Malformed datagram from {}: shorter than its declared length", clientAddress);
+			return;
+		}
+
+		Outcome outcome = deduplicator.begin(data, System.currentTimeMillis());
+		switch (outcome) {
+		case Duplicate duplicate -> {
+			duplicates.increment();
+			log.debug("Retransmission from {}, resending cached reply ({} bytes)", clientAddress,
+					duplicate.reply().length);
+			try {
+				send(duplicate.reply(), source, clientAddress);
+			} catch (IOException e) {
+				log.error("Error resending reply to {}: {}", clientAddress, e.getMessage());
+			}
+		}
+		case InProgress inProgress -> {
+			duplicates.increment();
+			log.debug("Retransmission from {} while the first copy is still processing, dropped", clientAddress);
+		}
+		case First first -> process(data, first.key(), source, clientAddress, context);
+		}
+	}
+
+	private void process(byte[] data, DatagramDeduplicator.Key key, SocketAddress source, String clientAddress,
+			ProcessingContext context) {
+		TelemetryResponse response = null;
+		try {
+			context.setDeclaredBodyLength(data.length - TcpConnectionHandlerReadExactly.HEADER_SIZE);
+			TelemetryResponse resp = connectionHandler.processFrame(data, clientAddress, context);
+			byte[] replyBytes = connectionHandler.buildReply(resp);
+
+			context.startSend();
+			send(replyBytes, source, clientAddress);
+			context.endSend();
+			context.setResponseSizeBytes(replyBytes.length);
+
+			deduplicator.complete(key, replyBytes);
+			response = resp;
+			processed.increment();
+			context.complete(true, null);
+
+		} catch (Exception e) {
+			deduplicator.abort(key);
+			log.error("Unexpected error handling datagram from {}: {}", clientAddress, e.getMessage());
+			context.complete(false, e.getClass().getSimpleName() + ": " + e.getMessage());
+		} finally {
+			// Come per il TCP: comandi SENT e metriche dopo l'invio della risposta
+			connectionHandler.completeConnection(response, context);
+		}
+	}
+
+	private void send(byte[] reply, SocketAddress target, String clientAddress) throws IOException {
+		channel.send(ByteBuffer.wrap(reply), target);
+		log.debug("Sent datagram reply: {} bytes to {}", reply.length, clientAddress);
+	}
+
+	/**
+	 * Frame TEK contenuto nel datagramma: header + body di lunghezza dichiarata.
+	 * Byte in eccesso ignorati.
+	 *
+	 * @return null se il datagramma è più corto dell'header o del body dichiarato
+	 */
+	static byte[] extractFrame(ByteBuffer datagram) {
+		int length = datagram.remaining();
+		if (length < TcpConnectionHandlerReadExactly.HEADER_SIZE) {
+			return null;
+		}
+		int position = datagram.position();
+		int declared = TcpConnectionHandlerReadExactly.declaredBodyLength(datagram.get(position + 15),
+				datagram.get(position + 16));
+		int frameLength = TcpConnectionHandlerReadExactly.HEADER_SIZE + declared;
+		if (length < frameLength) {
+			return null;
+		}
+		byte[] frame = new byte[frameLength];
+		datagram.get(frame);
+		return frame;
+	}
+}
@@ -1,8 +1,11 @@
 package com.aton.proj.oneGasMeteor.service;
 
+import java.util.List;
+
 import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 
 /**
@@ -18,4 +21,24 @@ public interface BatchWriteService {
     void enqueue(DeviceStatisticsEntity entity);
 
     void enqueue(DeviceLocationEntity entity);
+
+    /**
+     * Accoda le letture di un messaggio 4/8/9 per la tabella measurements
+     */
+    void enqueueMeasurements(List<MeasurementEntity> measurements);
+
+    /**
+     * Accoda più telemetrie in una sola operazione (sessioni TCP multi-frame).
+     * Di default equivale a una enqueue per record.
+     */
+    default void enqueueAll(List<TelemetryEntity> entities) {
+        for (TelemetryEntity entity : entities) {
+            enqueue(entity);
+        }
+    }
+
+    /**
+     * Entity in attesa di scrittura nelle code in memoria (spool escluso)
+     */
+    int getQueuedCount();
 }
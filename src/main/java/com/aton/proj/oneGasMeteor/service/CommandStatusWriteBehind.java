@@ -0,0 +1,194 @@
+package com.aton.proj.oneGasMeteor.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.aton.proj.oneGasMeteor.entity.CommandEntity;
+import com.aton.proj.oneGasMeteor.repository.CommandRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind delle transizioni PENDING → SENT.
+ *
+ * I comandi inviati al device vengono accodati e scritti a ogni flush con un
+ * solo {@code UPDATE ... WHERE id IN (...) AND status = 'PENDING'}
+ * ({@link CommandRepository#markAllAsSent}) invece di findById + save per
+ * comando.
+ *
+ * Garanzie:
+ * <ul>
+ * <li>ogni id è accodato una volta sola e lo UPDATE condizionato su PENDING è
+ * idempotente: un flush ripetuto dopo un errore non riscrive sent_at né
+ * sovrascrive stati successivi (DELIVERED, FAILED)</li>
+ * <li>i comandi accodati, e quelli dell'ultimo flush, sono esclusi da
+ * {@link #withoutQueued(List)}: un device che si ricollega prima della
+ * scrittura non riceve di nuovo lo stesso comando e riceve i successivi
+ * nell'ordine di creazione</li>
+ * <li>in caso di errore gli id restano in coda, nello stesso ordine, fino al
+ * flush riuscito</li>
+ * </ul>
+ */
+@Service
+@ConditionalOnProperty(name = "commands.status.write-behind.enabled", havingValue = "true", matchIfMissing = true)
+public class CommandStatusWriteBehind {
+
+	private static final Logger log = LoggerFactory.getLogger(CommandStatusWriteBehind.class);
+
+	private final CommandRepository commandRepository;
+
+	@Value("${commands.status.max-batch:500}")
+	private int maxBatch = 500;
+
+	/** Id in attesa di UPDATE, in ordine di invio (guardato da this) */
+	private final Set<Long> queued = new LinkedHashSet<>();
+
+	/**
+	 * Id scritti dall'ultimo flush: una query partita prima del commit può
+	 * ancora vederli PENDING, quindi restano esclusi per un altro intervallo
+	 */
+	private Set<Long> lastFlushed = Set.of();
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private final AtomicLong updatedCommands = new AtomicLong();
+	private final AtomicLong skippedCommands = new AtomicLong();
+	private final AtomicLong updateStatements = new AtomicLong();
+	private final AtomicLong failedFlushes = new AtomicLong();
+
+	public CommandStatusWriteBehind(CommandRepository commandRepository) {
+		this.commandRepository = commandRepository;
+		log.info("CommandStatusWriteBehind initialized");
+	}
+
+	/**
+	 * Accoda i comandi inviati. Gli id già in coda vengono ignorati.
+	 */
+	public void enqueueSent(Collection<Long> commandIds) {
+		synchronized (this) {
+			for (Long id : commandIds) {
+				if (id != null) {
+					queued.add(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true se il comando è stato inviato ma lo stato SENT non è ancora
+	 *         sicuramente visibile sul database
+	 */
+	public synchronized boolean isQueued(Long commandId) {
+		return queued.contains(commandId) || lastFlushed.contains(commandId);
+	}
+
+	/**
+	 * Toglie dai comandi PENDING letti dal database quelli già inviati e in
+	 * attesa di UPDATE, mantenendo l'ordine degli altri.
+	 */
+	public List<CommandEntity> withoutQueued(List<CommandEntity> pending) {
+		if (pending.isEmpty()) {
+			return pending;
+		}
+		synchronized (this) {
+			if (queued.isEmpty() && lastFlushed.isEmpty()) {
+				return pending;
+			}
+			List<CommandEntity> result = new ArrayList<>(pending.size());
+			for (CommandEntity command : pending) {
+				if (!queued.contains(command.getId()) && !lastFlushed.contains(command.getId())) {
+					result.add(command);
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Scrive la coda a blocchi di maxBatch id, in ordine. Al primo errore si
+	 * ferma: gli id restano in coda per il flush successivo.
+	 */
+	@Scheduled(fixedDelayString = "${commands.status.flush-interval-ms:200}")
+	public void flush() {
+		flushLock.lock();
+		try {
+			Set<Long> flushed = new LinkedHashSet<>();
+			List<Long> chunk;
+			while (!(chunk = nextChunk()).isEmpty()) {
+				try {
+					int updated = commandRepository.markAllAsSent(chunk, LocalDateTime.now());
+					updateStatements.incrementAndGet();
+					updatedCommands.addAndGet(updated);
+					skippedCommands.addAndGet(chunk.size() - updated);
+					flushed.addAll(chunk);
+					synchronized (this) {
+						chunk.forEach(queued::remove);
+					}
+					log.debug("Command status flush: {} of {} commands marked SENT", updated, chunk.size());
+				} catch (Exception e) {
+					failedFlushes.incrementAndGet();
+					log.error("Command status flush failed ({} commands kept in queue): {}", chunk.size(),
+							e.getMessage(), e);
+					break;
+				}
+			}
+			synchronized (this) {
+				lastFlushed = flushed;
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		flush();
+		int left = getQueuedCount();
+		if (left > 0) {
+			log.warn("CommandStatusWriteBehind: {} commands not marked SENT at shutdown", left);
+		}
+	}
+
+	public synchronized int getQueuedCount() {
+		return queued.size();
+	}
+
+	public long getUpdatedCommands() {
+		return updatedCommands.get();
+	}
+
+	public long getSkippedCommands() {
+		return skippedCommands.get();
+	}
+
+	public long getUpdateStatements() {
+		return updateStatements.get();
+	}
+
+	public long getFailedFlushes() {
+		return failedFlushes.get();
+	}
+
+	private synchronized List<Long> nextChunk() {
+		List<Long> chunk = new ArrayList<>(Math.min(maxBatch, queued.size()));
+		Iterator<Long> it = queued.iterator();
+		while (it.hasNext() && chunk.size() < maxBatch) {
+			chunk.add(it.next());
+		}
+		return chunk;
+	}
+}
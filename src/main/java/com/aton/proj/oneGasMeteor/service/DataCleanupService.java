@@ -6,6 +6,8 @@ import com.aton.proj.oneGasMeteor.repository.DeviceSettingsRepository;
 import com.aton.proj.oneGasMeteor.repository.DeviceStatisticsRepository;
 import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository;
 import com.aton.proj.oneGasMeteor.repository.TelemetryRepository;
+import com.aton.proj.oneGasMeteor.service.retention.RetentionExecutor;
+import com.aton.proj.oneGasMeteor.service.retention.RetentionResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,9 +17,27 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service per il cleanup automatico dei dati vecchi
+ *
+ * Sui database relazionali le tabelle con received_at passano da
+ * {@link RetentionExecutor} (drop_chunks su TimescaleDB, DELETE a blocchi
+ * altrove); su InfluxDB dal deleteOlderThan dei repository. La tabella
+ * measurements segue la retention della telemetria ma solo sui database
+ * relazionali (su InfluxDB vale la retention del bucket).
+ *
+ * Il cleanup schedulato gira su un thread dedicato: con le DELETE a blocchi e
+ * le pause tra i blocchi può durare ore e non deve occupare il pool dei
+ * {@code @Scheduled} (flush, polling, controllo di ammissione).
  */
 @Service
 @ConditionalOnProperty(name = "cleanup.enabled", havingValue = "true", matchIfMissing = false)
@@ -31,6 +51,13 @@ public class DataCleanupService {
 	private final DeviceStatisticsRepository deviceStatisticsRepository;
 	private final DeviceLocationRepository deviceLocationRepository;
 	private final ProcessingMetricsRepository processingMetricsRepository;
+	private final RetentionExecutor retentionExecutor;
+
+	private final ExecutorService cleanupExecutor = Executors
+			.newSingleThreadExecutor(Thread.ofPlatform().name("data-cleanup").factory());
+
+	/** True dall'avvio alla fine di un cleanup schedulato */
+	private final AtomicBoolean cleanupRunning = new AtomicBoolean();
 
 	@Value("${cleanup.telemetry.retention.days:30}")
 	private int telemetryRetentionDays;
@@ -41,17 +68,22 @@ public class DataCleanupService {
 	@Value("${cleanup.metrics.retention.days:90}")
 	private int metricsRetentionDays;
 
+	@Value("${telemetry.measurements.enabled:false}")
+	private boolean measurementsEnabled;
+
 	public DataCleanupService(TelemetryRepository telemetryRepository, CommandRepository commandRepository,
 			DeviceSettingsRepository deviceSettingsRepository,
 			DeviceStatisticsRepository deviceStatisticsRepository,
 			DeviceLocationRepository deviceLocationRepository,
-			@Nullable ProcessingMetricsRepository processingMetricsRepository) {
+			@Nullable ProcessingMetricsRepository processingMetricsRepository,
+			@Nullable RetentionExecutor retentionExecutor) {
 		this.telemetryRepository = telemetryRepository;
 		this.commandRepository = commandRepository;
 		this.deviceSettingsRepository = deviceSettingsRepository;
 		this.deviceStatisticsRepository = deviceStatisticsRepository;
 		this.deviceLocationRepository = deviceLocationRepository;
 		this.processingMetricsRepository = processingMetricsRepository;
+		this.retentionExecutor = retentionExecutor;
 
 		log.info(" DataCleanupService initialized");
 		log.info("   Telemetry retention: {} days", telemetryRetentionDays);
@@ -65,25 +97,39 @@ public class DataCleanupService {
 	 */
 	@Scheduled(cron = "${cleanup.cron:0 0 2 * * *}")
 	public void scheduledCleanup() {
+		if (!cleanupRunning.compareAndSet(false, true)) {
+			log.warn(" Previous data cleanup still running, skipping this run");
+			return;
+		}
+		cleanupExecutor.execute(() -> {
+			try {
+				runScheduledCleanup();
+			} finally {
+				cleanupRunning.set(false);
+			}
+		});
+	}
+
+	/**
+	 * Interrompe un cleanup in corso: RetentionExecutor si ferma tra due blocchi
+	 */
+	@PreDestroy
+	void shutdown() {
+		cleanupExecutor.shutdownNow();
+	}
+
+	private void runScheduledCleanup() {
 		log.info(" Starting scheduled data cleanup...");
 
 		try {
 			long startTime = System.currentTimeMillis();
 
-			// Cleanup telemetry
-			cleanupOldTelemetry();
-
-			// Cleanup commands
-			cleanupOldCommands();
-
-			// Cleanup device settings, statistics and locations
-			cleanupOldDeviceData();
-
-			// Cleanup processing metrics
-			cleanupOldProcessingMetrics();
+			CleanupReport report = new CleanupReport();
+			runCleanup(report);
 
 			long duration = System.currentTimeMillis() - startTime;
-			log.info(" Cleanup completed successfully in {} ms", duration);
+			log.info(" Cleanup completed successfully in {} ms ({} rows, {} chunks removed)", duration,
+					report.getRowsDeleted(), report.getChunksDropped());
 
 		} catch (Exception e) {
 			log.error(" Error during scheduled cleanup", e);
@@ -93,17 +139,22 @@ public class DataCleanupService {
 	/**
 	 * Elimina telemetry più vecchia di N giorni
 	 */
-	public void cleanupOldTelemetry() {
+	public List<RetentionResult> cleanupOldTelemetry() {
+		List<RetentionResult> results = new ArrayList<>();
 		try {
 			LocalDateTime threshold = LocalDateTime.now().minusDays(telemetryRetentionDays);
 
 			log.info("  Cleaning telemetry older than {} (retention: {} days)", threshold, telemetryRetentionDays);
 
-			telemetryRepository.deleteOlderThan(threshold);
+			results.add(purge("telemetry_data", threshold, telemetryRepository::deleteOlderThan));
+			if (measurementsEnabled && retentionExecutor != null) {
+				results.add(retentionExecutor.purge("measurements", "measured_at", threshold));
+			}
 
 		} catch (Exception e) {
 			log.error(" Error cleaning old telemetry", e);
 		}
+		return results;
 	}
 
 	/**
@@ -123,39 +174,64 @@ public class DataCleanupService {
 	/**
 	 * Elimina device settings, statistics e locations più vecchi di N giorni
 	 */
-	public void cleanupOldDeviceData() {
+	public List<RetentionResult> cleanupOldDeviceData() {
+		List<RetentionResult> results = new ArrayList<>();
 		try {
 			LocalDateTime threshold = LocalDateTime.now().minusDays(telemetryRetentionDays);
 
 			log.info(" Cleaning device data older than {} (retention: {} days)", threshold, telemetryRetentionDays);
 
-			deviceSettingsRepository.deleteOlderThan(threshold);
-			deviceStatisticsRepository.deleteOlderThan(threshold);
-			deviceLocationRepository.deleteOlderThan(threshold);
+			results.add(purge("device_settings", threshold, deviceSettingsRepository::deleteOlderThan));
+			results.add(purge("device_statistics", threshold, deviceStatisticsRepository::deleteOlderThan));
+			results.add(purge("device_locations", threshold, deviceLocationRepository::deleteOlderThan));
 
 		} catch (Exception e) {
 			log.error(" Error cleaning old device data", e);
 		}
+		return results;
 	}
 
 	/**
 	 * Elimina metriche di performance piu' vecchie di N giorni
 	 */
-	public void cleanupOldProcessingMetrics() {
+	public List<RetentionResult> cleanupOldProcessingMetrics() {
+		List<RetentionResult> results = new ArrayList<>();
 		if (processingMetricsRepository == null) {
 			log.debug("Processing metrics repository not available, skipping cleanup");
-			return;
+			return results;
 		}
 		try {
 			LocalDateTime threshold = LocalDateTime.now().minusDays(metricsRetentionDays);
 
 			log.info(" Cleaning processing metrics older than {} (retention: {} days)", threshold, metricsRetentionDays);
 
-			processingMetricsRepository.deleteOlderThan(threshold);
+			results.add(purge("processing_metrics", threshold, processingMetricsRepository::deleteOlderThan));
 
 		} catch (Exception e) {
 			log.error(" Error cleaning old processing metrics", e);
 		}
+		return results;
+	}
+
+	/**
+	 * Retention di una tabella: RetentionExecutor sui database relazionali,
+	 * altrimenti deleteOlderThan del repository (righe non note)
+	 */
+	private RetentionResult purge(String table, LocalDateTime threshold, Consumer<LocalDateTime> repositoryDelete) {
+		if (retentionExecutor != null) {
+			return retentionExecutor.purge(table, threshold);
+		}
+		long start = System.currentTimeMillis();
+		repositoryDelete.accept(threshold);
+		return new RetentionResult(table, RetentionResult.Strategy.REPOSITORY, -1, 0, 0,
+				System.currentTimeMillis() - start);
+	}
+
+	private void runCleanup(CleanupReport report) {
+		report.getTables().addAll(cleanupOldTelemetry());
+		cleanupOldCommands();
+		report.getTables().addAll(cleanupOldDeviceData());
+		report.getTables().addAll(cleanupOldProcessingMetrics());
 	}
 
 	/**
@@ -168,10 +244,7 @@ public class DataCleanupService {
 		report.setStartTime(LocalDateTime.now());
 
 		try {
-			cleanupOldTelemetry();
-			cleanupOldCommands();
-			cleanupOldDeviceData();
-			cleanupOldProcessingMetrics();
+			runCleanup(report);
 
 			report.setSuccess(true);
 			report.setEndTime(LocalDateTime.now());
@@ -193,6 +266,7 @@ public class DataCleanupService {
 		private LocalDateTime endTime;
 		private boolean success;
 		private String errorMessage;
+		private final List<RetentionResult> tables = new ArrayList<>();
 
 		public LocalDateTime getStartTime() {
 			return startTime;
@@ -226,6 +300,25 @@ public class DataCleanupService {
 			this.errorMessage = errorMessage;
 		}
 
+		/**
+		 * Esito per tabella: strategia, righe e chunk eliminati
+		 */
+		public List<RetentionResult> getTables() {
+			return tables;
+		}
+
+		/**
+		 * Righe eliminate in totale (stime per drop_chunks, esclusi i repository
+		 * che non le riportano)
+		 */
+		public long getRowsDeleted() {
+			return tables.stream().mapToLong(RetentionResult::rowsDeleted).filter(rows -> rows > 0).sum();
+		}
+
+		public int getChunksDropped() {
+			return tables.stream().mapToInt(RetentionResult::chunksDropped).sum();
+		}
+
 		public long getDurationMs() {
 			if (startTime != null && endTime != null) {
 				return java.time.Duration.between(startTime, endTime).toMillis();
@@ -0,0 +1,57 @@
+package com.aton.proj.oneGasMeteor.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aton.proj.oneGasMeteor.decoder.TekFrameView;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+
+/**
+ * Righe della tabella measurements da un messaggio 4/8/9: una per slot non
+ * vuoto, come la lista di {@link DecodedMessage#getMeasurementData()}.
+ */
+final class MeasurementRows {
+
+	private MeasurementRows() {
+	}
+
+	/**
+	 * Dalla vista sui byte (telemetry.decoder.mode=view): valori e timestamp
+	 * letti direttamente dagli slot
+	 */
+	static List<MeasurementEntity> fromView(String deviceId, TekFrameView view) {
+		List<MeasurementEntity> rows = new ArrayList<>(view.measurementSlots());
+		for (int slot = 0; slot < view.measurementSlots(); slot++) {
+			if (view.isVoid(slot)) {
+				continue;
+			}
+			rows.add(new MeasurementEntity(deviceId, utc(view.timestampMillis(slot)), view.distanceCm(slot),
+					view.temperatureC(slot), view.sonicRssi(slot), view.sonicSrc(slot)));
+		}
+		return rows;
+	}
+
+	/**
+	 * Dal POJO del decoder (il timestamp è una stringa ISO-8601 in UTC)
+	 */
+	static List<MeasurementEntity> fromDecoded(String deviceId, DecodedMessage decoded) {
+		List<DecodedMessage.MeasurementData> data = decoded.getMeasurementData();
+		if (data == null) {
+			return List.of();
+		}
+		List<MeasurementEntity> rows = new ArrayList<>(data.size());
+		for (DecodedMessage.MeasurementData m : data) {
+			rows.add(new MeasurementEntity(deviceId, utc(Instant.parse(m.getTimestamp()).toEpochMilli()),
+					m.getDistanceCm(), m.getTemperatureC(), m.getSonicRssi(), m.getSonicSrc()));
+		}
+		return rows;
+	}
+
+	private static LocalDateTime utc(long epochMillis) {
+		return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+	}
+}
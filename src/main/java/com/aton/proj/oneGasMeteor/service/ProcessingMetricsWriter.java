@@ -0,0 +1,164 @@
+package com.aton.proj.oneGasMeteor.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
+import com.aton.proj.oneGasMeteor.model.ProcessingContext;
+import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Scrittura asincrona e a blocchi delle metriche di elaborazione.
+ *
+ * Le connessioni accodano le metriche senza toccare il database; un flush
+ * periodico (metrics.batch.interval-ms) le scrive con
+ * {@link ProcessingMetricsRepository#saveAll(List)} a blocchi di
+ * metrics.batch.size.
+ *
+ * Campionamento: con metrics.sampling.success-one-in=N viene salvata una
+ * sessione riuscita ogni N, le fallite sempre. Le metriche sono best-effort:
+ * oltre metrics.batch.max-queue e in caso di errore di scrittura vengono
+ * scartate (conteggiate in {@link #getDropped()}).
+ */
+@Service
+@ConditionalOnProperty(name = "metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class ProcessingMetricsWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(ProcessingMetricsWriter.class);
+
+	private final ProcessingMetricsRepository metricsRepository;
+
+	@Value("${metrics.batch.size:200}")
+	private int batchSize = 200;
+
+	@Value("${metrics.batch.max-queue:20000}")
+	private int maxQueue = 20000;
+
+	@Value("${metrics.sampling.success-one-in:1}")
+	private int successOneIn = 1;
+
+	private final ConcurrentLinkedQueue<ProcessingMetricsEntity> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong successSeen = new AtomicLong();
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private final AtomicLong persisted = new AtomicLong();
+	private final AtomicLong sampledOut = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	public ProcessingMetricsWriter(@Nullable ProcessingMetricsRepository metricsRepository) {
+		this.metricsRepository = metricsRepository;
+		log.info("ProcessingMetricsWriter initialized (repository {})",
+				metricsRepository != null ? metricsRepository.getClass().getSimpleName() : "none");
+	}
+
+	/**
+	 * Accoda le metriche di una sessione conclusa (entity creata solo se la
+	 * sessione viene campionata).
+	 */
+	public void record(ProcessingContext context) {
+		if (metricsRepository == null) {
+			return;
+		}
+		if (context.isSuccess() && !sampleSuccess()) {
+			sampledOut.incrementAndGet();
+			return;
+		}
+		enqueue(context.toEntity());
+	}
+
+	/**
+	 * Accoda un'entity già costruita, con lo stesso campionamento di
+	 * {@link #record(ProcessingContext)}.
+	 */
+	public void record(ProcessingMetricsEntity entity) {
+		if (metricsRepository == null) {
+			return;
+		}
+		if (Boolean.TRUE.equals(entity.getSuccess()) && !sampleSuccess()) {
+			sampledOut.incrementAndGet();
+			return;
+		}
+		enqueue(entity);
+	}
+
+	@Scheduled(fixedDelayString = "${metrics.batch.interval-ms:5000}")
+	public void flush() {
+		if (metricsRepository == null || queued.get() == 0 || !flushLock.tryLock()) {
+			return;
+		}
+		try {
+			List<ProcessingMetricsEntity> batch;
+			while (!(batch = drain()).isEmpty()) {
+				try {
+					metricsRepository.saveAll(batch);
+					persisted.addAndGet(batch.size());
+				} catch (Exception e) {
+					dropped.addAndGet(batch.size());
+					log.warn("Failed to save {} processing metrics, dropped: {}", batch.size(), e.getMessage());
+					break;
+				}
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		flush();
+	}
+
+	public int getQueuedCount() {
+		return queued.get();
+	}
+
+	public long getPersisted() {
+		return persisted.get();
+	}
+
+	public long getSampledOut() {
+		return sampledOut.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	private boolean sampleSuccess() {
+		return successOneIn <= 1 || successSeen.getAndIncrement() % successOneIn == 0;
+	}
+
+	private void enqueue(ProcessingMetricsEntity entity) {
+		if (queued.incrementAndGet() > maxQueue) {
+			queued.decrementAndGet();
+			dropped.incrementAndGet();
+			return;
+		}
+		queue.add(entity);
+	}
+
+	private List<ProcessingMetricsEntity> drain() {
+		List<ProcessingMetricsEntity> batch = new ArrayList<>(batchSize);
+		ProcessingMetricsEntity entity;
+		while (batch.size() < batchSize && (entity = queue.poll()) != null) {
+			batch.add(entity);
+		}
+		queued.addAndGet(-batch.size());
+		return batch;
+	}
+}
@@ -5,25 +5,34 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.aton.proj.oneGasMeteor.decoder.DecoderFactory;
 import com.aton.proj.oneGasMeteor.decoder.DeviceDecoder;
 import com.aton.proj.oneGasMeteor.decoder.MessageTypeParser;
+import com.aton.proj.oneGasMeteor.decoder.TekFrameView;
 import com.aton.proj.oneGasMeteor.encoder.DeviceEncoder;
 import com.aton.proj.oneGasMeteor.encoder.EncoderFactory;
 import com.aton.proj.oneGasMeteor.entity.CommandEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.aton.proj.oneGasMeteor.exception.DecodingException;
 import com.aton.proj.oneGasMeteor.model.DecodedMessage;
 import com.aton.proj.oneGasMeteor.model.DeviceCommand;
+import com.aton.proj.oneGasMeteor.model.DeviceSession;
 import com.aton.proj.oneGasMeteor.model.MessageType16Response;
 import com.aton.proj.oneGasMeteor.model.MessageType17Response;
 import com.aton.proj.oneGasMeteor.model.MessageType6Response;
@@ -36,8 +45,12 @@ import com.aton.proj.oneGasMeteor.repository.DeviceLocationRepository;
 import com.aton.proj.oneGasMeteor.repository.DeviceSettingsRepository;
 import com.aton.proj.oneGasMeteor.repository.DeviceStatisticsRepository;
 import com.aton.proj.oneGasMeteor.repository.TelemetryRepository;
+import com.aton.proj.oneGasMeteor.service.dedup.TelemetryDeduplicator;
+import com.aton.proj.oneGasMeteor.service.state.DeviceLatestStateService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.annotation.PreDestroy;
+
 /**
  * Service per elaborare i messaggi di telemetria
  */
@@ -56,17 +69,41 @@ public class TelemetryService {
 	private final DeviceStatisticsRepository deviceStatisticsRepository;
 	private final DeviceLocationRepository deviceLocationRepository;
 	private final BatchWriteService batchWriteService;
+	private final CommandStatusWriteBehind commandStatusWriteBehind;
+	private final TelemetryDeduplicator telemetryDeduplicator;
+	private final DeviceLatestStateService deviceLatestState;
 
 	@Value("${command.max.per.response:10}")
 	private int maxCommandsPerResponse;
 
+	@Value("${telemetry.raw-message.enabled:true}")
+	private boolean rawMessageEnabled = true;
+
+	// pojo = DecodedMessage sempre; view = vista flyweight, POJO solo se serve
+	@Value("${telemetry.decoder.mode:pojo}")
+	private String decoderMode = "pojo";
+
+	// Letture 4/8/9 anche come righe della tabella measurements
+	@Value("${telemetry.measurements.enabled:false}")
+	private boolean measurementsEnabled;
+
+	// Lookup dei comandi avviato dall'IMEI dell'header in parallelo alla decodifica
+	@Value("${telemetry.command-lookup.parallel:true}")
+	private boolean parallelCommandLookup = true;
+
+	/** Un virtual thread per lookup; mai attivo oltre la processTelemetry che lo ha avviato */
+	private final ExecutorService commandLookupExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
 	public TelemetryService(DecoderFactory decoderFactory, EncoderFactory encoderFactory,
 			TelemetryRepository telemetryRepository, CommandRepository commandRepository,
 			MessageTypeParser messageTypeParser, ObjectMapper objectMapper,
 			DeviceSettingsRepository deviceSettingsRepository,
 			DeviceStatisticsRepository deviceStatisticsRepository,
 			DeviceLocationRepository deviceLocationRepository,
-			BatchWriteService batchWriteService) {
+			BatchWriteService batchWriteService,
+			@Nullable CommandStatusWriteBehind commandStatusWriteBehind,
+			@Nullable TelemetryDeduplicator telemetryDeduplicator,
+			@Nullable DeviceLatestStateService deviceLatestState) {
 		this.decoderFactory = decoderFactory;
 		this.encoderFactory = encoderFactory;
 		this.telemetryRepository = telemetryRepository;
@@ -77,6 +114,9 @@ public class TelemetryService {
 		this.deviceStatisticsRepository = deviceStatisticsRepository;
 		this.deviceLocationRepository = deviceLocationRepository;
 		this.batchWriteService = batchWriteService;
+		this.commandStatusWriteBehind = commandStatusWriteBehind;
+		this.telemetryDeduplicator = telemetryDeduplicator;
+		this.deviceLatestState = deviceLatestState;
 
 		log.info("TelemetryService initialized");
 	}
@@ -96,9 +136,34 @@ public class TelemetryService {
 	 * @return Risposta da inviare al device
 	 */
 	public TelemetryResponse processTelemetry(TelemetryMessage message, ProcessingContext context) {
+		return processTelemetry(message, context, null);
+	}
+
+	/**
+	 * Processa un frame di una connessione multi-frame. Con sessione non null le
+	 * telemetrie vengono accodate a blocchi (vedi {@link #flushSession}) e i
+	 * comandi pendenti letti una volta ogni tcp.server.session-command-refresh-ms.
+	 *
+	 * @param session Stato della connessione (nullable: connessione a frame singolo)
+	 */
+	public TelemetryResponse processTelemetry(TelemetryMessage message, ProcessingContext context,
+			DeviceSession session) {
 
 		LocalDateTime receivedAt = LocalDateTime.now();
-		log.info("Processing telemetry message: {} chars", message.getHexData().length());
+		log.info("Processing telemetry message: {} bytes", message.getPayload().length);
+
+		// 1. AVVIA IL LOOKUP DEI COMANDI DALL'IMEI DELL'HEADER (byte 7-14)
+		String headerImei = null;
+		Future<List<CommandEntity>> commandLookup = null;
+		if (shouldForkCommandLookup(message.getPayload())) {
+			headerImei = TekFrameView.imei(message.getPayload());
+			// Device senza comandi nell'indice: risposta vuota senza query, niente thread
+			if ((session == null || !session.hasFreshCommands(headerImei, System.currentTimeMillis()))
+					&& commandRepository.mightHavePending(headerImei)) {
+				String imei = headerImei;
+				commandLookup = commandLookupExecutor.submit(() -> commandRepository.findPendingCommands(imei));
+			}
+		}
 
 		try {
 			// 2. SELEZIONA IL DECODER APPROPRIATO
@@ -107,56 +172,110 @@ public class TelemetryService {
 
 			// 4. DECODIFICA IL MESSAGGIO
 			if (context != null) context.startDecode();
-			DecodedMessage decoded = decoder.decode(message);
-			String deviceId = extractDeviceId(decoded);
-			String deviceType = decoded.getUnitInfo().getProductType();
+			TekFrameView view = "view".equalsIgnoreCase(decoderMode) ? decoder.view(message) : null;
+			DecodedMessage decoded = null;
+			String deviceId;
+			String deviceType;
+			if (view != null) {
+				deviceId = view.imei();
+				deviceType = view.productType();
+			} else {
+				decoded = decoder.decode(message);
+				deviceId = extractDeviceId(decoded);
+				deviceType = decoded.getUnitInfo().getProductType();
+			}
 			int messageType = extractMessageType(message.getPayload());
 			if (context != null) {
 				context.endDecode();
+				if (view != null) {
+					context.extractFromView(view);
+				} else {
+					context.extractFromDecoded(decoded);
+				}
 				context.setDeviceId(deviceId);
 				context.setDeviceType(deviceType);
 				context.setMessageType(messageType);
-				context.extractFromDecoded(decoded);
 			}
 
 			log.info("Decoded: deviceType={}, deviceId={}, messageType={}", deviceType, deviceId, messageType);
 
-			String hexData = message.getHexData();
+			byte[] payload = message.getPayload();
+			int bodyOffset = message.getBodyOffset();
+			int bodyLength = message.getBodyLength();
 			// 5. GESTISCI IN BASE AL MESSAGE TYPE
 			if (context != null) context.startDbSave();
 			switch (messageType) {
 			case 4, 8, 9 -> {
-				// Standard telemetry - accoda per batch insert
+				// Ritrasmissione di un frame già accodato: risposta normale, nessuna riga
+				TelemetryDeduplicator.Key dedupKey = null;
+				if (telemetryDeduplicator != null) {
+					int messageCount = view != null ? view.messageCount()
+							: decoded.getDiagnosticInfo().getMessageCount();
+					dedupKey = TelemetryDeduplicator.keyOf(payload, bodyOffset, bodyLength, messageCount);
+					if (telemetryDeduplicator.isDuplicate(dedupKey)) {
+						log.info("  Duplicate telemetry suppressed: deviceId={}, messageCount={}", deviceId,
+								messageCount);
+						break;
+					}
+				}
+				// Standard telemetry - accoda per batch insert (POJO necessario per decoded_data)
+				if (decoded == null) {
+					decoded = view.toDecodedMessage();
+				}
 				TelemetryEntity entity = telemetryRepository
-						.buildEntity(deviceId, deviceType, hexData, decoded);
-				batchWriteService.enqueue(entity);
+						.buildEntity(deviceId, deviceType, rawMessage(message), decoded);
+				if (session == null) {
+					batchWriteService.enqueue(entity);
+				} else {
+					if (dedupKey != null) {
+						// in sessione il frame è accodato solo da flushSession
+						TelemetryDeduplicator.Key key = dedupKey;
+						session.runAfterFlush(() -> telemetryDeduplicator.record(key));
+					}
+					if (session.bufferTelemetry(entity)) {
+						flushSession(session);
+					}
+				}
+				List<MeasurementEntity> measurements = List.of();
+				if (measurementsEnabled || deviceLatestState != null) {
+					measurements = view != null ? MeasurementRows.fromView(deviceId, view)
+							: MeasurementRows.fromDecoded(deviceId, decoded);
+				}
+				if (measurementsEnabled && !measurements.isEmpty()) {
+					batchWriteService.enqueueMeasurements(measurements);
+				}
+				if (deviceLatestState != null) {
+					deviceLatestState.update(entity, measurements);
+				}
+				if (dedupKey != null && session == null) {
+					telemetryDeduplicator.record(dedupKey);
+				}
 //				log.info("  Enqueued telemetry for batch insert: deviceId={}", deviceId);
 			}
 			case 6 -> {
 				// Settings response - parse e accoda per batch insert
-				String settingsPayload = extractPayloadAfterHeader(hexData);
-				MessageType6Response settings = messageTypeParser.parseMessageType6(settingsPayload, deviceId,
-						deviceType);
+				MessageType6Response settings = messageTypeParser.parseMessageType6(payload, bodyOffset, bodyLength,
+						deviceId, deviceType);
 				DeviceSettingsEntity settingsEntity = deviceSettingsRepository
-						.buildEntity(settings, hexData);
+						.buildEntity(settings, rawMessage(message));
 				batchWriteService.enqueue(settingsEntity);
 //				log.info("  Enqueued settings for batch insert: deviceId={}, parameters={}", deviceId, settings.getSettings().size());
 			}
 			case 16 -> {
 				// ICCID & Statistics - parse e accoda per batch insert
-				String statsPayload = extractPayloadAfterHeader(hexData);
-				MessageType16Response stats = messageTypeParser.parseMessageType16(statsPayload, deviceId, deviceType);
+				MessageType16Response stats = messageTypeParser.parseMessageType16(payload, bodyOffset, bodyLength,
+						deviceId, deviceType);
 				DeviceStatisticsEntity statsEntity = deviceStatisticsRepository
-						.buildEntity(stats, hexData);
+						.buildEntity(stats, rawMessage(message));
 				batchWriteService.enqueue(statsEntity);
 //				log.info("  Enqueued statistics for batch insert: deviceId={}, ICCID={}", deviceId, stats.getIccid());
 			}
 			case 17 -> {
 				// GPS data - parse e accoda per batch insert
-				String gpsPayload = extractPayloadAfterHeader(hexData);
-				MessageType17Response gps = messageTypeParser.parseMessageType17(gpsPayload, deviceId, deviceType);
+				MessageType17Response gps = messageTypeParser.parseMessageType17(payload, bodyOffset, bodyLength,
+						deviceId, deviceType);
 				DeviceLocationEntity locationEntity = deviceLocationRepository
-						.buildEntity(gps, hexData);
+						.buildEntity(gps, rawMessage(message));
 				batchWriteService.enqueue(locationEntity);
 //				log.info("  Enqueued GPS for batch insert: deviceId={}, lat={}, lon={}", deviceId, gps.getLatitude(), gps.getLongitude());
 			}
@@ -164,11 +283,17 @@ public class TelemetryService {
 				log.warn("Unknown message type: {}", messageType);
 			}
 			}
+			if (deviceLatestState != null) {
+				// Last seen anche per 6/16/17 e per le ritrasmissioni soppresse
+				deviceLatestState.touch(deviceId, deviceType, messageType, receivedAt);
+			}
 			if (context != null) context.endDbSave();
 
 			// 6. RECUPERA COMANDI PENDENTI PER QUESTO DEVICE
 			if (context != null) context.startCommandQuery();
-			List<CommandEntity> pendingCommands = commandRepository.findPendingCommands(deviceId);
+			List<CommandEntity> pendingCommands = deviceId.equals(headerImei)
+					? joinCommandLookup(commandLookup, deviceId, session)
+					: findPendingCommands(deviceId, session);
 			if (context != null) {
 				context.endCommandQuery();
 				context.setPendingCommandsFound(pendingCommands.size());
@@ -201,12 +326,38 @@ public class TelemetryService {
 		} catch (Exception e) {
 			log.error("Error processing telemetry", e);
 			throw new DecodingException("Failed to process telemetry: " + e.getMessage(), e);
+		} finally {
+			// Errore prima del join o IMEI diverso da quello dell'header: il lookup non serve più
+			if (commandLookup != null && !commandLookup.isDone()) {
+				commandLookup.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Accoda le telemetrie bufferizzate nella sessione. Chiamato al
+	 * raggiungimento della soglia e alla chiusura della connessione. Le chiavi
+	 * dedup dei frame bufferizzati vengono registrate solo se l'accodamento
+	 * riesce.
+	 */
+	public void flushSession(DeviceSession session) {
+		List<TelemetryEntity> buffered = session.drainTelemetry();
+		List<Runnable> afterFlush = session.drainAfterFlush();
+		if (!buffered.isEmpty()) {
+			batchWriteService.enqueueAll(buffered);
+			log.debug("Enqueued {} session telemetry records for batch insert", buffered.size());
 		}
+		afterFlush.forEach(Runnable::run);
 	}
 
 	public void markCommandsAsSent(List<EncodedCommand> commands) {
 		// Marca i comandi come SENT (skip comandi sintetici con id null, es.
 		// auto-appended REBOOT)
+		if (commandStatusWriteBehind != null) {
+			// Un solo UPDATE per flush, vedi CommandStatusWriteBehind
+			commandStatusWriteBehind.enqueueSent(commands.stream().map(EncodedCommand::getCommandId).toList());
+			return;
+		}
 		for (EncodedCommand cmd : commands) {
 			if (cmd.getCommandId() != null) {
 				commandRepository.markAsSent(cmd.getCommandId());
@@ -214,6 +365,74 @@ public class TelemetryService {
 		}
 	}
 
+	@PreDestroy
+	void shutdown() {
+		commandLookupExecutor.shutdownNow();
+	}
+
+	/**
+	 * Il lookup anticipato serve solo se il frame ha un header TEK completo. Non
+	 * viene avviato dentro una transazione: il virtual thread userebbe un'altra
+	 * connessione e non vedrebbe le scritture non ancora committate.
+	 */
+	private boolean shouldForkCommandLookup(byte[] payload) {
+		return parallelCommandLookup && payload.length >= TelemetryMessage.HEADER_SIZE
+				&& !TransactionSynchronizationManager.isActualTransactionActive();
+	}
+
+	/**
+	 * Attende il lookup avviato dall'header (null: non avviato, cache di sessione
+	 * valida, device senza comandi nell'indice o lookup disattivato). Il tempo misurato in command query è la sola
+	 * attesa residua dopo la decodifica.
+	 */
+	private List<CommandEntity> joinCommandLookup(Future<List<CommandEntity>> commandLookup, String deviceId,
+			DeviceSession session) {
+		if (commandLookup == null) {
+			return findPendingCommands(deviceId, session);
+		}
+		try {
+			return cachePendingCommands(deviceId, commandLookup.get(), session, System.currentTimeMillis());
+		} catch (ExecutionException e) {
+			// Stessa eccezione del lookup sincrono
+			if (e.getCause() instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for pending commands", e);
+		}
+	}
+
+	/**
+	 * Comandi pendenti del device. In sessione la query viene ripetuta solo a
+	 * cache scaduta; i comandi già consegnati nella sessione sono esclusi.
+	 */
+	private List<CommandEntity> findPendingCommands(String deviceId, DeviceSession session) {
+		long nowMs = System.currentTimeMillis();
+		if (session != null && session.hasFreshCommands(deviceId, nowMs)) {
+			return session.undeliveredCommands();
+		}
+		return cachePendingCommands(deviceId, commandRepository.findPendingCommands(deviceId), session, nowMs);
+	}
+
+	/**
+	 * Esclude i comandi in attesa di UPDATE SENT e, in sessione, aggiorna la
+	 * cache
+	 */
+	private List<CommandEntity> cachePendingCommands(String deviceId, List<CommandEntity> pendingCommands,
+			DeviceSession session, long nowMs) {
+		if (commandStatusWriteBehind != null) {
+			// Già inviati in una connessione precedente, SENT non ancora scritto
+			pendingCommands = commandStatusWriteBehind.withoutQueued(pendingCommands);
+		}
+		if (session == null) {
+			return pendingCommands;
+		}
+		session.cacheCommands(deviceId, pendingCommands, nowMs);
+		return session.undeliveredCommands();
+	}
+
 	/**
 	 * Estrae il device ID dal messaggio decodificato (usa IMEI)
 	 */
@@ -238,14 +457,12 @@ public class TelemetryService {
 	}
 
 	/**
-	 * Estrae il payload dopo l'header (da byte 17 in poi)
+	 * raw_message dell'entity: HEX calcolato qui, solo per i frame che vengono
+	 * davvero accodati (non per ritrasmissioni soppresse o tipi sconosciuti), e
+	 * solo con telemetry.raw-message.enabled=true
 	 */
-	private String extractPayloadAfterHeader(String hexMessage) {
-		// Header = 17 bytes = 34 hex chars
-		if (hexMessage.length() > 34) {
-			return hexMessage.substring(34);
-		}
-		return "";
+	private String rawMessage(TelemetryMessage message) {
+		return rawMessageEnabled ? message.getHexData() : null;
 	}
 
 	/**
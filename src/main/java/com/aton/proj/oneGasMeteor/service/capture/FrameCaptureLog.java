@@ -0,0 +1,202 @@
+package com.aton.proj.oneGasMeteor.service.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registrazione dei frame grezzi ricevuti, per riprodurre il carico di
+ * produzione (vedi {@code FrameReplay} nel profilo Maven replay).
+ *
+ * File {@code capture-<seq>.bin} di dimensione fissa mappati in memoria, con
+ * record {@code [int lunghezza frame][long arrivo µs epoch][short lunghezza
+ * indirizzo][indirizzo UTF-8][frame]}. Come in {@code SegmentLog} la lunghezza
+ * è scritta per ultima e 0 indica la fine dei dati: un record interrotto non è
+ * mai visibile. Un append è una copia in memoria, la scrittura su disco è
+ * lasciata al sistema operativo.
+ *
+ * A segmento pieno si passa al successivo; oltre maxSegments il più vecchio
+ * viene cancellato. All'apertura la numerazione riprende dopo i file esistenti,
+ * che non vengono riscritti.
+ */
+public final class FrameCaptureLog implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(FrameCaptureLog.class);
+
+	private static final String SEGMENT_PREFIX = "capture-";
+	private static final String SEGMENT_SUFFIX = ".bin";
+	static final int RECORD_HEADER = 4 + 8 + 2;
+	private static final int MAX_ADDRESS_BYTES = 255;
+
+	/** Frame registrato */
+	public record CapturedFrame(long receivedAtMicros, String source, byte[] frame) {
+	}
+
+	private final Path directory;
+	private final int segmentSize;
+	private final int maxSegments;
+
+	private final ArrayDeque<Long> segmentSeqs = new ArrayDeque<>();
+	private final List<Path> pendingDeletes = new ArrayList<>();
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private long seq;
+	private int writeOffset;
+
+	/**
+	 * @param directory   Cartella dei file (creata se assente)
+	 * @param segmentSize Dimensione di ogni file in byte
+	 * @param maxSegments File conservati, compreso quello in scrittura
+	 */
+	public FrameCaptureLog(Path directory, int segmentSize, int maxSegments) throws IOException {
+		if (segmentSize <= RECORD_HEADER + 4) {
+			throw new IllegalArgumentException("segmentSize troppo piccolo: " + segmentSize);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegments = Math.max(1, maxSegments);
+
+		Files.createDirectories(directory);
+		segmentSeqs.addAll(listSegments(directory));
+		seq = segmentSeqs.isEmpty() ? 0 : segmentSeqs.peekLast();
+		openNextSegment();
+	}
+
+	/**
+	 * Aggiunge un frame.
+	 *
+	 * @param receivedAtMicros Istante di arrivo in microsecondi dall'epoch
+	 * @param source           Indirizzo del mittente (troncato a 255 byte)
+	 */
+	public synchronized void append(long receivedAtMicros, String source, byte[] frame) throws IOException {
+		byte[] address = source != null ? source.getBytes(StandardCharsets.UTF_8) : new byte[0];
+		int addressLength = Math.min(address.length, MAX_ADDRESS_BYTES);
+		int size = RECORD_HEADER + addressLength + frame.length;
+		if (size + 4 > segmentSize) {
+			throw new IllegalArgumentException(
+					"Frame di " + frame.length + " byte oltre la dimensione del segmento " + segmentSize);
+		}
+		if (buffer == null) {
+			throw new IOException("Capture log closed");
+		}
+		if (writeOffset + size + 4 > segmentSize) {
+			openNextSegment();
+		}
+
+		int pos = writeOffset;
+		buffer.putLong(pos + 4, receivedAtMicros);
+		buffer.putShort(pos + 12, (short) addressLength);
+		buffer.put(pos + RECORD_HEADER, address, 0, addressLength);
+		buffer.put(pos + RECORD_HEADER + addressLength, frame);
+		buffer.putInt(pos, frame.length);
+		writeOffset = pos + size;
+	}
+
+	/** Numero di file presenti, compreso quello in scrittura */
+	public synchronized int segmentCount() {
+		return segmentSeqs.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (buffer != null) {
+			buffer.force();
+			channel.close();
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Legge in ordine tutti i frame registrati in directory
+	 */
+	public static void forEach(Path directory, Consumer<CapturedFrame> consumer) throws IOException {
+		for (long seq : listSegments(directory)) {
+			try (FileChannel channel = FileChannel.open(segmentPath(directory, seq), StandardOpenOption.READ)) {
+				MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				int offset = 0;
+				while (offset + RECORD_HEADER <= segment.capacity()) {
+					int length = segment.getInt(offset);
+					int addressLength = segment.getShort(offset + 12) & 0xFFFF;
+					if (length <= 0 || offset + RECORD_HEADER + addressLength + length > segment.capacity()) {
+						break;
+					}
+					byte[] address = new byte[addressLength];
+					segment.get(offset + RECORD_HEADER, address);
+					byte[] frame = new byte[length];
+					segment.get(offset + RECORD_HEADER + addressLength, frame);
+					consumer.accept(new CapturedFrame(segment.getLong(offset + 4),
+							new String(address, StandardCharsets.UTF_8), frame));
+					offset += RECORD_HEADER + addressLength + length;
+				}
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Segmenti
+	// -------------------------------------------------------------------------
+
+	private void openNextSegment() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+		seq++;
+		channel = FileChannel.open(segmentPath(directory, seq), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		writeOffset = 0;
+		segmentSeqs.addLast(seq);
+
+		while (segmentSeqs.size() > maxSegments) {
+			pendingDeletes.add(segmentPath(directory, segmentSeqs.pollFirst()));
+		}
+		retryPendingDeletes();
+	}
+
+	/**
+	 * Su alcuni sistemi (Windows) un file mappato non è cancellabile finché il
+	 * mapping non viene raccolto dal GC: si ritenta alla rotazione successiva.
+	 */
+	private void retryPendingDeletes() {
+		pendingDeletes.removeIf(path -> {
+			try {
+				Files.deleteIfExists(path);
+				return true;
+			} catch (IOException e) {
+				log.debug("Capture segment {} not deletable yet: {}", path, e.getMessage());
+				return false;
+			}
+		});
+	}
+
+	private static List<Long> listSegments(Path directory) throws IOException {
+		List<Long> seqs = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+				SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				seqs.add(Long.parseLong(
+						name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			}
+		}
+		seqs.sort(null);
+		return seqs;
+	}
+
+	private static Path segmentPath(Path directory, long seq) {
+		return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+	}
+}
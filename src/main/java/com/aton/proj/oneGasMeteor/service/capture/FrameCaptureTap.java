@@ -0,0 +1,74 @@
+package com.aton.proj.oneGasMeteor.service.capture;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Registra ogni frame ricevuto in un {@link FrameCaptureLog}
+ * (capture.enabled=true). Chiamato dal handler prima dell'elaborazione, quindi
+ * anche i frame che falliscono la decodifica vengono registrati.
+ *
+ * La registrazione non deve mai far fallire una connessione: gli errori di
+ * scrittura vengono contati e il frame scartato.
+ */
+@Component
+@ConditionalOnProperty(name = "capture.enabled", havingValue = "true")
+public class FrameCaptureTap {
+
+	private static final Logger log = LoggerFactory.getLogger(FrameCaptureTap.class);
+
+	private final FrameCaptureLog captureLog;
+	private final AtomicLong captured = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	public FrameCaptureTap(@Value("${capture.directory:./capture}") String directory,
+			@Value("${capture.segment-size-mb:64}") int segmentSizeMb,
+			@Value("${capture.max-segments:16}") int maxSegments) throws IOException {
+		this.captureLog = new FrameCaptureLog(Path.of(directory), segmentSizeMb * 1024 * 1024, maxSegments);
+		log.info("FrameCaptureTap initialized: dir={}, segment={} MB, max segments={}", directory, segmentSizeMb,
+				maxSegments);
+	}
+
+	public void capture(String source, byte[] frame) {
+		try {
+			captureLog.append(ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now()), source, frame);
+			captured.incrementAndGet();
+		} catch (IOException | RuntimeException e) {
+			if (dropped.getAndIncrement() == 0) {
+				log.warn("Frame capture failed, frame dropped (further failures logged at debug): {}",
+						e.getMessage());
+			} else {
+				log.debug("Frame capture failed: {}", e.getMessage());
+			}
+		}
+	}
+
+	public long getCaptured() {
+		return captured.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@PreDestroy
+	public void close() {
+		try {
+			captureLog.close();
+			log.info("Frame capture closed: {} frames captured, {} dropped", captured.get(), dropped.get());
+		} catch (IOException e) {
+			log.error("Error closing frame capture: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.aton.proj.oneGasMeteor.service.dedup;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro di Bloom a finestra temporale: due generazioni, la corrente riceve
+ * gli inserimenti, la precedente resta consultabile per una finestra ancora.
+ * A ogni rotazione la precedente viene scartata e ne nasce una vuota, quindi
+ * una chiave resta riconosciuta per almeno windowMs (al massimo 2 * windowMs)
+ * e la memoria è fissa: {@link #sizeBytes()} indipendentemente dal numero di
+ * device.
+ *
+ * Falsi negativi impossibili entro la finestra; falsi positivi con probabilità
+ * {@code falsePositiveProbability} finché una generazione non supera
+ * expectedInsertions chiavi (oltre, la probabilità cresce gradualmente).
+ *
+ * Thread-safe senza lock sul percorso caldo: i bit sono in un
+ * {@link AtomicLongArray}, la rotazione sostituisce i riferimenti.
+ */
+public class RotatingBloomFilter {
+
+	private static final class Generation {
+		final AtomicLongArray words;
+
+		Generation(int words) {
+			this.words = new AtomicLongArray(words);
+		}
+	}
+
+	private final long windowMs;
+	private final long bits;
+	private final int hashes;
+
+	private volatile Generation current;
+	private volatile Generation previous;
+	private volatile long nextRotationMs;
+
+	public RotatingBloomFilter(long windowMs, long expectedInsertions, double falsePositiveProbability, long nowMs) {
+		if (windowMs <= 0 || expectedInsertions <= 0 || falsePositiveProbability <= 0
+				|| falsePositiveProbability >= 1) {
+			throw new IllegalArgumentException("windowMs, expectedInsertions > 0 e 0 < fpp < 1 richiesti");
+		}
+		// m = -n ln p / (ln 2)^2, k = m / n ln 2
+		double ln2 = Math.log(2);
+		long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+		long words = Math.min(Integer.MAX_VALUE, (optimalBits + 63) / 64);
+		this.windowMs = windowMs;
+		this.bits = words * 64;
+		this.hashes = (int) Math.max(1, Math.round((double) bits / expectedInsertions * ln2));
+		this.current = new Generation((int) words);
+		this.previous = new Generation((int) words);
+		this.nextRotationMs = nowMs + windowMs;
+	}
+
+	/**
+	 * True se la chiave (due hash indipendenti a 64 bit) è stata inserita nella
+	 * finestra, salvo falsi positivi
+	 */
+	public boolean mightContain(long hash1, long hash2, long nowMs) {
+		rotateIfDue(nowMs);
+		return contains(current, hash1, hash2) || contains(previous, hash1, hash2);
+	}
+
+	public void put(long hash1, long hash2, long nowMs) {
+		rotateIfDue(nowMs);
+		AtomicLongArray words = current.words;
+		long combined = hash1;
+		for (int i = 0; i < hashes; i++) {
+			long bit = Long.remainderUnsigned(combined, bits);
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			// Lettura prima della scrittura: la maggior parte dei bit è già a 1
+			// per i device che si ripresentano, niente CAS inutili
+			if ((words.get(word) & mask) == 0) {
+				words.getAndAccumulate(word, mask, (a, b) -> a | b);
+			}
+			combined += hash2;
+		}
+	}
+
+	public long sizeBytes() {
+		return 2 * bits / 8;
+	}
+
+	public int hashes() {
+		return hashes;
+	}
+
+	private boolean contains(Generation generation, long hash1, long hash2) {
+		AtomicLongArray words = generation.words;
+		long combined = hash1;
+		for (int i = 0; i < hashes; i++) {
+			long bit = Long.remainderUnsigned(combined, bits);
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+			combined += hash2;
+		}
+		return true;
+	}
+
+	private void rotateIfDue(long nowMs) {
+		if (nowMs < nextRotationMs) {
+			return;
+		}
+		synchronized (this) {
+			if (nowMs < nextRotationMs) {
+				return;
+			}
+			// Più di una finestra senza traffico: anche la corrente è scaduta
+			boolean idle = nowMs >= nextRotationMs + windowMs;
+			Generation fresh = new Generation(current.words.length());
+			previous = idle ? new Generation(current.words.length()) : current;
+			current = fresh;
+			nextRotationMs = nowMs + windowMs;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.aton.proj.oneGasMeteor.service.dedup;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Riconosce le telemetrie (Message Type 4/8/9) già ricevute
+ * (telemetry.dedup.enabled=true).
+ *
+ * Un device che non riceve la risposta rimanda lo stesso frame bufferizzato
+ * alla connessione successiva, anche minuti dopo e su un'altra connessione:
+ * la chiave è IMEI + contatore messaggi (DiagnosticInfo.messageCount) + CRC32C
+ * del body. L'header è escluso dall'impronta perché CSQ, batteria e motivo di
+ * contatto possono cambiare tra un tentativo e l'altro.
+ *
+ * Diversamente da {@code DatagramDeduplicator} (UDP, risposta conservata per
+ * chiave) qui serve solo sapere se il frame è già stato accodato, per milioni
+ * di device: le chiavi finiscono in un {@link RotatingBloomFilter} a memoria
+ * fissa. Un falso positivo scarta una telemetria valida, per questo la
+ * probabilità di default è 1e-6.
+ */
+@Component
+@ConditionalOnProperty(name = "telemetry.dedup.enabled", havingValue = "true")
+public class TelemetryDeduplicator {
+
+	private static final Logger log = LoggerFactory.getLogger(TelemetryDeduplicator.class);
+
+	/** Impronta di un frame: due hash a 64 bit per il double hashing del filtro */
+	public record Key(long hash1, long hash2) {
+	}
+
+	private final RotatingBloomFilter filter;
+	private final AtomicLong checked = new AtomicLong();
+	private final AtomicLong suppressed = new AtomicLong();
+
+	public TelemetryDeduplicator(@Value("${telemetry.dedup.window-ms:3600000}") long windowMs,
+			@Value("${telemetry.dedup.expected-frames:2000000}") long expectedFrames,
+			@Value("${telemetry.dedup.false-positive-probability:0.000001}") double falsePositiveProbability) {
+		this.filter = new RotatingBloomFilter(windowMs, expectedFrames, falsePositiveProbability,
+				System.currentTimeMillis());
+		log.info("TelemetryDeduplicator initialized: window={} ms, expected frames={}, fpp={}, {} hashes, {} KB",
+				windowMs, expectedFrames, falsePositiveProbability, filter.hashes(), filter.sizeBytes() / 1024);
+	}
+
+	/**
+	 * Impronta del frame: IMEI dei byte 7-14, contatore e CRC32C del body
+	 */
+	public static Key keyOf(byte[] frame, int bodyOffset, int bodyLength, int messageCount) {
+		long imei = 0;
+		for (int i = 7; i < 15 && i < frame.length; i++) {
+			imei = (imei << 8) | (frame[i] & 0xFF);
+		}
+		CRC32C crc = new CRC32C();
+		crc.update(frame, bodyOffset, bodyLength);
+
+		long hash1 = mix(imei ^ ((long) messageCount << 48) ^ 0x9E3779B97F4A7C15L);
+		long hash2 = mix(hash1 ^ ((crc.getValue() << 32) | (bodyLength & 0xFFFFFFFFL)));
+		// Passo dispari: il double hashing non si ferma su un solo bit
+		return new Key(hash1, hash2 | 1);
+	}
+
+	/**
+	 * True se il frame è già stato accodato nella finestra. Conta il frame tra
+	 * quelli controllati (e tra i soppressi se duplicato).
+	 */
+	public boolean isDuplicate(Key key) {
+		checked.incrementAndGet();
+		if (filter.mightContain(key.hash1(), key.hash2(), System.currentTimeMillis())) {
+			suppressed.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Registra il frame come accodato. Chiamato dopo l'accodamento (in
+	 * sessione dopo flushSession): se l'elaborazione fallisce prima, la
+	 * ritrasmissione non viene scartata.
+	 */
+	public void record(Key key) {
+		filter.put(key.hash1(), key.hash2(), System.currentTimeMillis());
+	}
+
+	public long getChecked() {
+		return checked.get();
+	}
+
+	public long getSuppressed() {
+		return suppressed.get();
+	}
+
+	public long getSizeBytes() {
+		return filter.sizeBytes();
+	}
+
+	/** Finalizzatore di MurmurHash3 (fmix64) */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB93FE1BA87EBL;
+		h ^= h >>> 33;
+		return h;
+	}
+}
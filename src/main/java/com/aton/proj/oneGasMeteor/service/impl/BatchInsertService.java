@@ -8,16 +8,24 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Supplier;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -25,12 +33,28 @@ import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnJpaDatabase;
 import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.aton.proj.oneGasMeteor.service.BatchWriteService;
+import com.aton.proj.oneGasMeteor.service.impl.copy.CopyBatchWriter;
+import com.aton.proj.oneGasMeteor.service.spool.WriteAheadSpool;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service per batch INSERT su db SQL tramite JdbcTemplate.
- * Raccoglie le entity in code concorrenti e le persiste periodicamente.
+ * Raccoglie le entity in code concorrenti, una per tabella, ciascuna con il
+ * proprio flush worker: batch size, intervallo e numero massimo di batch in
+ * volo sono configurabili per tabella (batch.insert.&lt;tabella&gt;.*, default
+ * batch.insert.size / batch.insert.interval-ms / batch.insert.max-in-flight).
+ * Un batch pieno viene scritto subito, senza attendere l'intervallo; i batch in
+ * volo usano connessioni distinte del pool, quindi una tabella lenta non
+ * blocca le altre.
+ * Con batch.insert.copy.enabled=true su PostgreSQL/TimescaleDB le righe sono
+ * scritte con COPY binario ({@link CopyBatchWriter}) invece del batch JDBC.
+ * Con batch.spool.enabled=true i batch falliti e le entity oltre la soglia
+ * alta finiscono su {@link WriteAheadSpool} invece di restare in heap.
  */
 @Service
 @ConditionalOnJpaDatabase
@@ -39,293 +63,579 @@ public class BatchInsertService implements BatchWriteService {
     private static final Logger log = LoggerFactory.getLogger(BatchInsertService.class);
 
     private final JdbcTemplate jdbcTemplate;
+    private final WriteAheadSpool spool;
+    private final CopyBatchWriter copyWriter;
+    private final Environment environment;
 
     @Value("${batch.insert.size:100}")
     private int batchSize;
 
-    private final ConcurrentLinkedQueue<TelemetryEntity> telemetryQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<DeviceSettingsEntity> settingsQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<DeviceStatisticsEntity> statisticsQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<DeviceLocationEntity> locationQueue = new ConcurrentLinkedQueue<>();
+    @Value("${batch.insert.interval-ms:2000}")
+    private long intervalMs;
+
+    @Value("${batch.insert.max-in-flight:2}")
+    private int maxInFlight;
+
+    // decoded_data_bin è scritta solo in formato binary (richiede db-migration-decoded-data-bin.sql)
+    @Value("${telemetry.decoded-data.format:json}")
+    private String decodedDataFormat = "json";
+
+    private TableFlusher<TelemetryEntity> telemetry;
+    private TableFlusher<DeviceSettingsEntity> settings;
+    private TableFlusher<DeviceStatisticsEntity> statistics;
+    private TableFlusher<DeviceLocationEntity> locations;
+    private TableFlusher<MeasurementEntity> measurements;
+    private List<TableFlusher<?>> flushers;
+
+    /** Esegue i flush (un virtual thread per batch in volo) */
+    private final ExecutorService flushExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Scandisce l'intervallo di ogni tabella; il lavoro va su flushExecutor */
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("batch-flush-scheduler").daemon().factory());
+
+    /** Entity nelle code in memoria (ConcurrentLinkedQueue.size() è O(n)) */
+    private final AtomicInteger queued = new AtomicInteger();
 
-    /** Guarantees that at most one flush cycle runs at a time. */
+    /** Serializza flushAll() e il replay dello spool. */
     private final ReentrantLock flushLock = new ReentrantLock();
 
-    public BatchInsertService(JdbcTemplate jdbcTemplate) {
+    private volatile boolean running = true;
+
+    public BatchInsertService(JdbcTemplate jdbcTemplate, @Nullable WriteAheadSpool spool, Environment environment,
+            @Nullable CopyBatchWriter copyWriter) {
         this.jdbcTemplate = jdbcTemplate;
-        log.info("BatchInsertService initialized");
+        this.spool = spool;
+        this.environment = environment;
+        this.copyWriter = copyWriter;
+        log.info("BatchInsertService initialized (spool {})", spool != null ? "enabled" : "disabled");
+    }
+
+    @PostConstruct
+    void startFlushers() {
+        telemetry = new TableFlusher<>("telemetry", "telemetry", this::insertTelemetry);
+        settings = new TableFlusher<>("settings", "device_settings", this::insertSettings);
+        statistics = new TableFlusher<>("statistics", "device_statistics", this::insertStatistics);
+        locations = new TableFlusher<>("locations", "device_locations", this::insertLocations);
+        measurements = new TableFlusher<>("measurements", "measurements", this::insertMeasurements);
+        flushers = List.of(telemetry, settings, statistics, locations, measurements);
+        for (TableFlusher<?> flusher : flushers) {
+            flushScheduler.scheduleWithFixedDelay(flusher::tick, flusher.intervalMs, flusher.intervalMs,
+                    TimeUnit.MILLISECONDS);
+            log.info("Flush worker {}: batchSize={}, intervalMs={}, maxInFlight={}", flusher.table,
+                    flusher.batchSize, flusher.intervalMs, flusher.maxInFlight);
+        }
+    }
+
+    @PreDestroy
+    void stopFlushers() throws InterruptedException {
+        running = false;
+        flushScheduler.shutdownNow();
+        flushExecutor.shutdown();
+        if (!flushExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Flush workers still running after 10 s");
+        }
+        // Ultimo svuotamento sincrono delle code
+        flushAll();
     }
 
     public void enqueue(TelemetryEntity entity) {
-        telemetryQueue.add(entity);
+        if (spool != null && spool.shouldSpill(queued.get())) {
+            spool.append(entity);
+            return;
+        }
+        telemetry.add(entity);
+    }
+
+    @Override
+    public void enqueueAll(List<TelemetryEntity> entities) {
+        if (entities.isEmpty()) return;
+        if (spool != null && spool.shouldSpill(queued.get())) {
+            spool.appendAll(entities);
+            return;
+        }
+        telemetry.addAll(entities);
     }
 
     public void enqueue(DeviceSettingsEntity entity) {
-        settingsQueue.add(entity);
+        if (spool != null && spool.shouldSpill(queued.get())) {
+            spool.append(entity);
+            return;
+        }
+        settings.add(entity);
     }
 
     public void enqueue(DeviceStatisticsEntity entity) {
-        statisticsQueue.add(entity);
+        if (spool != null && spool.shouldSpill(queued.get())) {
+            spool.append(entity);
+            return;
+        }
+        statistics.add(entity);
     }
 
     public void enqueue(DeviceLocationEntity entity) {
-        locationQueue.add(entity);
+        if (spool != null && spool.shouldSpill(queued.get())) {
+            spool.append(entity);
+            return;
+        }
+        locations.add(entity);
     }
 
-    @Scheduled(fixedDelayString = "${batch.insert.interval-ms:2000}")
-    public void flushAll() {
-
-        if (telemetryQueue.isEmpty() && settingsQueue.isEmpty()
-                && statisticsQueue.isEmpty() && locationQueue.isEmpty()) {
-            log.trace("All queues empty, skipping flush cycle");
+    @Override
+    public void enqueueMeasurements(List<MeasurementEntity> entities) {
+        if (entities.isEmpty()) return;
+        if (spool != null && spool.shouldSpill(queued.get())) {
+            spool.appendAll(entities);
             return;
         }
+        measurements.addAll(entities);
+    }
+
+    @Override
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Svuota in modo sincrono tutte le code (batch dopo batch, fermandosi al
+     * primo errore per tabella) e poi lo spool. Usato allo shutdown e nei test;
+     * a regime il lavoro lo fanno i flush worker.
+     */
+    public void flushAll() {
 
-        if (!flushLock.tryLock()) {
-            log.warn("Flush already in progress, skipping this cycle");
+        if (queued.get() == 0 && (spool == null || spool.depth() == 0)) {
+            log.trace("All queues empty, skipping flush cycle");
             return;
         }
 
+        flushLock.lock();
         Instant start = Instant.now();
-        int[] counts = new int[4];
-
-        int maxBatchesPerCycle = 10;
+        int[] counts = new int[5];
 
         try {
 
-            counts[0] += flushQueue(telemetryQueue, this::flushTelemetry, maxBatchesPerCycle);
-            counts[1] += flushQueue(settingsQueue, this::flushSettings, maxBatchesPerCycle);
-            counts[2] += flushQueue(statisticsQueue, this::flushStatistics, maxBatchesPerCycle);
-            counts[3] += flushQueue(locationQueue, this::flushLocations, maxBatchesPerCycle);
+            for (int i = 0; i < flushers.size(); i++) {
+                TableFlusher<?> flusher = flushers.get(i);
+                int inserted;
+                while (flusher.size.get() > 0 && (inserted = flusher.flushOnce()) >= 0) {
+                    counts[i] += inserted;
+                }
+            }
+
+            if (spool != null) {
+                replaySpool(counts, Integer.MAX_VALUE);
+            }
 
         } finally {
             flushLock.unlock();
 
             long ms = Duration.between(start, Instant.now()).toMillis();
 
-            log.info("Batch flush completed in {} ms — inserted: telemetry={}, settings={}, statistics={}, locations={}",
-                    ms, counts[0], counts[1], counts[2], counts[3]);
+            log.info("Batch flush completed in {} ms — inserted: telemetry={}, settings={}, statistics={}, locations={}, measurements={}",
+                    ms, counts[0], counts[1], counts[2], counts[3], counts[4]);
         }
     }
-    
-    private int flushQueue(Queue<?> queue, Supplier<Integer> flushMethod, int maxBatches) {
 
-        int total = 0;
-        int processed = 0;
+    /**
+     * Replay periodico dello spool, separato dai flush worker delle code.
+     */
+    @Scheduled(fixedDelayString = "${batch.insert.interval-ms:2000}")
+    public void replaySpool() {
+        if (spool == null || spool.depth() == 0 || !flushLock.tryLock()) {
+            return;
+        }
+        try {
+            int[] counts = new int[5];
+            replaySpool(counts, 10);
+            if (counts[0] + counts[1] + counts[2] + counts[3] + counts[4] > 0) {
+                log.info("Spool replay inserted: telemetry={}, settings={}, statistics={}, locations={}, measurements={}",
+                        counts[0], counts[1], counts[2], counts[3], counts[4]);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Flush worker per tabella
+    // -------------------------------------------------------------------------
+
+    /**
+     * Coda e worker di una tabella. Un batch parte quando la coda raggiunge
+     * batchSize (da enqueue) o allo scadere dell'intervallo (da tick), fino a
+     * maxInFlight batch in parallelo. Dopo un INSERT fallito enqueue non avvia
+     * worker per un intervallo: durante un fermo del database riprova solo
+     * tick, invece di un INSERT fallito per ogni messaggio.
+     */
+    private final class TableFlusher<T> {
+
+        final String table;
+        final int batchSize;
+        final long intervalMs;
+        final int maxInFlight;
+
+        final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+
+        private final Semaphore inFlight;
+        private final Consumer<List<T>> insert;
+
+        /** Fino a questo istante (ms) solo tick avvia i worker */
+        private volatile long retryNotBeforeMs;
+
+        TableFlusher(String key, String table, Consumer<List<T>> insert) {
+            this.table = table;
+            this.insert = insert;
+            this.batchSize = environment.getProperty("batch.insert." + key + ".size", Integer.class,
+                    BatchInsertService.this.batchSize);
+            this.intervalMs = environment.getProperty("batch.insert." + key + ".interval-ms", Long.class,
+                    BatchInsertService.this.intervalMs);
+            this.maxInFlight = environment.getProperty("batch.insert." + key + ".max-in-flight", Integer.class,
+                    BatchInsertService.this.maxInFlight);
+            this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        }
+
+        void add(T entity) {
+            queue.add(entity);
+            queued.incrementAndGet();
+            if (size.incrementAndGet() >= batchSize) {
+                startWorker(false);
+            }
+        }
+
+        void addAll(List<T> entities) {
+            queue.addAll(entities);
+            queued.addAndGet(entities.size());
+            if (size.addAndGet(entities.size()) >= batchSize) {
+                startWorker(false);
+            }
+        }
 
-        while (!queue.isEmpty() && processed < maxBatches) {
-            total += flushMethod.get();
-            processed++;
+        /** Scadenza dell'intervallo: scrive anche un batch parziale */
+        void tick() {
+            if (size.get() > 0) {
+                startWorker(true);
+            }
         }
 
-        return total;
+        private void startWorker(boolean partial) {
+            if (!partial && System.currentTimeMillis() < retryNotBeforeMs) {
+                return; // backoff dopo un errore: riprova tick
+            }
+            if (!running || !inFlight.tryAcquire()) {
+                return; // il worker in volo proseguirà finché ci sono batch pieni
+            }
+            try {
+                flushExecutor.execute(() -> {
+                    try {
+                        if (partial && flushOnce() < 0) {
+                            return;
+                        }
+                        while (running && size.get() >= batchSize && flushOnce() >= 0) {
+                            // batch pieni: nessuna attesa dell'intervallo
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+            }
+        }
+
+        /**
+         * Scrive un batch.
+         *
+         * @return record inseriti, -1 se l'INSERT è fallito
+         */
+        int flushOnce() {
+            List<T> batch = drain();
+            if (batch.isEmpty()) return 0;
+
+            log.debug("Flushing {} {} records via batch INSERT", batch.size(), table);
+            try {
+                insert.accept(batch);
+                log.info("Batch INSERT {}: {} records persisted", table, batch.size());
+                retryNotBeforeMs = 0;
+                return batch.size();
+            } catch (Exception ex) {
+                retryNotBeforeMs = System.currentTimeMillis() + intervalMs;
+                if (spool != null) {
+                    log.error("Batch INSERT failed for {} ({} records), spooling to disk: {}", table, batch.size(), ex.getMessage(), ex);
+                    spool.appendAll(batch);
+                } else {
+                    log.error("Batch INSERT failed for {} ({} records), re-enqueuing: {}", table, batch.size(), ex.getMessage(), ex);
+                    queue.addAll(batch);
+                    size.addAndGet(batch.size());
+                    queued.addAndGet(batch.size());
+                }
+                return -1;
+            }
+        }
+
+        /**
+         * Drain up to batchSize elements from the queue into a list.
+         */
+        private List<T> drain() {
+            List<T> list = new ArrayList<>(batchSize);
+            T item;
+            int count = 0;
+            while (count < batchSize && (item = queue.poll()) != null) {
+                list.add(item);
+                count++;
+            }
+            size.addAndGet(-count);
+            queued.addAndGet(-count);
+            return list;
+        }
     }
 
     // -------------------------------------------------------------------------
-    // Flush methods
+    // Insert methods
     // -------------------------------------------------------------------------
 
-    private int flushTelemetry() {
-        List<TelemetryEntity> batch = drain(telemetryQueue);
-        if (batch.isEmpty()) return 0;
+    private boolean useCopy() {
+        return copyWriter != null && copyWriter.isAvailable();
+    }
 
-        log.debug("Flushing {} telemetry records via batch INSERT", batch.size());
+    private void insertTelemetry(List<TelemetryEntity> batch) {
+        if (useCopy()) {
+            copyWriter.copyTelemetry(batch);
+            return;
+        }
+        boolean binary = "binary".equalsIgnoreCase(decodedDataFormat);
         String sql = "INSERT INTO telemetry_data " +
                 "(device_id, device_type, raw_message, decoded_data, received_at, processed_at, " +
                 "imei, firmware_version, battery_voltage, battery_percentage, signal_strength, " +
-                "message_type, measurement_count) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try {
-            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
-                @Override
-                public void setValues(PreparedStatement ps, int i) throws SQLException {
-                    TelemetryEntity e = batch.get(i);
-                    ps.setString(1, e.getDeviceId());
-                    ps.setString(2, e.getDeviceType());
-                    ps.setString(3, e.getRawMessage());
-                    ps.setString(4, e.getDecodedDataJson());
-                    ps.setTimestamp(5, toTimestamp(e.getReceivedAt()));
-                    ps.setTimestamp(6, toTimestamp(e.getProcessedAt()));
-                    ps.setString(7, e.getImei());
-                    ps.setString(8, e.getFirmwareVersion());
-                    setNullableDouble(ps, 9, e.getBatteryVoltage());
-                    setNullableDouble(ps, 10, e.getBatteryPercentage());
-                    setNullableInt(ps, 11, e.getSignalStrength());
-                    ps.setString(12, e.getMessageType());
-                    setNullableInt(ps, 13, e.getMeasurementCount());
+                "message_type, measurement_count" + (binary ? ", decoded_data_bin" : "") + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?" + (binary ? ", ?" : "") + ")";
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TelemetryEntity e = batch.get(i);
+                ps.setString(1, e.getDeviceId());
+                ps.setString(2, e.getDeviceType());
+                ps.setString(3, e.getRawMessage());
+                ps.setString(4, e.getDecodedDataJson());
+                ps.setTimestamp(5, toTimestamp(e.getReceivedAt()));
+                ps.setTimestamp(6, toTimestamp(e.getProcessedAt()));
+                ps.setString(7, e.getImei());
+                ps.setString(8, e.getFirmwareVersion());
+                setNullableDouble(ps, 9, e.getBatteryVoltage());
+                setNullableDouble(ps, 10, e.getBatteryPercentage());
+                setNullableInt(ps, 11, e.getSignalStrength());
+                ps.setString(12, e.getMessageType());
+                setNullableInt(ps, 13, e.getMeasurementCount());
+                if (binary) {
+                    setNullableBytes(ps, 14, e.getDecodedDataBin());
                 }
+            }
 
-                @Override
-                public int getBatchSize() {
-                    return batch.size();
-                }
-            });
-            log.info("Batch INSERT telemetry: {} records persisted", batch.size());
-            return batch.size();
-        } catch (Exception ex) {
-            log.error("Batch INSERT failed for telemetry ({} records), re-enqueuing: {}", batch.size(), ex.getMessage(), ex);
-            telemetryQueue.addAll(batch);
-            return 0;
-        }
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
     }
 
-    private int flushSettings() {
-        List<DeviceSettingsEntity> batch = drain(settingsQueue);
-        if (batch.isEmpty()) return 0;
-
-        log.debug("Flushing {} device_settings records via batch INSERT", batch.size());
+    private void insertSettings(List<DeviceSettingsEntity> batch) {
+        if (useCopy()) {
+            copyWriter.copySettings(batch);
+            return;
+        }
         String sql = "INSERT INTO device_settings " +
                 "(device_id, device_type, raw_message, settings_json, received_at) " +
                 "VALUES (?, ?, ?, ?, ?)";
-        try {
-            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
-                @Override
-                public void setValues(PreparedStatement ps, int i) throws SQLException {
-                    DeviceSettingsEntity e = batch.get(i);
-                    ps.setString(1, e.getDeviceId());
-                    ps.setString(2, e.getDeviceType());
-                    ps.setString(3, e.getRawMessage());
-                    ps.setString(4, e.getSettingsJson());
-                    ps.setTimestamp(5, toTimestamp(e.getReceivedAt()));
-                }
-
-                @Override
-                public int getBatchSize() {
-                    return batch.size();
-                }
-            });
-            log.info("Batch INSERT device_settings: {} records persisted", batch.size());
-            return batch.size();
-        } catch (Exception ex) {
-            log.error("Batch INSERT failed for device_settings ({} records), re-enqueuing: {}", batch.size(), ex.getMessage(), ex);
-            settingsQueue.addAll(batch);
-            return 0;
-        }
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                DeviceSettingsEntity e = batch.get(i);
+                ps.setString(1, e.getDeviceId());
+                ps.setString(2, e.getDeviceType());
+                ps.setString(3, e.getRawMessage());
+                ps.setString(4, e.getSettingsJson());
+                ps.setTimestamp(5, toTimestamp(e.getReceivedAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
     }
 
-    private int flushStatistics() {
-        List<DeviceStatisticsEntity> batch = drain(statisticsQueue);
-        if (batch.isEmpty()) return 0;
-
-        log.debug("Flushing {} device_statistics records via batch INSERT", batch.size());
+    private void insertStatistics(List<DeviceStatisticsEntity> batch) {
+        if (useCopy()) {
+            copyWriter.copyStatistics(batch);
+            return;
+        }
         String sql = "INSERT INTO device_statistics " +
                 "(device_id, device_type, raw_message, iccid, energy_used, min_temperature, " +
                 "max_temperature, message_count, delivery_fail_count, total_send_time, " +
                 "max_send_time, min_send_time, rssi_total, rssi_valid_count, rssi_fail_count, " +
                 "average_send_time, average_rssi, delivery_success_rate, received_at) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try {
-            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
-                @Override
-                public void setValues(PreparedStatement ps, int i) throws SQLException {
-                    DeviceStatisticsEntity e = batch.get(i);
-                    ps.setString(1, e.getDeviceId());
-                    ps.setString(2, e.getDeviceType());
-                    ps.setString(3, e.getRawMessage());
-                    ps.setString(4, e.getIccid());
-                    setNullableLong(ps, 5, e.getEnergyUsed());
-                    setNullableInt(ps, 6, e.getMinTemperature());
-                    setNullableInt(ps, 7, e.getMaxTemperature());
-                    setNullableInt(ps, 8, e.getMessageCount());
-                    setNullableInt(ps, 9, e.getDeliveryFailCount());
-                    setNullableLong(ps, 10, e.getTotalSendTime());
-                    setNullableLong(ps, 11, e.getMaxSendTime());
-                    setNullableLong(ps, 12, e.getMinSendTime());
-                    setNullableLong(ps, 13, e.getRssiTotal());
-                    setNullableInt(ps, 14, e.getRssiValidCount());
-                    setNullableInt(ps, 15, e.getRssiFailCount());
-                    setNullableDouble(ps, 16, e.getAverageSendTime());
-                    setNullableDouble(ps, 17, e.getAverageRssi());
-                    setNullableDouble(ps, 18, e.getDeliverySuccessRate());
-                    ps.setTimestamp(19, toTimestamp(e.getReceivedAt()));
-                }
-
-                @Override
-                public int getBatchSize() {
-                    return batch.size();
-                }
-            });
-            log.info("Batch INSERT device_statistics: {} records persisted", batch.size());
-            return batch.size();
-        } catch (Exception ex) {
-            log.error("Batch INSERT failed for device_statistics ({} records), re-enqueuing: {}", batch.size(), ex.getMessage(), ex);
-            statisticsQueue.addAll(batch);
-            return 0;
-        }
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                DeviceStatisticsEntity e = batch.get(i);
+                ps.setString(1, e.getDeviceId());
+                ps.setString(2, e.getDeviceType());
+                ps.setString(3, e.getRawMessage());
+                ps.setString(4, e.getIccid());
+                setNullableLong(ps, 5, e.getEnergyUsed());
+                setNullableInt(ps, 6, e.getMinTemperature());
+                setNullableInt(ps, 7, e.getMaxTemperature());
+                setNullableInt(ps, 8, e.getMessageCount());
+                setNullableInt(ps, 9, e.getDeliveryFailCount());
+                setNullableLong(ps, 10, e.getTotalSendTime());
+                setNullableLong(ps, 11, e.getMaxSendTime());
+                setNullableLong(ps, 12, e.getMinSendTime());
+                setNullableLong(ps, 13, e.getRssiTotal());
+                setNullableInt(ps, 14, e.getRssiValidCount());
+                setNullableInt(ps, 15, e.getRssiFailCount());
+                setNullableDouble(ps, 16, e.getAverageSendTime());
+                setNullableDouble(ps, 17, e.getAverageRssi());
+                setNullableDouble(ps, 18, e.getDeliverySuccessRate());
+                ps.setTimestamp(19, toTimestamp(e.getReceivedAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
     }
 
-    private int flushLocations() {
-        List<DeviceLocationEntity> batch = drain(locationQueue);
-        if (batch.isEmpty()) return 0;
-
-        log.debug("Flushing {} device_locations records via batch INSERT", batch.size());
+    private void insertLocations(List<DeviceLocationEntity> batch) {
+        if (useCopy()) {
+            copyWriter.copyLocations(batch);
+            return;
+        }
         String sql = "INSERT INTO device_locations " +
                 "(device_id, device_type, raw_message, latitude, longitude, latitude_raw, " +
                 "longitude_raw, altitude, speed_kmh, speed_knots, ground_heading, " +
                 "horizontal_precision, utc_time, gps_date, number_of_satellites, " +
                 "time_to_fix_seconds, gnss_positioning_mode, received_at) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try {
-            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
-                @Override
-                public void setValues(PreparedStatement ps, int i) throws SQLException {
-                    DeviceLocationEntity e = batch.get(i);
-                    ps.setString(1, e.getDeviceId());
-                    ps.setString(2, e.getDeviceType());
-                    ps.setString(3, e.getRawMessage());
-                    setNullableDouble(ps, 4, e.getLatitude());
-                    setNullableDouble(ps, 5, e.getLongitude());
-                    ps.setString(6, e.getLatitudeRaw());
-                    ps.setString(7, e.getLongitudeRaw());
-                    setNullableDouble(ps, 8, e.getAltitude());
-                    setNullableDouble(ps, 9, e.getSpeedKmh());
-                    setNullableDouble(ps, 10, e.getSpeedKnots());
-                    setNullableDouble(ps, 11, e.getGroundHeading());
-                    setNullableDouble(ps, 12, e.getHorizontalPrecision());
-                    if (e.getUtcTime() != null) {
-                        ps.setTime(13, java.sql.Time.valueOf(e.getUtcTime()));
-                    } else {
-                        ps.setNull(13, Types.TIME);
-                    }
-                    ps.setString(14, e.getDate());
-                    setNullableInt(ps, 15, e.getNumberOfSatellites());
-                    setNullableInt(ps, 16, e.getTimeToFixSeconds());
-                    setNullableInt(ps, 17, e.getGnssPositioningMode());
-                    ps.setTimestamp(18, toTimestamp(e.getReceivedAt()));
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                DeviceLocationEntity e = batch.get(i);
+                ps.setString(1, e.getDeviceId());
+                ps.setString(2, e.getDeviceType());
+                ps.setString(3, e.getRawMessage());
+                setNullableDouble(ps, 4, e.getLatitude());
+                setNullableDouble(ps, 5, e.getLongitude());
+                ps.setString(6, e.getLatitudeRaw());
+                ps.setString(7, e.getLongitudeRaw());
+                setNullableDouble(ps, 8, e.getAltitude());
+                setNullableDouble(ps, 9, e.getSpeedKmh());
+                setNullableDouble(ps, 10, e.getSpeedKnots());
+                setNullableDouble(ps, 11, e.getGroundHeading());
+                setNullableDouble(ps, 12, e.getHorizontalPrecision());
+                if (e.getUtcTime() != null) {
+                    ps.setTime(13, java.sql.Time.valueOf(e.getUtcTime()));
+                } else {
+                    ps.setNull(13, Types.TIME);
                 }
+                ps.setString(14, e.getDate());
+                setNullableInt(ps, 15, e.getNumberOfSatellites());
+                setNullableInt(ps, 16, e.getTimeToFixSeconds());
+                setNullableInt(ps, 17, e.getGnssPositioningMode());
+                ps.setTimestamp(18, toTimestamp(e.getReceivedAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+    }
 
-                @Override
-                public int getBatchSize() {
-                    return batch.size();
-                }
-            });
-            log.info("Batch INSERT device_locations: {} records persisted", batch.size());
-            return batch.size();
-        } catch (Exception ex) {
-            log.error("Batch INSERT failed for device_locations ({} records), re-enqueuing: {}", batch.size(), ex.getMessage(), ex);
-            locationQueue.addAll(batch);
-            return 0;
+    private void insertMeasurements(List<MeasurementEntity> batch) {
+        if (useCopy()) {
+            copyWriter.copyMeasurements(batch);
+            return;
         }
+        String sql = "INSERT INTO measurements " +
+                "(device_id, measured_at, distance_cm, temperature_c, sonic_rssi, sonic_src) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                MeasurementEntity e = batch.get(i);
+                ps.setString(1, e.getDeviceId());
+                ps.setTimestamp(2, toTimestamp(e.getMeasuredAt()));
+                setNullableInt(ps, 3, e.getDistanceCm());
+                setNullableDouble(ps, 4, e.getTemperatureC());
+                setNullableInt(ps, 5, e.getSonicRssi());
+                setNullableInt(ps, 6, e.getSonicSrc());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
     }
 
     // -------------------------------------------------------------------------
-    // Helpers
+    // Spool
     // -------------------------------------------------------------------------
 
     /**
-     * Drain up to batchSize elements from the queue into a list.
+     * Rilegge le entity dallo spool e le inserisce, solo con la coda in memoria
+     * sotto la soglia bassa. Se il primo inserimento fallisce il batch resta
+     * sullo spool (riletto al ciclo successivo); se fallisce dopo inserimenti
+     * riusciti, le entity non inserite vengono riscritte in coda allo spool.
      */
-    private <T> List<T> drain(ConcurrentLinkedQueue<T> queue) {
-        List<T> list = new ArrayList<>(batchSize);
-        T item;
-        int count = 0;
-        while (count < batchSize && (item = queue.poll()) != null) {
-            list.add(item);
-            count++;
+    private void replaySpool(int[] counts, int maxBatches) {
+        int processed = 0;
+        while (processed++ < maxBatches && spool.depth() > 0 && spool.canReplay(queued.get())) {
+            WriteAheadSpool.Replay replay = spool.read(batchSize);
+            if (replay.isEmpty()) {
+                break;
+            }
+
+            // Tabelle inserite con successo, nell'ordine telemetry, settings, statistics, locations, measurements
+            int done = 0;
+            try {
+                if (!replay.telemetry.isEmpty()) insertTelemetry(replay.telemetry);
+                counts[0] += replay.telemetry.size();
+                done++;
+                if (!replay.settings.isEmpty()) insertSettings(replay.settings);
+                counts[1] += replay.settings.size();
+                done++;
+                if (!replay.statistics.isEmpty()) insertStatistics(replay.statistics);
+                counts[2] += replay.statistics.size();
+                done++;
+                if (!replay.locations.isEmpty()) insertLocations(replay.locations);
+                counts[3] += replay.locations.size();
+                done++;
+                if (!replay.measurements.isEmpty()) insertMeasurements(replay.measurements);
+                counts[4] += replay.measurements.size();
+                done++;
+            } catch (Exception ex) {
+                List<List<?>> tables = List.of(replay.telemetry, replay.settings, replay.statistics, replay.locations,
+                        replay.measurements);
+                if (tables.subList(0, done).stream().allMatch(List::isEmpty)) {
+                    log.warn("Spool replay failed, {} records kept on disk: {}", spool.depth(), ex.getMessage());
+                    return;
+                }
+                log.error("Spool replay partially failed, re-spooling the remaining records: {}", ex.getMessage(), ex);
+                tables.subList(done, tables.size()).forEach(spool::appendAll);
+            }
+            spool.commit(replay);
+            log.info("Spool replay: {} records processed, {} still pending", replay.size(), spool.depth());
         }
-        return list;
+        spool.maybeResume(queued.get());
     }
 
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
     private Timestamp toTimestamp(java.time.LocalDateTime ldt) {
         return ldt != null ? Timestamp.valueOf(ldt) : null;
     }
@@ -353,4 +663,12 @@ public class BatchInsertService implements BatchWriteService {
             ps.setNull(index, Types.BIGINT);
         }
     }
+
+    private void setNullableBytes(PreparedStatement ps, int index, byte[] value) throws SQLException {
+        if (value != null) {
+            ps.setBytes(index, value);
+        } else {
+            ps.setNull(index, Types.VARBINARY);
+        }
+    }
 }
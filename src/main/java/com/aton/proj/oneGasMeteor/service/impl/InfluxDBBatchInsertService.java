@@ -6,12 +6,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -19,9 +22,12 @@ import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnInfluxDatabase;
 import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.aton.proj.oneGasMeteor.repository.impl.influxdb.InfluxDBPointMapper;
 import com.aton.proj.oneGasMeteor.service.BatchWriteService;
+import com.aton.proj.oneGasMeteor.service.impl.line.PipelinedInfluxDBWriter;
+import com.aton.proj.oneGasMeteor.service.spool.WriteAheadSpool;
 import com.influxdb.client.WriteApiBlocking;
 import com.influxdb.client.write.Point;
 
@@ -31,6 +37,14 @@ import jakarta.annotation.PostConstruct;
  * Service per batch INSERT su InfluxDB. Stessa architettura di
  * BatchInsertService (code concorrenti + flush periodico) ma usa
  * WriteApiBlocking.writePoints() al posto di JdbcTemplate.batchUpdate().
+ * Con batch.spool.enabled=true usa lo stesso {@link WriteAheadSpool}.
+ *
+ * Con influxdb.write.pipelined.enabled=true scrive tramite
+ * {@link PipelinedInfluxDBWriter} (line protocol senza Point, richieste
+ * asincrone): anche con batch.insert.size=-1 il thread del device non attende
+ * più la scrittura HTTP. I batch con tentativi esauriti tornano dal writer a
+ * {@link #onPipelineFailure(List)}; quelli rifiutati da InfluxDB (4xx) vengono
+ * scartati dal writer.
  */
 @Service
 @ConditionalOnInfluxDatabase
@@ -39,6 +53,8 @@ public class InfluxDBBatchInsertService implements BatchWriteService {
 	private static final Logger log = LoggerFactory.getLogger(InfluxDBBatchInsertService.class);
 
 	private final WriteApiBlocking writeApi;
+	private final WriteAheadSpool spool;
+	private final PipelinedInfluxDBWriter pipelinedWriter;
 
 	@Value("${batch.insert.size:100}")
 	private int batchSize;
@@ -50,16 +66,27 @@ public class InfluxDBBatchInsertService implements BatchWriteService {
 	private final ConcurrentLinkedQueue<DeviceSettingsEntity> settingsQueue = new ConcurrentLinkedQueue<>();
 	private final ConcurrentLinkedQueue<DeviceStatisticsEntity> statisticsQueue = new ConcurrentLinkedQueue<>();
 	private final ConcurrentLinkedQueue<DeviceLocationEntity> locationQueue = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<MeasurementEntity> measurementQueue = new ConcurrentLinkedQueue<>();
+
+	/** Entity nelle code in memoria (ConcurrentLinkedQueue.size() è O(n)) */
+	private final AtomicInteger queued = new AtomicInteger();
 
 	private final ReentrantLock flushLock = new ReentrantLock();
 
-	public InfluxDBBatchInsertService(WriteApiBlocking writeApi) {
+	public InfluxDBBatchInsertService(WriteApiBlocking writeApi, @Nullable WriteAheadSpool spool,
+			@Nullable PipelinedInfluxDBWriter pipelinedWriter) {
 		this.writeApi = writeApi;
-		log.info("InfluxDBBatchInsertService initialized");
+		this.spool = spool;
+		this.pipelinedWriter = pipelinedWriter;
+		log.info("InfluxDBBatchInsertService initialized (spool {}, writer {})", spool != null ? "enabled" : "disabled",
+				pipelinedWriter != null ? "pipelined" : "blocking");
 	}
 
 	@PostConstruct
 	void validate() {
+		if (pipelinedWriter != null) {
+			pipelinedWriter.setFailureHandler(this::onPipelineFailure);
+		}
 		if (batchSize == -1) {
 			log.info(
 					"InfluxDBBatchInsertService: batch mode DISABLED (batch.insert.size=-1), writing directly to InfluxDB");
@@ -70,47 +97,106 @@ public class InfluxDBBatchInsertService implements BatchWriteService {
 
 	@Override
 	public void enqueue(TelemetryEntity entity) {
-		if (batchSize == -1) {
+		if (batchSize == -1 && pipelinedWriter != null) {
+			pipelinedWriter.write(List.of(entity));
+		} else if (batchSize == -1) {
 			writeDirectly(InfluxDBPointMapper.toPoint(entity), "telemetry");
+		} else if (spool != null && spool.shouldSpill(queued.get())) {
+			spool.append(entity);
 		} else {
 			telemetryQueue.add(entity);
+			queued.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void enqueueAll(List<TelemetryEntity> entities) {
+		if (batchSize == -1 && pipelinedWriter != null) {
+			pipelinedWriter.write(entities);
+		} else if (batchSize == -1) {
+			BatchWriteService.super.enqueueAll(entities);
+		} else if (spool != null && spool.shouldSpill(queued.get())) {
+			spool.appendAll(entities);
+		} else {
+			telemetryQueue.addAll(entities);
+			queued.addAndGet(entities.size());
 		}
 	}
 
 	@Override
 	public void enqueue(DeviceSettingsEntity entity) {
-		if (batchSize == -1) {
+		if (batchSize == -1 && pipelinedWriter != null) {
+			pipelinedWriter.write(List.of(entity));
+		} else if (batchSize == -1) {
 			writeDirectly(InfluxDBPointMapper.toPoint(entity), "device_settings");
+		} else if (spool != null && spool.shouldSpill(queued.get())) {
+			spool.append(entity);
 		} else {
 			settingsQueue.add(entity);
+			queued.incrementAndGet();
 		}
 	}
 
 	@Override
 	public void enqueue(DeviceStatisticsEntity entity) {
-		if (batchSize == -1) {
+		if (batchSize == -1 && pipelinedWriter != null) {
+			pipelinedWriter.write(List.of(entity));
+		} else if (batchSize == -1) {
 			writeDirectly(InfluxDBPointMapper.toPoint(entity), "device_statistics");
+		} else if (spool != null && spool.shouldSpill(queued.get())) {
+			spool.append(entity);
 		} else {
 			statisticsQueue.add(entity);
+			queued.incrementAndGet();
 		}
 	}
 
 	@Override
 	public void enqueue(DeviceLocationEntity entity) {
-		if (batchSize == -1) {
+		if (batchSize == -1 && pipelinedWriter != null) {
+			pipelinedWriter.write(List.of(entity));
+		} else if (batchSize == -1) {
 			writeDirectly(InfluxDBPointMapper.toPoint(entity), "device_locations");
+		} else if (spool != null && spool.shouldSpill(queued.get())) {
+			spool.append(entity);
 		} else {
 			locationQueue.add(entity);
+			queued.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void enqueueMeasurements(List<MeasurementEntity> measurements) {
+		if (batchSize == -1 && pipelinedWriter != null) {
+			pipelinedWriter.write(measurements);
+		} else if (batchSize == -1) {
+			List<Point> points = measurements.stream().map(InfluxDBPointMapper::toPoint).toList();
+			try {
+				writeApi.writePoints(points);
+				log.debug("Direct write measurements: {} records persisted", points.size());
+			} catch (Exception ex) {
+				log.error("Direct write failed for measurements: {}", ex.getMessage(), ex);
+			}
+		} else if (spool != null && spool.shouldSpill(queued.get())) {
+			spool.appendAll(measurements);
+		} else {
+			measurementQueue.addAll(measurements);
+			queued.addAndGet(measurements.size());
 		}
 	}
 
+	@Override
+	public int getQueuedCount() {
+		return queued.get();
+	}
+
 	@Scheduled(fixedDelayString = "${batch.insert.interval-ms:2000}")
 	public void flushAll() {
 		if (batchSize == -1) {
 			return;
 		}
 		if (telemetryQueue.isEmpty() && settingsQueue.isEmpty() && statisticsQueue.isEmpty()
-				&& locationQueue.isEmpty()) {
+				&& locationQueue.isEmpty() && measurementQueue.isEmpty() && (spool == null || spool.depth() == 0)) {
 			log.trace("All queues empty, skipping flush cycle");
 			return;
 		}
@@ -121,7 +207,7 @@ public class InfluxDBBatchInsertService implements BatchWriteService {
 		}
 
 		Instant start = Instant.now();
-		int[] counts = new int[4];
+		int[] counts = new int[5];
 		int maxBatchesPerCycle = 10;
 
 		try {
@@ -129,12 +215,20 @@ public class InfluxDBBatchInsertService implements BatchWriteService {
 			counts[1] += flushQueue(settingsQueue, this::flushSettings, maxBatchesPerCycle);
 			counts[2] += flushQueue(statisticsQueue, this::flushStatistics, maxBatchesPerCycle);
 			counts[3] += flushQueue(locationQueue, this::flushLocations, maxBatchesPerCycle);
+			counts[4] += flushQueue(measurementQueue, this::flushMeasurements, maxBatchesPerCycle);
+			if (pipelinedWriter != null) {
+				// il resto del ciclo parte subito invece di attendere influxdb.write.flush-interval-ms
+				pipelinedWriter.flush();
+			}
+			if (spool != null) {
+				replaySpool(counts, maxBatchesPerCycle);
+			}
 		} finally {
 			flushLock.unlock();
 			long ms = Duration.between(start, Instant.now()).toMillis();
 			log.info(
-					"InfluxDB batch flush completed in {} ms — inserted: telemetry={}, settings={}, statistics={}, locations={}",
-					ms, counts[0], counts[1], counts[2], counts[3]);
+					"InfluxDB batch flush completed in {} ms — inserted: telemetry={}, settings={}, statistics={}, locations={}, measurements={}",
+					ms, counts[0], counts[1], counts[2], counts[3], counts[4]);
 		}
 	}
 
@@ -153,81 +247,112 @@ public class InfluxDBBatchInsertService implements BatchWriteService {
 	// -------------------------------------------------------------------------
 
 	private int flushTelemetry() {
-		List<TelemetryEntity> batch = drain(telemetryQueue);
-		if (batch.isEmpty())
-			return 0;
-
-		log.debug("Flushing {} telemetry records to InfluxDB", batch.size());
-		try {
-			List<Point> points = batch.stream().map(InfluxDBPointMapper::toPoint).toList();
-			writeApi.writePoints(points);
-			log.info("InfluxDB batch write telemetry: {} records persisted", batch.size());
-			return batch.size();
-		} catch (Exception ex) {
-			log.error("InfluxDB batch write failed for telemetry ({} records), re-enqueuing: {}", batch.size(),
-					ex.getMessage(), ex);
-			telemetryQueue.addAll(batch);
-			return 0;
-		}
+		return flushBatch(telemetryQueue, "telemetry", InfluxDBPointMapper::toPoint);
 	}
 
 	private int flushSettings() {
-		List<DeviceSettingsEntity> batch = drain(settingsQueue);
-		if (batch.isEmpty())
-			return 0;
-
-		log.debug("Flushing {} device_settings records to InfluxDB", batch.size());
-		try {
-			List<Point> points = batch.stream().map(InfluxDBPointMapper::toPoint).toList();
-			writeApi.writePoints(points);
-			log.info("InfluxDB batch write device_settings: {} records persisted", batch.size());
-			return batch.size();
-		} catch (Exception ex) {
-			log.error("InfluxDB batch write failed for device_settings ({} records), re-enqueuing: {}", batch.size(),
-					ex.getMessage(), ex);
-			settingsQueue.addAll(batch);
-			return 0;
-		}
+		return flushBatch(settingsQueue, "device_settings", InfluxDBPointMapper::toPoint);
 	}
 
 	private int flushStatistics() {
-		List<DeviceStatisticsEntity> batch = drain(statisticsQueue);
-		if (batch.isEmpty())
-			return 0;
-
-		log.debug("Flushing {} device_statistics records to InfluxDB", batch.size());
-		try {
-			List<Point> points = batch.stream().map(InfluxDBPointMapper::toPoint).toList();
-			writeApi.writePoints(points);
-			log.info("InfluxDB batch write device_statistics: {} records persisted", batch.size());
-			return batch.size();
-		} catch (Exception ex) {
-			log.error("InfluxDB batch write failed for device_statistics ({} records), re-enqueuing: {}", batch.size(),
-					ex.getMessage(), ex);
-			statisticsQueue.addAll(batch);
-			return 0;
-		}
+		return flushBatch(statisticsQueue, "device_statistics", InfluxDBPointMapper::toPoint);
 	}
 
 	private int flushLocations() {
-		List<DeviceLocationEntity> batch = drain(locationQueue);
+		return flushBatch(locationQueue, "device_locations", InfluxDBPointMapper::toPoint);
+	}
+
+	private int flushMeasurements() {
+		return flushBatch(measurementQueue, "measurements", InfluxDBPointMapper::toPoint);
+	}
+
+	private <T> int flushBatch(ConcurrentLinkedQueue<T> queue, String measurement, Function<T, Point> toPoint) {
+		List<T> batch = drain(queue);
 		if (batch.isEmpty())
 			return 0;
 
-		log.debug("Flushing {} device_locations records to InfluxDB", batch.size());
+		log.debug("Flushing {} {} records to InfluxDB", batch.size(), measurement);
+		if (pipelinedWriter != null) {
+			// esito asincrono: in caso di errore le entity tornano da onPipelineFailure
+			pipelinedWriter.write(batch);
+			return batch.size();
+		}
 		try {
-			List<Point> points = batch.stream().map(InfluxDBPointMapper::toPoint).toList();
+			List<Point> points = batch.stream().map(toPoint).toList();
 			writeApi.writePoints(points);
-			log.info("InfluxDB batch write device_locations: {} records persisted", batch.size());
+			log.info("InfluxDB batch write {}: {} records persisted", measurement, batch.size());
 			return batch.size();
 		} catch (Exception ex) {
-			log.error("InfluxDB batch write failed for device_locations ({} records), re-enqueuing: {}", batch.size(),
-					ex.getMessage(), ex);
-			locationQueue.addAll(batch);
+			if (spool != null) {
+				log.error("InfluxDB batch write failed for {} ({} records), spooling to disk: {}", measurement,
+						batch.size(), ex.getMessage(), ex);
+				spool.appendAll(batch);
+			} else {
+				log.error("InfluxDB batch write failed for {} ({} records), re-enqueuing: {}", measurement,
+						batch.size(), ex.getMessage(), ex);
+				queue.addAll(batch);
+				queued.addAndGet(batch.size());
+			}
 			return 0;
 		}
 	}
 
+	/**
+	 * Rilegge le entity dallo spool (coda in memoria sotto la soglia bassa) e le
+	 * scrive con un'unica writePoints: in caso di errore restano sullo spool.
+	 */
+	private void replaySpool(int[] counts, int maxBatches) {
+		int processed = 0;
+		while (processed++ < maxBatches && spool.depth() > 0 && spool.canReplay(queued.get())) {
+			WriteAheadSpool.Replay replay = spool.read(batchSize);
+			if (replay.isEmpty()) {
+				break;
+			}
+
+			try {
+				if (pipelinedWriter != null) {
+					// commit solo dopo la risposta di InfluxDB: si attende l'esito
+					List<Object> entities = new ArrayList<>(replay.size());
+					entities.addAll(replay.telemetry);
+					entities.addAll(replay.settings);
+					entities.addAll(replay.statistics);
+					entities.addAll(replay.locations);
+					entities.addAll(replay.measurements);
+					pipelinedWriter.submit(entities).join();
+				} else {
+					List<Point> points = new ArrayList<>(replay.size());
+					replay.telemetry.forEach(e -> points.add(InfluxDBPointMapper.toPoint(e)));
+					replay.settings.forEach(e -> points.add(InfluxDBPointMapper.toPoint(e)));
+					replay.statistics.forEach(e -> points.add(InfluxDBPointMapper.toPoint(e)));
+					replay.locations.forEach(e -> points.add(InfluxDBPointMapper.toPoint(e)));
+					replay.measurements.forEach(e -> points.add(InfluxDBPointMapper.toPoint(e)));
+					if (!points.isEmpty()) {
+						writeApi.writePoints(points);
+					}
+				}
+			} catch (Exception ex) {
+				if (!PipelinedInfluxDBWriter.isRejected(ex)) {
+					log.warn("Spool replay to InfluxDB failed, {} records kept on disk: {}", spool.depth(),
+							ex.getMessage());
+					return;
+				}
+				// righe rifiutate: ripeterle bloccherebbe lo spool per sempre
+				log.error("Spool replay rejected by InfluxDB, {} records dropped: {}", replay.size(),
+						ex.getMessage());
+				spool.commit(replay);
+				continue;
+			}
+			counts[0] += replay.telemetry.size();
+			counts[1] += replay.settings.size();
+			counts[2] += replay.statistics.size();
+			counts[3] += replay.locations.size();
+			counts[4] += replay.measurements.size();
+			spool.commit(replay);
+			log.info("Spool replay: {} records processed, {} still pending", replay.size(), spool.depth());
+		}
+		spool.maybeResume(queued.get());
+	}
+
 	// -------------------------------------------------------------------------
 	// Helpers
 	// -------------------------------------------------------------------------
@@ -241,6 +366,34 @@ public class InfluxDBBatchInsertService implements BatchWriteService {
 		}
 	}
 
+	/**
+	 * Batch con tentativi esauriti nel {@link PipelinedInfluxDBWriter} (errori
+	 * di rete, 429, 5xx): stessa gestione di
+	 * {@link #flushBatch}, spool se attivo altrimenti di nuovo in coda. In
+	 * scrittura diretta senza spool le entity vanno perse come con writePoint.
+	 */
+	void onPipelineFailure(List<Object> entities) {
+		if (spool != null) {
+			log.error("Pipelined InfluxDB write failed ({} records), spooling to disk", entities.size());
+			spool.appendAll(entities);
+		} else if (batchSize == -1) {
+			log.error("Pipelined InfluxDB write failed, {} records lost", entities.size());
+		} else {
+			log.error("Pipelined InfluxDB write failed ({} records), re-enqueuing", entities.size());
+			for (Object entity : entities) {
+				switch (entity) {
+				case TelemetryEntity e -> telemetryQueue.add(e);
+				case DeviceSettingsEntity e -> settingsQueue.add(e);
+				case DeviceStatisticsEntity e -> statisticsQueue.add(e);
+				case DeviceLocationEntity e -> locationQueue.add(e);
+				case MeasurementEntity e -> measurementQueue.add(e);
+				default -> throw new IllegalArgumentException("Unsupported entity: " + entity.getClass());
+				}
+			}
+			queued.addAndGet(entities.size());
+		}
+	}
+
 	private <T> List<T> drain(ConcurrentLinkedQueue<T> queue) {
 		List<T> list = new ArrayList<>(batchSize);
 		T item;
@@ -249,6 +402,7 @@ public class InfluxDBBatchInsertService implements BatchWriteService {
 			list.add(item);
 			count++;
 		}
+		queued.addAndGet(-count);
 		return list;
 	}
 }
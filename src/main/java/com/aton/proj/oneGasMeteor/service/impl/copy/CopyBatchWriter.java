@@ -0,0 +1,239 @@
+package com.aton.proj.oneGasMeteor.service.impl.copy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnJpaDatabase;
+import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
+import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
+import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Bulk load su PostgreSQL/TimescaleDB con {@code COPY ... FROM STDIN (FORMAT
+ * binary)} tramite il driver pgjdbc (batch.insert.copy.enabled=true).
+ *
+ * Usato da {@link com.aton.proj.oneGasMeteor.service.impl.BatchInsertService}
+ * al posto di JdbcTemplate.batchUpdate(): le righe vengono codificate con
+ * {@link PgBinaryRowWriter} e inviate in streaming su una connessione del
+ * pool. Con un database diverso da PostgreSQL {@link #isAvailable()} è false e
+ * BatchInsertService resta sul batch JDBC.
+ */
+@Component
+@ConditionalOnJpaDatabase
+@ConditionalOnProperty(name = "batch.insert.copy.enabled", havingValue = "true")
+public class CopyBatchWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(CopyBatchWriter.class);
+
+	private static final String COPY_TELEMETRY = "COPY telemetry_data "
+			+ "(device_id, device_type, raw_message, decoded_data, received_at, processed_at, "
+			+ "imei, firmware_version, battery_voltage, battery_percentage, signal_strength, "
+			+ "message_type, measurement_count) FROM STDIN (FORMAT binary)";
+
+	/** Con telemetry.decoded-data.format=binary (richiede db-migration-decoded-data-bin.sql) */
+	private static final String COPY_TELEMETRY_BIN = "COPY telemetry_data "
+			+ "(device_id, device_type, raw_message, decoded_data, received_at, processed_at, "
+			+ "imei, firmware_version, battery_voltage, battery_percentage, signal_strength, "
+			+ "message_type, measurement_count, decoded_data_bin) FROM STDIN (FORMAT binary)";
+
+	private static final String COPY_SETTINGS = "COPY device_settings "
+			+ "(device_id, device_type, raw_message, settings_json, received_at) FROM STDIN (FORMAT binary)";
+
+	private static final String COPY_STATISTICS = "COPY device_statistics "
+			+ "(device_id, device_type, raw_message, iccid, energy_used, min_temperature, "
+			+ "max_temperature, message_count, delivery_fail_count, total_send_time, "
+			+ "max_send_time, min_send_time, rssi_total, rssi_valid_count, rssi_fail_count, "
+			+ "average_send_time, average_rssi, delivery_success_rate, received_at) FROM STDIN (FORMAT binary)";
+
+	private static final String COPY_LOCATIONS = "COPY device_locations "
+			+ "(device_id, device_type, raw_message, latitude, longitude, latitude_raw, "
+			+ "longitude_raw, altitude, speed_kmh, speed_knots, ground_heading, "
+			+ "horizontal_precision, utc_time, gps_date, number_of_satellites, "
+			+ "time_to_fix_seconds, gnss_positioning_mode, received_at) FROM STDIN (FORMAT binary)";
+
+	private static final String COPY_MEASUREMENTS = "COPY measurements "
+			+ "(device_id, measured_at, distance_cm, temperature_c, sonic_rssi, sonic_src) FROM STDIN (FORMAT binary)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	@Value("${batch.insert.copy.buffer-size:65536}")
+	private int bufferSize;
+
+	@Value("${telemetry.decoded-data.format:json}")
+	private String decodedDataFormat = "json";
+
+	private volatile boolean available;
+
+	@FunctionalInterface
+	private interface RowEncoder<T> {
+		void encode(PgBinaryRowWriter writer, T entity) throws IOException;
+	}
+
+	public CopyBatchWriter(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@PostConstruct
+	void detectDatabase() {
+		try {
+			String product = jdbcTemplate
+					.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+			available = "PostgreSQL".equalsIgnoreCase(product);
+			if (available) {
+				log.info("CopyBatchWriter enabled: batch INSERT replaced by binary COPY (buffer {} bytes)", bufferSize);
+			} else {
+				log.warn("CopyBatchWriter: database '{}' does not support COPY, falling back to JDBC batch", product);
+			}
+		} catch (Exception e) {
+			available = false;
+			log.warn("CopyBatchWriter: cannot detect database ({}), falling back to JDBC batch", e.getMessage());
+		}
+	}
+
+	/**
+	 * @return true se il database è PostgreSQL e COPY è utilizzabile
+	 */
+	public boolean isAvailable() {
+		return available;
+	}
+
+	public long copyTelemetry(List<TelemetryEntity> batch) {
+		if ("binary".equalsIgnoreCase(decodedDataFormat)) {
+			return copy(COPY_TELEMETRY_BIN, batch, 14, (w, e) -> telemetryRow(w, e).bytea(e.getDecodedDataBin()));
+		}
+		return copy(COPY_TELEMETRY, batch, 13, CopyBatchWriter::telemetryRow);
+	}
+
+	private static PgBinaryRowWriter telemetryRow(PgBinaryRowWriter w, TelemetryEntity e) throws IOException {
+		return w
+				.text(e.getDeviceId())
+				.text(e.getDeviceType())
+				.text(e.getRawMessage())
+				.text(e.getDecodedDataJson())
+				.timestamp(e.getReceivedAt())
+				.timestamp(e.getProcessedAt())
+				.text(e.getImei())
+				.text(e.getFirmwareVersion())
+				.float8(e.getBatteryVoltage())
+				.float8(e.getBatteryPercentage())
+				.int4(e.getSignalStrength())
+				.text(e.getMessageType())
+				.int4(e.getMeasurementCount());
+	}
+
+	public long copySettings(List<DeviceSettingsEntity> batch) {
+		return copy(COPY_SETTINGS, batch, 5, (w, e) -> w
+				.text(e.getDeviceId())
+				.text(e.getDeviceType())
+				.text(e.getRawMessage())
+				.text(e.getSettingsJson())
+				.timestamp(e.getReceivedAt()));
+	}
+
+	public long copyStatistics(List<DeviceStatisticsEntity> batch) {
+		return copy(COPY_STATISTICS, batch, 19, (w, e) -> w
+				.text(e.getDeviceId())
+				.text(e.getDeviceType())
+				.text(e.getRawMessage())
+				.text(e.getIccid())
+				.int8(e.getEnergyUsed())
+				.int4(e.getMinTemperature())
+				.int4(e.getMaxTemperature())
+				.int4(e.getMessageCount())
+				.int4(e.getDeliveryFailCount())
+				.int8(e.getTotalSendTime())
+				.int8(e.getMaxSendTime())
+				.int8(e.getMinSendTime())
+				.int8(e.getRssiTotal())
+				.int4(e.getRssiValidCount())
+				.int4(e.getRssiFailCount())
+				.float8(e.getAverageSendTime())
+				.float8(e.getAverageRssi())
+				.float8(e.getDeliverySuccessRate())
+				.timestamp(e.getReceivedAt()));
+	}
+
+	public long copyLocations(List<DeviceLocationEntity> batch) {
+		return copy(COPY_LOCATIONS, batch, 18, (w, e) -> w
+				.text(e.getDeviceId())
+				.text(e.getDeviceType())
+				.text(e.getRawMessage())
+				.float8(e.getLatitude())
+				.float8(e.getLongitude())
+				.text(e.getLatitudeRaw())
+				.text(e.getLongitudeRaw())
+				.float8(e.getAltitude())
+				.float8(e.getSpeedKmh())
+				.float8(e.getSpeedKnots())
+				.float8(e.getGroundHeading())
+				.float8(e.getHorizontalPrecision())
+				.time(e.getUtcTime())
+				.text(e.getDate())
+				.int4(e.getNumberOfSatellites())
+				.int4(e.getTimeToFixSeconds())
+				.int4(e.getGnssPositioningMode())
+				.timestamp(e.getReceivedAt()));
+	}
+
+	public long copyMeasurements(List<MeasurementEntity> batch) {
+		return copy(COPY_MEASUREMENTS, batch, 6, (w, e) -> w
+				.text(e.getDeviceId())
+				.timestamp(e.getMeasuredAt())
+				.int4(e.getDistanceCm())
+				.float8(e.getTemperatureC())
+				.int4(e.getSonicRssi())
+				.int4(e.getSonicSrc()));
+	}
+
+	/**
+	 * Esegue un COPY in streaming: le righe passano dal buffer al socket senza
+	 * costruire l'intero payload in memoria. In caso di errore il COPY viene
+	 * annullato (close() lo confermerebbe con le righe già inviate).
+	 *
+	 * @return righe copiate secondo il server
+	 */
+	private <T> long copy(String sql, List<T> batch, int columns, RowEncoder<T> encoder) {
+		Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+			PGCopyOutputStream out = new PGCopyOutputStream(unwrap(con), sql, bufferSize);
+			try {
+				PgBinaryRowWriter writer = new PgBinaryRowWriter(out).header();
+				for (T entity : batch) {
+					writer.startRow(columns);
+					encoder.encode(writer, entity);
+				}
+				writer.trailer();
+				return out.endCopy();
+			} catch (IOException | RuntimeException e) {
+				if (out.isActive()) {
+					out.cancelCopy();
+				}
+				if (e instanceof IOException io) {
+					throw new UncheckedIOException("COPY failed: " + io.getMessage(), io);
+				}
+				throw (RuntimeException) e;
+			}
+		});
+		return rows != null ? rows : 0;
+	}
+
+	private static PGConnection unwrap(Connection con) throws SQLException {
+		return con.unwrap(PGConnection.class);
+	}
+}
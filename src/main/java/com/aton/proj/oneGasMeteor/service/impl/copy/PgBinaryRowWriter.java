@@ -0,0 +1,127 @@
+package com.aton.proj.oneGasMeteor.service.impl.copy;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Scrittura del formato binario di {@code COPY ... FROM STDIN (FORMAT binary)}
+ * di PostgreSQL.
+ *
+ * <pre>
+ * header   "PGCOPY\n\377\r\n\0" + int32 flags (0) + int32 estensione (0)
+ * riga     int16 numero colonne, poi per colonna int32 lunghezza (-1 = NULL) + valore
+ * trailer  int16 -1
+ * </pre>
+ *
+ * I valori vanno scritti nel formato binario del tipo della colonna: text e
+ * varchar UTF-8, int4/int8/float8 big-endian, timestamp e time in microsecondi
+ * (timestamp dal 2000-01-01 00:00:00, senza fuso), bytea così com'è.
+ */
+public final class PgBinaryRowWriter {
+
+	private static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 };
+
+	private static final LocalDateTime PG_EPOCH = LocalDate.of(2000, 1, 1).atStartOfDay();
+
+	private final DataOutputStream out;
+
+	public PgBinaryRowWriter(OutputStream out) {
+		this.out = new DataOutputStream(out);
+	}
+
+	public PgBinaryRowWriter header() throws IOException {
+		out.write(SIGNATURE);
+		out.writeInt(0);
+		out.writeInt(0);
+		return this;
+	}
+
+	public PgBinaryRowWriter startRow(int columns) throws IOException {
+		out.writeShort(columns);
+		return this;
+	}
+
+	public PgBinaryRowWriter text(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		return this;
+	}
+
+	public PgBinaryRowWriter int4(Integer value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		out.writeInt(4);
+		out.writeInt(value);
+		return this;
+	}
+
+	public PgBinaryRowWriter int8(Long value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		out.writeInt(8);
+		out.writeLong(value);
+		return this;
+	}
+
+	public PgBinaryRowWriter float8(Double value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		out.writeInt(8);
+		out.writeDouble(value);
+		return this;
+	}
+
+	/**
+	 * Colonna TIMESTAMP (senza fuso): stesso valore "a orologio" che
+	 * JdbcTemplate invia con {@code Timestamp.valueOf(LocalDateTime)}
+	 */
+	public PgBinaryRowWriter timestamp(LocalDateTime value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		out.writeInt(8);
+		out.writeLong(ChronoUnit.MICROS.between(PG_EPOCH, value));
+		return this;
+	}
+
+	public PgBinaryRowWriter time(LocalTime value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		out.writeInt(8);
+		out.writeLong(value.toNanoOfDay() / 1000);
+		return this;
+	}
+
+	public PgBinaryRowWriter bytea(byte[] value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		out.writeInt(value.length);
+		out.write(value);
+		return this;
+	}
+
+	public PgBinaryRowWriter nullValue() throws IOException {
+		out.writeInt(-1);
+		return this;
+	}
+
+	public void trailer() throws IOException {
+		out.writeShort(-1);
+		out.flush();
+	}
+}
@@ -0,0 +1,281 @@
+package com.aton.proj.oneGasMeteor.service.impl.line;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Scrittura del line protocol di InfluxDB direttamente in un buffer di byte
+ * riutilizzabile, senza oggetti Point intermedi.
+ *
+ * <pre>
+ * measurement[,tag=valore...] field=valore[,field=valore...] timestamp\n
+ * </pre>
+ *
+ * Stesse regole di escaping e formato di {@code Point.toLineProtocol()} del
+ * client influxdb-client-java:
+ * <ul>
+ * <li>measurement: backslash prima di virgola e spazio</li>
+ * <li>chiavi e valori dei tag, chiavi dei field: anche prima di '='</li>
+ * <li>a capo, CR e tab diventano \n, \r, \t</li>
+ * <li>field stringa tra virgolette, backslash prima di '"' e '\'</li>
+ * <li>interi con suffisso 'i', double senza esponente ("3.6", "87.0")</li>
+ * </ul>
+ * Tag null o vuoti e field null o non finiti vengono omessi; una riga senza
+ * field viene scartata (InfluxDB la rifiuterebbe). Tag e field vanno passati
+ * in ordine di chiave per ottenere la stessa riga di Point.
+ *
+ * Il buffer cresce fino al batch più grande e resta allocato: dopo
+ * {@link #reset()} le righe successive non allocano.
+ */
+public final class LineProtocolWriter {
+
+	private byte[] buf;
+	private int size;
+
+	/** Inizio della riga in corso, per scartarla se resta senza field */
+	private int lineStart;
+	private boolean hasFields;
+	private int lines;
+
+	public LineProtocolWriter(int initialCapacity) {
+		this.buf = new byte[Math.max(initialCapacity, 64)];
+	}
+
+	public LineProtocolWriter measurement(String name) {
+		lineStart = size;
+		hasFields = false;
+		escape(name, false);
+		return this;
+	}
+
+	public LineProtocolWriter tag(String key, String value) {
+		if (value == null || value.isEmpty()) {
+			return this;
+		}
+		write((byte) ',');
+		escape(key, true);
+		write((byte) '=');
+		escape(value, true);
+		return this;
+	}
+
+	public LineProtocolWriter field(String key, String value) {
+		if (value == null) {
+			return this;
+		}
+		fieldKey(key);
+		write((byte) '"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				write((byte) '\\');
+			}
+			i = writeChar(value, i);
+		}
+		write((byte) '"');
+		return this;
+	}
+
+	public LineProtocolWriter field(String key, Integer value) {
+		return value != null ? field(key, value.longValue()) : this;
+	}
+
+	public LineProtocolWriter field(String key, Long value) {
+		if (value == null) {
+			return this;
+		}
+		fieldKey(key);
+		writeLong(value);
+		write((byte) 'i');
+		return this;
+	}
+
+	public LineProtocolWriter field(String key, Double value) {
+		if (value == null || !Double.isFinite(value)) {
+			return this;
+		}
+		fieldKey(key);
+		double v = value;
+		if (v == Math.rint(v) && Math.abs(v) < 1e15 && (v != 0 || 1 / v > 0)) {
+			// caso comune (87.0, 20.0): niente Double.toString
+			writeLong((long) v);
+			writeAscii(".0");
+			return this;
+		}
+		String s = Double.toString(v);
+		if (s.indexOf('E') >= 0) {
+			s = new BigDecimal(s).stripTrailingZeros().toPlainString();
+			if (s.indexOf('.') < 0) {
+				s += ".0";
+			}
+		}
+		writeAscii(s);
+		return this;
+	}
+
+	/**
+	 * Chiude la riga con il timestamp in millisecondi (precision=ms). Senza
+	 * field la riga viene tolta dal buffer.
+	 */
+	public LineProtocolWriter timestamp(long epochMillis) {
+		if (!hasFields) {
+			size = lineStart;
+			return this;
+		}
+		write((byte) ' ');
+		writeLong(epochMillis);
+		write((byte) '\n');
+		lines++;
+		return this;
+	}
+
+	/**
+	 * Toglie la riga in corso (errore durante la codifica di un'entity)
+	 */
+	public void abortLine() {
+		size = lineStart;
+		hasFields = false;
+	}
+
+	/**
+	 * Righe complete nel buffer
+	 */
+	public int lines() {
+		return lines;
+	}
+
+	/**
+	 * Byte delle righe nel buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	public void reset() {
+		size = 0;
+		lineStart = 0;
+		lines = 0;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, size);
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buf, 0, size);
+	}
+
+	// -------------------------------------------------------------------------
+	// Helpers
+	// -------------------------------------------------------------------------
+
+	private void fieldKey(String key) {
+		write(hasFields ? (byte) ',' : (byte) ' ');
+		hasFields = true;
+		escape(key, true);
+		write((byte) '=');
+	}
+
+	private void escape(String s, boolean escapeEqual) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '\n' -> writeEscaped('n');
+			case '\r' -> writeEscaped('r');
+			case '\t' -> writeEscaped('t');
+			case ' ', ',' -> writeEscaped(c);
+			case '=' -> {
+				if (escapeEqual) {
+					writeEscaped(c);
+				} else {
+					write((byte) c);
+				}
+			}
+			default -> i = writeChar(s, i);
+			}
+		}
+	}
+
+	private void writeEscaped(char c) {
+		ensure(2);
+		buf[size++] = '\\';
+		buf[size++] = (byte) c;
+	}
+
+	/**
+	 * Scrive in UTF-8 il carattere in posizione i (coppie surrogate comprese)
+	 *
+	 * @return indice dell'ultimo char consumato
+	 */
+	private int writeChar(String s, int i) {
+		char c = s.charAt(i);
+		if (c < 0x80) {
+			write((byte) c);
+			return i;
+		}
+		ensure(4);
+		if (c < 0x800) {
+			buf[size++] = (byte) (0xC0 | (c >> 6));
+			buf[size++] = (byte) (0x80 | (c & 0x3F));
+			return i;
+		}
+		if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+			int cp = Character.toCodePoint(c, s.charAt(i + 1));
+			buf[size++] = (byte) (0xF0 | (cp >> 18));
+			buf[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+			buf[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+			buf[size++] = (byte) (0x80 | (cp & 0x3F));
+			return i + 1;
+		}
+		if (Character.isSurrogate(c)) {
+			// surrogato isolato: '?' come String.getBytes(UTF_8)
+			buf[size++] = '?';
+			return i;
+		}
+		buf[size++] = (byte) (0xE0 | (c >> 12));
+		buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+		buf[size++] = (byte) (0x80 | (c & 0x3F));
+		return i;
+	}
+
+	private void writeLong(long v) {
+		if (v == Long.MIN_VALUE) {
+			writeAscii(Long.toString(v));
+			return;
+		}
+		ensure(20);
+		if (v < 0) {
+			buf[size++] = '-';
+			v = -v;
+		}
+		int digits = 1;
+		for (long t = v; t >= 10; t /= 10) {
+			digits++;
+		}
+		for (int p = size + digits - 1; p >= size; p--) {
+			buf[p] = (byte) ('0' + (v % 10));
+			v /= 10;
+		}
+		size += digits;
+	}
+
+	private void writeAscii(String s) {
+		ensure(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			buf[size++] = (byte) s.charAt(i);
+		}
+	}
+
+	private void write(byte b) {
+		ensure(1);
+		buf[size++] = b;
+	}
+
+	private void ensure(int extra) {
+		if (size + extra > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+		}
+	}
+}
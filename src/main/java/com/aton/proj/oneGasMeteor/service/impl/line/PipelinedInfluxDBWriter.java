@@ -0,0 +1,489 @@
+package com.aton.proj.oneGasMeteor.service.impl.line;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.config.InfluxDBConfig.InfluxDBProperties;
+import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnInfluxDatabase;
+import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
+import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
+import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.repository.impl.influxdb.InfluxDBPointMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Scrittura su InfluxDB senza Point e senza bloccare i chiamanti
+ * (influxdb.write.pipelined.enabled=true).
+ *
+ * Usato da {@link com.aton.proj.oneGasMeteor.service.impl.InfluxDBBatchInsertService}
+ * al posto di WriteApiBlocking: le entity vengono codificate con
+ * {@link LineProtocolWriter} in un batch aperto e il batch viene inviato
+ * all'endpoint /api/v2/write (gzip, precision=ms) con HttpClient.sendAsync
+ * quando raggiunge influxdb.write.batch-size righe o allo scadere di
+ * influxdb.write.flush-interval-ms.
+ *
+ * <ul>
+ * <li>fino a influxdb.write.max-in-flight richieste contemporanee: oltre, chi
+ * chiude un batch attende (backpressure invece di heap illimitato)</li>
+ * <li>429, 503, altri 5xx ed errori di rete: nuovo tentativo dopo
+ * retry-interval * 2^tentativo (max max-retry-delay-ms, oppure Retry-After)
+ * più un jitter casuale fino a jitter-interval-ms, così le istanze non
+ * riprovano tutte insieme</li>
+ * <li>tentativi esauriti: le entity del batch passano al failure handler
+ * (spool o coda del chiamante)</li>
+ * <li>altri 4xx (righe rifiutate da InfluxDB): riprovare non serve, il batch
+ * viene scartato, registrato nel log e conteggiato in rejectedBatches; con
+ * submit() il future fallisce con {@link RejectedWriteException}</li>
+ * </ul>
+ * Le opzioni hanno lo stesso nome di WriteOptions del client InfluxDB.
+ */
+@Component
+@ConditionalOnInfluxDatabase
+@ConditionalOnProperty(name = "influxdb.write.pipelined.enabled", havingValue = "true")
+public class PipelinedInfluxDBWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(PipelinedInfluxDBWriter.class);
+
+	private final HttpClient httpClient;
+	private final URI writeUri;
+	private final String authorization;
+
+	@Value("${influxdb.write.batch-size:5000}")
+	private int batchSize = 5000;
+
+	@Value("${influxdb.write.max-in-flight:4}")
+	private int maxInFlight = 4;
+
+	@Value("${influxdb.write.max-retries:5}")
+	private int maxRetries = 5;
+
+	@Value("${influxdb.write.retry-interval-ms:1000}")
+	private long retryIntervalMs = 1000;
+
+	@Value("${influxdb.write.max-retry-delay-ms:30000}")
+	private long maxRetryDelayMs = 30000;
+
+	@Value("${influxdb.write.jitter-interval-ms:1000}")
+	private long jitterIntervalMs = 1000;
+
+	@Value("${influxdb.write.request-timeout-ms:10000}")
+	private long requestTimeoutMs = 10000;
+
+	@Value("${influxdb.write.gzip:true}")
+	private boolean gzip = true;
+
+	/** Permessi delle richieste in volo (maxInFlight) */
+	private Semaphore inFlight;
+
+	/** Batch aperto: righe codificate ed entity da restituire in caso di errore */
+	private final ReentrantLock batchLock = new ReentrantLock();
+	private final LineProtocolWriter open = new LineProtocolWriter(64 * 1024);
+	private List<Object> openEntities = new ArrayList<>();
+
+	private volatile Consumer<List<Object>> failureHandler = entities -> log
+			.error("InfluxDB write failed, {} records lost (no failure handler)", entities.size());
+
+	private final AtomicLong sentBatches = new AtomicLong();
+	private final AtomicLong sentLines = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong failedBatches = new AtomicLong();
+	private final AtomicLong rejectedBatches = new AtomicLong();
+	private final AtomicLong rejectedLines = new AtomicLong();
+
+	/** Batch chiuso e pronto per l'invio */
+	private record Batch(byte[] lines, int lineCount, List<Object> entities) {
+	}
+
+	/**
+	 * Batch rifiutato da InfluxDB con un 4xx diverso da 429: le stesse righe
+	 * verrebbero rifiutate di nuovo, non va rimesso in coda né sullo spool
+	 */
+	public static class RejectedWriteException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		RejectedWriteException(String message) {
+			super(message);
+		}
+	}
+
+	public PipelinedInfluxDBWriter(InfluxDBProperties properties, @Value("${influxdb.token}") String token) {
+		this(properties.url(), properties.org(), properties.bucket(), token);
+	}
+
+	PipelinedInfluxDBWriter(String url, String org, String bucket, String token) {
+		this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+		this.writeUri = URI.create(url.replaceAll("/+$", "") + "/api/v2/write?org=" + encode(org) + "&bucket="
+				+ encode(bucket) + "&precision=ms");
+		this.authorization = "Token " + token;
+		log.info("PipelinedInfluxDBWriter initialized ({})", writeUri);
+	}
+
+	/**
+	 * Per le entity senza esito sincrono (batch aperto): riceve quelle di un
+	 * batch con tentativi esauriti. I batch rifiutati (4xx) non arrivano qui.
+	 */
+	public void setFailureHandler(Consumer<List<Object>> failureHandler) {
+		this.failureHandler = failureHandler;
+	}
+
+	/**
+	 * Aggiunge le entity al batch aperto; lo invia ogni volta che raggiunge
+	 * batch-size righe. Non attende la risposta: l'esito arriva al failure
+	 * handler.
+	 */
+	public void write(List<?> entities) {
+		List<Batch> full = null;
+		batchLock.lock();
+		try {
+			for (Object entity : entities) {
+				try {
+					encode(open, entity);
+					openEntities.add(entity);
+				} catch (RuntimeException e) {
+					open.abortLine();
+					log.error("Cannot encode {} for InfluxDB, record skipped: {}", entity.getClass().getSimpleName(),
+							e.getMessage());
+				}
+				if (open.lines() >= batchSize) {
+					if (full == null) {
+						full = new ArrayList<>(2);
+					}
+					full.add(seal());
+				}
+			}
+		} finally {
+			batchLock.unlock();
+		}
+		if (full != null) {
+			// invio fuori dal lock: l'attesa di un permesso non blocca gli altri write
+			full.forEach(this::sendOrFail);
+		}
+	}
+
+	/**
+	 * Invia subito le entity in un batch dedicato (replay dello spool): a
+	 * differenza di {@link #write(List)} l'errore arriva al chiamante.
+	 */
+	public CompletableFuture<Void> submit(List<?> entities) {
+		LineProtocolWriter lines = new LineProtocolWriter(entities.size() * 256);
+		for (Object entity : entities) {
+			encode(lines, entity);
+		}
+		return send(new Batch(lines.toByteArray(), lines.lines(), new ArrayList<>(entities)));
+	}
+
+	/**
+	 * Invia il batch aperto anche se non è pieno
+	 */
+	@Scheduled(fixedDelayString = "${influxdb.write.flush-interval-ms:1000}")
+	public void flush() {
+		Batch batch;
+		batchLock.lock();
+		try {
+			if (openEntities.isEmpty()) {
+				return;
+			}
+			batch = seal();
+		} finally {
+			batchLock.unlock();
+		}
+		sendOrFail(batch);
+	}
+
+	@PostConstruct
+	void start() {
+		inFlight = new Semaphore(maxInFlight);
+		log.info("PipelinedInfluxDBWriter: batch-size={}, max-in-flight={}, gzip={}", batchSize, maxInFlight, gzip);
+	}
+
+	/**
+	 * Invia il batch aperto e attende le richieste in volo (al massimo due
+	 * request-timeout)
+	 */
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		flush();
+		if (inFlight.tryAcquire(maxInFlight, requestTimeoutMs * 2, TimeUnit.MILLISECONDS)) {
+			inFlight.release(maxInFlight);
+		} else {
+			log.warn("PipelinedInfluxDBWriter: {} requests still in flight at shutdown", getInFlight());
+		}
+	}
+
+	private void sendOrFail(Batch batch) {
+		send(batch).exceptionally(ex -> {
+			if (!isRejected(ex)) {
+				failureHandler.accept(batch.entities());
+			}
+			return null;
+		});
+	}
+
+	/** Chiude il batch aperto (sotto batchLock): il buffer resta per il successivo */
+	private Batch seal() {
+		Batch batch = new Batch(open.toByteArray(), open.lines(), openEntities);
+		open.reset();
+		openEntities = new ArrayList<>();
+		return batch;
+	}
+
+	// -------------------------------------------------------------------------
+	// Invio
+	// -------------------------------------------------------------------------
+
+	private CompletableFuture<Void> send(Batch batch) {
+		if (batch.lineCount() == 0) {
+			return CompletableFuture.completedFuture(null);
+		}
+		HttpRequest request;
+		try {
+			// gzip prima di prendere il permesso: la compressione non occupa uno slot
+			request = request(batch.lines());
+			inFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(e);
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		attempt(request, batch, 0, result);
+		return result.whenComplete((ok, ex) -> inFlight.release());
+	}
+
+	private void attempt(HttpRequest request, Batch batch, int attempt, CompletableFuture<Void> result) {
+		httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, ex) -> {
+			if (ex == null && response.statusCode() / 100 == 2) {
+				sentBatches.incrementAndGet();
+				sentLines.addAndGet(batch.lineCount());
+				log.debug("InfluxDB write: {} lines ({} bytes) in attempt {}", batch.lineCount(),
+						batch.lines().length, attempt + 1);
+				result.complete(null);
+				return;
+			}
+			boolean retryable = ex != null || isRetryable(response.statusCode());
+			String reason = ex != null ? ex.getMessage() : "HTTP " + response.statusCode() + " " + response.body();
+			if (!retryable) {
+				rejectedBatches.incrementAndGet();
+				rejectedLines.addAndGet(batch.lineCount());
+				log.error("InfluxDB rejected {} lines, batch dropped: {}", batch.lineCount(), reason);
+				result.completeExceptionally(new RejectedWriteException("InfluxDB rejected batch: " + reason));
+				return;
+			}
+			if (attempt >= maxRetries) {
+				failedBatches.incrementAndGet();
+				log.error("InfluxDB write failed for {} lines after {} attempts: {}", batch.lineCount(), attempt + 1,
+						reason);
+				result.completeExceptionally(new IOException("InfluxDB write failed: " + reason, ex));
+				return;
+			}
+			long delay = retryDelay(attempt, ex == null ? response.headers().firstValue("Retry-After").orElse(null)
+					: null);
+			retries.incrementAndGet();
+			log.warn("InfluxDB write attempt {} failed ({}), retrying in {} ms", attempt + 1, reason, delay);
+			CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+					.execute(() -> attempt(request, batch, attempt + 1, result));
+		});
+	}
+
+	static boolean isRetryable(int status) {
+		return status == 429 || status >= 500;
+	}
+
+	/**
+	 * true se l'errore (anche avvolto in una CompletionException) è un batch
+	 * rifiutato da InfluxDB e non un errore temporaneo
+	 */
+	public static boolean isRejected(Throwable ex) {
+		for (Throwable t = ex; t != null; t = t.getCause()) {
+			if (t instanceof RejectedWriteException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Attesa prima del tentativo attempt + 1: Retry-After se presente,
+	 * altrimenti backoff esponenziale; più jitter in entrambi i casi
+	 */
+	long retryDelay(int attempt, String retryAfter) {
+		long base;
+		if (retryAfter != null && retryAfter.chars().allMatch(Character::isDigit) && !retryAfter.isEmpty()) {
+			base = Long.parseLong(retryAfter) * 1000;
+		} else {
+			base = retryIntervalMs << Math.min(attempt, 20);
+		}
+		long jitter = jitterIntervalMs > 0 ? ThreadLocalRandom.current().nextLong(jitterIntervalMs) : 0;
+		return Math.min(base, maxRetryDelayMs) + jitter;
+	}
+
+	private HttpRequest request(byte[] lines) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(writeUri)
+				.timeout(Duration.ofMillis(requestTimeoutMs))
+				.header("Authorization", authorization)
+				.header("Content-Type", "text/plain; charset=utf-8");
+		if (gzip) {
+			builder.header("Content-Encoding", "gzip");
+			lines = gzip(lines);
+		}
+		return builder.POST(HttpRequest.BodyPublishers.ofByteArray(lines)).build();
+	}
+
+	private static byte[] gzip(byte[] lines) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(lines.length / 4 + 64);
+		try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192) {
+			{
+				def.setLevel(Deflater.BEST_SPEED);
+			}
+		}) {
+			gz.write(lines);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+	private static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+
+	// -------------------------------------------------------------------------
+	// Codifica: stessi tag, field e timestamp di InfluxDBPointMapper, in ordine di chiave
+	// -------------------------------------------------------------------------
+
+	static void encode(LineProtocolWriter w, Object entity) {
+		switch (entity) {
+		case TelemetryEntity e -> w.measurement(InfluxDBPointMapper.MEASUREMENT_TELEMETRY)
+				.tag("device_id", e.getDeviceId())
+				.tag("device_type", e.getDeviceType())
+				.tag("message_type", e.getMessageType())
+				.field("battery_percentage", e.getBatteryPercentage())
+				.field("battery_voltage", e.getBatteryVoltage())
+				.field("decoded_data", e.getDecodedDataJson())
+				.field("firmware_version", e.getFirmwareVersion())
+				.field("imei", e.getImei())
+				.field("measurement_count", e.getMeasurementCount())
+				.field("raw_message", e.getRawMessage())
+				.field("signal_strength", e.getSignalStrength())
+				.timestamp(e.getReceivedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+		case DeviceSettingsEntity e -> w.measurement(InfluxDBPointMapper.MEASUREMENT_SETTINGS)
+				.tag("device_id", e.getDeviceId())
+				.tag("device_type", e.getDeviceType())
+				.field("raw_message", e.getRawMessage())
+				.field("settings_json", e.getSettingsJson())
+				.timestamp(e.getReceivedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+		case DeviceStatisticsEntity e -> w.measurement(InfluxDBPointMapper.MEASUREMENT_STATISTICS)
+				.tag("device_id", e.getDeviceId())
+				.tag("device_type", e.getDeviceType())
+				.field("average_rssi", e.getAverageRssi())
+				.field("average_send_time", e.getAverageSendTime())
+				.field("delivery_fail_count", e.getDeliveryFailCount())
+				.field("delivery_success_rate", e.getDeliverySuccessRate())
+				.field("energy_used", e.getEnergyUsed())
+				.field("iccid", e.getIccid())
+				.field("max_send_time", e.getMaxSendTime())
+				.field("max_temperature", e.getMaxTemperature())
+				.field("message_count", e.getMessageCount())
+				.field("min_send_time", e.getMinSendTime())
+				.field("min_temperature", e.getMinTemperature())
+				.field("raw_message", e.getRawMessage())
+				.field("rssi_fail_count", e.getRssiFailCount())
+				.field("rssi_total", e.getRssiTotal())
+				.field("rssi_valid_count", e.getRssiValidCount())
+				.field("total_send_time", e.getTotalSendTime())
+				.timestamp(e.getReceivedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+		case DeviceLocationEntity e -> w.measurement(InfluxDBPointMapper.MEASUREMENT_LOCATIONS)
+				.tag("device_id", e.getDeviceId())
+				.tag("device_type", e.getDeviceType())
+				.field("altitude", e.getAltitude())
+				.field("gnss_positioning_mode", e.getGnssPositioningMode())
+				.field("gps_date", e.getDate())
+				.field("ground_heading", e.getGroundHeading())
+				.field("horizontal_precision", e.getHorizontalPrecision())
+				.field("latitude", e.getLatitude())
+				.field("latitude_raw", e.getLatitudeRaw())
+				.field("longitude", e.getLongitude())
+				.field("longitude_raw", e.getLongitudeRaw())
+				.field("number_of_satellites", e.getNumberOfSatellites())
+				.field("raw_message", e.getRawMessage())
+				.field("speed_kmh", e.getSpeedKmh())
+				.field("speed_knots", e.getSpeedKnots())
+				.field("time_to_fix_seconds", e.getTimeToFixSeconds())
+				.field("utc_time", e.getUtcTime() != null ? e.getUtcTime().toString() : null)
+				.timestamp(e.getReceivedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+		case MeasurementEntity e -> w.measurement(InfluxDBPointMapper.MEASUREMENT_MEASUREMENTS)
+				.tag("device_id", e.getDeviceId())
+				.field("distance_cm", e.getDistanceCm())
+				.field("sonic_rssi", e.getSonicRssi())
+				.field("sonic_src", e.getSonicSrc())
+				.field("temperature_c", e.getTemperatureC())
+				.timestamp(e.getMeasuredAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+		default -> throw new IllegalArgumentException("Unsupported entity: " + entity.getClass());
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Metriche
+	// -------------------------------------------------------------------------
+
+	public long getSentBatches() {
+		return sentBatches.get();
+	}
+
+	public long getSentLines() {
+		return sentLines.get();
+	}
+
+	public long getRetries() {
+		return retries.get();
+	}
+
+	public long getFailedBatches() {
+		return failedBatches.get();
+	}
+
+	public long getRejectedBatches() {
+		return rejectedBatches.get();
+	}
+
+	public long getRejectedLines() {
+		return rejectedLines.get();
+	}
+
+	public int getInFlight() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+}
@@ -0,0 +1,128 @@
+package com.aton.proj.oneGasMeteor.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Istogramma di latenza log-lineare (stile HdrHistogram) in microsecondi.
+ *
+ * Bucket esatti fino a 16 µs, poi 16 sotto-bucket per ogni potenza di 2:
+ * errore relativo massimo 1/16 (6,25%) fino a 2^41 µs, oltre si satura
+ * nell'ultimo bucket.
+ *
+ * Registrazione lock-free: i contatori sono divisi in stripe scelte dall'id
+ * del thread (come LongAdder), create alla prima registrazione; la lettura
+ * somma le stripe. Con i virtual thread una stripe per thread non sarebbe
+ * sostenibile, le stripe sono quindi in numero fisso.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int MAX_EXPONENT = 41;
+
+	/** Numero di bucket: 16 lineari + 16 per ogni esponente da 4 a 40 */
+	static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS) * SUB_BUCKETS;
+
+	private static final int STRIPES = Integer.highestOneBit(
+			Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+
+	private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Registra una latenza in microsecondi (valori negativi contati come 0)
+	 */
+	public void recordMicros(long micros) {
+		long value = Math.max(0, micros);
+		stripe().incrementAndGet(bucketIndex(value));
+		max.accumulate(value);
+	}
+
+	/**
+	 * Somma questo istogramma in {@code counts} (lunghezza {@link #BUCKETS})
+	 *
+	 * @return numero di valori sommati
+	 */
+	long addTo(long[] counts) {
+		long total = 0;
+		for (int s = 0; s < STRIPES; s++) {
+			AtomicLongArray stripe = stripes.get(s);
+			if (stripe == null) {
+				continue;
+			}
+			for (int i = 0; i < BUCKETS; i++) {
+				long c = stripe.get(i);
+				counts[i] += c;
+				total += c;
+			}
+		}
+		return total;
+	}
+
+	public long maxMicros() {
+		return max.get();
+	}
+
+	/**
+	 * Quantile dei valori registrati, per l'uso dell'istogramma fuori da
+	 * {@link StageLatencyRegistry} (es. FrameReplay)
+	 */
+	public long quantileMicros(double q) {
+		long[] counts = new long[BUCKETS];
+		long total = addTo(counts);
+		return quantile(counts, total, q);
+	}
+
+	/**
+	 * Quantile su conteggi già sommati: limite superiore del bucket che contiene
+	 * il valore di rango ceil(q * total), come highestEquivalentValue di
+	 * HdrHistogram
+	 */
+	static long quantile(long[] counts, long total, double q) {
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(q * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return highestEquivalentValue(i);
+			}
+		}
+		return highestEquivalentValue(counts.length - 1);
+	}
+
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+		return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+	}
+
+	static long highestEquivalentValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+		int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+	}
+
+	private AtomicLongArray stripe() {
+		int s = (int) (Thread.currentThread().threadId() * 0x9E3779B9L >>> 16) & (STRIPES - 1);
+		AtomicLongArray stripe = stripes.get(s);
+		if (stripe == null) {
+			stripes.compareAndSet(s, null, new AtomicLongArray(BUCKETS));
+			stripe = stripes.get(s);
+		}
+		return stripe;
+	}
+}
@@ -0,0 +1,162 @@
+package com.aton.proj.oneGasMeteor.service.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.model.ProcessingContext;
+
+/**
+ * Istogrammi di latenza per fase della pipeline, per device type e message
+ * type, alimentati da {@link ProcessingContext} a fine connessione.
+ *
+ * I quantili (p50/p99/p999) e il max sono calcolati sulla finestra corrente
+ * più la precedente (metrics.latency.window-ms, quindi da 1 a 2 finestre di
+ * dati): durante il picco orario di connessioni riflettono la coda di latenza
+ * del momento e non la media dall'avvio. count e sum sono cumulativi, come
+ * richiesto dal formato Prometheus.
+ */
+@Component
+@ConditionalOnProperty(name = "metrics.latency.enabled", havingValue = "true", matchIfMissing = true)
+public class StageLatencyRegistry {
+
+	private static final Logger log = LoggerFactory.getLogger(StageLatencyRegistry.class);
+
+	static final String UNKNOWN = "unknown";
+	static final String OTHER = "other";
+
+	public enum Stage {
+		READ("read"), DECODE("decode"), DB_SAVE("db_save"), COMMAND_QUERY("command_query"),
+		COMMAND_ENCODE("command_encode"), SEND("send"), TOTAL("total");
+
+		private final String label;
+
+		Stage(String label) {
+			this.label = label;
+		}
+
+		public String label() {
+			return label;
+		}
+	}
+
+	/**
+	 * Valori di una serie al momento della lettura (latenze in microsecondi)
+	 */
+	public record Snapshot(Stage stage, String deviceType, String messageType, long count, long sumMicros,
+			long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+	}
+
+	private record Key(Stage stage, String deviceType, String messageType) {
+	}
+
+	private static final class Series {
+		volatile LatencyHistogram current = new LatencyHistogram();
+		volatile LatencyHistogram previous = new LatencyHistogram();
+		final LongAdder count = new LongAdder();
+		final LongAdder sumMicros = new LongAdder();
+
+		void record(long micros) {
+			current.recordMicros(micros);
+			count.increment();
+			sumMicros.add(micros);
+		}
+	}
+
+	private final Map<Key, Series> series = new ConcurrentHashMap<>();
+
+	/** Limite alle combinazioni device/message type (etichetta "other" oltre) */
+	@Value("${metrics.latency.max-series:1000}")
+	private int maxSeries = 1000;
+
+	/**
+	 * Registra tutte le fasi eseguite nella connessione
+	 */
+	public void record(ProcessingContext context) {
+		String deviceType = context.getDeviceType() != null ? context.getDeviceType() : UNKNOWN;
+		String messageType = context.getMessageType() >= 0 ? String.valueOf(context.getMessageType()) : UNKNOWN;
+		record(Stage.READ, deviceType, messageType, context.getReadTimeNanos());
+		record(Stage.DECODE, deviceType, messageType, context.getDecodeTimeNanos());
+		record(Stage.DB_SAVE, deviceType, messageType, context.getDbSaveTimeNanos());
+		record(Stage.COMMAND_QUERY, deviceType, messageType, context.getCommandQueryTimeNanos());
+		record(Stage.COMMAND_ENCODE, deviceType, messageType, context.getCommandEncodeTimeNanos());
+		record(Stage.SEND, deviceType, messageType, context.getSendTimeNanos());
+		record(Stage.TOTAL, deviceType, messageType, context.getTotalTimeNanos());
+	}
+
+	/**
+	 * Registra una fase; durate non positive (fase non eseguita) sono ignorate
+	 */
+	public void record(Stage stage, String deviceType, String messageType, long nanos) {
+		if (nanos <= 0) {
+			return;
+		}
+		seriesFor(stage, deviceType, messageType).record(nanos / 1000);
+	}
+
+	/**
+	 * Chiude la finestra corrente: la precedente viene scartata
+	 */
+	@Scheduled(fixedRateString = "${metrics.latency.window-ms:60000}")
+	public void rotate() {
+		for (Series s : series.values()) {
+			s.previous = s.current;
+			s.current = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * @return una riga per serie, ordinate per fase, device type, message type
+	 */
+	public List<Snapshot> snapshot() {
+		List<Snapshot> result = new ArrayList<>(series.size());
+		long[] counts = new long[LatencyHistogram.BUCKETS];
+		series.forEach((key, s) -> {
+			Arrays.fill(counts, 0);
+			LatencyHistogram current = s.current;
+			LatencyHistogram previous = s.previous;
+			long total = current.addTo(counts) + previous.addTo(counts);
+			long max = Math.max(current.maxMicros(), previous.maxMicros());
+			result.add(new Snapshot(key.stage(), key.deviceType(), key.messageType(), s.count.sum(),
+					s.sumMicros.sum(), cap(LatencyHistogram.quantile(counts, total, 0.5), max),
+					cap(LatencyHistogram.quantile(counts, total, 0.99), max),
+					cap(LatencyHistogram.quantile(counts, total, 0.999), max), total > 0 ? max : 0));
+		});
+		result.sort(Comparator.comparing(Snapshot::stage).thenComparing(Snapshot::deviceType)
+				.thenComparing(Snapshot::messageType));
+		return result;
+	}
+
+	private Series seriesFor(Stage stage, String deviceType, String messageType) {
+		Key key = new Key(stage, deviceType, messageType);
+		Series s = series.get(key);
+		if (s != null) {
+			return s;
+		}
+		if (series.size() >= maxSeries) {
+			key = new Key(stage, OTHER, OTHER);
+		}
+		return series.computeIfAbsent(key, k -> {
+			if (OTHER.equals(k.deviceType())) {
+				log.warn("StageLatencyRegistry: more than {} series, new labels folded into '{}'", maxSeries, OTHER);
+			}
+			return new Series();
+		});
+	}
+
+	/** Il limite superiore del bucket non supera il massimo osservato */
+	private static long cap(long value, long max) {
+		return max > 0 ? Math.min(value, max) : value;
+	}
+}
@@ -0,0 +1,212 @@
+package com.aton.proj.oneGasMeteor.service.query;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.aton.proj.oneGasMeteor.model.TelemetryCursor;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+import com.aton.proj.oneGasMeteor.model.TelemetryRow;
+import com.aton.proj.oneGasMeteor.repository.TelemetryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Lettura di telemetry_data per l'API REST: pagine con cursore opaco ed
+ * export NDJSON/CSV in streaming.
+ *
+ * Le pagine usano la paginazione keyset del repository (nessun OFFSET: il
+ * costo di una pagina non dipende da quante ne sono state lette prima).
+ * L'export scrive ogni record sullo stream appena letto, quindi la memoria
+ * usata non dipende dal numero di record.
+ */
+@Service
+public class TelemetryQueryService {
+
+	private static final Logger log = LoggerFactory.getLogger(TelemetryQueryService.class);
+
+	/** Pagina in ordine di received_at decrescente; nextCursor null sull'ultima */
+	public record Page(List<TelemetryRow> items, String nextCursor) {
+	}
+
+	/** Formati dell'export */
+	public enum ExportFormat {
+		NDJSON("application/x-ndjson", "ndjson"), CSV("text/csv", "csv");
+
+		private final String contentType;
+		private final String extension;
+
+		ExportFormat(String contentType, String extension) {
+			this.contentType = contentType;
+			this.extension = extension;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public String getExtension() {
+			return extension;
+		}
+
+		/**
+		 * @throws IllegalArgumentException se il formato non è ndjson o csv
+		 */
+		public static ExportFormat of(String format) {
+			for (ExportFormat f : values()) {
+				if (f.extension.equalsIgnoreCase(format)) {
+					return f;
+				}
+			}
+			throw new IllegalArgumentException("format must be ndjson or csv");
+		}
+	}
+
+	private static final String CSV_HEADER = "id,device_id,device_type,message_type,received_at,imei,"
+			+ "firmware_version,battery_voltage,battery_percentage,signal_strength,measurement_count";
+
+	private final TelemetryRepository telemetryRepository;
+	private final ObjectMapper objectMapper;
+
+	@Value("${telemetry.query.max-page-size:1000}")
+	private int maxPageSize = 1000;
+
+	private final AtomicLong exportedRows = new AtomicLong();
+
+	public TelemetryQueryService(TelemetryRepository telemetryRepository, ObjectMapper objectMapper) {
+		this.telemetryRepository = telemetryRepository;
+		this.objectMapper = objectMapper;
+		log.info("TelemetryQueryService initialized");
+	}
+
+	/**
+	 * Pagina di al massimo limit record dopo il cursore (null o vuoto = dal
+	 * più recente). Si legge un record in più per sapere se esiste una pagina
+	 * successiva.
+	 *
+	 * @throws IllegalArgumentException per limit fuori range o cursore non
+	 *                                  valido
+	 */
+	public Page page(TelemetryQuery query, String cursor, int limit) {
+		if (limit < 1 || limit > maxPageSize) {
+			throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+		}
+		TelemetryCursor after = cursor == null || cursor.isEmpty() ? null : TelemetryCursor.decode(cursor);
+		List<TelemetryRow> rows = telemetryRepository.findPage(query, after, limit + 1);
+		if (rows.size() <= limit) {
+			return new Page(rows, null);
+		}
+		List<TelemetryRow> items = rows.subList(0, limit);
+		return new Page(items, TelemetryCursor.after(items.get(limit - 1)).encode());
+	}
+
+	/**
+	 * Scrive tutti i record della query su out. Lo stream non viene chiuso.
+	 */
+	public long export(TelemetryQuery query, ExportFormat format, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		long count;
+		try {
+			count = format == ExportFormat.CSV ? exportCsv(query, writer) : exportNdjson(query, writer);
+		} catch (UncheckedIOException e) {
+			// client disconnesso: la lettura si interrompe al primo record non scrivibile
+			throw e.getCause();
+		}
+		writer.flush();
+		exportedRows.addAndGet(count);
+		log.debug("Telemetry export ({}): {} rows", format, count);
+		return count;
+	}
+
+	private long exportNdjson(TelemetryQuery query, Writer writer) throws IOException {
+		long[] count = { 0 };
+		// senza flush a ogni record: il writer bufferizzato scrive sulla risposta a blocchi
+		SequenceWriter json = objectMapper.writer()
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+				.withRootValueSeparator("\n")
+				.writeValues(writer);
+		telemetryRepository.stream(query, row -> {
+			try {
+				json.write(row);
+				count[0]++;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		json.flush();
+		if (count[0] > 0) {
+			writer.write('\n');
+		}
+		return count[0];
+	}
+
+	private long exportCsv(TelemetryQuery query, Writer writer) throws IOException {
+		long[] count = { 0 };
+		writer.write(CSV_HEADER);
+		writer.write(query.includeRaw() ? ",raw_message" : "");
+		writer.write(query.includeDecoded() ? ",decoded_data" : "");
+		writer.write('\n');
+		telemetryRepository.stream(query, row -> {
+			try {
+				writer.write(csvLine(row, query));
+				count[0]++;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		return count[0];
+	}
+
+	static String csvLine(TelemetryRow row, TelemetryQuery query) {
+		StringBuilder line = new StringBuilder(128);
+		appendCsv(line, row.id()).append(',');
+		appendCsv(line, row.deviceId()).append(',');
+		appendCsv(line, row.deviceType()).append(',');
+		appendCsv(line, row.messageType()).append(',');
+		appendCsv(line, row.receivedAt()).append(',');
+		appendCsv(line, row.imei()).append(',');
+		appendCsv(line, row.firmwareVersion()).append(',');
+		appendCsv(line, row.batteryVoltage()).append(',');
+		appendCsv(line, row.batteryPercentage()).append(',');
+		appendCsv(line, row.signalStrength()).append(',');
+		appendCsv(line, row.measurementCount());
+		if (query.includeRaw()) {
+			appendCsv(line.append(','), row.rawMessage());
+		}
+		if (query.includeDecoded()) {
+			appendCsv(line.append(','), row.decodedData());
+		}
+		return line.append('\n').toString();
+	}
+
+	/**
+	 * Valore CSV (RFC 4180): tra virgolette se contiene separatori, virgolette
+	 * o a capo; null diventa campo vuoto
+	 */
+	private static StringBuilder appendCsv(StringBuilder line, Object value) {
+		if (value == null) {
+			return line;
+		}
+		String s = value.toString();
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+			return line.append(s);
+		}
+		return line.append('"').append(s.replace("\"", "\"\"")).append('"');
+	}
+
+	public long getExportedRows() {
+		return exportedRows.get();
+	}
+}
@@ -0,0 +1,144 @@
+package com.aton.proj.oneGasMeteor.service.retention;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnJpaDatabase;
+import com.aton.proj.oneGasMeteor.service.retention.RetentionResult.Strategy;
+
+/**
+ * Retention delle tabelle a serie temporale (received_at, measured_at), senza un'unica DELETE su
+ * tutta la tabella (WAL e lock per minuti, BatchInsertService bloccato).
+ *
+ * - database.type=timescaledb: {@code drop_chunks} sulle hypertable. Vengono
+ *   eliminati solo i chunk interamente più vecchi della soglia (file rimossi,
+ *   nessuna riga scritta nel WAL): le righe del chunk a cavallo della soglia
+ *   restano fino al giro successivo, quindi la retention effettiva arriva a
+ *   soglia + chunk_time_interval. Tabelle non hypertable: come sotto.
+ * - altri database: DELETE a blocchi di cleanup.delete.batch-size righe lungo
+ *   l'indice su id ({@code id > ultimo id AND received_at < soglia}), ognuna
+ *   nella propria transazione, con cleanup.delete.pause-ms di pausa tra un
+ *   blocco e l'altro per lasciare spazio alle scritture.
+ *
+ * In alternativa a drop_chunks si possono attivare le retention policy native
+ * (add_retention_policy in db-timescaledb-schema.sql) e lasciare
+ * cleanup.enabled=false.
+ */
+@Component
+@ConditionalOnJpaDatabase
+@ConditionalOnProperty(name = "cleanup.enabled", havingValue = "true")
+public class RetentionExecutor {
+
+	private static final Logger log = LoggerFactory.getLogger(RetentionExecutor.class);
+
+	private final JdbcTemplate jdbcTemplate;
+	private final boolean timescale;
+	private final int batchSize;
+	private final long pauseMs;
+
+	public RetentionExecutor(JdbcTemplate jdbcTemplate, @Value("${database.type:sqlserver}") String databaseType,
+			@Value("${cleanup.delete.batch-size:5000}") int batchSize,
+			@Value("${cleanup.delete.pause-ms:200}") long pauseMs) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.timescale = "timescaledb".equalsIgnoreCase(databaseType);
+		this.batchSize = Math.max(1, batchSize);
+		this.pauseMs = Math.max(0, pauseMs);
+		log.info("RetentionExecutor initialized: strategy={}, batch size={}, pause={} ms",
+				timescale ? "drop_chunks" : "batched delete", this.batchSize, this.pauseMs);
+	}
+
+	/**
+	 * Elimina le righe di table con received_at precedente a threshold
+	 */
+	public RetentionResult purge(String table, LocalDateTime threshold) {
+		return purge(table, "received_at", threshold);
+	}
+
+	/**
+	 * Come {@link #purge(String, LocalDateTime)} su un'altra colonna temporale
+	 * (per le hypertable deve essere la dimensione di partizionamento)
+	 */
+	public RetentionResult purge(String table, String timeColumn, LocalDateTime threshold) {
+		if (timescale && isHypertable(table)) {
+			return dropChunks(table, threshold);
+		}
+		return batchedDelete(table, timeColumn, threshold);
+	}
+
+	private boolean isHypertable(String table) {
+		Integer count = jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM timescaledb_information.hypertables WHERE hypertable_name = ?", Integer.class,
+				table);
+		return count != null && count > 0;
+	}
+
+	private RetentionResult dropChunks(String table, LocalDateTime threshold) {
+		long start = System.currentTimeMillis();
+		Timestamp olderThan = Timestamp.valueOf(threshold);
+
+		// Righe stimate prima del drop: un COUNT(*) leggerebbe tutti i chunk
+		List<String> chunks = jdbcTemplate.queryForList(
+				"SELECT format('%I.%I', chunk_schema, chunk_name) FROM timescaledb_information.chunks "
+						+ "WHERE hypertable_name = ? AND range_end <= ?",
+				String.class, table, olderThan);
+		long rows = 0;
+		for (String chunk : chunks) {
+			Long estimate = jdbcTemplate.queryForObject("SELECT approximate_row_count(CAST(? AS regclass))",
+					Long.class, chunk);
+			rows += estimate != null ? estimate : 0;
+		}
+
+		List<String> dropped = jdbcTemplate.queryForList(
+				"SELECT drop_chunks(CAST(? AS regclass), older_than => CAST(? AS timestamp))", String.class, table,
+				olderThan);
+		long duration = System.currentTimeMillis() - start;
+		log.info("Dropped {} chunks of {} older than {} (~{} rows) in {} ms", dropped.size(), table, threshold, rows,
+				duration);
+		return new RetentionResult(table, Strategy.DROP_CHUNKS, rows, dropped.size(), 0, duration);
+	}
+
+	private RetentionResult batchedDelete(String table, String timeColumn, LocalDateTime threshold) {
+		long start = System.currentTimeMillis();
+		Timestamp olderThan = Timestamp.valueOf(threshold);
+		// OFFSET/FETCH: sintassi comune a SQL Server, PostgreSQL e H2
+		String nextUpperId = "SELECT MAX(id) FROM (SELECT id FROM " + table
+				+ " WHERE id > ? AND " + timeColumn + " < ? ORDER BY id OFFSET 0 ROWS FETCH NEXT " + batchSize
+				+ " ROWS ONLY) b";
+		String delete = "DELETE FROM " + table + " WHERE id > ? AND id <= ? AND " + timeColumn + " < ?";
+
+		long lastId = Long.MIN_VALUE;
+		long rows = 0;
+		int batches = 0;
+		while (true) {
+			Long upperId = jdbcTemplate.queryForObject(nextUpperId, Long.class, lastId, olderThan);
+			if (upperId == null) {
+				break;
+			}
+			rows += jdbcTemplate.update(delete, lastId, upperId, olderThan);
+			batches++;
+			lastId = upperId;
+
+			if (pauseMs > 0) {
+				try {
+					Thread.sleep(pauseMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					log.warn("Retention of {} interrupted after {} batches", table, batches);
+					break;
+				}
+			}
+		}
+		long duration = System.currentTimeMillis() - start;
+		log.info("Deleted {} rows of {} older than {} in {} batches, {} ms", rows, table, threshold, batches,
+				duration);
+		return new RetentionResult(table, Strategy.BATCHED_DELETE, rows, 0, batches, duration);
+	}
+}
@@ -0,0 +1,23 @@
+package com.aton.proj.oneGasMeteor.service.retention;
+
+/**
+ * Esito della retention su una tabella, riportato in
+ * {@code DataCleanupService.CleanupReport}
+ *
+ * @param rowsDeleted  righe eliminate (con DROP_CHUNKS stima da
+ *                     approximate_row_count, -1 se non nota)
+ * @param chunksDropped chunk eliminati (solo DROP_CHUNKS)
+ * @param batches      DELETE eseguite (solo BATCHED_DELETE)
+ */
+public record RetentionResult(String table, Strategy strategy, long rowsDeleted, int chunksDropped, int batches,
+		long durationMs) {
+
+	public enum Strategy {
+		/** TimescaleDB: drop_chunks sui chunk interamente più vecchi della soglia */
+		DROP_CHUNKS,
+		/** DELETE a blocchi di id crescenti, un blocco per transazione */
+		BATCHED_DELETE,
+		/** deleteOlderThan del repository (InfluxDB) */
+		REPOSITORY
+	}
+}
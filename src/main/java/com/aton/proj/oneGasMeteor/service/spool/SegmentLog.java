@@ -0,0 +1,352 @@
+package com.aton.proj.oneGasMeteor.service.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Log append-only su file segmentati e mappati in memoria.
+ *
+ * Ogni segmento ({@code segment-<seq>.log}) ha dimensione fissa e contiene
+ * record {@code [int lunghezza][int crc32c][payload]}; una lunghezza 0 indica
+ * la fine dei dati scritti. La lunghezza viene scritta per ultima, quindi un
+ * record interrotto da un crash non è mai visibile.
+ *
+ * La posizione di lettura confermata è salvata in {@code checkpoint}: al
+ * riavvio la lettura riprende da lì. I segmenti interamente letti vengono
+ * cancellati.
+ *
+ * Un solo scrittore e un solo lettore alla volta; i metodi sono sincronizzati.
+ */
+public final class SegmentLog implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(SegmentLog.class);
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String CHECKPOINT_FILE = "checkpoint";
+	private static final int RECORD_HEADER = 8;
+
+	private final Path directory;
+	private final int segmentSize;
+	private final long maxBytes;
+	private final boolean forceOnAppend;
+
+	private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+	private final List<Path> pendingDeletes = new ArrayList<>();
+	private final FileChannel checkpointChannel;
+	private final MappedByteBuffer checkpoint;
+
+	/** Posizione di lettura confermata nel segmento più vecchio */
+	private int readOffset;
+	private long pendingRecords;
+	private long pendingBytes;
+
+	/**
+	 * Posizione raggiunta da una lettura; {@link #commit(Batch)} la rende
+	 * definitiva.
+	 */
+	public record Batch(List<byte[]> records, long segmentSeq, int endOffset) {
+
+		public boolean isEmpty() {
+			return records.isEmpty();
+		}
+	}
+
+	/**
+	 * @param directory     Cartella del log (creata se assente)
+	 * @param segmentSize   Dimensione di ogni segmento in byte
+	 * @param maxBytes      Spazio massimo occupato dai segmenti; oltre,
+	 *                      {@link #append(byte[])} rifiuta i record
+	 * @param forceOnAppend Se true esegue force() dopo ogni append (sopravvive
+	 *                      anche a un crash del sistema operativo)
+	 */
+	public SegmentLog(Path directory, int segmentSize, long maxBytes, boolean forceOnAppend) throws IOException {
+		if (segmentSize <= RECORD_HEADER) {
+			throw new IllegalArgumentException("segmentSize troppo piccolo: " + segmentSize);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxBytes = maxBytes;
+		this.forceOnAppend = forceOnAppend;
+
+		Files.createDirectories(directory);
+		this.checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, 12);
+		recover();
+	}
+
+	/**
+	 * Aggiunge un record in coda.
+	 *
+	 * @return false se il limite maxBytes è raggiunto (record non scritto)
+	 */
+	public synchronized boolean append(byte[] payload) throws IOException {
+		int size = RECORD_HEADER + payload.length;
+		if (size + 4 > segmentSize) {
+			throw new IllegalArgumentException(
+					"Record di " + payload.length + " byte oltre la dimensione del segmento " + segmentSize);
+		}
+
+		Segment tail = segments.peekLast();
+		if (tail == null || tail.writeOffset + size + 4 > segmentSize) {
+			if ((long) (segments.size() + 1) * segmentSize > maxBytes) {
+				return false;
+			}
+			tail = openSegment(tail == null ? 1 : tail.seq + 1);
+			segments.addLast(tail);
+		}
+
+		MappedByteBuffer buffer = tail.buffer;
+		int pos = tail.writeOffset;
+		CRC32C crc = new CRC32C();
+		crc.update(payload);
+		buffer.put(pos + RECORD_HEADER, payload);
+		buffer.putInt(pos + 4, (int) crc.getValue());
+		buffer.putInt(pos, payload.length);
+		tail.writeOffset = pos + size;
+		if (forceOnAppend) {
+			buffer.force(pos, size);
+		}
+
+		pendingRecords++;
+		pendingBytes += size;
+		return true;
+	}
+
+	/**
+	 * Legge fino a max record dalla posizione confermata, senza consumarli.
+	 */
+	public synchronized Batch read(int max) {
+		List<byte[]> records = new ArrayList<>(Math.min(max, 1024));
+		Iterator<Segment> it = segments.iterator();
+		if (!it.hasNext()) {
+			return new Batch(records, 0, 0);
+		}
+
+		Segment segment = it.next();
+		int offset = readOffset;
+		while (records.size() < max) {
+			if (offset >= segment.writeOffset) {
+				if (!it.hasNext()) {
+					break;
+				}
+				segment = it.next();
+				offset = 0;
+				continue;
+			}
+			int length = segment.buffer.getInt(offset);
+			byte[] payload = new byte[length];
+			segment.buffer.get(offset + RECORD_HEADER, payload);
+			records.add(payload);
+			offset += RECORD_HEADER + length;
+		}
+		return new Batch(records, segment.seq, offset);
+	}
+
+	/**
+	 * Conferma la lettura: i record del batch non verranno più restituiti e i
+	 * segmenti completamente consumati vengono rimossi.
+	 */
+	public synchronized void commit(Batch batch) throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		while (!segments.isEmpty() && segments.peekFirst().seq < batch.segmentSeq()) {
+			removeSegment(segments.pollFirst());
+		}
+		readOffset = batch.endOffset();
+
+		// Segmento di testa esaurito e non più in scrittura: si riparte dal prossimo
+		Segment head = segments.peekFirst();
+		if (head != null && segments.size() > 1 && readOffset >= head.writeOffset) {
+			removeSegment(segments.pollFirst());
+			readOffset = 0;
+		}
+
+		for (byte[] record : batch.records()) {
+			pendingBytes -= RECORD_HEADER + record.length;
+		}
+		pendingRecords -= batch.records().size();
+		writeCheckpoint();
+		retryPendingDeletes();
+	}
+
+	/** Record scritti e non ancora confermati */
+	public synchronized long pendingRecords() {
+		return pendingRecords;
+	}
+
+	/** Byte dei record non ancora confermati */
+	public synchronized long pendingBytes() {
+		return pendingBytes;
+	}
+
+	public synchronized boolean isEmpty() {
+		return pendingRecords == 0;
+	}
+
+	/** Numero di segmenti presenti su disco */
+	public synchronized int segmentCount() {
+		return segments.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		for (Segment segment : segments) {
+			segment.buffer.force();
+			segment.channel.close();
+		}
+		segments.clear();
+		checkpoint.force();
+		checkpointChannel.close();
+	}
+
+	// -------------------------------------------------------------------------
+	// Recovery
+	// -------------------------------------------------------------------------
+
+	private void recover() throws IOException {
+		long checkpointSeq = checkpoint.getLong(0);
+		int checkpointOffset = checkpoint.getInt(8);
+
+		List<Long> seqs = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+				SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				seqs.add(Long.parseLong(
+						name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			}
+		}
+		seqs.sort(null);
+
+		for (long seq : seqs) {
+			if (seq < checkpointSeq) {
+				// Già consumato: cancellazione mancata prima dell'arresto
+				Files.deleteIfExists(segmentPath(seq));
+				continue;
+			}
+			Segment segment = openSegment(seq);
+			segment.writeOffset = scan(segment);
+			segments.addLast(segment);
+		}
+
+		Segment head = segments.peekFirst();
+		readOffset = head != null && head.seq == checkpointSeq ? Math.min(checkpointOffset, head.writeOffset) : 0;
+
+		for (Segment segment : segments) {
+			int offset = segment == head ? readOffset : 0;
+			while (offset < segment.writeOffset) {
+				int length = segment.buffer.getInt(offset);
+				pendingRecords++;
+				pendingBytes += RECORD_HEADER + length;
+				offset += RECORD_HEADER + length;
+			}
+		}
+
+		if (pendingRecords > 0) {
+			log.info("Spool recovered from {}: {} pending records in {} segments", directory, pendingRecords,
+					segments.size());
+		}
+	}
+
+	/**
+	 * Trova la fine dei dati validi: primo record con lunghezza 0, fuori range o
+	 * CRC non corrispondente.
+	 */
+	private int scan(Segment segment) {
+		MappedByteBuffer buffer = segment.buffer;
+		int offset = 0;
+		CRC32C crc = new CRC32C();
+		while (offset + RECORD_HEADER <= segmentSize) {
+			int length = buffer.getInt(offset);
+			if (length <= 0 || offset + RECORD_HEADER + length > segmentSize) {
+				break;
+			}
+			byte[] payload = new byte[length];
+			buffer.get(offset + RECORD_HEADER, payload);
+			crc.reset();
+			crc.update(payload);
+			if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+				log.warn("Spool segment {}: CRC mismatch at offset {}, truncating", segment.seq, offset);
+				break;
+			}
+			offset += RECORD_HEADER + length;
+		}
+		return offset;
+	}
+
+	// -------------------------------------------------------------------------
+	// Segmenti
+	// -------------------------------------------------------------------------
+
+	private Segment openSegment(long seq) throws IOException {
+		FileChannel channel = FileChannel.open(segmentPath(seq), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		return new Segment(seq, channel, buffer);
+	}
+
+	private void removeSegment(Segment segment) throws IOException {
+		segment.channel.close();
+		pendingDeletes.add(segmentPath(segment.seq));
+	}
+
+	/**
+	 * Su alcuni sistemi (Windows) un file mappato non è cancellabile finché il
+	 * mapping non viene raccolto dal GC: si ritenta ai commit successivi e al
+	 * riavvio (seq inferiore al checkpoint).
+	 */
+	private void retryPendingDeletes() {
+		pendingDeletes.removeIf(path -> {
+			try {
+				Files.deleteIfExists(path);
+				return true;
+			} catch (IOException e) {
+				log.debug("Spool segment {} not deletable yet: {}", path, e.getMessage());
+				return false;
+			}
+		});
+	}
+
+	private void writeCheckpoint() {
+		Segment head = segments.peekFirst();
+		checkpoint.putLong(0, head != null ? head.seq : 0);
+		checkpoint.putInt(8, readOffset);
+		if (forceOnAppend) {
+			checkpoint.force();
+		}
+	}
+
+	private Path segmentPath(long seq) {
+		return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+	}
+
+	private static final class Segment {
+		final long seq;
+		final FileChannel channel;
+		final MappedByteBuffer buffer;
+		int writeOffset;
+
+		Segment(long seq, FileChannel channel, MappedByteBuffer buffer) {
+			this.seq = seq;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package com.aton.proj.oneGasMeteor.service.spool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
+import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
+import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Spool su disco per i batch service (SQL e InfluxDB).
+ *
+ * Quando il sink non è disponibile o la coda in memoria supera la soglia alta
+ * ({@code batch.spool.high-watermark}), le entity vengono scritte su un
+ * {@link SegmentLog} invece di restare in heap. Il flush periodico le rilegge
+ * e le inserisce quando il sink torna disponibile; si torna alla coda in
+ * memoria solo a spool vuoto e coda sotto la soglia bassa
+ * ({@code batch.spool.low-watermark}).
+ *
+ * Record: 1 byte di tipo + entity in JSON.
+ */
+@Component
+@ConditionalOnProperty(name = "batch.spool.enabled", havingValue = "true")
+public class WriteAheadSpool {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteAheadSpool.class);
+
+	private static final byte TYPE_TELEMETRY = 1;
+	private static final byte TYPE_SETTINGS = 2;
+	private static final byte TYPE_STATISTICS = 3;
+	private static final byte TYPE_LOCATION = 4;
+	private static final byte TYPE_MEASUREMENT = 5;
+
+	private final ObjectMapper mapper = JsonMapper.builder()
+			.findAndAddModules()
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+			.build();
+
+	private final SegmentLog segmentLog;
+	private final int highWatermark;
+	private final int lowWatermark;
+
+	/** True da quando si scrive sullo spool a quando è stato svuotato */
+	private volatile boolean spilling;
+
+	private final AtomicLong droppedRecords = new AtomicLong();
+
+	/**
+	 * Entity rilette dallo spool, divise per tabella.
+	 */
+	public static final class Replay {
+		public final List<TelemetryEntity> telemetry = new ArrayList<>();
+		public final List<DeviceSettingsEntity> settings = new ArrayList<>();
+		public final List<DeviceStatisticsEntity> statistics = new ArrayList<>();
+		public final List<DeviceLocationEntity> locations = new ArrayList<>();
+		public final List<MeasurementEntity> measurements = new ArrayList<>();
+		private final SegmentLog.Batch batch;
+
+		Replay(SegmentLog.Batch batch) {
+			this.batch = batch;
+		}
+
+		public boolean isEmpty() {
+			return batch.isEmpty();
+		}
+
+		public int size() {
+			return batch.records().size();
+		}
+	}
+
+	public WriteAheadSpool(@Value("${batch.spool.directory:./spool}") String directory,
+			@Value("${batch.spool.segment-size-mb:64}") int segmentSizeMb,
+			@Value("${batch.spool.max-size-mb:4096}") long maxSizeMb,
+			@Value("${batch.spool.force-on-append:false}") boolean forceOnAppend,
+			@Value("${batch.spool.high-watermark:50000}") int highWatermark,
+			@Value("${batch.spool.low-watermark:5000}") int lowWatermark) throws IOException {
+		if (lowWatermark > highWatermark) {
+			throw new IllegalArgumentException("batch.spool.low-watermark (" + lowWatermark
+					+ ") must not exceed batch.spool.high-watermark (" + highWatermark + ")");
+		}
+		// Un segmento è una sola regione mappata: al massimo Integer.MAX_VALUE byte
+		long segmentBytes = segmentSizeMb * 1024L * 1024L;
+		if (segmentSizeMb <= 0 || segmentBytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("batch.spool.segment-size-mb (" + segmentSizeMb
+					+ ") must be between 1 and " + (Integer.MAX_VALUE / (1024 * 1024)));
+		}
+		if (maxSizeMb < segmentSizeMb) {
+			throw new IllegalArgumentException("batch.spool.max-size-mb (" + maxSizeMb
+					+ ") must not be smaller than batch.spool.segment-size-mb (" + segmentSizeMb + ")");
+		}
+		this.segmentLog = new SegmentLog(Path.of(directory), (int) segmentBytes, maxSizeMb * 1024L * 1024L,
+				forceOnAppend);
+		this.highWatermark = highWatermark;
+		this.lowWatermark = lowWatermark;
+		this.spilling = !segmentLog.isEmpty();
+
+		log.info("WriteAheadSpool initialized: dir={}, segment={} MB, max={} MB, watermarks={}/{}, pending={}",
+				directory, segmentSizeMb, maxSizeMb, highWatermark, lowWatermark, segmentLog.pendingRecords());
+	}
+
+	// -------------------------------------------------------------------------
+	// Watermark
+	// -------------------------------------------------------------------------
+
+	/**
+	 * @param queuedInMemory entity attualmente nelle code in memoria
+	 * @return true se la nuova entity va scritta sullo spool
+	 */
+	public boolean shouldSpill(int queuedInMemory) {
+		if (spilling) {
+			return true;
+		}
+		if (queuedInMemory >= highWatermark) {
+			log.warn("In-memory batch queue reached high watermark ({}), spilling to disk", highWatermark);
+			spilling = true;
+		}
+		return spilling;
+	}
+
+	/**
+	 * Il replay dallo spool parte solo con la coda in memoria sotto la soglia
+	 * bassa, per non riportare in heap ciò che si è appena scaricato su disco.
+	 */
+	public boolean canReplay(int queuedInMemory) {
+		return queuedInMemory <= lowWatermark;
+	}
+
+	/**
+	 * Da chiamare dopo un replay: a spool vuoto e coda sotto la soglia bassa si
+	 * torna alla coda in memoria.
+	 */
+	public void maybeResume(int queuedInMemory) {
+		if (spilling && segmentLog.isEmpty() && queuedInMemory <= lowWatermark) {
+			spilling = false;
+			log.info("Spool drained, back to in-memory batching");
+		}
+	}
+
+	public boolean isSpilling() {
+		return spilling;
+	}
+
+	// -------------------------------------------------------------------------
+	// Append
+	// -------------------------------------------------------------------------
+
+	public boolean append(TelemetryEntity entity) {
+		return append(TYPE_TELEMETRY, entity);
+	}
+
+	public boolean append(DeviceSettingsEntity entity) {
+		return append(TYPE_SETTINGS, entity);
+	}
+
+	public boolean append(DeviceStatisticsEntity entity) {
+		return append(TYPE_STATISTICS, entity);
+	}
+
+	public boolean append(DeviceLocationEntity entity) {
+		return append(TYPE_LOCATION, entity);
+	}
+
+	public boolean append(MeasurementEntity entity) {
+		return append(TYPE_MEASUREMENT, entity);
+	}
+
+	/**
+	 * Scrive sullo spool un batch fallito e attiva lo spilling, così le entity
+	 * successive non si accumulano in heap mentre il sink è giù.
+	 *
+	 * @return numero di entity non scritte (spool pieno)
+	 */
+	public int appendAll(List<?> entities) {
+		spilling = true;
+		int dropped = 0;
+		for (Object entity : entities) {
+			boolean written = switch (entity) {
+			case TelemetryEntity e -> append(e);
+			case DeviceSettingsEntity e -> append(e);
+			case DeviceStatisticsEntity e -> append(e);
+			case DeviceLocationEntity e -> append(e);
+			case MeasurementEntity e -> append(e);
+			default -> throw new IllegalArgumentException("Unsupported entity: " + entity.getClass());
+			};
+			if (!written) {
+				dropped++;
+			}
+		}
+		return dropped;
+	}
+
+	private boolean append(byte type, Object entity) {
+		try {
+			byte[] json = mapper.writeValueAsBytes(entity);
+			byte[] record = new byte[json.length + 1];
+			record[0] = type;
+			System.arraycopy(json, 0, record, 1, json.length);
+			if (segmentLog.append(record)) {
+				return true;
+			}
+			long dropped = droppedRecords.incrementAndGet();
+			log.error("Spool full (batch.spool.max-size-mb reached), record dropped (total dropped: {})", dropped);
+			return false;
+		} catch (IOException e) {
+			droppedRecords.incrementAndGet();
+			log.error("Spool append failed, record dropped: {}", e.getMessage(), e);
+			return false;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Replay
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Rilegge fino a max entity senza consumarle: dopo l'inserimento riuscito
+	 * chiamare {@link #commit(Replay)}, altrimenti verranno rilette.
+	 */
+	public Replay read(int max) {
+		SegmentLog.Batch batch = segmentLog.read(max);
+		Replay replay = new Replay(batch);
+		for (byte[] record : batch.records()) {
+			try {
+				byte[] json = Arrays.copyOfRange(record, 1, record.length);
+				switch (record[0]) {
+				case TYPE_TELEMETRY -> replay.telemetry.add(mapper.readValue(json, TelemetryEntity.class));
+				case TYPE_SETTINGS -> replay.settings.add(mapper.readValue(json, DeviceSettingsEntity.class));
+				case TYPE_STATISTICS -> replay.statistics.add(mapper.readValue(json, DeviceStatisticsEntity.class));
+				case TYPE_LOCATION -> replay.locations.add(mapper.readValue(json, DeviceLocationEntity.class));
+				case TYPE_MEASUREMENT -> replay.measurements.add(mapper.readValue(json, MeasurementEntity.class));
+				default -> log.error("Spool record with unknown type {}, skipped", record[0]);
+				}
+			} catch (IOException e) {
+				log.error("Spool record not readable, skipped: {}", e.getMessage());
+			}
+		}
+		return replay;
+	}
+
+	public void commit(Replay replay) {
+		try {
+			segmentLog.commit(replay.batch);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Spool commit failed", e);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Metriche
+	// -------------------------------------------------------------------------
+
+	/** Entity in attesa sullo spool */
+	public long depth() {
+		return segmentLog.pendingRecords();
+	}
+
+	public long sizeBytes() {
+		return segmentLog.pendingBytes();
+	}
+
+	public int segmentCount() {
+		return segmentLog.segmentCount();
+	}
+
+	public long droppedRecords() {
+		return droppedRecords.get();
+	}
+
+	@PreDestroy
+	void close() throws IOException {
+		segmentLog.close();
+		log.info("WriteAheadSpool closed, {} records pending", depth());
+	}
+}
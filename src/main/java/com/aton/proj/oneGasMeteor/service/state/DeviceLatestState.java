@@ -0,0 +1,73 @@
+package com.aton.proj.oneGasMeteor.service.state;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+
+/**
+ * Ultimo stato noto di un device, riga di device_latest_state.
+ *
+ * Livello = distanceCm/temperatureC dell'ultima lettura (measuredAt, UTC);
+ * lastSeenAt è l'istante di ricezione dell'ultimo messaggio di qualsiasi tipo
+ * (ora del server, come received_at).
+ */
+public record DeviceLatestState(String deviceId, String deviceType, String firmwareVersion, Double batteryVoltage,
+		Double batteryPercentage, Integer signalStrength, Integer distanceCm, Double temperatureC,
+		LocalDateTime measuredAt, String lastMessageType, LocalDateTime lastSeenAt) {
+
+	/**
+	 * Stato da una telemetria 4/8/9: batteria, segnale e firmware dal record,
+	 * livello dalla lettura più recente
+	 */
+	static DeviceLatestState fromTelemetry(TelemetryEntity telemetry, List<MeasurementEntity> readings) {
+		MeasurementEntity latest = null;
+		for (MeasurementEntity reading : readings) {
+			if (latest == null || reading.getMeasuredAt().isAfter(latest.getMeasuredAt())) {
+				latest = reading;
+			}
+		}
+		return new DeviceLatestState(telemetry.getDeviceId(), telemetry.getDeviceType(),
+				telemetry.getFirmwareVersion(), telemetry.getBatteryVoltage(), telemetry.getBatteryPercentage(),
+				telemetry.getSignalStrength(), latest != null ? latest.getDistanceCm() : null,
+				latest != null ? latest.getTemperatureC() : null, latest != null ? latest.getMeasuredAt() : null,
+				telemetry.getMessageType(), telemetry.getReceivedAt());
+	}
+
+	/**
+	 * Solo contatto (messaggi 6/16/17, ritrasmissioni): aggiorna last seen
+	 */
+	static DeviceLatestState seen(String deviceId, String deviceType, String messageType, LocalDateTime seenAt) {
+		return new DeviceLatestState(deviceId, deviceType, null, null, null, null, null, null, null, messageType,
+				seenAt);
+	}
+
+	/**
+	 * Unisce uno stato arrivato dopo questo. I campi null di update non
+	 * cancellano quelli noti; un contatto più vecchio di lastSeenAt (frame
+	 * riordinati) non sovrascrive nulla, una lettura più vecchia di measuredAt
+	 * non sovrascrive il livello.
+	 */
+	DeviceLatestState merge(DeviceLatestState update) {
+		boolean newerContact = update.lastSeenAt != null
+				&& (lastSeenAt == null || !update.lastSeenAt.isBefore(lastSeenAt));
+		boolean newerReading = update.measuredAt != null
+				&& (measuredAt == null || update.measuredAt.isAfter(measuredAt));
+		if (!newerContact && !newerReading) {
+			return this;
+		}
+		DeviceLatestState contact = newerContact ? update : this;
+		DeviceLatestState reading = newerReading ? update : this;
+		return new DeviceLatestState(deviceId, coalesce(contact.deviceType, deviceType),
+				coalesce(contact.firmwareVersion, firmwareVersion), coalesce(contact.batteryVoltage, batteryVoltage),
+				coalesce(contact.batteryPercentage, batteryPercentage),
+				coalesce(contact.signalStrength, signalStrength), reading.distanceCm, reading.temperatureC,
+				reading.measuredAt, coalesce(contact.lastMessageType, lastMessageType),
+				newerContact ? update.lastSeenAt : lastSeenAt);
+	}
+
+	private static <T> T coalesce(T preferred, T fallback) {
+		return preferred != null ? preferred : fallback;
+	}
+}
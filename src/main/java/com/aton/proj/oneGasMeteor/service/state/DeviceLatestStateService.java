@@ -0,0 +1,222 @@
+package com.aton.proj.oneGasMeteor.service.state;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ultimo stato di ogni device (batteria, segnale, livello, firmware, last
+ * seen) tenuto in memoria e scritto su device_latest_state.
+ *
+ * Ogni messaggio aggiorna la mappa e segna il device come da scrivere; il
+ * flush periodico scrive i device segnati con un UPSERT a blocchi
+ * ({@link DeviceLatestStateWriter}), quindi un device che invia N messaggi tra
+ * due flush costa una sola riga. Le letture della flotta
+ * ({@link #page(String, int)}) non toccano il database.
+ *
+ * Garanzie:
+ * <ul>
+ * <li>un device è tolto dai segnati solo se lo stato scritto è ancora quello in
+ * memoria: un aggiornamento arrivato durante il flush va al flush
+ * successivo</li>
+ * <li>in caso di errore i device restano segnati fino al flush riuscito</li>
+ * <li>all'avvio la mappa è ripopolata dalla tabella</li>
+ * </ul>
+ * Senza database relazionale (database.type=influxdb) lo stato resta solo in
+ * memoria.
+ */
+@Service
+@ConditionalOnProperty(name = "device.state.enabled", havingValue = "true")
+public class DeviceLatestStateService {
+
+	private static final Logger log = LoggerFactory.getLogger(DeviceLatestStateService.class);
+
+	/** Pagina della flotta in ordine di device_id; nextAfter null sull'ultima */
+	public record Page(List<DeviceLatestState> devices, int total, String nextAfter) {
+	}
+
+	private final DeviceLatestStateWriter writer;
+
+	@Value("${device.state.max-batch:500}")
+	private int maxBatch = 500;
+
+	@Value("${device.state.max-page-size:1000}")
+	private int maxPageSize = 1000;
+
+	private final ConcurrentHashMap<String, DeviceLatestState> states = new ConcurrentHashMap<>();
+
+	/** Chiavi di states in ordine, per la paginazione per device_id */
+	private final ConcurrentSkipListSet<String> deviceIds = new ConcurrentSkipListSet<>();
+
+	/** Device con stato non ancora scritto: ultimo stato per device */
+	private final ConcurrentHashMap<String, DeviceLatestState> dirty = new ConcurrentHashMap<>();
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private final AtomicLong upsertedRows = new AtomicLong();
+	private final AtomicLong upsertStatements = new AtomicLong();
+	private final AtomicLong failedFlushes = new AtomicLong();
+
+	public DeviceLatestStateService(@Nullable DeviceLatestStateWriter writer) {
+		this.writer = writer;
+		log.info("DeviceLatestStateService initialized (persistence {})", writer != null ? "enabled" : "disabled");
+	}
+
+	@PostConstruct
+	void load() {
+		if (writer == null) {
+			return;
+		}
+		try {
+			for (DeviceLatestState state : writer.loadAll()) {
+				states.put(state.deviceId(), state);
+				deviceIds.add(state.deviceId());
+			}
+			log.info("Device latest state loaded: {} devices", states.size());
+		} catch (Exception e) {
+			log.warn("Device latest state not loaded, starting empty: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Telemetria 4/8/9: batteria, segnale e firmware dal record, livello dalla
+	 * lettura più recente (readings può essere vuota)
+	 */
+	public void update(TelemetryEntity telemetry, List<MeasurementEntity> readings) {
+		apply(DeviceLatestState.fromTelemetry(telemetry, readings));
+	}
+
+	/**
+	 * Qualsiasi messaggio ricevuto: aggiorna solo last seen e tipo di messaggio
+	 */
+	public void touch(String deviceId, String deviceType, int messageType, LocalDateTime seenAt) {
+		apply(DeviceLatestState.seen(deviceId, deviceType, String.valueOf(messageType), seenAt));
+	}
+
+	private void apply(DeviceLatestState update) {
+		String deviceId = update.deviceId();
+		if (deviceId == null) {
+			return;
+		}
+		// compute di ConcurrentHashMap è atomico per chiave: dirty riceve sempre l'ultimo stato
+		states.compute(deviceId, (id, current) -> {
+			DeviceLatestState merged = current == null ? update : current.merge(update);
+			if (writer != null && !merged.equals(current)) {
+				dirty.put(id, merged);
+			}
+			return merged;
+		});
+		deviceIds.add(deviceId);
+	}
+
+	/**
+	 * Stato di un device, null se mai visto
+	 */
+	public DeviceLatestState get(String deviceId) {
+		return states.get(deviceId);
+	}
+
+	/**
+	 * Pagina della flotta: i primi limit device con device_id maggiore di after
+	 * (null = dall'inizio)
+	 */
+	public Page page(String after, int limit) {
+		if (limit < 1 || limit > maxPageSize) {
+			throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+		}
+		Iterator<String> it = (after == null || after.isEmpty() ? deviceIds : deviceIds.tailSet(after, false))
+				.iterator();
+		List<DeviceLatestState> devices = new ArrayList<>(limit);
+		while (it.hasNext() && devices.size() < limit) {
+			DeviceLatestState state = states.get(it.next());
+			if (state != null) {
+				devices.add(state);
+			}
+		}
+		String nextAfter = it.hasNext() && !devices.isEmpty() ? devices.get(devices.size() - 1).deviceId() : null;
+		return new Page(devices, states.size(), nextAfter);
+	}
+
+	/**
+	 * Scrive i device segnati a blocchi di max-batch righe. Al primo errore si
+	 * ferma: i device restano segnati per il flush successivo.
+	 */
+	@Scheduled(fixedDelayString = "${device.state.flush-interval-ms:5000}")
+	public void flush() {
+		if (writer == null || dirty.isEmpty()) {
+			return;
+		}
+		flushLock.lock();
+		try {
+			List<DeviceLatestState> pending = new ArrayList<>(dirty.values());
+			int written = 0;
+			for (int from = 0; from < pending.size(); from += maxBatch) {
+				List<DeviceLatestState> chunk = pending.subList(from, Math.min(from + maxBatch, pending.size()));
+				try {
+					writer.upsert(chunk);
+					upsertStatements.incrementAndGet();
+					upsertedRows.addAndGet(chunk.size());
+					written += chunk.size();
+					for (DeviceLatestState state : chunk) {
+						dirty.remove(state.deviceId(), state);
+					}
+				} catch (Exception e) {
+					failedFlushes.incrementAndGet();
+					log.error("Device latest state flush failed ({} devices kept pending): {}", dirty.size(),
+							e.getMessage(), e);
+					break;
+				}
+			}
+			log.debug("Device latest state flush: {} devices written, {} pending", written, dirty.size());
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		flush();
+		if (!dirty.isEmpty()) {
+			log.warn("DeviceLatestStateService: {} devices not written at shutdown", dirty.size());
+		}
+	}
+
+	public int getDeviceCount() {
+		return states.size();
+	}
+
+	public int getPendingCount() {
+		return dirty.size();
+	}
+
+	public long getUpsertedRows() {
+		return upsertedRows.get();
+	}
+
+	public long getUpsertStatements() {
+		return upsertStatements.get();
+	}
+
+	public long getFailedFlushes() {
+		return failedFlushes.get();
+	}
+}
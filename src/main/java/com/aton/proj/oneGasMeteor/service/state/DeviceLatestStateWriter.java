@@ -0,0 +1,155 @@
+package com.aton.proj.oneGasMeteor.service.state;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.aton.proj.oneGasMeteor.config.condition.ConditionalOnJpaDatabase;
+
+/**
+ * UPSERT a blocchi su device_latest_state, una riga per device.
+ *
+ * - postgresql/timescaledb: {@code INSERT ... ON CONFLICT (device_id) DO UPDATE}
+ * - sqlserver: {@code MERGE ... WITH (HOLDLOCK)} (senza HOLDLOCK due MERGE
+ *   concorrenti sullo stesso device possono violare la PK)
+ * - h2mem: {@code MERGE INTO ... KEY (device_id)}
+ *
+ * Su PostgreSQL e SQL Server l'aggiornamento è condizionato su last_seen_at:
+ * con più istanze dietro lo stesso database vince il contatto più recente.
+ */
+@Component
+@ConditionalOnJpaDatabase
+public class DeviceLatestStateWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(DeviceLatestStateWriter.class);
+
+	static final String COLUMNS = "device_id, device_type, firmware_version, battery_voltage, battery_percentage, "
+			+ "signal_strength, distance_cm, temperature_c, measured_at, last_message_type, last_seen_at";
+
+	private static final String UPDATE_COLUMNS_PG = "device_type = EXCLUDED.device_type, "
+			+ "firmware_version = EXCLUDED.firmware_version, battery_voltage = EXCLUDED.battery_voltage, "
+			+ "battery_percentage = EXCLUDED.battery_percentage, signal_strength = EXCLUDED.signal_strength, "
+			+ "distance_cm = EXCLUDED.distance_cm, temperature_c = EXCLUDED.temperature_c, "
+			+ "measured_at = EXCLUDED.measured_at, last_message_type = EXCLUDED.last_message_type, "
+			+ "last_seen_at = EXCLUDED.last_seen_at";
+
+	private static final String UPDATE_COLUMNS_MSSQL = "t.device_type = s.device_type, "
+			+ "t.firmware_version = s.firmware_version, t.battery_voltage = s.battery_voltage, "
+			+ "t.battery_percentage = s.battery_percentage, t.signal_strength = s.signal_strength, "
+			+ "t.distance_cm = s.distance_cm, t.temperature_c = s.temperature_c, t.measured_at = s.measured_at, "
+			+ "t.last_message_type = s.last_message_type, t.last_seen_at = s.last_seen_at";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final String upsertSql;
+
+	public DeviceLatestStateWriter(JdbcTemplate jdbcTemplate, @Value("${database.type:sqlserver}") String databaseType) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.upsertSql = upsertSql(databaseType);
+		log.info("DeviceLatestStateWriter initialized ({})", databaseType);
+	}
+
+	static String upsertSql(String databaseType) {
+		String placeholders = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
+		return switch (databaseType.toLowerCase()) {
+		case "postgresql", "timescaledb" -> "INSERT INTO device_latest_state (" + COLUMNS + ") VALUES ("
+				+ placeholders + ") ON CONFLICT (device_id) DO UPDATE SET " + UPDATE_COLUMNS_PG
+				+ " WHERE device_latest_state.last_seen_at <= EXCLUDED.last_seen_at";
+		case "h2mem" -> "MERGE INTO device_latest_state (" + COLUMNS + ") KEY (device_id) VALUES (" + placeholders
+				+ ")";
+		default -> "MERGE device_latest_state WITH (HOLDLOCK) AS t USING (VALUES (" + placeholders + ")) AS s ("
+				+ COLUMNS + ") ON t.device_id = s.device_id "
+				+ "WHEN MATCHED AND t.last_seen_at <= s.last_seen_at THEN UPDATE SET " + UPDATE_COLUMNS_MSSQL
+				+ " WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ") VALUES (s." + COLUMNS.replace(", ", ", s.")
+				+ ");";
+		};
+	}
+
+	/**
+	 * Scrive gli stati in un unico batch JDBC (un device al massimo una volta)
+	 */
+	public void upsert(List<DeviceLatestState> states) {
+		jdbcTemplate.batchUpdate(upsertSql, new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				DeviceLatestState s = states.get(i);
+				ps.setString(1, s.deviceId());
+				setNullableString(ps, 2, s.deviceType());
+				setNullableString(ps, 3, s.firmwareVersion());
+				setNullableDouble(ps, 4, s.batteryVoltage());
+				setNullableDouble(ps, 5, s.batteryPercentage());
+				setNullableInt(ps, 6, s.signalStrength());
+				setNullableInt(ps, 7, s.distanceCm());
+				setNullableDouble(ps, 8, s.temperatureC());
+				setNullableTimestamp(ps, 9, s.measuredAt());
+				setNullableString(ps, 10, s.lastMessageType());
+				setNullableTimestamp(ps, 11, s.lastSeenAt());
+			}
+
+			@Override
+			public int getBatchSize() {
+				return states.size();
+			}
+		});
+	}
+
+	/**
+	 * Tutte le righe, per ripopolare la mappa in memoria all'avvio
+	 */
+	public List<DeviceLatestState> loadAll() {
+		return jdbcTemplate.query("SELECT " + COLUMNS + " FROM device_latest_state",
+				(rs, rowNum) -> new DeviceLatestState(rs.getString(1), rs.getString(2), rs.getString(3),
+						rs.getObject(4) != null ? rs.getDouble(4) : null,
+						rs.getObject(5) != null ? rs.getDouble(5) : null,
+						rs.getObject(6) != null ? rs.getInt(6) : null,
+						rs.getObject(7) != null ? rs.getInt(7) : null,
+						rs.getObject(8) != null ? rs.getDouble(8) : null, toLocalDateTime(rs.getTimestamp(9)),
+						rs.getString(10), toLocalDateTime(rs.getTimestamp(11))));
+	}
+
+	private static LocalDateTime toLocalDateTime(Timestamp ts) {
+		return ts != null ? ts.toLocalDateTime() : null;
+	}
+
+	private static void setNullableString(PreparedStatement ps, int index, String value) throws SQLException {
+		if (value != null) {
+			ps.setString(index, value);
+		} else {
+			ps.setNull(index, Types.VARCHAR);
+		}
+	}
+
+	private static void setNullableDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+		if (value != null) {
+			ps.setDouble(index, value);
+		} else {
+			ps.setNull(index, Types.DOUBLE);
+		}
+	}
+
+	private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+		if (value != null) {
+			ps.setInt(index, value);
+		} else {
+			ps.setNull(index, Types.INTEGER);
+		}
+	}
+
+	private static void setNullableTimestamp(PreparedStatement ps, int index, LocalDateTime value)
+			throws SQLException {
+		if (value != null) {
+			ps.setTimestamp(index, Timestamp.valueOf(value));
+		} else {
+			ps.setNull(index, Types.TIMESTAMP);
+		}
+	}
+}
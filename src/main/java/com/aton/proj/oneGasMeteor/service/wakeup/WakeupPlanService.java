@@ -0,0 +1,273 @@
+package com.aton.proj.oneGasMeteor.service.wakeup;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.aton.proj.oneGasMeteor.encoder.impl.Tek822Encoder;
+import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
+import com.aton.proj.oneGasMeteor.model.DeviceCommand;
+import com.aton.proj.oneGasMeteor.repository.CommandRepository;
+import com.aton.proj.oneGasMeteor.repository.DeviceSettingsRepository;
+import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository;
+import com.aton.proj.oneGasMeteor.service.wakeup.WakeupPlanner.Assignment;
+import com.aton.proj.oneGasMeteor.service.wakeup.WakeupPlanner.Plan;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Desincronizzazione dei risvegli della flotta (wakeup.planner.enabled=true).
+ *
+ * I device configurati con lo stesso schedule si connettono tutti nello stesso
+ * minuto. Il piano ({@link WakeupPlanner}) è calcolato dall'istogramma degli
+ * arrivi in processing_metrics; applicandolo, i device da spostare ricevono un
+ * SET_SCHEDULE a ondate di wave-size comandi ogni wave-interval-ms, così anche
+ * la riconfigurazione non crea un picco. Il nuovo S2 mantiene giorni e
+ * frequenza dell'ultimo S2 ricevuto dal device (Message Type 6), cambia solo lo
+ * slot orario.
+ */
+@Service
+@ConditionalOnProperty(name = "wakeup.planner.enabled", havingValue = "true")
+public class WakeupPlanService {
+
+	private static final Logger log = LoggerFactory.getLogger(WakeupPlanService.class);
+
+	private static final Pattern S2_VALUE = Pattern.compile("[0-9A-Fa-f]{6}");
+	private static final String DEFAULT_DAYS = "7F";
+	private static final String DEFAULT_FREQUENCY = "00";
+
+	/**
+	 * Piano e avanzamento del rollout. observed/planned vengono dal piano, actual
+	 * dagli arrivi degli ultimi giorni al momento della richiesta.
+	 */
+	public record WakeupReport(LocalDateTime plannedAt, int historyDays, int devices, int devicesToMove,
+			double observedPeakPerMinute, String observedPeakMinute, int plannedPeakPerMinute,
+			String plannedPeakMinute, double actualPeakPerMinute, String actualPeakMinute, int actualDays,
+			int commandsQueued, int devicesSkipped, int remaining) {
+	}
+
+	private final ProcessingMetricsRepository processingMetricsRepository;
+	private final CommandRepository commandRepository;
+	private final DeviceSettingsRepository deviceSettingsRepository;
+	private final ObjectMapper objectMapper;
+
+	@Value("${wakeup.planner.history-days:7}")
+	private int historyDays;
+
+	/** Ora del server - ora del device (RTC), in minuti */
+	@Value("${wakeup.planner.clock-offset-minutes:0}")
+	private int clockOffsetMinutes;
+
+	@Value("${wakeup.planner.window-start:00:00}")
+	private String windowStart;
+
+	@Value("${wakeup.planner.window-end:00:00}")
+	private String windowEnd;
+
+	@Value("${wakeup.planner.wave-size:200}")
+	private int waveSize;
+
+	private Plan plan;
+	private LocalDateTime plannedAt;
+	private int planDays;
+	private final Deque<Assignment> rollout = new ArrayDeque<>();
+	private int commandsQueued;
+	private int devicesSkipped;
+
+	public WakeupPlanService(@Nullable ProcessingMetricsRepository processingMetricsRepository,
+			CommandRepository commandRepository, DeviceSettingsRepository deviceSettingsRepository,
+			ObjectMapper objectMapper) {
+		this.processingMetricsRepository = processingMetricsRepository;
+		this.commandRepository = commandRepository;
+		this.deviceSettingsRepository = deviceSettingsRepository;
+		this.objectMapper = objectMapper;
+		log.info("WakeupPlanService initialized");
+	}
+
+	/**
+	 * Calcola il piano sugli ultimi days giorni senza accodare comandi. Un
+	 * rollout in corso viene interrotto.
+	 */
+	public synchronized WakeupReport plan(Integer days) {
+		int window = days != null ? days : historyDays;
+		if (window < 1) {
+			throw new IllegalArgumentException("days must be >= 1");
+		}
+		WakeupPlanner planner = new WakeupPlanner(clockOffsetMinutes, toSlot(windowStart), toSlot(windowEnd));
+		plan = planner.plan(arrivalsSince(window), window);
+		plannedAt = LocalDateTime.now();
+		planDays = window;
+		rollout.clear();
+		commandsQueued = 0;
+		devicesSkipped = 0;
+
+		log.info("Wake-up plan over {} days: {} devices, {} to move, peak {} -> {} connections/min", window,
+				plan.assignments().size(), plan.moves().size(),
+				Math.round(plan.observedPerMinute()[plan.observedPeakMinute()]),
+				plan.plannedPerMinute()[plan.plannedPeakMinute()]);
+		return buildReport(plan.observedPerMinute(), window);
+	}
+
+	/**
+	 * Avvia il rollout dell'ultimo piano calcolato
+	 */
+	public synchronized WakeupReport apply() {
+		if (plan == null) {
+			throw new IllegalStateException("No wake-up plan computed yet");
+		}
+		rollout.clear();
+		rollout.addAll(plan.moves());
+		log.info("Wake-up rollout started: {} SET_SCHEDULE commands in waves of {}", rollout.size(), waveSize);
+		return buildReport(plan.observedPerMinute(), planDays);
+	}
+
+	/**
+	 * Ferma il rollout; i comandi già accodati restano PENDING
+	 */
+	public synchronized WakeupReport cancel() {
+		log.info("Wake-up rollout cancelled, {} devices not reconfigured", rollout.size());
+		rollout.clear();
+		return report(1);
+	}
+
+	/**
+	 * Previsione del piano confrontata con gli arrivi degli ultimi days giorni
+	 */
+	public synchronized WakeupReport report(int days) {
+		if (days < 1) {
+			throw new IllegalArgumentException("days must be >= 1");
+		}
+		return buildReport(WakeupPlanner.dailyArrivalsPerMinute(arrivalsSince(days), days), days);
+	}
+
+	/**
+	 * Accoda la prossima ondata di SET_SCHEDULE
+	 */
+	@Scheduled(fixedDelayString = "${wakeup.planner.wave-interval-ms:60000}")
+	public void sendWave() {
+		List<Assignment> wave = new ArrayList<>();
+		synchronized (this) {
+			while (wave.size() < waveSize && !rollout.isEmpty()) {
+				wave.add(rollout.poll());
+			}
+		}
+		if (wave.isEmpty()) {
+			return;
+		}
+
+		int queued = 0;
+		int skipped = 0;
+		for (Assignment assignment : wave) {
+			try {
+				if (assignment.deviceType() == null || hasPendingSchedule(assignment.deviceId())) {
+					skipped++;
+					continue;
+				}
+				DeviceCommand command = new DeviceCommand(assignment.deviceId(), assignment.deviceType(),
+						Tek822Encoder.CMD_SET_SCHEDULE);
+				command.addParameter("schedule",
+						scheduleValue(currentSchedule(assignment.deviceId()), assignment.plannedSlot()));
+				commandRepository.save(command);
+				queued++;
+			} catch (Exception e) {
+				log.error("Failed to queue SET_SCHEDULE for device {}: {}", assignment.deviceId(), e.getMessage());
+				skipped++;
+			}
+		}
+
+		int remaining;
+		synchronized (this) {
+			commandsQueued += queued;
+			devicesSkipped += skipped;
+			remaining = rollout.size();
+		}
+		log.info("Wake-up wave: {} SET_SCHEDULE queued, {} skipped, {} remaining", queued, skipped, remaining);
+	}
+
+	/**
+	 * Valore S2 con lo slot orario sostituito: giorni e frequenza dall'S2 attuale
+	 * se noto, altrimenti tutti i giorni e un upload al giorno
+	 */
+	static String scheduleValue(@Nullable String currentS2, int slot) {
+		String days = DEFAULT_DAYS;
+		String frequency = DEFAULT_FREQUENCY;
+		if (currentS2 != null && S2_VALUE.matcher(currentS2).matches()) {
+			days = currentS2.substring(0, 2).toUpperCase();
+			frequency = currentS2.substring(4, 6).toUpperCase();
+		}
+		return String.format("%s%02X%s", days, slot, frequency);
+	}
+
+	static int toSlot(String time) {
+		LocalTime t = LocalTime.parse(time);
+		return (t.getHour() * 60 + t.getMinute()) / WakeupPlanner.SLOT_MINUTES;
+	}
+
+	private List<ProcessingMetricsRepository.ArrivalCount> arrivalsSince(int days) {
+		if (processingMetricsRepository == null) {
+			throw new IllegalStateException("Processing metrics are disabled (metrics.enabled=false)");
+		}
+		return processingMetricsRepository.countArrivalsByMinuteOfDay(LocalDateTime.now().minusDays(days));
+	}
+
+	private boolean hasPendingSchedule(String deviceId) {
+		return commandRepository.findPendingCommands(deviceId).stream()
+				.anyMatch(c -> Tek822Encoder.CMD_SET_SCHEDULE.equals(c.getCommandType()));
+	}
+
+	/**
+	 * S2 dell'ultimo Message Type 6 del device (findByDeviceId: più recente
+	 * prima)
+	 */
+	private String currentSchedule(String deviceId) {
+		for (DeviceSettingsEntity settings : deviceSettingsRepository.findByDeviceId(deviceId)) {
+			if (settings.getSettingsJson() == null) {
+				continue;
+			}
+			try {
+				Map<?, ?> values = objectMapper.readValue(settings.getSettingsJson(), Map.class);
+				Object s2 = values.get("S2");
+				if (s2 != null) {
+					return s2.toString();
+				}
+			} catch (Exception e) {
+				log.debug("Unreadable settings for device {}: {}", deviceId, e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	private WakeupReport buildReport(double[] actualPerMinute, int actualDays) {
+		int actualPeak = WakeupPlanner.peakMinute(actualPerMinute);
+		if (plan == null) {
+			return new WakeupReport(null, 0, 0, 0, 0, null, 0, null, round(actualPerMinute[actualPeak]),
+					formatMinute(actualPeak), actualDays, commandsQueued, devicesSkipped, rollout.size());
+		}
+		int observedPeak = plan.observedPeakMinute();
+		int plannedPeak = plan.plannedPeakMinute();
+		return new WakeupReport(plannedAt, planDays, plan.assignments().size(), plan.moves().size(),
+				round(plan.observedPerMinute()[observedPeak]), formatMinute(observedPeak),
+				plan.plannedPerMinute()[plannedPeak], formatMinute(plannedPeak), round(actualPerMinute[actualPeak]),
+				formatMinute(actualPeak), actualDays, commandsQueued, devicesSkipped, rollout.size());
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 10) / 10.0;
+	}
+
+	private static String formatMinute(int minuteOfDay) {
+		return String.format("%02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+	}
+}
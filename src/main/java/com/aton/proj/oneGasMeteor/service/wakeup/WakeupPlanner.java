@@ -0,0 +1,197 @@
+package com.aton.proj.oneGasMeteor.service.wakeup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository.ArrivalCount;
+
+/**
+ * Calcola una nuova fascia di upload (registro S2) per device in modo da
+ * appiattire le connessioni per minuto.
+ *
+ * Lo schedule del TEK822 ha la granularità di uno slot da 15 minuti (byte
+ * centrale di S2, 0x20 = 08:00). Per ogni device si prende il minuto del giorno
+ * in cui si connette più spesso: lo slot attuale è quello che lo contiene
+ * (sull'orologio del device, clockOffsetMinutes rispetto al server) e il
+ * ritardo dentro lo slot (attach alla rete, misure) è considerato una
+ * caratteristica del device che resta uguale spostandolo. Spostato allo slot s
+ * si connetterà quindi al minuto offset + s * 15 + ritardo.
+ *
+ * Solo i device con lo slot attuale dentro la finestra vengono spostati, e solo
+ * dentro la finestra; gli altri restano dove sono ma contano nel carico. Ogni
+ * device va nello slot il cui minuto d'arrivo è il meno affollato; resta nel
+ * suo se è al massimo di una connessione sopra il migliore (evita comandi per
+ * guadagni nulli).
+ */
+public class WakeupPlanner {
+
+	public static final int MINUTES_PER_DAY = 24 * 60;
+	public static final int SLOT_MINUTES = 15;
+	public static final int SLOTS_PER_DAY = MINUTES_PER_DAY / SLOT_MINUTES;
+
+	/** Device con il minuto d'arrivo abituale e lo slot attuale e pianificato */
+	public record Assignment(String deviceId, String deviceType, int arrivalMinute, int currentSlot, int plannedSlot,
+			int plannedMinute) {
+
+		public boolean moved() {
+			return plannedSlot != currentSlot;
+		}
+	}
+
+	/**
+	 * Risultato della pianificazione. observedPerMinute è la media giornaliera
+	 * degli arrivi reali, plannedPerMinute il modello a un arrivo al giorno per
+	 * device dopo gli spostamenti.
+	 */
+	public record Plan(List<Assignment> assignments, double[] observedPerMinute, int[] plannedPerMinute) {
+
+		public List<Assignment> moves() {
+			return assignments.stream().filter(Assignment::moved).toList();
+		}
+
+		public int observedPeakMinute() {
+			return peakMinute(observedPerMinute);
+		}
+
+		public int plannedPeakMinute() {
+			return peakMinute(Arrays.stream(plannedPerMinute).asDoubleStream().toArray());
+		}
+	}
+
+	private final int clockOffsetMinutes;
+	private final int windowStartSlot;
+	private final int windowEndSlot;
+	private final int[] windowSlots;
+
+	/**
+	 * @param clockOffsetMinutes Differenza ora server - ora del device
+	 * @param windowStartSlot    Primo slot (0-95) in cui spostare i device
+	 * @param windowEndSlot      Slot di fine, escluso; se non maggiore
+	 *                           dell'inizio la finestra passa la mezzanotte
+	 *                           (inizio = fine: tutto il giorno)
+	 */
+	public WakeupPlanner(int clockOffsetMinutes, int windowStartSlot, int windowEndSlot) {
+		this.clockOffsetMinutes = clockOffsetMinutes;
+		this.windowStartSlot = Math.floorMod(windowStartSlot, SLOTS_PER_DAY);
+		this.windowEndSlot = Math.floorMod(windowEndSlot, SLOTS_PER_DAY);
+		int start = this.windowStartSlot;
+		int end = this.windowEndSlot;
+		this.windowSlots = IntStream.range(0, SLOTS_PER_DAY).filter(slot -> inWindow(slot, start, end)).toArray();
+	}
+
+	/**
+	 * @param arrivals Istogramma per device e minuto
+	 * @param days     Giorni coperti dall'istogramma (per la media giornaliera)
+	 */
+	public Plan plan(List<ArrivalCount> arrivals, int days) {
+		Map<String, ArrivalCount> usual = new HashMap<>();
+		for (ArrivalCount arrival : arrivals) {
+			usual.merge(arrival.deviceId(), arrival, WakeupPlanner::moreFrequent);
+		}
+
+		// Ordine stabile: lo stesso storico produce lo stesso piano
+		List<ArrivalCount> devices = new ArrayList<>(usual.values());
+		devices.sort(Comparator.comparing(ArrivalCount::deviceId));
+
+		int[] planned = new int[MINUTES_PER_DAY];
+		List<ArrivalCount> movable = new ArrayList<>();
+		List<Assignment> assignments = new ArrayList<>(devices.size());
+		for (ArrivalCount device : devices) {
+			if (inWindow(currentSlot(device.minuteOfDay()))) {
+				movable.add(device);
+			} else {
+				planned[device.minuteOfDay()]++;
+				assignments.add(assignment(device, currentSlot(device.minuteOfDay())));
+			}
+		}
+
+		for (ArrivalCount device : movable) {
+			int current = currentSlot(device.minuteOfDay());
+			int best = current;
+			for (int slot : windowSlots) {
+				int load = planned[arrivalMinute(slot, device.minuteOfDay())];
+				int bestLoad = planned[arrivalMinute(best, device.minuteOfDay())];
+				if (load < bestLoad || (load == bestLoad && slotDistance(slot, current) < slotDistance(best, current))) {
+					best = slot;
+				}
+			}
+			if (planned[arrivalMinute(current, device.minuteOfDay())] <= planned[arrivalMinute(best,
+					device.minuteOfDay())] + 1) {
+				best = current;
+			}
+			planned[arrivalMinute(best, device.minuteOfDay())]++;
+			assignments.add(assignment(device, best));
+		}
+
+		return new Plan(assignments, dailyArrivalsPerMinute(arrivals, days), planned);
+	}
+
+	/**
+	 * Media giornaliera delle connessioni per minuto del giorno
+	 */
+	public static double[] dailyArrivalsPerMinute(List<ArrivalCount> arrivals, int days) {
+		double[] perMinute = new double[MINUTES_PER_DAY];
+		for (ArrivalCount arrival : arrivals) {
+			perMinute[arrival.minuteOfDay()] += (double) arrival.count() / Math.max(1, days);
+		}
+		return perMinute;
+	}
+
+	public static int peakMinute(double[] perMinute) {
+		int peak = 0;
+		for (int m = 1; m < perMinute.length; m++) {
+			if (perMinute[m] > perMinute[peak]) {
+				peak = m;
+			}
+		}
+		return peak;
+	}
+
+	/**
+	 * Slot S2 (orologio del device) che contiene il minuto d'arrivo
+	 */
+	int currentSlot(int arrivalMinute) {
+		return Math.floorMod(arrivalMinute - clockOffsetMinutes, MINUTES_PER_DAY) / SLOT_MINUTES;
+	}
+
+	/**
+	 * Minuto d'arrivo (orologio del server) spostando il device allo slot
+	 */
+	int arrivalMinute(int slot, int usualArrivalMinute) {
+		int delay = Math.floorMod(usualArrivalMinute - clockOffsetMinutes, MINUTES_PER_DAY) % SLOT_MINUTES;
+		return Math.floorMod(clockOffsetMinutes + slot * SLOT_MINUTES + delay, MINUTES_PER_DAY);
+	}
+
+	boolean inWindow(int slot) {
+		return inWindow(slot, windowStartSlot, windowEndSlot);
+	}
+
+	private static boolean inWindow(int slot, int startSlot, int endSlot) {
+		if (startSlot < endSlot) {
+			return slot >= startSlot && slot < endSlot;
+		}
+		return slot >= startSlot || slot < endSlot;
+	}
+
+	private Assignment assignment(ArrivalCount device, int slot) {
+		return new Assignment(device.deviceId(), device.deviceType(), device.minuteOfDay(),
+				currentSlot(device.minuteOfDay()), slot, arrivalMinute(slot, device.minuteOfDay()));
+	}
+
+	private static int slotDistance(int a, int b) {
+		int d = Math.abs(a - b);
+		return Math.min(d, SLOTS_PER_DAY - d);
+	}
+
+	private static ArrivalCount moreFrequent(ArrivalCount a, ArrivalCount b) {
+		if (a.count() != b.count()) {
+			return a.count() > b.count() ? a : b;
+		}
+		return a.minuteOfDay() <= b.minuteOfDay() ? a : b;
+	}
+}
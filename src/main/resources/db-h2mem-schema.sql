@@ -0,0 +1,32 @@
+-- ============================================
+-- Profilo h2mem: tabelle scritte solo via JDBC, non mappate da JPA e quindi
+-- non create da ddl-auto=update. Sugli altri database vedi i file
+-- db-migration-*.sql corrispondenti.
+-- ============================================
+
+-- measurements (db-migration-measurements.sql)
+CREATE TABLE IF NOT EXISTS measurements (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id       VARCHAR(50)       NOT NULL,
+    measured_at     TIMESTAMP(3)      NOT NULL,
+    distance_cm     INT,
+    temperature_c   DOUBLE PRECISION,
+    sonic_rssi      INT,
+    sonic_src       INT
+);
+CREATE INDEX IF NOT EXISTS idx_ms_device_measured_at ON measurements (device_id, measured_at);
+
+-- device_latest_state (db-migration-device-latest-state.sql)
+CREATE TABLE IF NOT EXISTS device_latest_state (
+    device_id           VARCHAR(50)       PRIMARY KEY,
+    device_type         VARCHAR(50),
+    firmware_version    VARCHAR(20),
+    battery_voltage     DOUBLE PRECISION,
+    battery_percentage  DOUBLE PRECISION,
+    signal_strength     INT,
+    distance_cm         INT,
+    temperature_c       DOUBLE PRECISION,
+    measured_at         TIMESTAMP(3),
+    last_message_type   VARCHAR(50),
+    last_seen_at        TIMESTAMP(3)      NOT NULL
+);
@@ -0,0 +1,20 @@
+-- ============================================
+-- decoded_data_bin
+-- DecodedMessage in formato binario compatto (DecodedMessageCodec v1),
+-- alternativo al JSON in decoded_data.
+-- Da eseguire PRIMA di avviare l'applicazione con
+-- telemetry.decoded-data.format=binary: la colonna non è mappata
+-- nell'entity (ddl-auto non la crea né la valida) e viene scritta solo in
+-- formato binary. Con il formato json di default non serve.
+-- Dopo il passaggio a binary non tornare a json: i record binari non
+-- verrebbero più letti.
+-- ============================================
+
+-- SQL Server
+ALTER TABLE telemetry_data ADD decoded_data_bin VARBINARY(MAX) NULL;
+
+-- PostgreSQL / TimescaleDB
+-- ALTER TABLE telemetry_data ADD COLUMN IF NOT EXISTS decoded_data_bin BYTEA;
+
+-- Opzionale, dopo il passaggio a binary: i nuovi record non scrivono
+-- piu' decoded_data, i vecchi restano leggibili in JSON.
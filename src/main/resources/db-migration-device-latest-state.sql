@@ -0,0 +1,47 @@
+-- ============================================
+-- device_latest_state
+-- Ultimo stato noto per device (batteria, segnale, livello, firmware,
+-- last seen), aggiornato da DeviceLatestStateService con UPSERT a blocchi.
+-- Da eseguire PRIMA di impostare device.state.enabled=true (default
+-- false): la tabella non è mappata da JPA, ddl-auto non la crea né la
+-- valida.
+-- ============================================
+
+-- SQL Server
+CREATE TABLE device_latest_state (
+    device_id           NVARCHAR(50)  NOT NULL PRIMARY KEY,
+    device_type         NVARCHAR(50)  NULL,
+    firmware_version    NVARCHAR(20)  NULL,
+    battery_voltage     FLOAT         NULL,
+    battery_percentage  FLOAT         NULL,
+    signal_strength     INT           NULL,
+    distance_cm         INT           NULL,
+    temperature_c       FLOAT         NULL,
+    measured_at         DATETIME2(3)  NULL,
+    last_message_type   NVARCHAR(50)  NULL,
+    last_seen_at        DATETIME2(3)  NOT NULL
+);
+
+-- PostgreSQL (per TimescaleDB vedi db-timescaledb-schema.sql)
+-- CREATE TABLE IF NOT EXISTS device_latest_state (
+--     device_id           VARCHAR(50)       PRIMARY KEY,
+--     device_type         VARCHAR(50),
+--     firmware_version    VARCHAR(20),
+--     battery_voltage     DOUBLE PRECISION,
+--     battery_percentage  DOUBLE PRECISION,
+--     signal_strength     INT,
+--     distance_cm         INT,
+--     temperature_c       DOUBLE PRECISION,
+--     measured_at         TIMESTAMP(3),
+--     last_message_type   VARCHAR(50),
+--     last_seen_at        TIMESTAMP(3)      NOT NULL
+-- );
+
+-- Stato iniziale dalla telemetria esistente (facoltativo, SQL Server):
+-- INSERT INTO device_latest_state (device_id, device_type, firmware_version, battery_voltage,
+--        battery_percentage, signal_strength, last_message_type, last_seen_at)
+-- SELECT device_id, device_type, firmware_version, battery_voltage, battery_percentage,
+--        signal_strength, message_type, received_at
+-- FROM (SELECT *, ROW_NUMBER() OVER (PARTITION BY device_id ORDER BY received_at DESC) AS rn
+--       FROM telemetry_data) t
+-- WHERE rn = 1;
@@ -0,0 +1,33 @@
+-- ============================================
+-- measurements
+-- Una riga per ogni lettura dei Message Type 4/8/9 (fino a 28 per
+-- messaggio), scritta da BatchWriteService insieme a telemetry_data.
+-- measured_at e' il timestamp UTC della lettura calcolato dal decoder.
+-- Da eseguire PRIMA di impostare telemetry.measurements.enabled=true
+-- (default false): la tabella non è mappata da JPA, ddl-auto non la crea
+-- né la valida.
+-- ============================================
+
+-- SQL Server
+CREATE TABLE measurements (
+    id              BIGINT IDENTITY(1,1) PRIMARY KEY,
+    device_id       NVARCHAR(50)  NOT NULL,
+    measured_at     DATETIME2(3)  NOT NULL,
+    distance_cm     INT           NULL,
+    temperature_c   FLOAT         NULL,
+    sonic_rssi      INT           NULL,
+    sonic_src       INT           NULL
+);
+CREATE INDEX idx_ms_device_measured_at ON measurements (device_id, measured_at);
+
+-- PostgreSQL (per TimescaleDB vedi db-timescaledb-schema.sql)
+-- CREATE TABLE IF NOT EXISTS measurements (
+--     id              BIGSERIAL PRIMARY KEY,
+--     device_id       VARCHAR(50)       NOT NULL,
+--     measured_at     TIMESTAMP(3)      NOT NULL,
+--     distance_cm     INT,
+--     temperature_c   DOUBLE PRECISION,
+--     sonic_rssi      INT,
+--     sonic_src       INT
+-- );
+-- CREATE INDEX IF NOT EXISTS idx_ms_device_measured_at ON measurements (device_id, measured_at);
@@ -10,6 +10,7 @@ CREATE TABLE telemetry_data (
     device_type         NVARCHAR(50)  NOT NULL,
     raw_message         NVARCHAR(MAX) NULL,
     decoded_data        NVARCHAR(MAX) NULL,
+    decoded_data_bin    VARBINARY(MAX) NULL,
     received_at         DATETIME2(3)  NOT NULL,
     processed_at        DATETIME2(3)  NULL,
     imei                NVARCHAR(20)  NULL,
@@ -0,0 +1,16 @@
+-- ============================================
+-- Indici per la paginazione keyset di telemetry_data
+-- GET /api/telemetry e /api/telemetry/export filtrano per device_id o
+-- device_type e ordinano per (received_at, id) decrescenti: con questi
+-- indici ogni pagina parte dal cursore senza ordinare lo storico del device.
+-- ============================================
+
+-- SQL Server
+CREATE INDEX idx_device_received_at ON telemetry_data (device_id, received_at DESC, id DESC);
+CREATE INDEX idx_device_type_received_at ON telemetry_data (device_type, received_at DESC, id DESC);
+
+-- PostgreSQL
+-- CREATE INDEX IF NOT EXISTS idx_device_received_at ON telemetry_data (device_id, received_at DESC, id DESC);
+-- CREATE INDEX IF NOT EXISTS idx_device_type_received_at ON telemetry_data (device_type, received_at DESC, id DESC);
+
+-- TimescaleDB: gia' in db-timescaledb-schema.sql (idx_td_device_received_at, idx_td_type_received_at)
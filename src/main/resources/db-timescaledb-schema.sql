@@ -21,6 +21,7 @@ CREATE TABLE IF NOT EXISTS telemetry_data (
     device_type         VARCHAR(50)         NOT NULL,
     raw_message         TEXT,
     decoded_data        TEXT,
+    decoded_data_bin    BYTEA,
     received_at         TIMESTAMP(3)        NOT NULL,
     processed_at        TIMESTAMP(3),
     imei                VARCHAR(20),
@@ -41,6 +42,8 @@ CREATE INDEX IF NOT EXISTS idx_td_device_id               ON telemetry_data (dev
 CREATE INDEX IF NOT EXISTS idx_td_device_type             ON telemetry_data (device_type);
 CREATE INDEX IF NOT EXISTS idx_td_received_at             ON telemetry_data (received_at DESC);
 CREATE INDEX IF NOT EXISTS idx_td_imei                    ON telemetry_data (imei);
+CREATE INDEX IF NOT EXISTS idx_td_device_received_at      ON telemetry_data (device_id, received_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_td_type_received_at        ON telemetry_data (device_type, received_at DESC, id DESC);
 
 -- ============================================================
 -- device_commands (tabella relazionale normale, NO hypertable)
@@ -193,6 +196,43 @@ CREATE INDEX IF NOT EXISTS idx_pm_received_at          ON processing_metrics (re
 CREATE INDEX IF NOT EXISTS idx_pm_message_type         ON processing_metrics (message_type);
 CREATE INDEX IF NOT EXISTS idx_pm_success              ON processing_metrics (success);
 
+-- ============================================================
+-- measurements (hypertable) - una riga per lettura dei Message Type 4/8/9
+-- ============================================================
+CREATE TABLE IF NOT EXISTS measurements (
+    id                  BIGINT GENERATED ALWAYS AS IDENTITY,
+    device_id           VARCHAR(50)         NOT NULL,
+    measured_at         TIMESTAMP           NOT NULL,
+    distance_cm         INT,
+    temperature_c       DOUBLE PRECISION,
+    sonic_rssi          INT,
+    sonic_src           INT
+);
+
+SELECT create_hypertable('measurements', 'measured_at',
+       chunk_time_interval => INTERVAL '7 days',
+       if_not_exists => true);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_ms_pk                 ON measurements (id, measured_at);
+CREATE INDEX IF NOT EXISTS idx_ms_device_measured_at        ON measurements (device_id, measured_at DESC);
+
+-- ============================================================
+-- device_latest_state (tabella normale, una riga per device)
+-- ============================================================
+CREATE TABLE IF NOT EXISTS device_latest_state (
+    device_id           VARCHAR(50)         PRIMARY KEY,
+    device_type         VARCHAR(50),
+    firmware_version    VARCHAR(20),
+    battery_voltage     DOUBLE PRECISION,
+    battery_percentage  DOUBLE PRECISION,
+    signal_strength     INT,
+    distance_cm         INT,
+    temperature_c       DOUBLE PRECISION,
+    measured_at         TIMESTAMP,
+    last_message_type   VARCHAR(50),
+    last_seen_at        TIMESTAMP           NOT NULL
+);
+
 -- ============================================================
 -- Retention policy opzionali (TimescaleDB native)
 -- ============================================================
@@ -204,6 +244,7 @@ CREATE INDEX IF NOT EXISTS idx_pm_success              ON processing_metrics (su
 -- SELECT add_retention_policy('device_statistics', INTERVAL '30 days', if_not_exists => true);
 -- SELECT add_retention_policy('device_locations', INTERVAL '30 days', if_not_exists => true);
 -- SELECT add_retention_policy('processing_metrics', INTERVAL '90 days', if_not_exists => true);
+-- SELECT add_retention_policy('measurements', INTERVAL '30 days', if_not_exists => true);
 
 -- ============================================================
 -- Compression policy opzionali (TimescaleDB)
@@ -224,3 +265,10 @@ CREATE INDEX IF NOT EXISTS idx_pm_success              ON processing_metrics (su
 --     timescaledb.compress_orderby = 'received_at DESC'
 -- );
 -- SELECT add_compression_policy('processing_metrics', INTERVAL '7 days', if_not_exists => true);
+--
+-- ALTER TABLE measurements SET (
+--     timescaledb.compress,
+--     timescaledb.compress_segmentby = 'device_id',
+--     timescaledb.compress_orderby = 'measured_at DESC'
+-- );
+-- SELECT add_compression_policy('measurements', INTERVAL '7 days', if_not_exists => true);
@@ -0,0 +1,171 @@
+package com.aton.proj.oneGasMeteor.replay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.LockSupport;
+
+import com.aton.proj.oneGasMeteor.service.capture.FrameCaptureLog;
+import com.aton.proj.oneGasMeteor.service.capture.FrameCaptureLog.CapturedFrame;
+import com.aton.proj.oneGasMeteor.service.metrics.LatencyHistogram;
+
+/**
+ * Riproduce contro un'istanza in esecuzione i frame registrati da
+ * {@code FrameCaptureTap} (capture.enabled=true).
+ *
+ * Ogni frame è inviato su una nuova connessione TCP, come fanno i device: si
+ * scrive il frame, si chiude l'output e si legge la risposta fino alla
+ * chiusura del server (vale sia con tcp.server.session-enabled=false sia con
+ * true). La latenza misurata va dalla connect all'ultimo byte della risposta.
+ *
+ * Parametri ({@code --nome=valore}):
+ * <ul>
+ * <li>capture: cartella dei file capture-*.bin (default ./capture)</li>
+ * <li>host, port: istanza da caricare (default localhost:8091)</li>
+ * <li>speed: 1 = tempi originali, N = N volte più veloce, max = senza pause
+ * (default 1)</li>
+ * <li>concurrency: connessioni contemporanee massime (default 256)</li>
+ * <li>timeout-ms: timeout di connect e lettura (default 10000)</li>
+ * </ul>
+ *
+ * Esecuzione:
+ * {@code mvn -Preplay test-compile exec:exec -Dreplay.args="--speed=10 --concurrency=512"}
+ *
+ * Il rapporto finale riporta throughput ottenuto, percentili di latenza e il
+ * ritardo massimo accumulato sulla tabella di marcia (se cresce, il limite di
+ * concorrenza o il server non tengono il ritmo richiesto).
+ */
+public class FrameReplay {
+
+	private final Path captureDirectory;
+	private final InetSocketAddress target;
+	private final double speed;
+	private final int timeoutMs;
+	private final Semaphore inFlight;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong succeeded = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong replyBytes = new AtomicLong();
+	private final LongAccumulator maxLagMicros = new LongAccumulator(Math::max, 0);
+
+	public FrameReplay(Path captureDirectory, InetSocketAddress target, double speed, int concurrency,
+			int timeoutMs) {
+		this.captureDirectory = captureDirectory;
+		this.target = target;
+		this.speed = speed;
+		this.timeoutMs = timeoutMs;
+		this.inFlight = new Semaphore(Math.max(1, concurrency));
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		String speedOption = options.getOrDefault("speed", "1");
+		FrameReplay replay = new FrameReplay(
+				Path.of(options.getOrDefault("capture", "./capture")),
+				new InetSocketAddress(options.getOrDefault("host", "localhost"),
+						Integer.parseInt(options.getOrDefault("port", "8091"))),
+				"max".equalsIgnoreCase(speedOption) ? 0 : Double.parseDouble(speedOption),
+				Integer.parseInt(options.getOrDefault("concurrency", "256")),
+				Integer.parseInt(options.getOrDefault("timeout-ms", "10000")));
+		replay.run();
+	}
+
+	public void run() throws IOException, InterruptedException {
+		System.out.printf("Replaying %s against %s (speed %s, concurrency %d)%n", captureDirectory, target,
+				speed > 0 ? speed + "x" : "max", inFlight.availablePermits());
+
+		long startNanos = System.nanoTime();
+		long[] firstFrameMicros = { -1 };
+
+		try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+			FrameCaptureLog.forEach(captureDirectory, frame -> {
+				if (firstFrameMicros[0] < 0) {
+					firstFrameMicros[0] = frame.receivedAtMicros();
+				}
+				long dueNanos = startNanos;
+				if (speed > 0) {
+					dueNanos += (long) ((frame.receivedAtMicros() - firstFrameMicros[0]) * 1000 / speed);
+					long wait;
+					while ((wait = dueNanos - System.nanoTime()) > 0) {
+						LockSupport.parkNanos(wait);
+					}
+				}
+
+				inFlight.acquireUninterruptibly();
+				if (speed > 0) {
+					maxLagMicros.accumulate((System.nanoTime() - dueNanos) / 1000);
+				}
+				sent.incrementAndGet();
+				workers.execute(() -> {
+					try {
+						send(frame);
+					} finally {
+						inFlight.release();
+					}
+				});
+			});
+		}
+
+		report(System.nanoTime() - startNanos);
+	}
+
+	private void send(CapturedFrame frame) {
+		long start = System.nanoTime();
+		try (Socket socket = new Socket()) {
+			socket.connect(target, timeoutMs);
+			socket.setSoTimeout(timeoutMs);
+			socket.getOutputStream().write(frame.frame());
+			socket.getOutputStream().flush();
+			socket.shutdownOutput();
+
+			InputStream in = socket.getInputStream();
+			byte[] buffer = new byte[1024];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				replyBytes.addAndGet(n);
+			}
+			latency.recordMicros((System.nanoTime() - start) / 1000);
+			succeeded.incrementAndGet();
+		} catch (IOException e) {
+			failed.incrementAndGet();
+		}
+	}
+
+	private void report(long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		System.out.printf("Frames sent:      %d (ok %d, failed %d)%n", sent.get(), succeeded.get(), failed.get());
+		System.out.printf("Elapsed:          %.1f s%n", seconds);
+		System.out.printf("Throughput:       %.1f frames/s%n", seconds > 0 ? succeeded.get() / seconds : 0);
+		System.out.printf("Reply bytes:      %d%n", replyBytes.get());
+		System.out.printf("Latency p50:      %.2f ms%n", latency.quantileMicros(0.50) / 1000.0);
+		System.out.printf("Latency p99:      %.2f ms%n", latency.quantileMicros(0.99) / 1000.0);
+		System.out.printf("Latency p999:     %.2f ms%n", latency.quantileMicros(0.999) / 1000.0);
+		System.out.printf("Latency max:      %.2f ms%n", latency.maxMicros() / 1000.0);
+		if (speed > 0) {
+			System.out.printf("Max schedule lag: %.1f ms%n", maxLagMicros.get() / 1000.0);
+		}
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("Unrecognized argument: " + arg + " (expected --name=value)");
+			}
+			int eq = arg.indexOf('=');
+			options.put(arg.substring(2, eq), arg.substring(eq + 1));
+		}
+		return options;
+	}
+}
@@ -0,0 +1,124 @@
+package com.aton.proj.oneGasMeteor.codec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.decoder.TekMessageDecoder;
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test di {@link DecodedMessageCodec}: il grafo ricostruito dal formato binario
+ * deve serializzarsi nello stesso JSON della colonna decoded_data (campioni di
+ * {@code TekMessageDecoderTest}).
+ */
+class DecodedMessageCodecTest {
+
+	// 2025-03-07T12:00:00Z, fisso per avere timestamp confrontabili
+	private static final long SERVER_TIME_MS = 1741348800000L;
+
+	private static final String HEX_MSG_TYPE4 = "180A640188117C0862406075927406047B0078773652FF84002100721E31000161E0860000112233445047B00005200002C84013000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000F594A4E29F30A5029F30A5029F30A5229F30A5029F30A5029F30A4E29F30A5029F30A5029F30A5029F30A5029F30A5429F30A5629F30A5A29F30A5629F30A5229F30A4E29F30A4829F30A4629F30A4229F30A4229F30000000000000000000000000000000000000000000000000000000055F7";
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+	private static final String HEX_MSG_TYPE16 = "18020344891936086443104798705410462C38393838323830363636303031303637353334382C3435323237332C302C38302C323335352C31382C35383937342C3732362C362C33393439362C313639362C36302C7EE0";
+
+	private final TekMessageDecoder decoder = new TekMessageDecoder();
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * Input: frame type 4, 8 e 16 decodificati da TekMessageDecoder.
+	 *
+	 * Output atteso: encode + decode producono lo stesso JSON dell'originale.
+	 */
+	@Test
+	void testRoundTripMatchesJson() throws Exception {
+		for (String hex : List.of(HEX_MSG_TYPE4, HEX_MSG_TYPE8, HEX_MSG_TYPE16)) {
+			DecodedMessage original = decode(hex);
+
+			DecodedMessage restored = DecodedMessageCodec.decode(DecodedMessageCodec.encode(original));
+
+			assertEquals(objectMapper.writeValueAsString(original), objectMapper.writeValueAsString(restored));
+		}
+	}
+
+	/**
+	 * Input: misure con forma non standard (numerazione libera, temperatura non
+	 * multipla di 0.5, timestamp senza millisecondi).
+	 *
+	 * Output atteso: layout per riga, round-trip senza perdita.
+	 */
+	@Test
+	void testRoundTripRowLayoutFallback() throws Exception {
+		DecodedMessage original = decode(HEX_MSG_TYPE8);
+		List<DecodedMessage.MeasurementData> custom = new ArrayList<>();
+		DecodedMessage.MeasurementData a = new DecodedMessage.MeasurementData();
+		a.setMeasurementNum("Lettura A");
+		a.setDistanceCm(123);
+		a.setTemperatureC(21.37);
+		a.setTemperatureF("70.47");
+		a.setSonicSrc(3);
+		a.setSonicRssi(7);
+		a.setAuxdata1("aux");
+		a.setTimestamp("2025-03-07T10:00:00Z");
+		custom.add(a);
+		DecodedMessage.MeasurementData b = new DecodedMessage.MeasurementData();
+		b.setMeasurementNum("Lettura B");
+		b.setTemperatureC(-4.1);
+		custom.add(b);
+		original.setMeasurementData(custom);
+
+		DecodedMessage restored = DecodedMessageCodec.decode(DecodedMessageCodec.encode(original));
+
+		assertEquals(objectMapper.writeValueAsString(original), objectMapper.writeValueAsString(restored));
+	}
+
+	/**
+	 * Input: messaggio senza misure e senza sezioni opzionali.
+	 *
+	 * Output atteso: round-trip con campi null preservati.
+	 */
+	@Test
+	void testRoundTripEmptyMessage() throws Exception {
+		DecodedMessage original = new DecodedMessage();
+
+		DecodedMessage restored = DecodedMessageCodec.decode(DecodedMessageCodec.encode(original));
+
+		assertEquals(objectMapper.writeValueAsString(original), objectMapper.writeValueAsString(restored));
+	}
+
+	/**
+	 * Input: byte che non iniziano con il magic del codec.
+	 *
+	 * Output atteso: IllegalArgumentException.
+	 */
+	@Test
+	void testRejectsUnknownFormat() {
+		assertThrows(IllegalArgumentException.class, () -> DecodedMessageCodec.decode(new byte[] { 0x7B, 0x22 }));
+	}
+
+	/**
+	 * Input: frame con misure.
+	 *
+	 * Output atteso: formato binario almeno 5 volte più compatto del JSON (i
+	 * tempi di encode/decode sono in DecodedMessageCodecBenchmark).
+	 */
+	@Test
+	void testSizeVersusJson() throws Exception {
+		for (String hex : List.of(HEX_MSG_TYPE4, HEX_MSG_TYPE8)) {
+			DecodedMessage original = decode(hex);
+			byte[] json = objectMapper.writeValueAsBytes(original);
+			byte[] bin = DecodedMessageCodec.encode(original);
+
+			assertTrue(bin.length * 5 < json.length, "binario atteso almeno 5 volte più piccolo del JSON: " + bin.length
+					+ " contro " + json.length + " byte");
+		}
+	}
+
+	private DecodedMessage decode(String hex) {
+		return decoder.decode(ControllerUtils.hexStringToByteArray(hex), SERVER_TIME_MS);
+	}
+}
@@ -0,0 +1,92 @@
+package com.aton.proj.oneGasMeteor.decoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test di {@link AsciiFields}: stessi risultati di split(",") + trim() +
+ * parseXxx sulle String.
+ */
+class AsciiFieldsTest {
+
+	/**
+	 * Input: ",a, b ,,c,," (virgola iniziale, spazi, campi vuoti in coda).
+	 *
+	 * Output atteso: 4 campi come String.split (i vuoti in coda non contano),
+	 * testo senza spazi.
+	 */
+	@Test
+	void testSplitLikeStringSplit() {
+		AsciiFields fields = split(",a, b ,,c,,", 12);
+
+		assertEquals("a, b ,,c,,".split(",").length, fields.count());
+		assertEquals("a", fields.text(0));
+		assertEquals("b", fields.text(1));
+		assertTrue(fields.isEmpty(2));
+		assertEquals("c", fields.text(3));
+	}
+
+	/**
+	 * Input: 14 campi, maxFields = 12; 12 campi seguiti solo da virgole.
+	 *
+	 * Output atteso: count 13 (ci sono altri campi non vuoti); count 12.
+	 */
+	@Test
+	void testCountBeyondMaxFields() {
+		assertEquals(13, split("1,2,3,4,5,6,7,8,9,10,11,12,13,14", 12).count());
+		assertEquals(12, split("1,2,3,4,5,6,7,8,9,10,11,12,,,", 12).count());
+		assertEquals(0, split("", 12).count());
+	}
+
+	/**
+	 * Input: interi validi, con segno, con zeri iniziali oltre 18 cifre, fuori
+	 * range, con byte di CRC in coda.
+	 *
+	 * Output atteso: valori di Integer/Long.parseInt, null dove il parse della
+	 * String fallirebbe.
+	 */
+	@Test
+	void testIntegers() {
+		AsciiFields fields = split("150,-3,+4,0000000000000000000000005,2147483648,9223372036854775807,2U÷, 7 ,",
+				12);
+
+		assertEquals(150, fields.intValue(0));
+		assertEquals(-3, fields.intValue(1));
+		assertEquals(4, fields.intValue(2));
+		assertEquals(5, fields.intValue(3));
+		assertNull(fields.intValue(4));
+		assertEquals(2147483648L, fields.longValue(4));
+		assertEquals(Long.MAX_VALUE, fields.longValue(5));
+		assertNull(fields.intValue(6));
+		assertEquals(7, fields.intValue(7));
+		assertNull(fields.intValue(8));
+	}
+
+	/**
+	 * Input: decimali semplici, esponente, NaN, più di 15 cifre, testo.
+	 *
+	 * Output atteso: bit identici a Double.parseDouble, null per il testo.
+	 */
+	@Test
+	void testDoubles() {
+		String[] values = { "42.5", "-0.0", ".5", "5.", "0.1", "1e3", "NaN", "0.1234567890123456789",
+				"123456789012345.6", "N" };
+		AsciiFields fields = split(String.join(",", values), values.length);
+
+		for (int i = 0; i < values.length - 1; i++) {
+			assertEquals(Double.doubleToRawLongBits(Double.parseDouble(values[i])),
+					Double.doubleToRawLongBits(fields.doubleValue(i)), values[i]);
+		}
+		assertNull(fields.doubleValue(values.length - 1));
+	}
+
+	private static AsciiFields split(String ascii, int maxFields) {
+		byte[] frame = new byte[17 + ascii.length()];
+		byte[] body = ascii.getBytes(StandardCharsets.ISO_8859_1);
+		System.arraycopy(body, 0, frame, 17, body.length);
+		return AsciiFields.split(frame, 17, body.length, maxFields);
+	}
+}
@@ -129,6 +129,33 @@ class MessageTypeParserTest {
 		assertEquals(0, response.getSettings().size());
 	}
 
+	/**
+	 * Input hex: "53303DZZ" (carattere non HEX), per i tipi 6, 16 e 17
+	 * Input deviceId: "DEV005"
+	 *
+	 * Output atteso:
+	 *   - nessuna eccezione
+	 *   - risposte vuote con deviceId e deviceType valorizzati
+	 *
+	 * Verifica che un payload non HEX dia una risposta vuota come un payload
+	 * non interpretabile, invece di propagare NumberFormatException.
+	 */
+	@Test
+	void testParseMessageTypes_invalidHex() {
+		String invalid = "53303DZZ";
+
+		MessageType6Response settings = parser.parseMessageType6(invalid, "DEV005", "TEK822V2");
+		MessageType16Response statistics = parser.parseMessageType16(invalid, "DEV005", "TEK822V2");
+		MessageType17Response gps = parser.parseMessageType17(invalid, "DEV005", "TEK822V2");
+
+		assertEquals(0, settings.getSettings().size());
+		assertEquals("DEV005", settings.getDeviceId());
+		assertNull(statistics.getIccid());
+		assertEquals("TEK822V2", statistics.getDeviceType());
+		assertNull(gps.getLatitudeRaw());
+		assertEquals("DEV005", gps.getDeviceId());
+	}
+
 	// ====================== parseMessageType16 (ICCID & Statistics) ======================
 
 	/**
@@ -365,8 +392,137 @@ class MessageTypeParserTest {
 		assertNull(response.getGoogleMapsLink());
 	}
 
+	// ====================== Varianti byte[] (frame binario) ======================
+
+	/**
+	 * Input: frame binario = 17 byte di header fittizio + ASCII ",S0=80,S1=05" + 2
+	 * byte di CRC, letto da offset 17.
+	 *
+	 * Output atteso: stesso risultato della variante HEX sullo stesso body.
+	 *
+	 * Verifica che il parsing diretto dai byte sia equivalente a quello via HEX.
+	 */
+	@Test
+	void testParseMessageType6_fromBytesMatchesHex() {
+		String asciiBody = ",S0=80,S1=05";
+		byte[] frame = frame(asciiBody);
+
+		MessageType6Response fromBytes = parser.parseMessageType6(frame, 17, frame.length - 17, "DEV030",
+				"TEK822V2");
+		MessageType6Response fromHex = parser.parseMessageType6(asciiToHex(asciiBody) + "55F7", "DEV030",
+				"TEK822V2");
+
+		assertEquals(fromHex.getSettings(), fromBytes.getSettings());
+		assertEquals("80", fromBytes.getSetting("S0"));
+	}
+
+	/**
+	 * Input: frame binario con body MT16 a 12 campi, letto da offset 17.
+	 *
+	 * Output atteso: ICCID e contatori parsati come nella variante HEX.
+	 */
+	@Test
+	void testParseMessageType16_fromBytes() {
+		byte[] frame = frame(",89882390000028895236,19875,5,55,150,3,45000,1200,800,2500,148,2");
+
+		MessageType16Response response = parser.parseMessageType16(frame, 17, frame.length - 17, "DEV031",
+				"TEK822V2");
+
+		assertEquals("89882390000028895236", response.getIccid());
+		assertEquals(19875L, response.getEnergyUsed());
+		assertEquals(150, response.getMessageCount());
+	}
+
+	/**
+	 * Input: frame binario con body MT17, letto da offset 17.
+	 *
+	 * Output atteso: campi GPS parsati come nella variante HEX.
+	 */
+	@Test
+	void testParseMessageType17_fromBytes() {
+		byte[] frame = frame(",95,134442.0,5255.9950N,00013.4000E,1.2,42.5,3,180.0,0.5,0.3,070325,8");
+
+		MessageType17Response response = parser.parseMessageType17(frame, 17, frame.length - 17, "DEV032",
+				"TEK822V2");
+
+		assertEquals(95, response.getTimeToFixSeconds());
+		assertEquals("5255.9950N", response.getLatitudeRaw());
+		assertEquals(42.5, response.getAltitude());
+	}
+
+	/**
+	 * Input: frame MT16 reale di un TEK822V2 (body con virgola finale seguita dai
+	 * 2 byte di CRC 0x7E 0xE0).
+	 *
+	 * Output atteso: tutti i 12 campi valorizzati, il CRC dopo l'ultima virgola
+	 * viene ignorato.
+	 */
+	@Test
+	void testParseMessageType16_realFrameWithCrc() {
+		byte[] frame = java.util.HexFormat.of().parseHex("18020344891936086443104798705410462C3839383832383036"
+				+ "3636303031303637353334382C3435323237332C302C38302C323335352C31382C35383937342C3732362C"
+				+ "362C33393439362C313639362C36302C7EE0");
+
+		MessageType16Response response = parser.parseMessageType16(frame, 17, frame.length - 17, "DEV034",
+				"TEK822V2");
+
+		assertEquals("89882806660010675348", response.getIccid());
+		assertEquals(452273L, response.getEnergyUsed());
+		assertEquals(0, response.getMinTemperature());
+		assertEquals(80, response.getMaxTemperature());
+		assertEquals(2355, response.getMessageCount());
+		assertEquals(18, response.getDeliveryFailCount());
+		assertEquals(1696, response.getRssiValidCount());
+		assertEquals(60, response.getRssiFailCount());
+	}
+
+	/**
+	 * Input: MT17 con spazi attorno ai campi e ora UTC senza decimi.
+	 *
+	 * Output atteso: campi senza spazi, ora 13:44:42.
+	 */
+	@Test
+	void testParseMessageType17_spacesAndTimeWithoutTenths() {
+		byte[] frame = frame(", 95 ,134442, 5255.9950N ,00013.4000E,1.2,42.5,3,180.0,0.5,0.3, 070325 ,8,");
+
+		MessageType17Response response = parser.parseMessageType17(frame, 17, frame.length - 17, "DEV035",
+				"TEK822V2");
+
+		assertEquals(95, response.getTimeToFixSeconds());
+		assertEquals(13, response.getUtcTime().getHour());
+		assertEquals(42, response.getUtcTime().getSecond());
+		assertEquals("5255.9950N", response.getLatitudeRaw());
+		assertEquals("070325", response.getDate());
+		assertEquals(8, response.getNumberOfSatellites());
+	}
+
+	/**
+	 * Input: frame di solo header (length = 0).
+	 *
+	 * Output atteso: risposta valida senza settings.
+	 */
+	@Test
+	void testParseMessageType6_fromBytesHeaderOnly() {
+		MessageType6Response response = parser.parseMessageType6(new byte[17], 17, 0, "DEV033", "TEK822V2");
+
+		assertNotNull(response);
+		assertEquals(0, response.getSettings().size());
+	}
+
 	// ====================== Helper ======================
 
+	/**
+	 * Costruisce un frame: header di 17 byte a zero + body ASCII + CRC fittizio.
+	 */
+	private static byte[] frame(String asciiBody) {
+		byte[] body = asciiBody.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+		byte[] frame = new byte[17 + body.length + 2];
+		System.arraycopy(body, 0, frame, 17, body.length);
+		frame[frame.length - 2] = 0x55;
+		frame[frame.length - 1] = (byte) 0xF7;
+		return frame;
+	}
+
 	/**
 	 * Converte una stringa ASCII in stringa HEX (per costruire i payload di test).
 	 *
@@ -0,0 +1,131 @@
+package com.aton.proj.oneGasMeteor.decoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.exception.DecodingException;
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
+
+/**
+ * Test di {@link TekFrameView}: gli accessor primitivi devono restituire gli
+ * stessi valori del grafo {@link DecodedMessage} prodotto da
+ * {@link TekMessageDecoder} sugli stessi frame (campioni di
+ * {@code TekMessageDecoderTest}).
+ */
+class TekFrameViewTest {
+
+	// 2025-03-07T12:00:00Z, fisso per avere timestamp confrontabili
+	private static final long SERVER_TIME_MS = 1741348800000L;
+
+	private static final String HEX_MSG_TYPE4 = "180A640188117C0862406075927406047B0078773652FF84002100721E31000161E0860000112233445047B00005200002C84013000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000F594A4E29F30A5029F30A5029F30A5229F30A5029F30A5029F30A4E29F30A5029F30A5029F30A5029F30A5029F30A5429F30A5629F30A5A29F30A5629F30A5229F30A4E29F30A4829F30A4629F30A4229F30A4229F30000000000000000000000000000000000000000000000000000000055F7";
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+	private static final String HEX_MSG_TYPE16 = "18020344891936086443104798705410462C38393838323830363636303031303637353334382C3435323237332C302C38302C323335352C31382C35383937342C3732362C362C33393439362C313639362C36302C7EE0";
+
+	private final TekMessageDecoder decoder = new TekMessageDecoder();
+
+	/**
+	 * Input: frame type 8 con 10 misure valide e 18 slot vuoti.
+	 *
+	 * Output atteso: header, diagnostica e ogni misura non vuota coincidono con
+	 * il DecodedMessage; i timestamp coincidono in epoch millis.
+	 */
+	@Test
+	void testViewMatchesDecodedMessage_type8() {
+		assertViewMatchesDecoded(ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE8));
+	}
+
+	/**
+	 * Input: frame type 4 (logger speed da byte 23).
+	 *
+	 * Output atteso: stessi valori del DecodedMessage.
+	 */
+	@Test
+	void testViewMatchesDecodedMessage_type4() {
+		assertViewMatchesDecoded(ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE4));
+	}
+
+	/**
+	 * Input: frame type 16 (ASCII, senza misure).
+	 *
+	 * Output atteso: header decodificato, nessuno slot di misura.
+	 */
+	@Test
+	void testViewWithoutMeasurements_type16() {
+		byte[] payload = ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE16);
+		TekFrameView view = new TekFrameView(payload, SERVER_TIME_MS);
+
+		assertEquals(16, view.messageType());
+		assertFalse(view.hasMeasurements());
+		assertEquals(0, view.measurementSlots());
+		assertEquals(0, view.measurementCount());
+		assertEquals("TEK822V2", view.productType());
+		assertEquals("864431047987054", view.imei());
+		assertThrows(IndexOutOfBoundsException.class, () -> view.distanceCm(0));
+	}
+
+	/**
+	 * Input: frame type 8 troncato rispetto alla lunghezza dichiarata.
+	 *
+	 * Output atteso: DecodingException già alla creazione della vista.
+	 */
+	@Test
+	void testTruncatedFrameRejected() {
+		byte[] payload = ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE8);
+		byte[] truncated = java.util.Arrays.copyOf(payload, 40);
+
+		assertThrows(DecodingException.class, () -> new TekFrameView(truncated, SERVER_TIME_MS));
+	}
+
+	/**
+	 * Input: frame type 8.
+	 *
+	 * Output atteso: toDecodedMessage() produce lo stesso grafo del decoder.
+	 */
+	@Test
+	void testToDecodedMessage() {
+		byte[] payload = ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE8);
+		DecodedMessage expected = decoder.decode(payload, SERVER_TIME_MS);
+		DecodedMessage actual = new TekFrameView(payload, SERVER_TIME_MS).toDecodedMessage();
+
+		assertEquals(expected.getUniqueIdentifier().getImei(), actual.getUniqueIdentifier().getImei());
+		assertEquals(expected.getMeasurementData().size(), actual.getMeasurementData().size());
+		assertEquals(expected.getMeasurementData().get(0).getTimestamp(),
+				actual.getMeasurementData().get(0).getTimestamp());
+	}
+
+	private void assertViewMatchesDecoded(byte[] payload) {
+		DecodedMessage decoded = decoder.decode(payload, SERVER_TIME_MS);
+		TekFrameView view = new TekFrameView(payload, SERVER_TIME_MS);
+
+		assertEquals(decoded.getUnitInfo().getProductType(), view.productType());
+		assertEquals(decoded.getUnitInfo().getFirmwareRevision(), view.firmwareRevision());
+		assertEquals(decoded.getUniqueIdentifier().getImei(), view.imei());
+		assertEquals(decoded.getMessageType(), String.valueOf(view.messageType()));
+		assertEquals(decoded.getSignalStrength().getCsq(), view.signalStrength());
+		assertEquals(decoded.getDiagnosticInfo().getMessageCount(), view.messageCount());
+		assertEquals(decoded.getUnitSetup().getLoggerSpeedMinutes(), (int) (view.loggerSpeedMs() / 60000));
+
+		List<DecodedMessage.MeasurementData> measurements = decoded.getMeasurementData();
+		assertEquals(measurements.size(), view.measurementCount());
+
+		int index = 0;
+		for (int slot = 0; slot < view.measurementSlots(); slot++) {
+			if (view.isVoid(slot)) {
+				continue;
+			}
+			DecodedMessage.MeasurementData m = measurements.get(index++);
+			assertEquals("Data " + slot, m.getMeasurementNum());
+			assertEquals(m.getDistanceCm(), view.distanceCm(slot));
+			assertEquals(m.getSonicRssi(), view.sonicRssi(slot));
+			assertEquals(m.getSonicSrc(), view.sonicSrc(slot));
+			assertEquals(m.getTemperatureC(), view.temperatureC(slot), 0.001);
+			assertEquals(Instant.parse(m.getTimestamp()).toEpochMilli(), view.timestampMillis(slot));
+		}
+		assertEquals(measurements.size(), index);
+	}
+}
@@ -0,0 +1,187 @@
+package com.aton.proj.oneGasMeteor.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.aton.proj.oneGasMeteor.config.tcpServer.TcpServerProperties;
+import com.aton.proj.oneGasMeteor.model.DeviceSession;
+import com.aton.proj.oneGasMeteor.model.ProcessingContext;
+import com.aton.proj.oneGasMeteor.model.TelemetryResponse;
+import com.aton.proj.oneGasMeteor.service.ProcessingMetricsWriter;
+import com.aton.proj.oneGasMeteor.service.TelemetryService;
+import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
+
+/**
+ * Test della modalità sessione di {@link TcpConnectionHandlerReadExactly} su
+ * socket reali in loopback, con TelemetryService mockato.
+ */
+class TcpConnectionHandlerSessionTest {
+
+	/** Messaggio reale TEK822V2 type 8, come in {@code TekMessageDecoderTest} */
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+
+	private final TelemetryService telemetryService = mock(TelemetryService.class);
+	private final TcpConnectionHandlerReadExactly handler = new TcpConnectionHandlerReadExactly(telemetryService,
+			null, null, null);
+
+	/**
+	 * Input: tre frame inviati di seguito sulla stessa connessione, poi chiusura
+	 * in scrittura del client.
+	 *
+	 * Output atteso: tre elaborazioni con la stessa DeviceSession, un solo
+	 * flushSession, connessione chiusa dal server.
+	 */
+	@Test
+	void testSession_multipleFramesOnOneConnection() throws Exception {
+		when(telemetryService.processTelemetry(any(), any(), any()))
+				.thenReturn(TelemetryResponse.success("864431047987054", "TEK822V2"));
+		byte[] frame = frame();
+
+		byte[] reply = exchange(properties(5000), frame, frame, frame);
+
+		assertEquals(0, reply.length);
+		verify(telemetryService, times(3)).processTelemetry(any(), any(), any(DeviceSession.class));
+		verify(telemetryService, times(1)).flushSession(any(DeviceSession.class));
+		verify(telemetryService, never()).markCommandsAsSent(anyList());
+	}
+
+	/**
+	 * Input: un frame con un comando pendente, il client resta connesso senza
+	 * inviare altro.
+	 *
+	 * Output atteso: risposta con il comando prima della chiusura, comando
+	 * marcato SENT, connessione chiusa dopo l'idle timeout.
+	 */
+	@Test
+	void testSession_idleTimeoutClosesAfterReply() throws Exception {
+		TelemetryResponse response = TelemetryResponse.success("864431047987054", "TEK822V2");
+		response.setCommands(
+				List.of(new TelemetryResponse.EncodedCommand(1L, "REBOOT", "5245424F4F54", "REBOOT")));
+		when(telemetryService.processTelemetry(any(), any(), any())).thenReturn(response);
+
+		long start = System.nanoTime();
+		byte[] reply = exchangeWithoutClosing(properties(200), frame());
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+		assertTrue(reply.length > 0, "La risposta deve contenere il comando");
+		assertTrue(elapsedMs >= 150, "La sessione deve restare aperta fino all'idle timeout");
+		verify(telemetryService, times(1)).markCommandsAsSent(response.getCommands());
+		verify(telemetryService, times(1)).flushSession(any(DeviceSession.class));
+	}
+
+	/**
+	 * Input: header completo seguito da body troncato e chiusura del client.
+	 *
+	 * Output atteso: nessuna elaborazione, flushSession comunque chiamato.
+	 */
+	@Test
+	void testSession_truncatedFrameEndsSession() throws Exception {
+		byte[] truncated = Arrays.copyOf(frame(), 30);
+
+		exchange(properties(5000), truncated);
+
+		verify(telemetryService, never()).processTelemetry(any(), any(), any());
+		verify(telemetryService, times(1)).flushSession(any(DeviceSession.class));
+	}
+
+	/**
+	 * Input: il client si connette e non invia nulla fino al timeout.
+	 *
+	 * Output atteso: nessuna elaborazione, metriche registrate con esito
+	 * fallito "Timeout: ..." come nella modalità a frame singolo.
+	 */
+	@Test
+	void testSession_timeoutBeforeFirstFrameRecordsMetrics() throws Exception {
+		ProcessingMetricsWriter metricsWriter = mock(ProcessingMetricsWriter.class);
+		TcpConnectionHandlerReadExactly metricsHandler = new TcpConnectionHandlerReadExactly(telemetryService,
+				metricsWriter, null, null);
+		TcpServerProperties properties = properties(5000);
+		properties.setTimeout(100);
+
+		run(metricsHandler, properties, false);
+
+		ArgumentCaptor<ProcessingContext> context = ArgumentCaptor.forClass(ProcessingContext.class);
+		verify(metricsWriter).record(context.capture());
+		assertFalse(context.getValue().isSuccess());
+		assertTrue(context.getValue().getErrorMessage().startsWith("Timeout: "));
+		verify(telemetryService, never()).processTelemetry(any(), any(), any());
+	}
+
+	private byte[] exchange(TcpServerProperties properties, byte[]... frames) throws Exception {
+		return run(properties, true, frames);
+	}
+
+	private byte[] exchangeWithoutClosing(TcpServerProperties properties, byte[]... frames) throws Exception {
+		return run(properties, false, frames);
+	}
+
+	private byte[] run(TcpServerProperties properties, boolean shutdownOutput, byte[]... frames) throws Exception {
+		return run(handler, properties, shutdownOutput, frames);
+	}
+
+	private byte[] run(TcpConnectionHandlerReadExactly handler, TcpServerProperties properties,
+			boolean shutdownOutput, byte[]... frames) throws Exception {
+		try (ServerSocket server = new ServerSocket(0)) {
+			Thread serverThread = Thread.ofPlatform().start(() -> {
+				try {
+					handler.handleSession(server.accept(), properties);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+
+			ByteArrayOutputStream received = new ByteArrayOutputStream();
+			try (Socket client = new Socket("localhost", server.getLocalPort())) {
+				OutputStream out = client.getOutputStream();
+				for (byte[] frame : frames) {
+					out.write(frame);
+				}
+				out.flush();
+				if (shutdownOutput) {
+					client.shutdownOutput();
+				}
+				InputStream in = client.getInputStream();
+				byte[] buf = new byte[256];
+				int read;
+				while ((read = in.read(buf)) != -1) {
+					received.write(buf, 0, read);
+				}
+			}
+			serverThread.join(5000);
+			return received.toByteArray();
+		}
+	}
+
+	private TcpServerProperties properties(int idleTimeoutMs) {
+		TcpServerProperties properties = new TcpServerProperties();
+		properties.setSessionEnabled(true);
+		properties.setTimeout(5000);
+		properties.setSessionIdleTimeout(idleTimeoutMs);
+		return properties;
+	}
+
+	private byte[] frame() {
+		byte[] sample = ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE8);
+		int declared = TcpConnectionHandlerReadExactly.declaredBodyLength(sample[15], sample[16]);
+		return Arrays.copyOf(sample, TcpConnectionHandlerReadExactly.HEADER_SIZE + declared);
+	}
+}
@@ -0,0 +1,98 @@
+package com.aton.proj.oneGasMeteor.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.entity.CommandEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.model.TelemetryResponse.EncodedCommand;
+
+/**
+ * Test di {@link DeviceSession}: cache dei comandi e buffer delle telemetrie.
+ */
+class DeviceSessionTest {
+
+	/**
+	 * Input: cache caricata a t=1000 con validità 5000 ms.
+	 *
+	 * Output atteso: valida per lo stesso device fino a t=5999, non valida a
+	 * t=6000 o per un altro device.
+	 */
+	@Test
+	void testCommandCacheExpiry() {
+		DeviceSession session = new DeviceSession(5000, 32);
+		assertFalse(session.hasFreshCommands("dev", 0));
+
+		session.cacheCommands("dev", List.of(), 1000);
+
+		assertTrue(session.hasFreshCommands("dev", 5999));
+		assertFalse(session.hasFreshCommands("dev", 6000));
+		assertFalse(session.hasFreshCommands("other", 2000));
+	}
+
+	/**
+	 * Input: due comandi in cache, il primo consegnato in un frame (più un
+	 * comando sintetico con id null).
+	 *
+	 * Output atteso: solo il secondo resta da consegnare.
+	 */
+	@Test
+	void testDeliveredCommandsExcluded() {
+		DeviceSession session = new DeviceSession(5000, 32);
+		session.cacheCommands("dev", List.of(command(1L), command(2L)), 0);
+
+		session.markDelivered(List.of(new EncodedCommand(1L, "REBOOT", "enc", "asc"),
+				new EncodedCommand(null, "REBOOT", "enc", "asc")));
+
+		assertEquals(List.of(2L), session.undeliveredCommands().stream().map(CommandEntity::getId).toList());
+	}
+
+	/**
+	 * Input: soglia di flush 2, tre telemetrie.
+	 *
+	 * Output atteso: la seconda segnala la soglia; drain restituisce e svuota il
+	 * buffer.
+	 */
+	@Test
+	void testTelemetryBuffer() {
+		DeviceSession session = new DeviceSession(5000, 2);
+
+		assertFalse(session.bufferTelemetry(new TelemetryEntity()));
+		assertTrue(session.bufferTelemetry(new TelemetryEntity()));
+		assertEquals(2, session.drainTelemetry().size());
+
+		session.bufferTelemetry(new TelemetryEntity());
+		assertEquals(1, session.drainTelemetry().size());
+		assertTrue(session.drainTelemetry().isEmpty());
+	}
+
+	/**
+	 * Input: due azioni rimandate al flush.
+	 *
+	 * Output atteso: nessuna eseguita dalla sessione; drainAfterFlush le
+	 * restituisce in ordine e svuota la lista.
+	 */
+	@Test
+	void testRunAfterFlush() {
+		DeviceSession session = new DeviceSession(5000, 2);
+		List<String> executed = new ArrayList<>();
+
+		session.runAfterFlush(() -> executed.add("a"));
+		session.runAfterFlush(() -> executed.add("b"));
+		assertTrue(executed.isEmpty());
+
+		session.drainAfterFlush().forEach(Runnable::run);
+		assertEquals(List.of("a", "b"), executed);
+		assertTrue(session.drainAfterFlush().isEmpty());
+	}
+
+	private CommandEntity command(Long id) {
+		CommandEntity entity = new CommandEntity();
+		entity.setId(id);
+		return entity;
+	}
+}
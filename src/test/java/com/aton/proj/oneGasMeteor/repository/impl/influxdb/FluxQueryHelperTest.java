@@ -4,6 +4,9 @@ import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
 
+import com.aton.proj.oneGasMeteor.model.TelemetryCursor;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -122,4 +125,55 @@ class FluxQueryHelperTest {
         assertTrue(query.contains("\"" + MEASUREMENT + "\""));
         assertTrue(query.contains("\"" + DEVICE_ID + "\""));
     }
+
+    @Test
+    void successfulArrivalsSince_oneRowPerPoint() {
+        LocalDateTime from = LocalDateTime.of(2024, 6, 1, 0, 0, 0);
+
+        String query = FluxQueryHelper.successfulArrivalsSince(BUCKET, InfluxDBPointMapper.MEASUREMENT_METRICS, from);
+
+        assertTrue(query.contains("range(start: 2024-06-01T00:00:00Z)"));
+        assertTrue(query.contains("_measurement == \"processing_metrics\""));
+        assertTrue(query.contains("r.success == \"true\""));
+        assertTrue(query.contains("|> group(columns: [\"device_id\", \"device_type\"])"));
+        assertTrue(query.contains("|> unique(column: \"_time\")"));
+    }
+
+    @Test
+    void telemetryPage_firstPageProjectsAndLimits() {
+        TelemetryQuery q = new TelemetryQuery(null, IMEI, DEVICE_TYPE, null, null, null, false, true);
+
+        String query = FluxQueryHelper.telemetryPage(BUCKET, MEASUREMENT, q, null, 101);
+
+        assertTrue(query.contains("range(start: -365d) "));
+        assertTrue(query.contains("r.device_type == \"" + DEVICE_TYPE + "\""));
+        assertTrue(query.contains("r._field != \"raw_message\""));
+        assertFalse(query.contains("r._field != \"decoded_data\""));
+        // imei è un field: il filtro deve seguire il pivot
+        assertTrue(query.indexOf("r.imei == ") > query.indexOf("|> pivot("));
+        assertTrue(query.contains("|> sort(columns: [\"_time\", \"device_id\"], desc: true)"));
+        assertTrue(query.endsWith("|> limit(n: 101)"));
+    }
+
+    @Test
+    void telemetryPage_cursorNarrowsRangeAndBreaksTies() {
+        TelemetryQuery q = new TelemetryQuery(null, null, DEVICE_TYPE, null,
+                LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 7, 1, 0, 0), false, false);
+        TelemetryCursor after = new TelemetryCursor(LocalDateTime.of(2024, 3, 5, 10, 15, 30), DEVICE_ID);
+
+        String query = FluxQueryHelper.telemetryPage(BUCKET, MEASUREMENT, q, after, 50);
+
+        assertTrue(query.contains("range(start: 2024-01-01T00:00:00Z, stop: 2024-03-05T10:15:30.000000001Z)"));
+        assertTrue(query.contains("r._time < time(v: \"2024-03-05T10:15:30Z\") or "
+                + "(r._time == time(v: \"2024-03-05T10:15:30Z\") and r.device_id < \"" + DEVICE_ID + "\")"));
+    }
+
+    @Test
+    void telemetryPage_escapesStringLiterals() {
+        TelemetryQuery q = new TelemetryQuery("dev\") or true or (\"", null, null, null, null, null, true, true);
+
+        String query = FluxQueryHelper.telemetryPage(BUCKET, MEASUREMENT, q, null, 10);
+
+        assertTrue(query.contains("r.device_id == \"dev\\\") or true or (\\\"\""));
+    }
 }
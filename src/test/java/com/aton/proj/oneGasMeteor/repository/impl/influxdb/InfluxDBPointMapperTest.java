@@ -3,6 +3,7 @@ package com.aton.proj.oneGasMeteor.repository.impl.influxdb;
 import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
 import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.influxdb.client.write.Point;
@@ -10,6 +11,7 @@ import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -191,6 +193,21 @@ class InfluxDBPointMapperTest {
         assertTrue(lineProtocol.contains("success=false"));
     }
 
+    @Test
+    void toPoint_measurement_usesMeasuredAtAndSkipsNullFields() {
+        MeasurementEntity entity = new MeasurementEntity("862406075927406", NOW, 120, 21.5, 9, null);
+
+        Point point = InfluxDBPointMapper.toPoint(entity);
+
+        String lineProtocol = point.toLineProtocol();
+        assertTrue(lineProtocol.startsWith("measurements,device_id=862406075927406 "));
+        assertTrue(lineProtocol.contains("distance_cm=120i"));
+        assertTrue(lineProtocol.contains("temperature_c=21.5"));
+        assertTrue(lineProtocol.contains("sonic_rssi=9i"));
+        assertFalse(lineProtocol.contains("sonic_src"));
+        assertTrue(lineProtocol.endsWith(" " + NOW.toInstant(ZoneOffset.UTC).toEpochMilli()));
+    }
+
     @Test
     void measurementConstants_haveExpectedValues() {
         assertEquals("telemetry", InfluxDBPointMapper.MEASUREMENT_TELEMETRY);
@@ -198,5 +215,6 @@ class InfluxDBPointMapperTest {
         assertEquals("device_statistics", InfluxDBPointMapper.MEASUREMENT_STATISTICS);
         assertEquals("device_locations", InfluxDBPointMapper.MEASUREMENT_LOCATIONS);
         assertEquals("processing_metrics", InfluxDBPointMapper.MEASUREMENT_METRICS);
+        assertEquals("measurements", InfluxDBPointMapper.MEASUREMENT_MEASUREMENTS);
     }
 }
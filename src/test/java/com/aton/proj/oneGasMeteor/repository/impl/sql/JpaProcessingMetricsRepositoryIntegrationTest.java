@@ -15,6 +15,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
+import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository;
 import com.aton.proj.oneGasMeteor.server.TcpSocketServer;
 
 import jakarta.persistence.EntityManager;
@@ -131,6 +132,58 @@ class JpaProcessingMetricsRepositoryIntegrationTest {
         assertNotNull(saved.getCompletedAt());
     }
 
+    // ====================== saveAll ======================
+
+    @Test
+    void testSaveAll_persistsBatchWithNullableColumns() {
+        ProcessingMetricsEntity ok = buildMetrics("batch-metrics-dev", "TEK822V2", true);
+        ok.setTotalProcessingTimeMs(120L);
+        ok.setSignalStrength(18);
+        ProcessingMetricsEntity failed = buildMetrics("batch-metrics-dev", "TEK822V2", false);
+        failed.setErrorMessage("timeout");
+
+        repository.saveAll(List.of(ok, failed));
+
+        List<ProcessingMetricsEntity> saved = processingMetricsJpaRepository.findAll().stream()
+                .filter(m -> "batch-metrics-dev".equals(m.getDeviceId()))
+                .toList();
+        assertEquals(2, saved.size());
+        assertTrue(saved.stream().anyMatch(m -> m.getSuccess() && m.getTotalProcessingTimeMs() == 120L
+                && m.getSignalStrength() == 18));
+        assertTrue(saved.stream().anyMatch(m -> !m.getSuccess() && "timeout".equals(m.getErrorMessage())
+                && m.getTotalProcessingTimeMs() == null));
+    }
+
+    // ====================== countArrivalsByMinuteOfDay ======================
+
+    /**
+     * Input: due connessioni riuscite alle 08:00 in giorni diversi, una alle
+     * 08:01, una fallita alle 08:00 e una fuori periodo.
+     * Output atteso: 2 arrivi al minuto 480, 1 al minuto 481; fallite e vecchie
+     * escluse.
+     */
+    @Test
+    void testCountArrivalsByMinuteOfDay_groupsSuccessfulArrivalsByMinute() {
+        LocalDateTime today = LocalDateTime.now().withHour(8).withMinute(0).withSecond(10).withNano(0);
+        List<ProcessingMetricsEntity> rows = List.of(
+                arrival("arrivals-dev", true, today),
+                arrival("arrivals-dev", true, today.minusDays(1).plusSeconds(30)),
+                arrival("arrivals-dev", true, today.plusMinutes(1)),
+                arrival("arrivals-dev", false, today),
+                arrival("arrivals-dev", true, today.minusDays(30)));
+        repository.saveAll(rows);
+
+        List<ProcessingMetricsRepository.ArrivalCount> arrivals = repository
+                .countArrivalsByMinuteOfDay(today.minusDays(7)).stream()
+                .filter(a -> "arrivals-dev".equals(a.deviceId()))
+                .toList();
+
+        assertEquals(2, arrivals.size());
+        assertTrue(arrivals.stream().anyMatch(a -> a.minuteOfDay() == 480 && a.count() == 2
+                && "TEK822V2".equals(a.deviceType())));
+        assertTrue(arrivals.stream().anyMatch(a -> a.minuteOfDay() == 481 && a.count() == 1));
+    }
+
     // ====================== deleteOlderThan ======================
 
     @Test
@@ -212,4 +265,10 @@ class JpaProcessingMetricsRepositoryIntegrationTest {
         entity.setReceivedAt(LocalDateTime.now());
         return entity;
     }
+
+    private ProcessingMetricsEntity arrival(String deviceId, boolean success, LocalDateTime receivedAt) {
+        ProcessingMetricsEntity entity = buildMetrics(deviceId, "TEK822V2", success);
+        entity.setReceivedAt(receivedAt);
+        return entity;
+    }
 }
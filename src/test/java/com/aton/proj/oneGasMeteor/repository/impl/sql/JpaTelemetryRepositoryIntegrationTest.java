@@ -3,9 +3,11 @@ package com.aton.proj.oneGasMeteor.repository.impl.sql;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +19,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.model.TelemetryCursor;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+import com.aton.proj.oneGasMeteor.model.TelemetryRow;
 import com.aton.proj.oneGasMeteor.server.TcpSocketServer;
 
 /**
@@ -330,6 +335,76 @@ class JpaTelemetryRepositoryIntegrationTest {
         assertFalse(results.isEmpty(), "I record recenti non devono essere eliminati");
     }
 
+    // ====================== findPage / stream ======================
+
+    @Test
+    void testFindPage_walksAllRecordsWithCursor() {
+        DecodedMessage decoded = new DecodedMessage();
+        decoded.setMessageType("4");
+        for (int i = 0; i < 5; i++) {
+            repository.save("dev-page", "TEK822V2", "raw-page-" + i, decoded);
+        }
+        getJpaRepository().flush();
+        TelemetryQuery query = new TelemetryQuery("dev-page", null, null, null, null, null, false, false);
+
+        // Stesso received_at possibile tra i record: l'ordine è garantito da id
+        List<TelemetryRow> all = new ArrayList<>();
+        TelemetryCursor after = null;
+        List<TelemetryRow> page;
+        do {
+            page = repository.findPage(query, after, 2);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                after = TelemetryCursor.after(page.get(page.size() - 1));
+            }
+        } while (page.size() == 2);
+
+        assertEquals(5, all.size());
+        assertEquals(5, all.stream().map(TelemetryRow::id).distinct().count());
+        for (int i = 1; i < all.size(); i++) {
+            TelemetryRow prev = all.get(i - 1);
+            TelemetryRow row = all.get(i);
+            assertFalse(row.receivedAt().isAfter(prev.receivedAt()));
+            assertTrue(row.receivedAt().isBefore(prev.receivedAt()) || row.id() < prev.id());
+        }
+        assertNull(all.get(0).rawMessage(), "raw_message letto solo se richiesto");
+        assertNull(all.get(0).decodedData(), "decoded_data letto solo se richiesto");
+    }
+
+    @Test
+    void testFindPage_includesRequestedColumnsAndFiltersRange() {
+        DecodedMessage decoded = new DecodedMessage();
+        decoded.setMessageType("8");
+        repository.save("dev-page-cols", "TEK822V2", "raw-cols", decoded);
+        getJpaRepository().flush();
+
+        TelemetryQuery withColumns = new TelemetryQuery("dev-page-cols", null, null, "8", null, null, true, true);
+        List<TelemetryRow> rows = repository.findPage(withColumns, null, 10);
+        assertEquals(1, rows.size());
+        assertEquals("raw-cols", rows.get(0).rawMessage());
+        assertTrue(rows.get(0).decodedData().contains("\"8\""));
+
+        TelemetryQuery future = new TelemetryQuery("dev-page-cols", null, null, null,
+                LocalDateTime.now().plusDays(1), null, false, false);
+        assertTrue(repository.findPage(future, null, 10).isEmpty());
+    }
+
+    @Test
+    void testStream_visitsAllRecordsInPageOrder() {
+        DecodedMessage decoded = new DecodedMessage();
+        decoded.setMessageType("4");
+        for (int i = 0; i < 3; i++) {
+            repository.save("dev-stream", "TEK822V2", "raw-stream-" + i, decoded);
+        }
+        getJpaRepository().flush();
+        TelemetryQuery query = new TelemetryQuery("dev-stream", null, null, null, null, null, false, false);
+
+        List<TelemetryRow> streamed = new ArrayList<>();
+        repository.stream(query, streamed::add);
+
+        assertEquals(repository.findPage(query, null, 10), streamed);
+    }
+
     // ====================== buildEntity ======================
 
     @Test
@@ -0,0 +1,162 @@
+package com.aton.proj.oneGasMeteor.repository.impl.sql;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.aton.proj.oneGasMeteor.entity.CommandEntity;
+
+/**
+ * Test di {@link PendingCommandIndex} con CommandJpaRepository mock (nessun
+ * database).
+ */
+@ExtendWith(MockitoExtension.class)
+class PendingCommandIndexTest {
+
+	private static final CommandEntity.CommandStatus PENDING = CommandEntity.CommandStatus.PENDING;
+
+	@Mock
+	private CommandJpaRepository jpaRepository;
+
+	/**
+	 * Input: caricamento iniziale fallito.
+	 *
+	 * Output atteso: ogni device risulta da interrogare.
+	 */
+	@Test
+	void testNotLoaded_alwaysMightHavePending() {
+		when(jpaRepository.findPendingIdsAfter(eq(PENDING), anyLong())).thenThrow(new RuntimeException("db down"));
+		PendingCommandIndex index = new PendingCommandIndex(jpaRepository);
+		index.load();
+
+		assertFalse(index.isLoaded());
+		assertTrue(index.mightHavePending("any-device"));
+	}
+
+	/**
+	 * Input: due comandi PENDING su dev-1 al caricamento.
+	 *
+	 * Output atteso: dev-1 da interrogare, dev-2 no.
+	 */
+	@Test
+	void testLoad_indexesPendingByDevice() {
+		when(jpaRepository.findPendingIdsAfter(PENDING, 0L)).thenReturn(rows(1L, "dev-1", 2L, "dev-1"));
+		PendingCommandIndex index = new PendingCommandIndex(jpaRepository);
+		index.load();
+
+		assertTrue(index.isLoaded());
+		assertTrue(index.mightHavePending("dev-1"));
+		assertFalse(index.mightHavePending("dev-2"));
+		assertEquals(Set.of(1L, 2L), index.snapshot("dev-1"));
+	}
+
+	/**
+	 * Input: add e remove fuori da una transazione.
+	 *
+	 * Output atteso: il device entra ed esce dall'indice.
+	 */
+	@Test
+	void testAddAndRemove() {
+		PendingCommandIndex index = loadedEmpty();
+
+		index.add("dev-1", 10L);
+		assertTrue(index.mightHavePending("dev-1"));
+
+		index.remove("dev-1", 10L);
+		assertFalse(index.mightHavePending("dev-1"));
+		assertEquals(0, index.getDeviceCount());
+	}
+
+	/**
+	 * Input: snapshot {1, 2}, la query restituisce solo 2, nel frattempo è
+	 * stato aggiunto 3.
+	 *
+	 * Output atteso: 1 rimosso, 2 e 3 mantenuti.
+	 */
+	@Test
+	void testReconcile_keepsIdsAddedDuringQuery() {
+		PendingCommandIndex index = loadedEmpty();
+		index.add("dev-1", 1L);
+		index.add("dev-1", 2L);
+		Set<Long> before = index.snapshot("dev-1");
+
+		index.add("dev-1", 3L);
+		index.reconcile("dev-1", before, List.of(command(2L)));
+
+		assertEquals(Set.of(2L, 3L), index.snapshot("dev-1"));
+	}
+
+	/**
+	 * Input: add dentro una transazione aperta; un reconcile concorrente con
+	 * una query che non vede ancora la riga, poi il commit.
+	 *
+	 * Output atteso: il reconcile toglie l'id, il commit lo rimette (nessun
+	 * falso negativo dopo il commit).
+	 */
+	@Test
+	void testAddInTransaction_reappliedAfterCommit() {
+		PendingCommandIndex index = loadedEmpty();
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			index.add("dev-1", 5L);
+			Set<Long> before = index.snapshot("dev-1");
+
+			index.reconcile("dev-1", before, List.of());
+			assertFalse(index.mightHavePending("dev-1"));
+
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertEquals(Set.of(5L), index.snapshot("dev-1"));
+	}
+
+	/**
+	 * Input: il polling trova un comando creato da un'altra istanza.
+	 *
+	 * Output atteso: il device entra nell'indice.
+	 */
+	@Test
+	void testPoll_addsCommandsFromOtherInstances() {
+		PendingCommandIndex index = loadedEmpty();
+		when(jpaRepository.findPendingIdsAfter(eq(PENDING), anyLong())).thenReturn(rows(42L, "dev-remote"));
+
+		index.poll();
+
+		assertTrue(index.mightHavePending("dev-remote"));
+	}
+
+	private PendingCommandIndex loadedEmpty() {
+		when(jpaRepository.findPendingIdsAfter(PENDING, 0L)).thenReturn(List.of());
+		PendingCommandIndex index = new PendingCommandIndex(jpaRepository);
+		index.load();
+		return index;
+	}
+
+	private static List<Object[]> rows(Object... idAndDevice) {
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < idAndDevice.length; i += 2) {
+			rows.add(new Object[] { idAndDevice[i], idAndDevice[i + 1] });
+		}
+		return rows;
+	}
+
+	private static CommandEntity command(Long id) {
+		CommandEntity entity = new CommandEntity("dev-1", "TEK822V2", "REBOOT");
+		entity.setId(id);
+		return entity;
+	}
+}
@@ -0,0 +1,94 @@
+package com.aton.proj.oneGasMeteor.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.server.AdmissionControl.Level;
+
+/**
+ * Test di {@link AdmissionControl}: transizioni di livello con isteresi e
+ * decisioni di accept/admit.
+ */
+class AdmissionControlTest {
+
+	private static final long MB = 1024 * 1024;
+
+	// max-connections=100, queue>=1000, spool>=10 MB, poolWaiting>=5, shed a 2.0, ritardo max 200 ms
+	private final AdmissionControl control = new AdmissionControl(null, null, null, 100, 1000, 10, 5, 2.0, 200);
+
+	/**
+	 * Input: tutti i segnali sotto soglia.
+	 *
+	 * Output atteso: NORMAL, nessun ritardo, connessioni ammesse.
+	 */
+	@Test
+	void testNormal() {
+		control.evaluate(500, 0, 0);
+
+		assertEquals(Level.NORMAL, control.getLevel());
+		assertEquals(0, control.acceptDelayMs());
+		assertTrue(control.admit(100));
+		assertEquals(100, control.effectiveConnectionLimit());
+	}
+
+	/**
+	 * Input: spool oltre soglia (pressione 1.5).
+	 *
+	 * Output atteso: THROTTLE, ritardo positivo, limite connessioni ridotto.
+	 */
+	@Test
+	void testThrottleOnSpool() {
+		control.evaluate(0, 15 * MB, 0);
+
+		assertEquals(Level.THROTTLE, control.getLevel());
+		assertEquals(1.5, control.getPressure(), 0.001);
+		assertTrue(control.acceptDelayMs() > 0);
+		assertEquals(66, control.effectiveConnectionLimit());
+		assertTrue(control.admit(60));
+		assertFalse(control.admit(70));
+		assertEquals(1, control.getRejectedOverLimit());
+	}
+
+	/**
+	 * Input: thread in attesa sul pool Hikari al doppio della soglia.
+	 *
+	 * Output atteso: SHED, ogni connessione rifiutata.
+	 */
+	@Test
+	void testShedOnPoolSaturation() {
+		control.evaluate(0, 0, 10);
+
+		assertEquals(Level.SHED, control.getLevel());
+		assertFalse(control.admit(1));
+		assertEquals(1, control.getShed());
+		assertEquals(200, control.acceptDelayMs());
+	}
+
+	/**
+	 * Input: pressione che scende appena sotto la soglia di ingresso.
+	 *
+	 * Output atteso: il livello scende solo sotto l'80% della soglia.
+	 */
+	@Test
+	void testHysteresis() {
+		control.evaluate(1200, 0, 0);
+		assertEquals(Level.THROTTLE, control.getLevel());
+
+		control.evaluate(900, 0, 0);
+		assertEquals(Level.THROTTLE, control.getLevel());
+
+		control.evaluate(700, 0, 0);
+		assertEquals(Level.NORMAL, control.getLevel());
+
+		control.evaluate(2500, 0, 0);
+		assertEquals(Level.SHED, control.getLevel());
+
+		control.evaluate(1700, 0, 0);
+		assertEquals(Level.SHED, control.getLevel());
+
+		control.evaluate(1500, 0, 0);
+		assertEquals(Level.THROTTLE, control.getLevel());
+		assertEquals(4, control.getLevelChanges());
+	}
+}
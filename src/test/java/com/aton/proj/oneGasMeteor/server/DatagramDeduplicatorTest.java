@@ -0,0 +1,109 @@
+package com.aton.proj.oneGasMeteor.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.server.DatagramDeduplicator.Duplicate;
+import com.aton.proj.oneGasMeteor.server.DatagramDeduplicator.First;
+import com.aton.proj.oneGasMeteor.server.DatagramDeduplicator.InProgress;
+import com.aton.proj.oneGasMeteor.server.DatagramDeduplicator.Outcome;
+
+/**
+ * Test di {@link DatagramDeduplicator}: ritrasmissioni, finestra, limite.
+ */
+class DatagramDeduplicatorTest {
+
+	/** Header TEK di 17 byte (CSQ al byte 5, IMEI ai byte 7-14) e body di 3 byte */
+	private static final byte[] FRAME = { 0x18, 0x02, 0x03, 0x42, (byte) 0x89, 0x18, 0x36, 0x08, 0x64, 0x43, 0x10,
+			0x47, (byte) 0x98, 0x70, 0x54, 0x08, 0x00, 0x0A, 0x6A, 0x2B };
+
+	/**
+	 * Input: stesso frame tre volte, prima e dopo complete().
+	 *
+	 * Output atteso: First, poi InProgress durante l'elaborazione, poi Duplicate
+	 * con la risposta registrata.
+	 */
+	@Test
+	void testRetransmission() {
+		DatagramDeduplicator dedup = new DatagramDeduplicator(60_000, 100);
+
+		Outcome first = dedup.begin(FRAME, 0);
+		assertInstanceOf(First.class, first);
+		assertInstanceOf(InProgress.class, dedup.begin(FRAME.clone(), 10));
+
+		dedup.complete(((First) first).key(), new byte[] { 1, 2 });
+		Outcome duplicate = dedup.begin(FRAME.clone(), 20);
+		assertInstanceOf(Duplicate.class, duplicate);
+		assertArrayEquals(new byte[] { 1, 2 }, ((Duplicate) duplicate).reply());
+	}
+
+	/**
+	 * Input: ritrasmissione con CSQ diverso nell'header, stesso body.
+	 *
+	 * Output atteso: riconosciuta come duplicato.
+	 */
+	@Test
+	void testHeaderChangeStillDuplicate() {
+		DatagramDeduplicator dedup = new DatagramDeduplicator(60_000, 100);
+		byte[] retransmitted = FRAME.clone();
+		retransmitted[5] = 0x0C;
+
+		First first = (First) dedup.begin(FRAME, 0);
+		dedup.complete(first.key(), new byte[] { 1 });
+
+		assertEquals(DatagramDeduplicator.keyOf(FRAME), DatagramDeduplicator.keyOf(retransmitted));
+		assertInstanceOf(Duplicate.class, dedup.begin(retransmitted, 10));
+	}
+
+	/**
+	 * Input: frame che differiscono di un byte del body.
+	 *
+	 * Output atteso: entrambi First.
+	 */
+	@Test
+	void testDifferentFramesNotDeduplicated() {
+		DatagramDeduplicator dedup = new DatagramDeduplicator(60_000, 100);
+		byte[] other = FRAME.clone();
+		other[19] = 0x01;
+
+		assertInstanceOf(First.class, dedup.begin(FRAME, 0));
+		assertInstanceOf(First.class, dedup.begin(other, 0));
+	}
+
+	/**
+	 * Input: elaborazione fallita (abort), poi frame scaduto oltre la finestra.
+	 *
+	 * Output atteso: dopo abort e dopo la scadenza il frame è di nuovo First.
+	 */
+	@Test
+	void testAbortAndExpiry() {
+		DatagramDeduplicator dedup = new DatagramDeduplicator(1000, 100);
+
+		First first = (First) dedup.begin(FRAME, 0);
+		dedup.abort(first.key());
+		First retry = (First) dedup.begin(FRAME, 100);
+		dedup.complete(retry.key(), new byte[0]);
+
+		assertInstanceOf(Duplicate.class, dedup.begin(FRAME, 1099));
+		assertInstanceOf(First.class, dedup.begin(FRAME, 1100));
+	}
+
+	/**
+	 * Input: limite 2 voci, tre frame diversi.
+	 *
+	 * Output atteso: la voce più vecchia viene scartata.
+	 */
+	@Test
+	void testMaxEntries() {
+		DatagramDeduplicator dedup = new DatagramDeduplicator(60_000, 2);
+		for (int i = 0; i < 3; i++) {
+			byte[] frame = FRAME.clone();
+			frame[19] = (byte) i;
+			dedup.begin(frame, 0);
+		}
+
+		assertEquals(2, dedup.size());
+		assertInstanceOf(First.class, dedup.begin(FRAME, 0));
+	}
+}
@@ -0,0 +1,178 @@
+package com.aton.proj.oneGasMeteor.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.aton.proj.oneGasMeteor.config.tcpServer.TcpServerProperties;
+import com.aton.proj.oneGasMeteor.handler.TcpConnectionHandlerReadExactly;
+import com.aton.proj.oneGasMeteor.model.TelemetryResponse;
+import com.aton.proj.oneGasMeteor.service.TelemetryService;
+import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
+
+/**
+ * Load test comparativo dei due motori TCP (blocking vs nio).
+ *
+ * Non fa parte della suite standard, si abilita con:
+ * {@code mvn test -Dtest=TcpEngineLoadTest -Dtcp.loadtest=true}
+ * (opzionali: -Dtcp.loadtest.connections=20000 -Dtcp.loadtest.concurrency=2000).
+ *
+ * TelemetryService è mockato: si misura il costo di accept, framing e risposta
+ * (connessioni/sec e picco di heap), non quello di decodifica e DB. Client e
+ * server girano nella stessa JVM, quindi il picco di heap include i client.
+ */
+@EnabledIfSystemProperty(named = "tcp.loadtest", matches = "true")
+class TcpEngineLoadTest {
+
+	/** Messaggio reale TEK822V2 type 4, come in {@code TekMessageDecoderTest} */
+	private static final String HEX_MSG_TYPE4 = "180A640188117C0862406075927406047B0078773652FF84002100721E31000161E0860000112233445047B00005200002C84013000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000F594A4E29F30A5029F30A5029F30A5229F30A5029F30A5029F30A4E29F30A5029F30A5029F30A5029F30A5029F30A5429F30A5629F30A5A29F30A5629F30A5229F30A4E29F30A4829F30A4629F30A4229F30A4229F30000000000000000000000000000000000000000000000000000000055F7";
+
+	private static final int CONNECTIONS = Integer.getInteger("tcp.loadtest.connections", 5000);
+	private static final int CONCURRENCY = Integer.getInteger("tcp.loadtest.concurrency", 500);
+
+	@Test
+	void compareBlockingAndNioEngines() throws Exception {
+		byte[] frame = exactFrame(ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE4));
+
+		Result blocking = runBlocking(frame);
+		Result nio = runNio(frame);
+
+		System.out.printf("%n=== TCP engine load test (%d connections, %d concurrent) ===%n", CONNECTIONS,
+				CONCURRENCY);
+		System.out.println(blocking);
+		System.out.println(nio);
+
+		assertEquals(CONNECTIONS, blocking.completed, "Tutte le connessioni devono completare (blocking)");
+		assertEquals(CONNECTIONS, nio.completed, "Tutte le connessioni devono completare (nio)");
+	}
+
+	private Result runBlocking(byte[] frame) throws Exception {
+		TcpServerProperties properties = properties();
+		TcpSocketServer server = new TcpSocketServer(properties, handler(), null);
+		Thread serverThread = Thread.ofPlatform().name("blocking-server").start(server::run);
+		try {
+			return drive("blocking", frame, awaitPort(server::getLocalPort));
+		} finally {
+			server.shutdown();
+			serverThread.join(5000);
+		}
+	}
+
+	private Result runNio(byte[] frame) throws Exception {
+		TcpServerProperties properties = properties();
+		NioTcpServer server = new NioTcpServer(properties, handler(), null);
+		server.startServer();
+		try {
+			return drive("nio", frame, awaitPort(server::getLocalPort));
+		} finally {
+			server.shutdown();
+		}
+	}
+
+	private Result drive(String engine, byte[] frame, int port) throws Exception {
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		long baselineHeap = runtime.totalMemory() - runtime.freeMemory();
+
+		AtomicLong peakHeap = new AtomicLong(baselineHeap);
+		AtomicInteger completed = new AtomicInteger();
+		Semaphore inFlight = new Semaphore(CONCURRENCY);
+
+		Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				peakHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		});
+
+		long start = System.nanoTime();
+		try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < CONNECTIONS; i++) {
+				inFlight.acquire();
+				clients.submit(() -> {
+					try (Socket socket = new Socket("localhost", port)) {
+						OutputStream out = socket.getOutputStream();
+						out.write(frame);
+						out.flush();
+						InputStream in = socket.getInputStream();
+						while (in.read() != -1) {
+							// risposta vuota: attende la chiusura lato server
+						}
+						completed.incrementAndGet();
+					} catch (Exception e) {
+						// conteggiata come connessione non completata
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+		}
+		long elapsedNanos = System.nanoTime() - start;
+		sampler.interrupt();
+
+		double seconds = elapsedNanos / 1_000_000_000.0;
+		return new Result(engine, completed.get(), completed.get() / seconds,
+				(peakHeap.get() - baselineHeap) / (1024 * 1024));
+	}
+
+	private TcpConnectionHandlerReadExactly handler() {
+		TelemetryService telemetryService = mock(TelemetryService.class, withSettings().stubOnly());
+		when(telemetryService.processTelemetry(any(), any(), any()))
+				.thenReturn(TelemetryResponse.success("862406075927406", "TEK822V2"));
+		return new TcpConnectionHandlerReadExactly(telemetryService, null, null, null);
+	}
+
+	private TcpServerProperties properties() {
+		TcpServerProperties properties = new TcpServerProperties();
+		properties.setPort(0);
+		properties.setMaxConnections(CONCURRENCY * 2);
+		properties.setBacklog(CONCURRENCY * 2);
+		return properties;
+	}
+
+	private int awaitPort(IntSupplier localPort) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (localPort.getAsInt() <= 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		return localPort.getAsInt();
+	}
+
+	/**
+	 * Tronca il frame di esempio a header + body dichiarato, come lo invierebbe
+	 * il device.
+	 */
+	private byte[] exactFrame(byte[] sample) {
+		int declared = TcpConnectionHandlerReadExactly.declaredBodyLength(sample[15], sample[16]);
+		return Arrays.copyOf(sample, TcpConnectionHandlerReadExactly.HEADER_SIZE + declared);
+	}
+
+	private record Result(String engine, int completed, double connectionsPerSecond, long peakHeapDeltaMb) {
+		@Override
+		public String toString() {
+			return String.format("%-8s completed=%d  conn/s=%.0f  peak heap delta=%d MB", engine, completed,
+					connectionsPerSecond, peakHeapDeltaMb);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.aton.proj.oneGasMeteor.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.config.udpServer.UdpServerProperties;
+import com.aton.proj.oneGasMeteor.handler.TcpConnectionHandlerReadExactly;
+import com.aton.proj.oneGasMeteor.model.TelemetryResponse;
+import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
+
+/**
+ * Test di {@link UdpIngestServer} su loopback, con la pipeline di elaborazione
+ * mockata.
+ */
+class UdpIngestServerTest {
+
+	/** Messaggio reale TEK822V2 type 8, come in {@code TekMessageDecoderTest} */
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+
+	private static final byte[] REPLY = "REBOOT".getBytes(StandardCharsets.US_ASCII);
+
+	private final TcpConnectionHandlerReadExactly handler = mock(TcpConnectionHandlerReadExactly.class);
+	private UdpIngestServer server;
+
+	@BeforeEach
+	void setUp() {
+		TelemetryResponse response = TelemetryResponse.success("864431047987054", "TEK822V2");
+		when(handler.processFrame(any(), anyString(), any())).thenReturn(response);
+		when(handler.buildReply(response)).thenReturn(REPLY);
+
+		UdpServerProperties properties = new UdpServerProperties();
+		properties.setPort(0);
+		properties.setBufferPoolSize(8);
+		server = new UdpIngestServer(properties, handler);
+		server.startServer();
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.shutdown();
+	}
+
+	/**
+	 * Input: un frame e la sua ritrasmissione identica.
+	 *
+	 * Output atteso: entrambi ricevono la stessa risposta, il frame è elaborato
+	 * una sola volta.
+	 */
+	@Test
+	void testReplyAndRetransmissionDedup() throws Exception {
+		byte[] frame = frame();
+		try (DatagramSocket client = new DatagramSocket()) {
+			client.setSoTimeout(5000);
+
+			assertArrayEquals(REPLY, exchange(client, frame));
+			assertArrayEquals(REPLY, exchange(client, frame));
+		}
+
+		verify(handler, times(1)).processFrame(any(), anyString(), any());
+		verify(handler, timeout(2000).times(1)).completeConnection(any(), any());
+		assertEquals(2, server.getReceived());
+		assertEquals(1, server.getDuplicates());
+	}
+
+	/**
+	 * Input: datagramma più corto della lunghezza dichiarata nell'header.
+	 *
+	 * Output atteso: scartato senza risposta e senza elaborazione.
+	 */
+	@Test
+	void testTruncatedDatagramDropped() throws Exception {
+		try (DatagramSocket client = new DatagramSocket()) {
+			client.setSoTimeout(300);
+			byte[] truncated = Arrays.copyOf(frame(), 30);
+			client.send(new DatagramPacket(truncated, truncated.length, InetAddress.getLoopbackAddress(),
+					server.getLocalPort()));
+
+			assertThrowsTimeout(client);
+		}
+		assertEquals(1, server.getMalformed());
+		verify(handler, times(0)).processFrame(any(), anyString(), any());
+	}
+
+	/**
+	 * Input: datagramma con byte oltre la lunghezza dichiarata.
+	 *
+	 * Output atteso: estratti solo header + body dichiarato.
+	 */
+	@Test
+	void testExtractFrameIgnoresTrailingBytes() {
+		byte[] frame = frame();
+		byte[] padded = Arrays.copyOf(frame, frame.length + 10);
+
+		assertArrayEquals(frame, UdpIngestServer.extractFrame(ByteBuffer.wrap(padded)));
+		assertNull(UdpIngestServer.extractFrame(ByteBuffer.wrap(frame, 0, 16)));
+	}
+
+	private byte[] exchange(DatagramSocket client, byte[] frame) throws Exception {
+		client.send(new DatagramPacket(frame, frame.length, InetAddress.getLoopbackAddress(), server.getLocalPort()));
+		DatagramPacket reply = new DatagramPacket(new byte[256], 256);
+		client.receive(reply);
+		return Arrays.copyOf(reply.getData(), reply.getLength());
+	}
+
+	private void assertThrowsTimeout(DatagramSocket client) {
+		assertThrows(SocketTimeoutException.class,
+				() -> client.receive(new DatagramPacket(new byte[256], 256)));
+	}
+
+	private byte[] frame() {
+		byte[] sample = ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE8);
+		int declared = TcpConnectionHandlerReadExactly.declaredBodyLength(sample[15], sample[16]);
+		return Arrays.copyOf(sample, TcpConnectionHandlerReadExactly.HEADER_SIZE + declared);
+	}
+}
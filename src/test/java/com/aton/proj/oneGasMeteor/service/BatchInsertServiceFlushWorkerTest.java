@@ -0,0 +1,207 @@
+package com.aton.proj.oneGasMeteor.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.service.impl.BatchInsertService;
+
+/**
+ * Test dei flush worker per tabella di {@link BatchInsertService}, con un
+ * JdbcTemplate finto che conta le righe per tabella (nessun database).
+ */
+class BatchInsertServiceFlushWorkerTest {
+
+	private final RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate();
+	private BatchInsertService service;
+
+	@AfterEach
+	void tearDown() throws Exception {
+		jdbc.locationsGate.countDown();
+		ReflectionTestUtils.invokeMethod(service, "stopFlushers");
+	}
+
+	/**
+	 * Input: batch size 10, intervallo 60 s, 10 telemetrie accodate.
+	 *
+	 * Output atteso: il batch pieno viene scritto subito, senza attendere
+	 * l'intervallo.
+	 */
+	@Test
+	void testFullBatchFlushedImmediately() throws Exception {
+		service = start(new MockEnvironment());
+
+		for (int i = 0; i < 10; i++) {
+			service.enqueue(telemetry());
+		}
+
+		assertTrue(jdbc.awaitRows("telemetry_data", 10, 5, TimeUnit.SECONDS));
+		assertEquals(0, service.getQueuedCount());
+	}
+
+	/**
+	 * Input: INSERT su device_locations bloccato, poi 20 telemetrie.
+	 *
+	 * Output atteso: la telemetria viene persistita mentre device_locations è
+	 * ancora in attesa.
+	 */
+	@Test
+	void testSlowTableDoesNotBlockOthers() throws Exception {
+		MockEnvironment env = new MockEnvironment().withProperty("batch.insert.locations.size", "1");
+		service = start(env);
+
+		service.enqueue(new DeviceLocationEntity());
+		assertTrue(jdbc.locationsStarted.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 20; i++) {
+			service.enqueue(telemetry());
+		}
+
+		assertTrue(jdbc.awaitRows("telemetry_data", 20, 5, TimeUnit.SECONDS));
+		assertEquals(0, jdbc.rows("device_locations"));
+
+		jdbc.locationsGate.countDown();
+		assertTrue(jdbc.awaitRows("device_locations", 1, 5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Input: 3 telemetrie (batch non pieno), flushAll().
+	 *
+	 * Output atteso: flushAll scrive in modo sincrono anche i batch parziali.
+	 */
+	@Test
+	void testFlushAllWritesPartialBatches() {
+		service = start(new MockEnvironment());
+
+		for (int i = 0; i < 3; i++) {
+			service.enqueue(telemetry());
+		}
+		service.flushAll();
+
+		assertEquals(3, jdbc.rows("telemetry_data"));
+		assertEquals(0, service.getQueuedCount());
+	}
+
+	/**
+	 * Input: INSERT su telemetry_data che fallisce, 10 telemetrie e poi altre
+	 * 30 (ogni enqueue oltre batchSize).
+	 *
+	 * Output atteso: un solo tentativo finché dura il backoff (nessun INSERT
+	 * per ogni messaggio); a database tornato flushAll scrive tutto.
+	 */
+	@Test
+	void testFailedInsertBacksOff() throws Exception {
+		service = start(new MockEnvironment());
+		jdbc.failTelemetry = true;
+
+		for (int i = 0; i < 10; i++) {
+			service.enqueue(telemetry());
+		}
+		assertTrue(jdbc.awaitTelemetryAttempts(1, 5, TimeUnit.SECONDS));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (service.getQueuedCount() < 10 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+
+		for (int i = 0; i < 30; i++) {
+			service.enqueue(telemetry());
+		}
+		Thread.sleep(200);
+		assertEquals(1, jdbc.telemetryAttempts.get());
+		assertEquals(40, service.getQueuedCount());
+
+		jdbc.failTelemetry = false;
+		service.flushAll();
+		assertEquals(40, jdbc.rows("telemetry_data"));
+	}
+
+	private BatchInsertService start(MockEnvironment env) {
+		BatchInsertService s = new BatchInsertService(jdbc, null, env, null);
+		ReflectionTestUtils.setField(s, "batchSize", 10);
+		ReflectionTestUtils.setField(s, "intervalMs", 60_000L);
+		ReflectionTestUtils.setField(s, "maxInFlight", 2);
+		ReflectionTestUtils.invokeMethod(s, "startFlushers");
+		return s;
+	}
+
+	private static TelemetryEntity telemetry() {
+		TelemetryEntity e = new TelemetryEntity();
+		e.setDeviceId("worker-test");
+		e.setReceivedAt(LocalDateTime.now());
+		return e;
+	}
+
+	/**
+	 * Conta le righe per tabella; gli INSERT su device_locations attendono
+	 * locationsGate, quelli su telemetry_data falliscono con failTelemetry.
+	 */
+	private static final class RecordingJdbcTemplate extends JdbcTemplate {
+
+		final CountDownLatch locationsStarted = new CountDownLatch(1);
+		final CountDownLatch locationsGate = new CountDownLatch(1);
+		final AtomicInteger telemetryAttempts = new AtomicInteger();
+		volatile boolean failTelemetry;
+		private final ConcurrentHashMap<String, AtomicInteger> rows = new ConcurrentHashMap<>();
+
+		@Override
+		public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+			String table = sql.substring("INSERT INTO ".length(), sql.indexOf(' ', "INSERT INTO ".length()));
+			if (table.equals("telemetry_data") && failTelemetry) {
+				telemetryAttempts.incrementAndGet();
+				throw new DataAccessResourceFailureException("db down");
+			}
+			if (table.equals("device_locations")) {
+				locationsStarted.countDown();
+				try {
+					locationsGate.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			int size = pss.getBatchSize();
+			rows.computeIfAbsent(table, t -> new AtomicInteger()).addAndGet(size);
+			return new int[size];
+		}
+
+		int rows(String table) {
+			AtomicInteger count = rows.get(table);
+			return count != null ? count.get() : 0;
+		}
+
+		boolean awaitTelemetryAttempts(int expected, long timeout, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			while (telemetryAttempts.get() < expected) {
+				if (System.nanoTime() > deadline) {
+					return false;
+				}
+				Thread.sleep(10);
+			}
+			return true;
+		}
+
+		boolean awaitRows(String table, int expected, long timeout, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			while (rows(table) < expected) {
+				if (System.nanoTime() > deadline) {
+					return false;
+				}
+				Thread.sleep(10);
+			}
+			return true;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.aton.proj.oneGasMeteor.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -9,12 +10,14 @@ import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
 import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
 import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
 import com.aton.proj.oneGasMeteor.repository.impl.sql.DeviceLocationJpaRepository;
 import com.aton.proj.oneGasMeteor.repository.impl.sql.DeviceSettingsJpaRepository;
@@ -47,6 +50,9 @@ class BatchInsertServiceIntegrationTest {
 	@Autowired
 	private DeviceLocationJpaRepository locationRepo;
 
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
 	@MockitoBean
 	private TcpSocketServer tcpSocketServer;
 
@@ -188,6 +194,26 @@ class BatchInsertServiceIntegrationTest {
 		assertFalse(saved.isEmpty());
 	}
 
+	// ====================== Measurements ======================
+
+	@Test
+	void testEnqueueAndFlush_measurements_onePerReading() {
+		LocalDateTime measuredAt = LocalDateTime.of(2025, 3, 7, 11, 0);
+		batchInsertService.enqueueMeasurements(List.of(
+				new MeasurementEntity("batch-ms-device", measuredAt, 120, 21.5, 9, 3),
+				new MeasurementEntity("batch-ms-device", measuredAt.plusMinutes(15), 118, 21.0, 9, 3),
+				new MeasurementEntity("batch-ms-device", measuredAt.plusMinutes(30), null, null, null, null)));
+		batchInsertService.flushAll();
+
+		Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM measurements WHERE device_id = ?",
+				Integer.class, "batch-ms-device");
+		assertEquals(3, rows, "Una riga per lettura");
+		Integer distance = jdbcTemplate.queryForObject(
+				"SELECT distance_cm FROM measurements WHERE device_id = ? AND measured_at = ?", Integer.class,
+				"batch-ms-device", measuredAt);
+		assertEquals(120, distance);
+	}
+
 	// ====================== Flush con coda vuota ======================
 
 	@Test
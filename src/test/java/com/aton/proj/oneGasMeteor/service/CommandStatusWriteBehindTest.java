@@ -0,0 +1,176 @@
+package com.aton.proj.oneGasMeteor.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aton.proj.oneGasMeteor.entity.CommandEntity;
+import com.aton.proj.oneGasMeteor.repository.CommandRepository;
+
+/**
+ * Test di {@link CommandStatusWriteBehind}: un UPDATE per flush, nessun id
+ * scritto o inviato due volte, ordine mantenuto anche dopo un errore.
+ */
+@ExtendWith(MockitoExtension.class)
+class CommandStatusWriteBehindTest {
+
+	@Mock
+	private CommandRepository commandRepository;
+
+	private CommandStatusWriteBehind writeBehind;
+
+	@BeforeEach
+	void setUp() {
+		writeBehind = new CommandStatusWriteBehind(commandRepository);
+	}
+
+	/**
+	 * Input: 3 comandi accodati, uno dei quali due volte (e un id null).
+	 *
+	 * Output atteso: un solo UPDATE con i 3 id, ciascuno una volta, in ordine di
+	 * invio.
+	 */
+	@Test
+	void testFlush_singleUpdateWithoutDuplicates() {
+		when(commandRepository.markAllAsSent(anyCollection(), any())).thenAnswer(inv -> inv.<Collection<?>>getArgument(0).size());
+
+		writeBehind.enqueueSent(List.of(3L, 1L));
+		writeBehind.enqueueSent(java.util.Arrays.asList(1L, null, 2L));
+		writeBehind.flush();
+
+		List<Long> ids = captureUpdates(1).get(0);
+		assertEquals(List.of(3L, 1L, 2L), ids);
+		assertEquals(0, writeBehind.getQueuedCount());
+		assertEquals(3, writeBehind.getUpdatedCommands());
+	}
+
+	/**
+	 * Input: primo flush fallito, secondo riuscito.
+	 *
+	 * Output atteso: gli id restano in coda (e nascosti) dopo l'errore e vengono
+	 * riscritti nello stesso ordine.
+	 */
+	@Test
+	void testFlush_failureKeepsIdsInOrder() {
+		when(commandRepository.markAllAsSent(anyCollection(), any()))
+				.thenThrow(new RuntimeException("db down"))
+				.thenReturn(2);
+
+		writeBehind.enqueueSent(List.of(5L, 4L));
+		writeBehind.flush();
+
+		assertEquals(2, writeBehind.getQueuedCount());
+		assertTrue(writeBehind.isQueued(5L));
+		assertEquals(1, writeBehind.getFailedFlushes());
+
+		writeBehind.flush();
+
+		List<List<Long>> updates = captureUpdates(2);
+		assertEquals(List.of(5L, 4L), updates.get(0));
+		assertEquals(List.of(5L, 4L), updates.get(1));
+		assertEquals(0, writeBehind.getQueuedCount());
+	}
+
+	/**
+	 * Input: id già SENT sul database (UPDATE condizionato aggiorna 0 righe).
+	 *
+	 * Output atteso: conteggiato come saltato, non come aggiornato.
+	 */
+	@Test
+	void testFlush_alreadySentCountedAsSkipped() {
+		when(commandRepository.markAllAsSent(anyCollection(), any())).thenReturn(0);
+
+		writeBehind.enqueueSent(List.of(7L));
+		writeBehind.flush();
+
+		assertEquals(0, writeBehind.getUpdatedCommands());
+		assertEquals(1, writeBehind.getSkippedCommands());
+	}
+
+	/**
+	 * Input: max-batch 2, 5 id accodati.
+	 *
+	 * Output atteso: 3 UPDATE da 2, 2 e 1 id, in ordine di invio.
+	 */
+	@Test
+	void testFlush_chunksByMaxBatch() {
+		ReflectionTestUtils.setField(writeBehind, "maxBatch", 2);
+		when(commandRepository.markAllAsSent(anyCollection(), any())).thenAnswer(inv -> inv.<Collection<?>>getArgument(0).size());
+
+		writeBehind.enqueueSent(List.of(1L, 2L, 3L, 4L, 5L));
+		writeBehind.flush();
+
+		assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L), List.of(5L)), captureUpdates(3));
+	}
+
+	/**
+	 * Input: comandi PENDING 1, 2, 3 letti dal database; 1 è in coda, poi
+	 * scritto dal flush.
+	 *
+	 * Output atteso: 1 escluso sia prima sia subito dopo il flush (query partita
+	 * prima del commit), di nuovo visibile solo dopo il flush successivo; 2 e 3
+	 * restano in ordine.
+	 */
+	@Test
+	void testWithoutQueued_hidesSentCommandsUntilNextFlush() {
+		when(commandRepository.markAllAsSent(anyCollection(), any())).thenReturn(1);
+		List<CommandEntity> pending = List.of(command(1L), command(2L), command(3L));
+
+		writeBehind.enqueueSent(List.of(1L));
+		assertEquals(List.of(2L, 3L), ids(writeBehind.withoutQueued(pending)));
+
+		writeBehind.flush();
+		assertEquals(List.of(2L, 3L), ids(writeBehind.withoutQueued(pending)));
+
+		writeBehind.flush();
+		assertEquals(List.of(1L, 2L, 3L), ids(writeBehind.withoutQueued(pending)));
+	}
+
+	/**
+	 * Input: coda vuota.
+	 *
+	 * Output atteso: nessun UPDATE.
+	 */
+	@Test
+	void testFlush_emptyQueueNoUpdate() {
+		writeBehind.flush();
+
+		verify(commandRepository, never()).markAllAsSent(anyCollection(), any());
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<List<Long>> captureUpdates(int expected) {
+		ArgumentCaptor<Collection<Long>> captor = ArgumentCaptor.forClass(Collection.class);
+		verify(commandRepository, times(expected)).markAllAsSent(captor.capture(), any(LocalDateTime.class));
+		List<List<Long>> result = new ArrayList<>();
+		captor.getAllValues().forEach(c -> result.add(List.copyOf(c)));
+		return result;
+	}
+
+	private static List<Long> ids(List<CommandEntity> commands) {
+		return commands.stream().map(CommandEntity::getId).toList();
+	}
+
+	private static CommandEntity command(Long id) {
+		CommandEntity entity = new CommandEntity("wb-dev", "TEK822V2", "REBOOT");
+		entity.setId(id);
+		return entity;
+	}
+}
@@ -1,14 +1,17 @@
 package com.aton.proj.oneGasMeteor.service;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
@@ -25,6 +28,7 @@ import com.aton.proj.oneGasMeteor.repository.impl.sql.DeviceStatisticsJpaReposit
 import com.aton.proj.oneGasMeteor.repository.impl.sql.ProcessingMetricsJpaRepository;
 import com.aton.proj.oneGasMeteor.repository.impl.sql.TelemetryJpaRepository;
 import com.aton.proj.oneGasMeteor.server.TcpSocketServer;
+import com.aton.proj.oneGasMeteor.service.retention.RetentionResult;
 
 /**
  * Test di integrazione per DataCleanupService con database H2 in-memory.
@@ -32,9 +36,12 @@ import com.aton.proj.oneGasMeteor.server.TcpSocketServer;
  * recenti.
  *
  * DataCleanupService è condizionale: attivo solo con cleanup.enabled=true.
+ * Blocchi di DELETE da 2 righe per attraversare più blocchi anche con pochi
+ * record.
  */
 @SpringBootTest
-@TestPropertySource(properties = "cleanup.enabled=true")
+@TestPropertySource(properties = { "cleanup.enabled=true", "cleanup.delete.batch-size=2",
+		"cleanup.delete.pause-ms=0" })
 class DataCleanupServiceIntegrationTest {
 
 	@Autowired
@@ -58,6 +65,9 @@ class DataCleanupServiceIntegrationTest {
 	@Autowired
 	private ProcessingMetricsJpaRepository metricsRepo;
 
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
 	@MockitoBean
 	private TcpSocketServer tcpSocketServer;
 
@@ -83,6 +93,58 @@ class DataCleanupServiceIntegrationTest {
 				"La telemetria recente deve essere conservata");
 	}
 
+	/**
+	 * Input: 5 telemetrie scadute e una recente, blocchi da 2 righe.
+	 *
+	 * Output atteso: DELETE a blocchi (H2 non è TimescaleDB), almeno 3 blocchi
+	 * e 5 righe riportate su telemetry_data seguite da measurements; la recente
+	 * resta.
+	 */
+	@Test
+	void testCleanupOldTelemetry_batchedDelete_reportsRowsAndBatches() {
+		for (int i = 0; i < 5; i++) {
+			telemetryRepo.save(buildTelemetry("cleanup-batch-dev", LocalDateTime.now().minusDays(40 + i)));
+		}
+		telemetryRepo.save(buildTelemetry("cleanup-batch-recent", LocalDateTime.now().minusDays(1)));
+		telemetryRepo.flush();
+
+		List<RetentionResult> results = dataCleanupService.cleanupOldTelemetry();
+
+		assertEquals(List.of("telemetry_data", "measurements"), results.stream().map(RetentionResult::table).toList());
+		RetentionResult result = results.get(0);
+		assertEquals("telemetry_data", result.table());
+		assertEquals(RetentionResult.Strategy.BATCHED_DELETE, result.strategy());
+		assertTrue(result.rowsDeleted() >= 5, "Righe eliminate: " + result.rowsDeleted());
+		assertTrue(result.batches() >= 3, "Blocchi: " + result.batches());
+		assertTrue(telemetryRepo.findByDeviceIdOrderByReceivedAtDesc("cleanup-batch-dev").isEmpty());
+		assertEquals(1, telemetryRepo.findByDeviceIdOrderByReceivedAtDesc("cleanup-batch-recent").size());
+	}
+
+	/**
+	 * Input: 3 letture con measured_at oltre la retention della telemetria e una
+	 * recente, blocchi da 2 righe.
+	 *
+	 * Output atteso: le 3 letture scadute eliminate a blocchi e riportate nel
+	 * risultato di measurements; la recente resta.
+	 */
+	@Test
+	void testCleanupOldTelemetry_purgesExpiredMeasurements() {
+		for (int i = 0; i < 3; i++) {
+			insertMeasurement("cleanup-ms-dev", LocalDateTime.now().minusDays(40 + i));
+		}
+		insertMeasurement("cleanup-ms-recent", LocalDateTime.now().minusDays(1));
+
+		List<RetentionResult> results = dataCleanupService.cleanupOldTelemetry();
+
+		RetentionResult result = results.get(1);
+		assertEquals("measurements", result.table());
+		assertEquals(RetentionResult.Strategy.BATCHED_DELETE, result.strategy());
+		assertTrue(result.rowsDeleted() >= 3, "Righe eliminate: " + result.rowsDeleted());
+		assertTrue(result.batches() >= 2, "Blocchi: " + result.batches());
+		assertEquals(0, countMeasurements("cleanup-ms-dev"));
+		assertEquals(1, countMeasurements("cleanup-ms-recent"));
+	}
+
 	@Test
 	void testCleanupOldTelemetry_noExpiredData_noOp() {
 		TelemetryEntity recent = buildTelemetry("cleanup-noop-dev", LocalDateTime.now().minusDays(5));
@@ -240,6 +302,7 @@ class DataCleanupServiceIntegrationTest {
 		statisticsRepo.save(buildStatistics("manual-cleanup-dev", LocalDateTime.now().minusDays(60)));
 		locationRepo.save(buildLocation("manual-cleanup-dev", LocalDateTime.now().minusDays(60)));
 		metricsRepo.save(buildMetrics("manual-cleanup-dev", LocalDateTime.now().minusDays(100)));
+		insertMeasurement("manual-cleanup-dev", LocalDateTime.now().minusDays(60));
 
 		telemetryRepo.flush();
 		commandRepo.flush();
@@ -251,14 +314,32 @@ class DataCleanupServiceIntegrationTest {
 		DataCleanupService.CleanupReport report = dataCleanupService.manualCleanup();
 
 		assertTrue(report.isSuccess());
+		assertEquals(List.of("telemetry_data", "measurements", "device_settings", "device_statistics",
+				"device_locations", "processing_metrics"),
+				report.getTables().stream().map(RetentionResult::table).toList());
+		assertTrue(report.getRowsDeleted() >= 6, "Righe eliminate: " + report.getRowsDeleted());
+		assertEquals(0, report.getChunksDropped());
 		assertTrue(telemetryRepo.findByDeviceIdOrderByReceivedAtDesc("manual-cleanup-dev").isEmpty());
 		assertTrue(settingsRepo.findByDeviceIdOrderByReceivedAtDesc("manual-cleanup-dev").isEmpty());
 		assertTrue(statisticsRepo.findByDeviceIdOrderByReceivedAtDesc("manual-cleanup-dev").isEmpty());
 		assertTrue(locationRepo.findByDeviceIdOrderByReceivedAtDesc("manual-cleanup-dev").isEmpty());
+		assertEquals(0, countMeasurements("manual-cleanup-dev"));
 	}
 
 	// ====================== Helpers ======================
 
+	private void insertMeasurement(String deviceId, LocalDateTime measuredAt) {
+		jdbcTemplate.update(
+				"INSERT INTO measurements (device_id, measured_at, distance_cm, temperature_c, sonic_rssi, sonic_src) "
+						+ "VALUES (?, ?, ?, ?, ?, ?)",
+				deviceId, measuredAt, 120, 21.5, 9, 3);
+	}
+
+	private int countMeasurements(String deviceId) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM measurements WHERE device_id = ?", Integer.class,
+				deviceId);
+	}
+
 	private TelemetryEntity buildTelemetry(String deviceId, LocalDateTime receivedAt) {
 		TelemetryEntity e = new TelemetryEntity();
 		e.setDeviceId(deviceId);
@@ -0,0 +1,92 @@
+package com.aton.proj.oneGasMeteor.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.decoder.TekFrameView;
+import com.aton.proj.oneGasMeteor.decoder.TekMessageDecoder;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.model.DecodedMessage;
+import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
+
+/**
+ * Test di {@link MeasurementRows}: le righe della tabella measurements devono
+ * essere le stesse con telemetry.decoder.mode=pojo e =view (campioni di
+ * {@code TekFrameViewTest}).
+ */
+class MeasurementRowsTest {
+
+	// 2025-03-07T12:00:00Z
+	private static final long SERVER_TIME_MS = 1741348800000L;
+
+	private static final String DEVICE_ID = "864431047987054";
+
+	private static final String HEX_MSG_TYPE4 = "180A640188117C0862406075927406047B0078773652FF84002100721E31000161E0860000112233445047B00005200002C84013000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000F594A4E29F30A5029F30A5029F30A5229F30A5029F30A5029F30A4E29F30A5029F30A5029F30A5029F30A5029F30A5429F30A5629F30A5A29F30A5629F30A5229F30A4E29F30A4829F30A4629F30A4229F30A4229F30000000000000000000000000000000000000000000000000000000055F7";
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+
+	private final TekMessageDecoder decoder = new TekMessageDecoder();
+
+	/**
+	 * Input: frame type 8 con 10 misure valide e 18 slot vuoti.
+	 *
+	 * Output atteso: 10 righe, uguali dai due percorsi.
+	 */
+	@Test
+	void testViewAndDecodedRowsMatch_type8() {
+		List<MeasurementEntity> rows = assertSameRows(ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE8));
+
+		assertEquals(10, rows.size());
+	}
+
+	/**
+	 * Input: frame type 4.
+	 *
+	 * Output atteso: stesse righe dai due percorsi, measured_at in UTC (gli
+	 * istanti del decoder, senza spostamento di fuso).
+	 */
+	@Test
+	void testViewAndDecodedRowsMatch_type4() {
+		byte[] payload = ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE4);
+		List<MeasurementEntity> rows = assertSameRows(payload);
+
+		DecodedMessage decoded = decoder.decode(payload, SERVER_TIME_MS);
+		assertTrue(rows.size() > 0);
+		assertEquals(LocalDateTime.parse(decoded.getMeasurementData().get(0).getTimestamp().replace("Z", "")),
+				rows.get(0).getMeasuredAt());
+	}
+
+	/**
+	 * Input: DecodedMessage senza misure (messaggi 6/16/17).
+	 *
+	 * Output atteso: nessuna riga.
+	 */
+	@Test
+	void testNoMeasurementData() {
+		assertTrue(MeasurementRows.fromDecoded(DEVICE_ID, new DecodedMessage()).isEmpty());
+	}
+
+	private List<MeasurementEntity> assertSameRows(byte[] payload) {
+		List<MeasurementEntity> fromDecoded = MeasurementRows.fromDecoded(DEVICE_ID,
+				decoder.decode(payload, SERVER_TIME_MS));
+		List<MeasurementEntity> fromView = MeasurementRows.fromView(DEVICE_ID,
+				new TekFrameView(payload, SERVER_TIME_MS));
+
+		assertEquals(fromDecoded.size(), fromView.size());
+		for (int i = 0; i < fromDecoded.size(); i++) {
+			MeasurementEntity expected = fromDecoded.get(i);
+			MeasurementEntity actual = fromView.get(i);
+			assertEquals(DEVICE_ID, actual.getDeviceId());
+			assertEquals(expected.getMeasuredAt(), actual.getMeasuredAt());
+			assertEquals(expected.getDistanceCm(), actual.getDistanceCm());
+			assertEquals(expected.getTemperatureC(), actual.getTemperatureC(), 0.001);
+			assertEquals(expected.getSonicRssi(), actual.getSonicRssi());
+			assertEquals(expected.getSonicSrc(), actual.getSonicSrc());
+		}
+		return fromView;
+	}
+}
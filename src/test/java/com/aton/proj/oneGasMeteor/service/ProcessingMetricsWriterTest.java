@@ -0,0 +1,134 @@
+package com.aton.proj.oneGasMeteor.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aton.proj.oneGasMeteor.entity.ProcessingMetricsEntity;
+import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository;
+
+/**
+ * Test di {@link ProcessingMetricsWriter}: scrittura a blocchi, campionamento
+ * delle sessioni riuscite, scarto best-effort.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProcessingMetricsWriterTest {
+
+	@Mock
+	private ProcessingMetricsRepository metricsRepository;
+
+	/**
+	 * Input: 5 metriche, batch size 2.
+	 *
+	 * Output atteso: nessuna scrittura prima del flush, poi 3 saveAll da 2, 2 e 1.
+	 */
+	@Test
+	void testFlush_writesInBatches() {
+		ProcessingMetricsWriter writer = writer(2, 1, 100);
+		for (int i = 0; i < 5; i++) {
+			writer.record(metrics(true));
+		}
+		verify(metricsRepository, never()).saveAll(anyList());
+
+		writer.flush();
+
+		List<List<ProcessingMetricsEntity>> batches = captureSaveAll(3);
+		assertEquals(List.of(2, 2, 1), batches.stream().map(List::size).toList());
+		assertEquals(5, writer.getPersisted());
+		assertEquals(0, writer.getQueuedCount());
+	}
+
+	/**
+	 * Input: campionamento 1 su 4, 8 sessioni riuscite e 3 fallite.
+	 *
+	 * Output atteso: 2 riuscite + tutte le 3 fallite accodate, 6 scartate dal
+	 * campionamento.
+	 */
+	@Test
+	void testSampling_keepsAllFailures() {
+		ProcessingMetricsWriter writer = writer(100, 4, 100);
+		for (int i = 0; i < 8; i++) {
+			writer.record(metrics(true));
+		}
+		for (int i = 0; i < 3; i++) {
+			writer.record(metrics(false));
+		}
+
+		assertEquals(5, writer.getQueuedCount());
+		assertEquals(6, writer.getSampledOut());
+
+		writer.flush();
+		List<ProcessingMetricsEntity> saved = captureSaveAll(1).get(0);
+		assertEquals(3, saved.stream().filter(m -> !m.getSuccess()).count());
+	}
+
+	/**
+	 * Input: coda massima 3, 5 metriche.
+	 *
+	 * Output atteso: 3 accodate, 2 scartate.
+	 */
+	@Test
+	void testMaxQueue_dropsOverflow() {
+		ProcessingMetricsWriter writer = writer(100, 1, 3);
+		for (int i = 0; i < 5; i++) {
+			writer.record(metrics(true));
+		}
+
+		assertEquals(3, writer.getQueuedCount());
+		assertEquals(2, writer.getDropped());
+	}
+
+	/**
+	 * Input: saveAll fallisce.
+	 *
+	 * Output atteso: il blocco viene scartato e conteggiato, nessuna eccezione.
+	 */
+	@Test
+	void testFlush_failureDropsBatch() {
+		ProcessingMetricsWriter writer = writer(100, 1, 100);
+		doThrow(new RuntimeException("db down")).when(metricsRepository).saveAll(anyList());
+		writer.record(metrics(false));
+
+		writer.flush();
+
+		assertEquals(1, writer.getDropped());
+		assertEquals(0, writer.getPersisted());
+		assertEquals(0, writer.getQueuedCount());
+	}
+
+	private ProcessingMetricsWriter writer(int batchSize, int successOneIn, int maxQueue) {
+		ProcessingMetricsWriter writer = new ProcessingMetricsWriter(metricsRepository);
+		ReflectionTestUtils.setField(writer, "batchSize", batchSize);
+		ReflectionTestUtils.setField(writer, "successOneIn", successOneIn);
+		ReflectionTestUtils.setField(writer, "maxQueue", maxQueue);
+		return writer;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<List<ProcessingMetricsEntity>> captureSaveAll(int expected) {
+		ArgumentCaptor<List<ProcessingMetricsEntity>> captor = ArgumentCaptor.forClass(List.class);
+		verify(metricsRepository, times(expected)).saveAll(captor.capture());
+		return captor.getAllValues();
+	}
+
+	private static ProcessingMetricsEntity metrics(boolean success) {
+		ProcessingMetricsEntity entity = new ProcessingMetricsEntity();
+		entity.setDeviceId("metrics-writer-dev");
+		entity.setSuccess(success);
+		entity.setReceivedAt(LocalDateTime.now());
+		return entity;
+	}
+}
@@ -0,0 +1,179 @@
+package com.aton.proj.oneGasMeteor.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aton.proj.oneGasMeteor.decoder.DecoderFactory;
+import com.aton.proj.oneGasMeteor.decoder.MessageTypeParser;
+import com.aton.proj.oneGasMeteor.decoder.impl.Tek822Decoder;
+import com.aton.proj.oneGasMeteor.decoder.impl.UnknownDeviceDecoder;
+import com.aton.proj.oneGasMeteor.encoder.EncoderFactory;
+import com.aton.proj.oneGasMeteor.encoder.impl.NoOpEncoder;
+import com.aton.proj.oneGasMeteor.encoder.impl.Tek822Encoder;
+import com.aton.proj.oneGasMeteor.entity.CommandEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.exception.DecodingException;
+import com.aton.proj.oneGasMeteor.model.TelemetryMessage;
+import com.aton.proj.oneGasMeteor.model.TelemetryResponse;
+import com.aton.proj.oneGasMeteor.repository.CommandRepository;
+import com.aton.proj.oneGasMeteor.repository.DeviceLocationRepository;
+import com.aton.proj.oneGasMeteor.repository.DeviceSettingsRepository;
+import com.aton.proj.oneGasMeteor.repository.DeviceStatisticsRepository;
+import com.aton.proj.oneGasMeteor.repository.TelemetryRepository;
+import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test del lookup dei comandi avviato dall'header in parallelo alla
+ * decodifica ({@code telemetry.command-lookup.parallel}).
+ */
+class TelemetryServiceCommandLookupTest {
+
+	/** Messaggio reale TEK822V2 type 8, come in {@code TekMessageDecoderTest} */
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+	private static final String IMEI = "864431047987054";
+
+	private final CommandRepository commandRepository = mock(CommandRepository.class);
+	private final TelemetryRepository telemetryRepository = mock(TelemetryRepository.class);
+	private TelemetryService telemetryService;
+
+	@BeforeEach
+	void setUp() {
+		when(telemetryRepository.buildEntity(any(), any(), any(), any())).thenReturn(new TelemetryEntity());
+		when(commandRepository.mightHavePending(any())).thenReturn(true);
+		telemetryService = new TelemetryService(
+				new DecoderFactory(List.of(new Tek822Decoder()), new UnknownDeviceDecoder()),
+				new EncoderFactory(List.of(new Tek822Encoder()), new NoOpEncoder()), telemetryRepository,
+				commandRepository, new MessageTypeParser(), new ObjectMapper(), mock(DeviceSettingsRepository.class),
+				mock(DeviceStatisticsRepository.class), mock(DeviceLocationRepository.class),
+				mock(BatchWriteService.class), null, null, null);
+		ReflectionTestUtils.setField(telemetryService, "maxCommandsPerResponse", 10);
+	}
+
+	@AfterEach
+	void tearDown() {
+		telemetryService.shutdown();
+	}
+
+	/**
+	 * Input: frame type 8, un comando pendente per l'IMEI dell'header.
+	 *
+	 * Output atteso: la query parte su un altro thread con l'IMEI dell'header e
+	 * il comando è nella risposta.
+	 */
+	@Test
+	void testLookupForkedFromHeaderImei() {
+		AtomicReference<Thread> lookupThread = new AtomicReference<>();
+		when(commandRepository.findPendingCommands(IMEI)).thenAnswer(invocation -> {
+			lookupThread.set(Thread.currentThread());
+			return List.of(command());
+		});
+
+		TelemetryResponse response = telemetryService.processTelemetry(message(frame()));
+
+		assertEquals(IMEI, response.getDeviceId());
+		assertEquals(1, response.getCommands().size());
+		assertNotSame(Thread.currentThread(), lookupThread.get());
+	}
+
+	/**
+	 * Input: header valido con body troncato; la query resta bloccata.
+	 *
+	 * Output atteso: DecodingException dalla decodifica e query interrotta,
+	 * senza attenderne la fine.
+	 */
+	@Test
+	void testLookupCancelledWhenDecodeFails() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		when(commandRepository.findPendingCommands(IMEI)).thenAnswer(invocation -> {
+			started.countDown();
+			try {
+				Thread.sleep(10_000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return List.of();
+		});
+		byte[] truncated = Arrays.copyOf(frame(), 40);
+
+		assertThrows(DecodingException.class, () -> telemetryService.processTelemetry(message(truncated)));
+
+		assertTrue(started.await(2, TimeUnit.SECONDS));
+		assertTrue(interrupted.await(2, TimeUnit.SECONDS), "Il lookup deve essere cancellato");
+	}
+
+	/**
+	 * Input: telemetry.command-lookup.parallel=false.
+	 *
+	 * Output atteso: query eseguita nel thread chiamante dopo la decodifica.
+	 */
+	@Test
+	void testSequentialLookupWhenDisabled() {
+		ReflectionTestUtils.setField(telemetryService, "parallelCommandLookup", false);
+		AtomicReference<Thread> lookupThread = new AtomicReference<>();
+		when(commandRepository.findPendingCommands(IMEI)).thenAnswer(invocation -> {
+			lookupThread.set(Thread.currentThread());
+			return List.of();
+		});
+
+		telemetryService.processTelemetry(message(frame()));
+
+		assertSame(Thread.currentThread(), lookupThread.get());
+	}
+
+	/**
+	 * Input: indice dei comandi pendenti senza l'IMEI dell'header.
+	 *
+	 * Output atteso: nessun lookup su un altro thread; findPendingCommands
+	 * chiamato nel thread chiamante (risposta vuota dall'indice).
+	 */
+	@Test
+	void testNoForkWhenIndexHasNoPending() {
+		when(commandRepository.mightHavePending(IMEI)).thenReturn(false);
+		AtomicReference<Thread> lookupThread = new AtomicReference<>();
+		when(commandRepository.findPendingCommands(IMEI)).thenAnswer(invocation -> {
+			lookupThread.set(Thread.currentThread());
+			return List.of();
+		});
+
+		TelemetryResponse response = telemetryService.processTelemetry(message(frame()));
+
+		assertTrue(response.getCommands().isEmpty());
+		assertSame(Thread.currentThread(), lookupThread.get());
+	}
+
+	private CommandEntity command() {
+		CommandEntity entity = new CommandEntity();
+		entity.setId(7L);
+		entity.setDeviceId(IMEI);
+		entity.setDeviceType("TEK822V2");
+		entity.setCommandType("REBOOT");
+		return entity;
+	}
+
+	private TelemetryMessage message(byte[] payload) {
+		return new TelemetryMessage(payload, "127.0.0.1");
+	}
+
+	private byte[] frame() {
+		return ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE8);
+	}
+}
@@ -16,6 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.aton.proj.oneGasMeteor.entity.CommandEntity;
 import com.aton.proj.oneGasMeteor.model.DeviceCommand;
+import com.aton.proj.oneGasMeteor.model.DeviceSession;
 import com.aton.proj.oneGasMeteor.model.TelemetryMessage;
 import com.aton.proj.oneGasMeteor.model.TelemetryResponse;
 import com.aton.proj.oneGasMeteor.repository.CommandRepository;
@@ -51,6 +52,9 @@ class TelemetryServiceIntegrationTest {
 	@Autowired
 	private TelemetryJpaRepository telemetryJpaRepository;
 
+	@Autowired
+	private CommandStatusWriteBehind commandStatusWriteBehind;
+
 	@MockitoBean
 	private TcpSocketServer tcpSocketServer;
 
@@ -148,6 +152,7 @@ class TelemetryServiceIntegrationTest {
 				"encoded-data", "ascii-data");
 
 		telemetryService.markCommandsAsSent(List.of(encoded));
+		commandStatusWriteBehind.flush();
 
 		Optional<CommandEntity> updated = commandRepository.findById(entity.getId());
 		assertTrue(updated.isPresent());
@@ -177,11 +182,83 @@ class TelemetryServiceIntegrationTest {
 				new TelemetryResponse.EncodedCommand(entity2.getId(), "REQUEST_STATUS", "enc2", "asc2"));
 
 		telemetryService.markCommandsAsSent(encodedList);
+		commandStatusWriteBehind.flush();
 
 		assertEquals(CommandEntity.CommandStatus.SENT, commandRepository.findById(entity1.getId()).get().getStatus());
 		assertEquals(CommandEntity.CommandStatus.SENT, commandRepository.findById(entity2.getId()).get().getStatus());
 	}
 
+	/**
+	 * Input: comando inviato in una risposta e marcato SENT, nuova connessione
+	 * del device prima del flush del write-behind.
+	 *
+	 * Output atteso: il comando non viene reinviato; dopo il flush è SENT una
+	 * sola volta (un secondo flush non cambia sent_at).
+	 */
+	@Test
+	void testMarkCommandsAsSent_writeBehind_notResentBeforeFlush() {
+		byte[] payload = ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE4);
+		TelemetryResponse first = telemetryService.processTelemetry(new TelemetryMessage(payload, "127.0.0.1"));
+		CommandEntity entity = commandRepository
+				.save(new DeviceCommand(first.getDeviceId(), first.getDeviceType(), "REQUEST_STATUS"));
+
+		TelemetryResponse withCommand = telemetryService.processTelemetry(new TelemetryMessage(payload, "127.0.0.1"));
+		assertTrue(withCommand.getCommands().stream().anyMatch(c -> entity.getId().equals(c.getCommandId())));
+		telemetryService.markCommandsAsSent(withCommand.getCommands());
+
+		TelemetryResponse reconnect = telemetryService.processTelemetry(new TelemetryMessage(payload, "127.0.0.1"));
+		assertFalse(reconnect.getCommands().stream().anyMatch(c -> entity.getId().equals(c.getCommandId())),
+				"Un comando in attesa di UPDATE non deve essere reinviato");
+
+		commandStatusWriteBehind.flush();
+		CommandEntity sent = commandRepository.findById(entity.getId()).orElseThrow();
+		assertEquals(CommandEntity.CommandStatus.SENT, sent.getStatus());
+
+		telemetryService.markCommandsAsSent(withCommand.getCommands());
+		commandStatusWriteBehind.flush();
+		assertEquals(sent.getSentAt(), commandRepository.findById(entity.getId()).orElseThrow().getSentAt());
+	}
+
+	// ====================== Sessione multi-frame ======================
+
+	/**
+	 * Input: due frame nella stessa DeviceSession; un comando pendente prima del
+	 * primo frame, un secondo comando creato tra i due frame.
+	 *
+	 * Output atteso: il primo frame consegna il comando; il secondo usa la cache
+	 * (nessun reinvio, il nuovo comando arriva al refresh successivo); le
+	 * telemetrie arrivano al DB solo dopo flushSession.
+	 */
+	@Test
+	void testProcessTelemetry_session_cachesCommandsAndBuffersTelemetry() {
+		byte[] payload = ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE4);
+		TelemetryResponse first = telemetryService.processTelemetry(new TelemetryMessage(payload, "127.0.0.1"));
+		batchInsertService.flushAll();
+		int persisted = telemetryJpaRepository.findByDeviceIdOrderByReceivedAtDesc(first.getDeviceId()).size();
+		CommandEntity entity = commandRepository
+				.save(new DeviceCommand(first.getDeviceId(), first.getDeviceType(), "REQUEST_STATUS"));
+
+		DeviceSession session = new DeviceSession(60_000, 32);
+		TelemetryResponse frame1 = telemetryService.processTelemetry(new TelemetryMessage(payload, "127.0.0.1"),
+				null, session);
+		assertTrue(frame1.getCommands().stream().anyMatch(c -> entity.getId().equals(c.getCommandId())));
+		session.markDelivered(frame1.getCommands());
+		telemetryService.markCommandsAsSent(frame1.getCommands());
+
+		commandRepository.save(new DeviceCommand(first.getDeviceId(), first.getDeviceType(), "REBOOT"));
+		TelemetryResponse frame2 = telemetryService.processTelemetry(new TelemetryMessage(payload, "127.0.0.1"),
+				null, session);
+		assertTrue(frame2.getCommands().isEmpty(), "Nessuna nuova query né reinvio entro il refresh della cache");
+
+		batchInsertService.flushAll();
+		assertEquals(persisted, telemetryJpaRepository.findByDeviceIdOrderByReceivedAtDesc(first.getDeviceId()).size());
+
+		telemetryService.flushSession(session);
+		batchInsertService.flushAll();
+		assertEquals(persisted + 2,
+				telemetryJpaRepository.findByDeviceIdOrderByReceivedAtDesc(first.getDeviceId()).size());
+	}
+
 	// ====================== processTelemetry senza context ======================
 
 	@Test
@@ -0,0 +1,132 @@
+package com.aton.proj.oneGasMeteor.service.capture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.aton.proj.oneGasMeteor.service.capture.FrameCaptureLog.CapturedFrame;
+
+/**
+ * Test di {@link FrameCaptureLog}: formato dei record, rotazione e riapertura.
+ */
+class FrameCaptureLogTest {
+
+	private static final int SEGMENT_SIZE = 256;
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Input: 3 frame con istante di arrivo e indirizzo del mittente.
+	 *
+	 * Output atteso: forEach li restituisce nello stesso ordine con istante,
+	 * indirizzo e byte invariati.
+	 */
+	@Test
+	void testAppendAndRead() throws IOException {
+		try (FrameCaptureLog log = new FrameCaptureLog(dir, SEGMENT_SIZE, 4)) {
+			log.append(1_000L, "/10.0.0.1:5000", bytes("uno"));
+			log.append(2_500L, "/10.0.0.2:5001", bytes("due"));
+			log.append(4_000L, null, bytes("tre"));
+		}
+
+		List<CapturedFrame> frames = readAll();
+		assertEquals(3, frames.size());
+		assertEquals(1_000L, frames.get(0).receivedAtMicros());
+		assertEquals("/10.0.0.1:5000", frames.get(0).source());
+		assertEquals("uno", text(frames.get(0).frame()));
+		assertEquals(2_500L, frames.get(1).receivedAtMicros());
+		assertEquals("due", text(frames.get(1).frame()));
+		assertEquals("", frames.get(2).source());
+		assertEquals("tre", text(frames.get(2).frame()));
+	}
+
+	/**
+	 * Input: 20 frame da 100 byte in segmenti da 256 byte (2 frame per
+	 * segmento), massimo 3 segmenti.
+	 *
+	 * Output atteso: restano 3 file con gli ultimi 6 frame, in ordine.
+	 */
+	@Test
+	void testRotationDeletesOldestSegments() throws IOException {
+		try (FrameCaptureLog log = new FrameCaptureLog(dir, SEGMENT_SIZE, 3)) {
+			for (int i = 0; i < 20; i++) {
+				byte[] frame = new byte[100];
+				frame[0] = (byte) i;
+				log.append(i, "src", frame);
+			}
+			assertEquals(3, log.segmentCount());
+		}
+
+		assertEquals(3, segmentFiles());
+		List<CapturedFrame> frames = readAll();
+		assertEquals(6, frames.size());
+		for (int i = 0; i < frames.size(); i++) {
+			assertEquals(14 + i, frames.get(i).frame()[0]);
+		}
+	}
+
+	/**
+	 * Input: log chiuso dopo 2 frame e riaperto, poi un terzo frame.
+	 *
+	 * Output atteso: il terzo frame va in un nuovo file, i primi due restano e
+	 * la lettura li restituisce tutti in ordine.
+	 */
+	@Test
+	void testReopenStartsNewSegment() throws IOException {
+		try (FrameCaptureLog log = new FrameCaptureLog(dir, SEGMENT_SIZE, 4)) {
+			log.append(1L, "a", bytes("primo"));
+			log.append(2L, "a", bytes("secondo"));
+		}
+		try (FrameCaptureLog log = new FrameCaptureLog(dir, SEGMENT_SIZE, 4)) {
+			log.append(3L, "b", bytes("terzo"));
+			assertEquals(2, log.segmentCount());
+		}
+
+		List<CapturedFrame> frames = readAll();
+		assertEquals(List.of("primo", "secondo", "terzo"),
+				frames.stream().map(f -> text(f.frame())).toList());
+	}
+
+	/**
+	 * Input: frame più grande del segmento.
+	 *
+	 * Output atteso: IllegalArgumentException, nessun record scritto.
+	 */
+	@Test
+	void testOversizedFrameRejected() throws IOException {
+		try (FrameCaptureLog log = new FrameCaptureLog(dir, SEGMENT_SIZE, 4)) {
+			assertThrows(IllegalArgumentException.class, () -> log.append(1L, "a", new byte[SEGMENT_SIZE]));
+		}
+		assertTrue(readAll().isEmpty());
+	}
+
+	private List<CapturedFrame> readAll() throws IOException {
+		List<CapturedFrame> frames = new ArrayList<>();
+		FrameCaptureLog.forEach(dir, frames::add);
+		return frames;
+	}
+
+	private long segmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(p -> p.getFileName().toString().startsWith("capture-")).count();
+		}
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String text(byte[] b) {
+		return new String(b, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,82 @@
+package com.aton.proj.oneGasMeteor.service.dedup;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test di {@link RotatingBloomFilter}: finestra temporale e falsi positivi.
+ */
+class RotatingBloomFilterTest {
+
+	private static final long WINDOW_MS = 60_000;
+
+	/**
+	 * Input: chiave inserita a t=0; consultata a t=0, dopo una rotazione, dopo
+	 * due rotazioni.
+	 *
+	 * Output atteso: presente fino alla seconda rotazione, poi dimenticata.
+	 */
+	@Test
+	void testKeyExpiresAfterTwoRotations() {
+		RotatingBloomFilter filter = new RotatingBloomFilter(WINDOW_MS, 1000, 1e-6, 0);
+
+		assertFalse(filter.mightContain(1, 3, 0));
+		filter.put(1, 3, 0);
+		assertTrue(filter.mightContain(1, 3, 0));
+		assertTrue(filter.mightContain(1, 3, WINDOW_MS));
+		assertFalse(filter.mightContain(1, 3, 2 * WINDOW_MS));
+	}
+
+	/**
+	 * Input: chiave inserita, poi nessun accesso per più di due finestre.
+	 *
+	 * Output atteso: dimenticata alla prima consultazione successiva.
+	 */
+	@Test
+	void testIdleFilterForgetsEverything() {
+		RotatingBloomFilter filter = new RotatingBloomFilter(WINDOW_MS, 1000, 1e-6, 0);
+		filter.put(1, 3, WINDOW_MS - 1);
+
+		assertFalse(filter.mightContain(1, 3, 3 * WINDOW_MS));
+	}
+
+	/**
+	 * Input: 10.000 chiavi casuali inserite (= expectedInsertions, fpp 1e-3),
+	 * 100.000 chiavi mai inserite.
+	 *
+	 * Output atteso: tutte le inserite presenti; falsi positivi entro 3 volte
+	 * la probabilità configurata.
+	 */
+	@Test
+	void testFalsePositiveRate() {
+		RotatingBloomFilter filter = new RotatingBloomFilter(WINDOW_MS, 10_000, 1e-3, 0);
+		SplittableRandom random = new SplittableRandom(42);
+		long[][] inserted = new long[10_000][];
+		for (int i = 0; i < inserted.length; i++) {
+			inserted[i] = new long[] { random.nextLong(), random.nextLong() | 1 };
+			filter.put(inserted[i][0], inserted[i][1], 0);
+		}
+		for (long[] key : inserted) {
+			assertTrue(filter.mightContain(key[0], key[1], 0));
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 100_000; i++) {
+			if (filter.mightContain(random.nextLong(), random.nextLong() | 1, 0)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives <= 300, "Falsi positivi: " + falsePositives);
+	}
+
+	@Test
+	void testInvalidSizing() {
+		assertThrows(IllegalArgumentException.class, () -> new RotatingBloomFilter(WINDOW_MS, 1000, 1, 0));
+		assertThrows(IllegalArgumentException.class, () -> new RotatingBloomFilter(0, 1000, 1e-6, 0));
+	}
+}
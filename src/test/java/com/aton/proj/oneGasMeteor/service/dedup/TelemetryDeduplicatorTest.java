@@ -0,0 +1,86 @@
+package com.aton.proj.oneGasMeteor.service.dedup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.utils.ControllerUtils;
+
+/**
+ * Test di {@link TelemetryDeduplicator}: impronta del frame e contatori.
+ */
+class TelemetryDeduplicatorTest {
+
+	/** Messaggio reale TEK822V2 type 8, come in {@code TekMessageDecoderTest} */
+	private static final String HEX_MSG_TYPE8 = "180203428918360864431047987054087B0931470008FF810F000A6A2BFE0A6A28000A6A2BFE0A6A28430A6A28430A6A28430A6A28430A6A28430A6A28430A6A2800000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000294A";
+
+	/**
+	 * Input: lo stesso frame con CSQ e batteria diversi (byte 5-6).
+	 *
+	 * Output atteso: stessa impronta, l'header non conta.
+	 */
+	@Test
+	void testKeyIgnoresVolatileHeaderFields() {
+		byte[] frame = frame();
+		byte[] retransmitted = frame();
+		retransmitted[5] = 0x10;
+		retransmitted[6] = 0x20;
+
+		assertEquals(key(frame), key(retransmitted));
+	}
+
+	/**
+	 * Input: frame con IMEI diverso, con contatore diverso, con una misura
+	 * diversa.
+	 *
+	 * Output atteso: impronte tutte diverse dall'originale.
+	 */
+	@Test
+	void testKeyDistinguishesImeiCounterAndBody() {
+		byte[] frame = frame();
+		byte[] otherImei = frame();
+		otherImei[14] ^= 0x01;
+		byte[] otherMeasurement = frame();
+		otherMeasurement[30] ^= 0x01;
+
+		assertNotEquals(key(frame), key(otherImei));
+		assertNotEquals(key(frame), TelemetryDeduplicator.keyOf(frame, 17, frame.length - 17, 999));
+		assertNotEquals(key(frame), key(otherMeasurement));
+	}
+
+	/**
+	 * Input: frame controllato e registrato, poi ricevuto altre due volte; un
+	 * secondo frame controllato ma mai registrato (elaborazione fallita).
+	 *
+	 * Output atteso: due duplicati su quattro controlli; il frame non
+	 * registrato non è un duplicato.
+	 */
+	@Test
+	void testDuplicatesCounted() {
+		TelemetryDeduplicator deduplicator = new TelemetryDeduplicator(60_000, 1000, 1e-6);
+		byte[] frame = frame();
+		byte[] other = frame();
+		other[30] ^= 0x01;
+
+		assertFalse(deduplicator.isDuplicate(key(frame)));
+		deduplicator.record(key(frame));
+		assertTrue(deduplicator.isDuplicate(key(frame)));
+		assertTrue(deduplicator.isDuplicate(key(frame)));
+		assertFalse(deduplicator.isDuplicate(key(other)));
+
+		assertEquals(4, deduplicator.getChecked());
+		assertEquals(2, deduplicator.getSuppressed());
+	}
+
+	private static TelemetryDeduplicator.Key key(byte[] frame) {
+		return TelemetryDeduplicator.keyOf(frame, 17, frame.length - 17,
+				((frame[17] & 0xFF) << 8) | (frame[18] & 0xFF));
+	}
+
+	private static byte[] frame() {
+		return ControllerUtils.hexStringToByteArray(HEX_MSG_TYPE8);
+	}
+}
@@ -0,0 +1,99 @@
+package com.aton.proj.oneGasMeteor.service.impl.copy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test di {@link PgBinaryRowWriter}: layout del formato binario di COPY.
+ */
+class PgBinaryRowWriterTest {
+
+	/**
+	 * Input: header, una riga con text/int4/NULL/float8, trailer.
+	 *
+	 * Output atteso: firma PGCOPY, flag a zero, campi con lunghezza, -1 per
+	 * NULL e trailer -1.
+	 */
+	@Test
+	void testRowLayout() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PgBinaryRowWriter writer = new PgBinaryRowWriter(bytes).header();
+		writer.startRow(4).text("àb").int4(42).int8(null).float8(1.5);
+		writer.trailer();
+
+		ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+		byte[] signature = new byte[11];
+		buf.get(signature);
+		assertArrayEquals(new byte[] { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 }, signature);
+		assertEquals(0, buf.getInt()); // flags
+		assertEquals(0, buf.getInt()); // estensione header
+
+		assertEquals(4, buf.getShort());
+		assertEquals(3, buf.getInt()); // "àb" in UTF-8
+		byte[] text = new byte[3];
+		buf.get(text);
+		assertEquals("àb", new String(text, java.nio.charset.StandardCharsets.UTF_8));
+		assertEquals(4, buf.getInt());
+		assertEquals(42, buf.getInt());
+		assertEquals(-1, buf.getInt());
+		assertEquals(8, buf.getInt());
+		assertEquals(1.5, buf.getDouble());
+
+		assertEquals(-1, buf.getShort());
+		assertFalse(buf.hasRemaining());
+	}
+
+	/**
+	 * Input: timestamp e time.
+	 *
+	 * Output atteso: microsecondi dal 2000-01-01 (anche prima dell'epoca) e
+	 * dalla mezzanotte.
+	 */
+	@Test
+	void testTemporalValues() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new PgBinaryRowWriter(bytes)
+				.timestamp(LocalDateTime.of(2000, 1, 1, 0, 0, 1, 500_000_000))
+				.timestamp(LocalDateTime.of(1999, 12, 31, 23, 59, 59))
+				.time(LocalTime.of(1, 0, 0, 123_456_000));
+
+		ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+		assertEquals(8, buf.getInt());
+		assertEquals(1_500_000L, buf.getLong());
+		assertEquals(8, buf.getInt());
+		assertEquals(-1_000_000L, buf.getLong());
+		assertEquals(8, buf.getInt());
+		assertEquals(3_600_123_456L, buf.getLong());
+	}
+
+	/**
+	 * Input: bytea e valori NULL di ogni tipo.
+	 *
+	 * Output atteso: bytea copiato così com'è, NULL come lunghezza -1.
+	 */
+	@Test
+	void testByteaAndNulls() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new PgBinaryRowWriter(bytes)
+				.bytea(new byte[] { 1, 2, 3 })
+				.text(null).int4(null).float8(null).timestamp(null).time(null).bytea(null);
+
+		ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+		assertEquals(3, buf.getInt());
+		byte[] payload = new byte[3];
+		buf.get(payload);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, payload);
+		int[] nulls = new int[6];
+		for (int i = 0; i < nulls.length; i++) {
+			nulls[i] = buf.getInt();
+		}
+		assertArrayEquals(new int[] { -1, -1, -1, -1, -1, -1 }, nulls);
+	}
+}
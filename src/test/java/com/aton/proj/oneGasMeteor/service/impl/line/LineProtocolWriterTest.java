@@ -0,0 +1,121 @@
+package com.aton.proj.oneGasMeteor.service.impl.line;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test di {@link LineProtocolWriter}: escaping, formato dei numeri e righe
+ * scartate, con gli stessi risultati di Point.toLineProtocol().
+ */
+class LineProtocolWriterTest {
+
+	/**
+	 * Input: measurement, chiavi e valori con spazi, virgole, '=' e a capo;
+	 * field stringa con virgolette e backslash.
+	 *
+	 * Output atteso: '=' escapato solo in tag e chiavi dei field, a capo come
+	 * \n, nelle stringhe escapati solo '"' e '\'.
+	 */
+	@Test
+	void testEscaping() {
+		LineProtocolWriter w = new LineProtocolWriter(0);
+		w.measurement("my meas,x=1")
+				.tag("tag key", "a=b,c\nd")
+				.field("field=key", "say \"hi\" C:\\dir, ok")
+				.timestamp(1000);
+
+		assertEquals("my\\ meas\\,x=1,tag\\ key=a\\=b\\,c\\nd field\\=key=\"say \\\"hi\\\" C:\\\\dir, ok\" 1000\n",
+				text(w));
+	}
+
+	/**
+	 * Input: double interi, con decimali, molto grandi e molto piccoli, -0.0;
+	 * Integer e Long anche negativi.
+	 *
+	 * Output atteso: double sempre con punto e senza esponente, interi con
+	 * suffisso 'i'.
+	 */
+	@Test
+	void testNumberFormat() {
+		LineProtocolWriter w = new LineProtocolWriter(0);
+		w.measurement("m")
+				.field("a", 87.0)
+				.field("b", 3.6)
+				.field("c", 1e20)
+				.field("d", 1.5e-7)
+				.field("e", -0.0)
+				.field("f", -12.25)
+				.field("g", 20)
+				.field("h", -1234567890123L)
+				.field("i", Long.MIN_VALUE)
+				.timestamp(0);
+
+		assertEquals("m a=87.0,b=3.6,c=100000000000000000000.0,d=0.00000015,e=-0.0,f=-12.25,g=20i,"
+				+ "h=-1234567890123i,i=-9223372036854775808i 0\n", text(w));
+	}
+
+	/**
+	 * Input: tag null e vuoto, field null e NaN; poi una riga con soli field
+	 * null tra due righe valide.
+	 *
+	 * Output atteso: tag e field omessi, riga senza field scartata e non
+	 * contata.
+	 */
+	@Test
+	void testNullsSkippedAndEmptyLineDropped() {
+		LineProtocolWriter w = new LineProtocolWriter(0);
+		w.measurement("m").tag("a", null).tag("b", "").tag("c", "x")
+				.field("n", (String) null).field("nan", Double.NaN).field("v", 1)
+				.timestamp(1);
+		w.measurement("m").tag("c", "y").field("v", (Integer) null).timestamp(2);
+		w.measurement("m").field("v", 3).timestamp(3);
+
+		assertEquals("m,c=x v=1i 1\nm v=3i 3\n", text(w));
+		assertEquals(2, w.lines());
+	}
+
+	/**
+	 * Input: caratteri a 2, 3 e 4 byte (coppia surrogata) in tag e field.
+	 *
+	 * Output atteso: stessi byte di String.getBytes(UTF_8).
+	 */
+	@Test
+	void testUtf8() {
+		LineProtocolWriter w = new LineProtocolWriter(0);
+		w.measurement("m").tag("città", "€ 🚀").field("s", "ñ🚀").timestamp(5);
+
+		assertEquals("m,città=€\\ 🚀 s=\"ñ🚀\" 5\n", text(w));
+	}
+
+	/**
+	 * Input: riga interrotta con abortLine(), poi reset() e una nuova riga.
+	 *
+	 * Output atteso: la riga interrotta non resta nel buffer; dopo reset()
+	 * solo la nuova riga, scritta anche con writeTo().
+	 */
+	@Test
+	void testAbortAndReset() throws IOException {
+		LineProtocolWriter w = new LineProtocolWriter(0);
+		w.measurement("m").field("v", 1).timestamp(1);
+		w.measurement("m").tag("t", "x").field("v", 2);
+		w.abortLine();
+		assertEquals("m v=1i 1\n", text(w));
+
+		w.reset();
+		w.measurement("m").field("v", 2).timestamp(2);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		w.writeTo(out);
+		assertEquals("m v=2i 2\n", out.toString(StandardCharsets.UTF_8));
+		assertEquals(1, w.lines());
+		assertEquals(out.size(), w.size());
+	}
+
+	private static String text(LineProtocolWriter w) {
+		return new String(w.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,328 @@
+package com.aton.proj.oneGasMeteor.service.impl.line;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aton.proj.oneGasMeteor.entity.DeviceLocationEntity;
+import com.aton.proj.oneGasMeteor.entity.DeviceSettingsEntity;
+import com.aton.proj.oneGasMeteor.entity.DeviceStatisticsEntity;
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+import com.aton.proj.oneGasMeteor.repository.impl.influxdb.InfluxDBPointMapper;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test di {@link PipelinedInfluxDBWriter} contro un server HTTP locale che
+ * simula /api/v2/write: codifica identica a InfluxDBPointMapper, gzip,
+ * nuovi tentativi e failure handler.
+ */
+class PipelinedInfluxDBWriterTest {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 3, 7, 12, 0);
+
+	private HttpServer server;
+
+	/** Codici HTTP da restituire in ordine; vuota = 204 */
+	private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+	private final Queue<Received> received = new ConcurrentLinkedQueue<>();
+
+	private record Received(String query, String authorization, String body) {
+	}
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/api/v2/write", exchange -> {
+			InputStream in = exchange.getRequestBody();
+			if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+				in = new GZIPInputStream(in);
+			}
+			received.add(new Received(exchange.getRequestURI().getQuery(),
+					exchange.getRequestHeaders().getFirst("Authorization"),
+					new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+			Integer status = statuses.poll();
+			exchange.sendResponseHeaders(status != null ? status : 204, -1);
+			exchange.close();
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+	}
+
+	/**
+	 * Input: un'entity per ciascun tipo con tutti i field valorizzati.
+	 *
+	 * Output atteso: stessa riga di InfluxDBPointMapper.toPoint().toLineProtocol().
+	 */
+	@Test
+	void testEncodingMatchesPointMapper() {
+		TelemetryEntity telemetry = telemetry("862406075927406");
+		telemetry.setDecodedDataJson("{\"type\":\"8\",\"note\":\"a b\"}");
+		telemetry.setBatteryPercentage(75.0);
+		telemetry.setMeasurementCount(3);
+
+		DeviceSettingsEntity settings = new DeviceSettingsEntity();
+		settings.setDeviceId("862406075927406");
+		settings.setDeviceType("TEK822V2");
+		settings.setRawMessage("AABB");
+		settings.setSettingsJson("{\"S0\":\"80\"}");
+		settings.setReceivedAt(T0);
+
+		DeviceStatisticsEntity statistics = new DeviceStatisticsEntity();
+		statistics.setDeviceId("862406075927406");
+		statistics.setDeviceType("TEK822V2");
+		statistics.setRawMessage("CCDD");
+		statistics.setIccid("8939880825066131446");
+		statistics.setEnergyUsed(123456L);
+		statistics.setMinTemperature(-5);
+		statistics.setMaxTemperature(35);
+		statistics.setMessageCount(10);
+		statistics.setDeliveryFailCount(1);
+		statistics.setTotalSendTime(5000L);
+		statistics.setMaxSendTime(900L);
+		statistics.setMinSendTime(100L);
+		statistics.setRssiTotal(200L);
+		statistics.setRssiValidCount(9);
+		statistics.setRssiFailCount(1);
+		statistics.setAverageSendTime(500.5);
+		statistics.setAverageRssi(22.2);
+		statistics.setDeliverySuccessRate(98.0);
+		statistics.setReceivedAt(T0);
+
+		DeviceLocationEntity location = new DeviceLocationEntity();
+		location.setDeviceId("862406075927406");
+		location.setDeviceType("TEK822V2");
+		location.setRawMessage("EEFF");
+		location.setLatitude(45.4642);
+		location.setLongitude(9.19);
+		location.setLatitudeRaw("4527.852N");
+		location.setLongitudeRaw("00911.400E");
+		location.setAltitude(120.0);
+		location.setSpeedKmh(0.0);
+		location.setSpeedKnots(0.0);
+		location.setGroundHeading(270.5);
+		location.setHorizontalPrecision(1.2);
+		location.setUtcTime(LocalTime.of(11, 59, 30));
+		location.setDate("070325");
+		location.setNumberOfSatellites(8);
+		location.setTimeToFixSeconds(12);
+		location.setGnssPositioningMode(3);
+		location.setReceivedAt(T0);
+
+		MeasurementEntity measurement = new MeasurementEntity("862406075927406", T0.minusMinutes(15), 120, 19.5, 9,
+				3);
+
+		LineProtocolWriter w = new LineProtocolWriter(0);
+		PipelinedInfluxDBWriter.encode(w, telemetry);
+		PipelinedInfluxDBWriter.encode(w, settings);
+		PipelinedInfluxDBWriter.encode(w, statistics);
+		PipelinedInfluxDBWriter.encode(w, location);
+		PipelinedInfluxDBWriter.encode(w, measurement);
+
+		String expected = String.join("\n", InfluxDBPointMapper.toPoint(telemetry).toLineProtocol(),
+				InfluxDBPointMapper.toPoint(settings).toLineProtocol(),
+				InfluxDBPointMapper.toPoint(statistics).toLineProtocol(),
+				InfluxDBPointMapper.toPoint(location).toLineProtocol(),
+				InfluxDBPointMapper.toPoint(measurement).toLineProtocol()) + "\n";
+		assertEquals(expected, new String(w.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Input: submit() di 2 entity, il server risponde 503 e poi 204.
+	 *
+	 * Output atteso: 2 richieste con lo stesso corpo gzip, token, org, bucket e
+	 * precision=ms; un nuovo tentativo conteggiato, batch riuscito.
+	 */
+	@Test
+	void testRetryOnServiceUnavailable() {
+		statuses.add(503);
+		PipelinedInfluxDBWriter writer = writer();
+
+		writer.submit(List.of(telemetry("dev-1"), telemetry("dev-2"))).join();
+
+		assertEquals(2, received.size());
+		Received first = received.poll();
+		Received second = received.poll();
+		assertEquals("org=ongas&bucket=oneGasDB&precision=ms", first.query());
+		assertEquals("Token secret", first.authorization());
+		assertEquals(first.body(), second.body());
+		assertEquals(2, first.body().lines().count());
+		assertTrue(first.body().startsWith("telemetry,device_id=dev-1,device_type=TEK822V2,message_type=8 "));
+		assertEquals(1, writer.getRetries());
+		assertEquals(1, writer.getSentBatches());
+		assertEquals(2, writer.getSentLines());
+		assertEquals(0, writer.getInFlight());
+	}
+
+	/**
+	 * Input: write() di 3 entity con batch-size 2; il server rifiuta con 400.
+	 *
+	 * Output atteso: il batch pieno parte senza flush, nessun nuovo tentativo;
+	 * le sue 2 entity sono scartate e conteggiate (non arrivano al failure
+	 * handler, altrimenti tornerebbero in coda per sempre); la terza resta nel
+	 * batch aperto fino a flush().
+	 */
+	@Test
+	void testRejectedBatchIsDropped() throws Exception {
+		statuses.add(400);
+		PipelinedInfluxDBWriter writer = writer();
+		ReflectionTestUtils.setField(writer, "batchSize", 2);
+		List<Object> failed = new CopyOnWriteArrayList<>();
+		writer.setFailureHandler(failed::addAll);
+
+		writer.write(List.of(telemetry("dev-1"), telemetry("dev-2"), telemetry("dev-3")));
+		// il 400 deve andare al batch pieno: flush solo dopo la sua risposta
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (writer.getRejectedBatches() == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		writer.flush();
+		writer.shutdown();
+
+		assertEquals(2, received.size());
+		assertEquals(0, writer.getRetries());
+		assertEquals(1, writer.getRejectedBatches());
+		assertEquals(2, writer.getRejectedLines());
+		assertEquals(0, writer.getFailedBatches());
+		assertEquals(1, writer.getSentLines());
+		assertTrue(failed.isEmpty());
+	}
+
+	/**
+	 * Input: submit() rifiutato con 400.
+	 *
+	 * Output atteso: il future fallisce con RejectedWriteException, così il
+	 * replay dello spool può scartare il batch invece di ripeterlo.
+	 */
+	@Test
+	void testRejectedSubmit() {
+		statuses.add(400);
+		PipelinedInfluxDBWriter writer = writer();
+
+		CompletionException ex = assertThrows(CompletionException.class,
+				() -> writer.submit(List.of(telemetry("dev-1"))).join());
+
+		assertTrue(PipelinedInfluxDBWriter.isRejected(ex));
+		assertEquals(1, received.size());
+	}
+
+	/**
+	 * Input: tentativi esauriti (sempre 503) con write() e max-retries 1.
+	 *
+	 * Output atteso: le entity arrivano al failure handler.
+	 */
+	@Test
+	void testExhaustedBatchGoesToFailureHandler() throws Exception {
+		statuses.add(503);
+		statuses.add(503);
+		PipelinedInfluxDBWriter writer = writer();
+		ReflectionTestUtils.setField(writer, "maxRetries", 1);
+		CompletableFuture<List<Object>> failed = new CompletableFuture<>();
+		writer.setFailureHandler(failed::complete);
+
+		TelemetryEntity a = telemetry("dev-1");
+		writer.write(List.of(a));
+		writer.flush();
+
+		assertEquals(List.of(a), failed.get(5, TimeUnit.SECONDS));
+		assertEquals(1, writer.getFailedBatches());
+		assertEquals(0, writer.getRejectedBatches());
+	}
+
+	/**
+	 * Input: nuovi tentativi esauriti (sempre 500) con submit().
+	 *
+	 * Output atteso: il future fallisce dopo max-retries + 1 richieste.
+	 */
+	@Test
+	void testRetriesExhausted() {
+		for (int i = 0; i < 3; i++) {
+			statuses.add(500);
+		}
+		PipelinedInfluxDBWriter writer = writer();
+		ReflectionTestUtils.setField(writer, "maxRetries", 2);
+
+		CompletableFuture<Void> result = writer.submit(List.of(telemetry("dev-1")));
+
+		assertThrows(CompletionException.class, result::join);
+		assertEquals(3, received.size());
+		assertEquals(1, writer.getFailedBatches());
+	}
+
+	/**
+	 * Input: ritardi con e senza Retry-After, codici HTTP.
+	 *
+	 * Output atteso: backoff esponenziale limitato da max-retry-delay-ms,
+	 * Retry-After in secondi, jitter entro jitter-interval-ms; solo 429 e 5xx
+	 * ritentabili.
+	 */
+	@Test
+	void testRetryDelay() {
+		PipelinedInfluxDBWriter writer = writer();
+		ReflectionTestUtils.setField(writer, "retryIntervalMs", 1000L);
+		ReflectionTestUtils.setField(writer, "maxRetryDelayMs", 30000L);
+		ReflectionTestUtils.setField(writer, "jitterIntervalMs", 500L);
+
+		long first = writer.retryDelay(0, null);
+		assertTrue(first >= 1000 && first < 1500, "Primo tentativo: " + first);
+		long third = writer.retryDelay(2, null);
+		assertTrue(third >= 4000 && third < 4500, "Terzo tentativo: " + third);
+		long capped = writer.retryDelay(30, null);
+		assertTrue(capped >= 30000 && capped < 30500, "Limite: " + capped);
+		long retryAfter = writer.retryDelay(0, "3");
+		assertTrue(retryAfter >= 3000 && retryAfter < 3500, "Retry-After: " + retryAfter);
+
+		assertTrue(PipelinedInfluxDBWriter.isRetryable(429));
+		assertTrue(PipelinedInfluxDBWriter.isRetryable(503));
+		assertFalse(PipelinedInfluxDBWriter.isRetryable(400));
+		assertFalse(PipelinedInfluxDBWriter.isRetryable(413));
+	}
+
+	private PipelinedInfluxDBWriter writer() {
+		PipelinedInfluxDBWriter writer = new PipelinedInfluxDBWriter(
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/", "ongas", "oneGasDB", "secret");
+		ReflectionTestUtils.setField(writer, "retryIntervalMs", 10L);
+		ReflectionTestUtils.setField(writer, "jitterIntervalMs", 0L);
+		writer.start();
+		return writer;
+	}
+
+	private static TelemetryEntity telemetry(String deviceId) {
+		TelemetryEntity entity = new TelemetryEntity();
+		entity.setDeviceId(deviceId);
+		entity.setDeviceType("TEK822V2");
+		entity.setMessageType("8");
+		entity.setRawMessage("AABBCC");
+		entity.setImei(deviceId);
+		entity.setFirmwareVersion("1.3");
+		entity.setBatteryVoltage(3.6);
+		entity.setSignalStrength(20);
+		entity.setReceivedAt(T0);
+		return entity;
+	}
+}
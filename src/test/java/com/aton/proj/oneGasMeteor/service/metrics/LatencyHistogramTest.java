@@ -0,0 +1,89 @@
+package com.aton.proj.oneGasMeteor.service.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test di {@link LatencyHistogram}: bucket log-lineari, quantili, registrazione
+ * concorrente.
+ */
+class LatencyHistogramTest {
+
+	/**
+	 * Input: valori da 0 a 2^40.
+	 *
+	 * Output atteso: ogni valore cade in un bucket il cui limite superiore è >=
+	 * del valore ed entro il 6,25% (esatto sotto 16 µs).
+	 */
+	@Test
+	void testBucketPrecision() {
+		for (long v = 0; v < 16; v++) {
+			assertEquals(v, LatencyHistogram.highestEquivalentValue(LatencyHistogram.bucketIndex(v)));
+		}
+		for (long v = 16; v < (1L << 40); v = v * 3 / 2 + 7) {
+			long upper = LatencyHistogram.highestEquivalentValue(LatencyHistogram.bucketIndex(v));
+			assertTrue(upper >= v, "upper " + upper + " < " + v);
+			assertTrue(upper - v <= v / 16.0, "bucket troppo largo per " + v + ": " + upper);
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Input: 1000 valori da 1 a 1000 µs.
+	 *
+	 * Output atteso: p50 ~500, p99 ~990, p999 ~999 entro la precisione dei
+	 * bucket; max 1000.
+	 */
+	@Test
+	void testQuantiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int v = 1; v <= 1000; v++) {
+			h.recordMicros(v);
+		}
+		long[] counts = new long[LatencyHistogram.BUCKETS];
+		long total = h.addTo(counts);
+
+		assertEquals(1000, total);
+		assertWithin(500, LatencyHistogram.quantile(counts, total, 0.5));
+		assertWithin(990, LatencyHistogram.quantile(counts, total, 0.99));
+		assertWithin(999, LatencyHistogram.quantile(counts, total, 0.999));
+		assertEquals(1000, h.maxMicros());
+		assertEquals(0, LatencyHistogram.quantile(new long[LatencyHistogram.BUCKETS], 0, 0.99));
+	}
+
+	/**
+	 * Input: 8 thread registrano 10000 valori ciascuno.
+	 *
+	 * Output atteso: nessun conteggio perso nella somma delle stripe.
+	 */
+	@Test
+	void testConcurrentRecording() throws InterruptedException {
+		LatencyHistogram h = new LatencyHistogram();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			int base = t;
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					h.recordMicros(base * 100 + i % 100);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(80_000, h.addTo(new long[LatencyHistogram.BUCKETS]));
+		assertEquals(799, h.maxMicros());
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(actual >= expected && actual <= expected + expected / 16,
+				"atteso ~" + expected + ", ottenuto " + actual);
+	}
+}
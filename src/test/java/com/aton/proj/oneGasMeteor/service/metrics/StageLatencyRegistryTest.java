@@ -0,0 +1,100 @@
+package com.aton.proj.oneGasMeteor.service.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aton.proj.oneGasMeteor.model.ProcessingContext;
+import com.aton.proj.oneGasMeteor.service.metrics.StageLatencyRegistry.Snapshot;
+import com.aton.proj.oneGasMeteor.service.metrics.StageLatencyRegistry.Stage;
+
+/**
+ * Test di {@link StageLatencyRegistry}: serie per fase/device/message type,
+ * finestre dei quantili, limite alle serie.
+ */
+class StageLatencyRegistryTest {
+
+	private final StageLatencyRegistry registry = new StageLatencyRegistry();
+
+	/**
+	 * Input: connessione completata con lettura e decodifica, senza comandi.
+	 *
+	 * Output atteso: serie read, decode, total per TEK822V2/8; nessuna serie per
+	 * le fasi non eseguite.
+	 */
+	@Test
+	void testRecordContext_onlyExecutedStages() throws InterruptedException {
+		ProcessingContext context = new ProcessingContext("127.0.0.1:1234");
+		context.setDeviceType("TEK822V2");
+		context.setMessageType(8);
+		context.startRead();
+		Thread.sleep(1);
+		context.endRead();
+		context.startDecode();
+		context.endDecode();
+		context.complete(true, null);
+
+		registry.record(context);
+
+		List<Snapshot> snapshots = registry.snapshot();
+		assertEquals(List.of(Stage.READ, Stage.DECODE, Stage.TOTAL),
+				snapshots.stream().map(Snapshot::stage).toList());
+		Snapshot read = snapshots.get(0);
+		assertEquals("TEK822V2", read.deviceType());
+		assertEquals("8", read.messageType());
+		assertEquals(1, read.count());
+		assertTrue(read.maxMicros() >= 1000);
+	}
+
+	/**
+	 * Input: 100 valori da 10 ms, rotazione, 100 valori da 1 ms, due rotazioni.
+	 *
+	 * Output atteso: dopo la prima rotazione i quantili vedono entrambe le
+	 * finestre; dopo altre due solo dati vuoti, mentre count e sum restano
+	 * cumulativi.
+	 */
+	@Test
+	void testRotate_windowedQuantilesCumulativeCount() {
+		for (int i = 0; i < 100; i++) {
+			registry.record(Stage.DB_SAVE, "TEK822V2", "4", 10_000_000);
+		}
+		registry.rotate();
+		for (int i = 0; i < 100; i++) {
+			registry.record(Stage.DB_SAVE, "TEK822V2", "4", 1_000_000);
+		}
+
+		Snapshot both = registry.snapshot().get(0);
+		assertEquals(10_000, both.maxMicros());
+		assertTrue(both.p99Micros() >= 10_000 * 15 / 16);
+
+		registry.rotate();
+		Snapshot recent = registry.snapshot().get(0);
+		assertEquals(1_000, recent.maxMicros());
+
+		registry.rotate();
+		Snapshot empty = registry.snapshot().get(0);
+		assertEquals(0, empty.p99Micros());
+		assertEquals(200, empty.count());
+		assertEquals(1_100_000, empty.sumMicros());
+	}
+
+	/**
+	 * Input: max-series 2, tre device type diversi.
+	 *
+	 * Output atteso: il terzo finisce nella serie "other".
+	 */
+	@Test
+	void testMaxSeries_foldsIntoOther() {
+		ReflectionTestUtils.setField(registry, "maxSeries", 2);
+
+		registry.record(Stage.SEND, "A", "4", 1000);
+		registry.record(Stage.SEND, "B", "4", 1000);
+		registry.record(Stage.SEND, "C", "4", 1000);
+
+		assertEquals(List.of("A", "B", StageLatencyRegistry.OTHER),
+				registry.snapshot().stream().map(Snapshot::deviceType).toList());
+	}
+}
@@ -0,0 +1,137 @@
+package com.aton.proj.oneGasMeteor.service.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.model.TelemetryCursor;
+import com.aton.proj.oneGasMeteor.model.TelemetryQuery;
+import com.aton.proj.oneGasMeteor.model.TelemetryRow;
+import com.aton.proj.oneGasMeteor.repository.TelemetryRepository;
+import com.aton.proj.oneGasMeteor.service.query.TelemetryQueryService.ExportFormat;
+import com.aton.proj.oneGasMeteor.service.query.TelemetryQueryService.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Test di {@link TelemetryQueryService}: cursore delle pagine ed export
+ * NDJSON/CSV sui record passati dal repository.
+ */
+class TelemetryQueryServiceTest {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 3, 7, 12, 0);
+
+	private static final TelemetryQuery ALL = new TelemetryQuery("dev-1", null, null, null, null, null, false, false);
+
+	private final TelemetryRepository repository = mock(TelemetryRepository.class);
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private final TelemetryQueryService service = new TelemetryQueryService(repository, objectMapper);
+
+	/**
+	 * Input: limit 2, il repository restituisce 3 record (limit + 1).
+	 *
+	 * Output atteso: 2 record e nextCursor posizionato sul secondo; con il
+	 * cursore la pagina successiva riparte da lì.
+	 */
+	@Test
+	void testPageReturnsCursorOnLastItem() {
+		List<TelemetryRow> rows = List.of(row(3L, T0, "a"), row(2L, T0, "b"), row(1L, T0.minusMinutes(1), "c"));
+		when(repository.findPage(ALL, null, 3)).thenReturn(rows);
+
+		Page page = service.page(ALL, null, 2);
+
+		assertEquals(rows.subList(0, 2), page.items());
+		TelemetryCursor cursor = TelemetryCursor.decode(page.nextCursor());
+		assertEquals(new TelemetryCursor(T0, "2"), cursor);
+
+		when(repository.findPage(ALL, cursor, 3)).thenReturn(List.of(rows.get(2)));
+		Page last = service.page(ALL, page.nextCursor(), 2);
+		assertEquals(List.of(rows.get(2)), last.items());
+		assertNull(last.nextCursor());
+	}
+
+	/**
+	 * Input: limit fuori range, cursore non prodotto dal servizio, formato
+	 * sconosciuto.
+	 *
+	 * Output atteso: IllegalArgumentException (400 dal controller).
+	 */
+	@Test
+	void testInvalidArgumentsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> service.page(ALL, null, 0));
+		assertThrows(IllegalArgumentException.class, () -> service.page(ALL, null, 1001));
+		assertThrows(IllegalArgumentException.class, () -> service.page(ALL, "bm90LWEtY3Vyc29y", 10));
+		assertThrows(IllegalArgumentException.class, () -> ExportFormat.of("xml"));
+	}
+
+	/**
+	 * Input: export NDJSON di 2 record.
+	 *
+	 * Output atteso: una riga JSON per record, senza raw_message/decoded_data
+	 * non richiesti.
+	 */
+	@Test
+	void testExportNdjson() throws Exception {
+		streamRows(ALL, List.of(row(2L, T0, "a"), row(1L, T0, "b")));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		long count = service.export(ALL, ExportFormat.NDJSON, out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(2, count);
+		assertEquals(2, lines.length);
+		assertEquals(2L, objectMapper.readTree(lines[0]).get("id").asLong());
+		assertEquals("b", objectMapper.readTree(lines[1]).get("imei").asText());
+		assertNull(objectMapper.readTree(lines[0]).get("rawMessage"));
+	}
+
+	/**
+	 * Input: export CSV con raw_message richiesto e un valore con virgola,
+	 * virgolette e a capo.
+	 *
+	 * Output atteso: header con raw_message e valore quotato secondo RFC 4180.
+	 */
+	@Test
+	void testExportCsvEscapesValues() throws Exception {
+		TelemetryQuery query = new TelemetryQuery("dev-1", null, null, null, null, null, true, false);
+		TelemetryRow row = new TelemetryRow(7L, "dev-1", "TEK822V2", "8", T0, "imei", "1.3", 3.6, null, 20, 28,
+				"a,\"b\"\nc", null);
+		streamRows(query, List.of(row));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		service.export(query, ExportFormat.CSV, out);
+
+		assertEquals("id,device_id,device_type,message_type,received_at,imei,firmware_version,battery_voltage,"
+				+ "battery_percentage,signal_strength,measurement_count,raw_message\n"
+				+ "7,dev-1,TEK822V2,8,2025-03-07T12:00,imei,1.3,3.6,,20,28,\"a,\"\"b\"\"\nc\"\n",
+				out.toString(StandardCharsets.UTF_8));
+		verify(repository).stream(eq(query), any());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void streamRows(TelemetryQuery query, List<TelemetryRow> rows) {
+		doAnswer(invocation -> {
+			rows.forEach(invocation.getArgument(1, Consumer.class));
+			return null;
+		}).when(repository).stream(eq(query), any());
+	}
+
+	private static TelemetryRow row(Long id, LocalDateTime receivedAt, String imei) {
+		return new TelemetryRow(id, "dev-1", "TEK822V2", "8", receivedAt, imei, "1.3", 3.6, 80.0, 20, 28, null, null);
+	}
+}
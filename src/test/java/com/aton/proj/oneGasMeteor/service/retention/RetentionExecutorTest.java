@@ -0,0 +1,119 @@
+package com.aton.proj.oneGasMeteor.service.retention;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.aton.proj.oneGasMeteor.service.retention.RetentionResult.Strategy;
+
+/**
+ * Test della strategia TimescaleDB di {@link RetentionExecutor} (su H2 gira
+ * solo la DELETE a blocchi, vedi {@code DataCleanupServiceIntegrationTest}).
+ * Il JdbcTemplate risponde come le viste timescaledb_information.
+ */
+class RetentionExecutorTest {
+
+	private static final LocalDateTime THRESHOLD = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+	/**
+	 * Input: telemetry_data hypertable con due chunk scaduti (1000 e 2500 righe
+	 * stimate).
+	 *
+	 * Output atteso: drop_chunks, nessuna DELETE; 2 chunk e 3500 righe nel
+	 * risultato.
+	 */
+	@Test
+	void testHypertableUsesDropChunks() {
+		TimescaleJdbcTemplate jdbc = new TimescaleJdbcTemplate(true, List.of("_timescaledb_internal._hyper_1_1_chunk",
+				"_timescaledb_internal._hyper_1_2_chunk"), List.of(1000L, 2500L));
+		RetentionExecutor executor = new RetentionExecutor(jdbc, "timescaledb", 5000, 0);
+
+		RetentionResult result = executor.purge("telemetry_data", THRESHOLD);
+
+		assertEquals(Strategy.DROP_CHUNKS, result.strategy());
+		assertEquals(2, result.chunksDropped());
+		assertEquals(3500, result.rowsDeleted());
+		assertTrue(jdbc.statements.stream().anyMatch(sql -> sql.contains("drop_chunks")));
+		assertTrue(jdbc.statements.stream().noneMatch(sql -> sql.startsWith("DELETE")));
+	}
+
+	/**
+	 * Input: tabella non hypertable su TimescaleDB, nessuna riga scaduta.
+	 *
+	 * Output atteso: DELETE a blocchi, drop_chunks mai chiamata.
+	 */
+	@Test
+	void testPlainTableFallsBackToBatchedDelete() {
+		TimescaleJdbcTemplate jdbc = new TimescaleJdbcTemplate(false, List.of(), List.of());
+		RetentionExecutor executor = new RetentionExecutor(jdbc, "timescaledb", 5000, 0);
+
+		RetentionResult result = executor.purge("device_settings", THRESHOLD);
+
+		assertEquals(Strategy.BATCHED_DELETE, result.strategy());
+		assertEquals(0, result.rowsDeleted());
+		assertTrue(jdbc.statements.stream().noneMatch(sql -> sql.contains("drop_chunks")));
+	}
+
+	/**
+	 * Input: database.type=sqlserver.
+	 *
+	 * Output atteso: nessuna query su timescaledb_information.
+	 */
+	@Test
+	void testOtherDatabasesSkipHypertableLookup() {
+		TimescaleJdbcTemplate jdbc = new TimescaleJdbcTemplate(true, List.of(), List.of());
+		RetentionExecutor executor = new RetentionExecutor(jdbc, "sqlserver", 5000, 0);
+
+		executor.purge("telemetry_data", THRESHOLD);
+
+		assertTrue(jdbc.statements.stream().noneMatch(sql -> sql.contains("timescaledb_information")));
+	}
+
+	/** Risposte fisse alle query di RetentionExecutor; nessuna riga per la DELETE a blocchi */
+	private static final class TimescaleJdbcTemplate extends JdbcTemplate {
+
+		final List<String> statements = new ArrayList<>();
+		private final boolean hypertable;
+		private final List<String> chunks;
+		private final List<Long> estimates;
+		private int estimateIndex;
+
+		TimescaleJdbcTemplate(boolean hypertable, List<String> chunks, List<Long> estimates) {
+			this.hypertable = hypertable;
+			this.chunks = chunks;
+			this.estimates = estimates;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+			statements.add(sql);
+			if (sql.contains("timescaledb_information.hypertables")) {
+				return (T) Integer.valueOf(hypertable ? 1 : 0);
+			}
+			if (sql.contains("approximate_row_count")) {
+				return (T) estimates.get(estimateIndex++);
+			}
+			return null;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+			statements.add(sql);
+			return (List<T>) chunks;
+		}
+
+		@Override
+		public int update(String sql, Object... args) {
+			statements.add(sql);
+			return 0;
+		}
+	}
+}
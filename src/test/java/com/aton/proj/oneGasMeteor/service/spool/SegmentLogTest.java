@@ -0,0 +1,154 @@
+package com.aton.proj.oneGasMeteor.service.spool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test di {@link SegmentLog}: append, lettura/commit, rotazione dei segmenti e
+ * ripresa dopo la riapertura.
+ */
+class SegmentLogTest {
+
+	private static final int SEGMENT_SIZE = 256;
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Input: 3 record, lettura di 2 e commit.
+	 *
+	 * Output atteso: la lettura successiva restituisce solo il terzo record.
+	 */
+	@Test
+	void testReadCommit() throws IOException {
+		try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE, 1 << 20, false)) {
+			log.append(bytes("a"));
+			log.append(bytes("b"));
+			log.append(bytes("c"));
+			assertEquals(3, log.pendingRecords());
+
+			SegmentLog.Batch first = log.read(2);
+			assertEquals(2, first.records().size());
+			assertEquals("a", text(first.records().get(0)));
+			// Senza commit la lettura riparte dallo stesso punto
+			assertEquals("a", text(log.read(1).records().get(0)));
+
+			log.commit(first);
+			assertEquals(1, log.pendingRecords());
+			SegmentLog.Batch second = log.read(10);
+			assertEquals(1, second.records().size());
+			assertEquals("c", text(second.records().get(0)));
+
+			log.commit(second);
+			assertTrue(log.isEmpty());
+			assertTrue(log.read(10).isEmpty());
+		}
+	}
+
+	/**
+	 * Input: record che riempiono più segmenti, tutti letti e confermati.
+	 *
+	 * Output atteso: ordine preservato tra i segmenti, segmenti consumati
+	 * rimossi dal disco.
+	 */
+	@Test
+	void testSegmentRotation() throws IOException {
+		try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE, 1 << 20, false)) {
+			for (int i = 0; i < 40; i++) {
+				assertTrue(log.append(bytes("record-" + i)));
+			}
+			assertTrue(log.segmentCount() > 1);
+
+			int expected = 0;
+			while (!log.isEmpty()) {
+				SegmentLog.Batch batch = log.read(7);
+				for (byte[] record : batch.records()) {
+					assertEquals("record-" + expected++, text(record));
+				}
+				log.commit(batch);
+			}
+			assertEquals(40, expected);
+			assertEquals(1, log.segmentCount());
+			assertEquals(1, countSegmentFiles());
+		}
+	}
+
+	/**
+	 * Input: log riaperto dopo un commit parziale.
+	 *
+	 * Output atteso: restano da leggere solo i record non confermati.
+	 */
+	@Test
+	void testRecoveryAfterReopen() throws IOException {
+		try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE, 1 << 20, false)) {
+			for (int i = 0; i < 20; i++) {
+				log.append(bytes("record-" + i));
+			}
+			log.commit(log.read(12));
+		}
+
+		try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE, 1 << 20, false)) {
+			assertEquals(8, log.pendingRecords());
+			assertEquals("record-12", text(log.read(1).records().get(0)));
+
+			// Le nuove scritture seguono quelle recuperate
+			log.append(bytes("after-reopen"));
+			SegmentLog.Batch all = log.read(100);
+			assertEquals(9, all.records().size());
+			assertEquals("after-reopen", text(all.records().get(8)));
+		}
+	}
+
+	/**
+	 * Input: limite di spazio pari a due segmenti.
+	 *
+	 * Output atteso: append restituisce false quando servirebbe un terzo
+	 * segmento.
+	 */
+	@Test
+	void testMaxBytesRejectsAppend() throws IOException {
+		try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE, 2L * SEGMENT_SIZE, false)) {
+			int written = 0;
+			while (log.append(bytes("payload-0123456789"))) {
+				written++;
+			}
+			assertTrue(written > 0);
+			assertEquals(written, log.pendingRecords());
+			assertEquals(2, log.segmentCount());
+		}
+	}
+
+	/**
+	 * Input: record più grande di un segmento.
+	 *
+	 * Output atteso: IllegalArgumentException.
+	 */
+	@Test
+	void testOversizedRecordRejected() throws IOException {
+		try (SegmentLog log = new SegmentLog(dir, SEGMENT_SIZE, 1 << 20, false)) {
+			assertThrows(IllegalArgumentException.class, () -> log.append(new byte[SEGMENT_SIZE]));
+		}
+	}
+
+	private long countSegmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(p -> p.getFileName().toString().startsWith("segment-")).count();
+		}
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String text(byte[] b) {
+		return new String(b, StandardCharsets.UTF_8);
+	}
+}
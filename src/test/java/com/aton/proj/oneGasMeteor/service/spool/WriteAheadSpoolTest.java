@@ -0,0 +1,40 @@
+package com.aton.proj.oneGasMeteor.service.spool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test della validazione delle proprietà di {@link WriteAheadSpool}.
+ */
+class WriteAheadSpoolTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Input: batch.spool.segment-size-mb 0, 2048 (oltre una regione mappata) e
+	 * max-size-mb più piccolo del segmento.
+	 *
+	 * Output atteso: IllegalArgumentException con il nome della proprietà,
+	 * nessun segmento creato; 2047 MB accettati come limite.
+	 */
+	@Test
+	void testSegmentSizeValidated() {
+		String directory = dir.toString();
+
+		IllegalArgumentException zero = assertThrows(IllegalArgumentException.class,
+				() -> new WriteAheadSpool(directory, 0, 4096, false, 50000, 5000));
+		assertTrue(zero.getMessage().contains("batch.spool.segment-size-mb"));
+		IllegalArgumentException overflow = assertThrows(IllegalArgumentException.class,
+				() -> new WriteAheadSpool(directory, 2048, 8192, false, 50000, 5000));
+		assertTrue(overflow.getMessage().contains("between 1 and 2047"));
+		IllegalArgumentException tooSmall = assertThrows(IllegalArgumentException.class,
+				() -> new WriteAheadSpool(directory, 64, 32, false, 50000, 5000));
+		assertTrue(tooSmall.getMessage().contains("batch.spool.max-size-mb"));
+		assertEquals(0, dir.toFile().list().length);
+	}
+}
@@ -0,0 +1,180 @@
+package com.aton.proj.oneGasMeteor.service.state;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.entity.MeasurementEntity;
+import com.aton.proj.oneGasMeteor.entity.TelemetryEntity;
+
+/**
+ * Test di {@link DeviceLatestStateService}: coalescenza per device tra due
+ * flush, fusione degli aggiornamenti e paginazione della flotta. Il writer
+ * registra gli UPSERT invece di eseguirli.
+ */
+class DeviceLatestStateServiceTest {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 3, 7, 12, 0);
+
+	/**
+	 * Input: 3 telemetrie dello stesso device e 1 di un altro prima del flush.
+	 *
+	 * Output atteso: un solo UPSERT con 2 righe; per il primo device l'ultimo
+	 * stato ricevuto. Un secondo flush senza aggiornamenti non scrive nulla.
+	 */
+	@Test
+	void testUpdatesCoalescedPerDevice() {
+		RecordingWriter writer = new RecordingWriter();
+		DeviceLatestStateService service = new DeviceLatestStateService(writer);
+
+		service.update(telemetry("dev-1", 3.6, T0), List.of());
+		service.update(telemetry("dev-1", 3.5, T0.plusMinutes(1)), List.of());
+		service.update(telemetry("dev-1", 3.4, T0.plusMinutes(2)), List.of());
+		service.update(telemetry("dev-2", 3.9, T0), List.of());
+		service.flush();
+
+		assertEquals(1, writer.batches.size());
+		List<DeviceLatestState> rows = writer.batches.get(0);
+		assertEquals(2, rows.size());
+		DeviceLatestState dev1 = rows.stream().filter(s -> s.deviceId().equals("dev-1")).findFirst().orElseThrow();
+		assertEquals(3.4, dev1.batteryVoltage());
+		assertEquals(T0.plusMinutes(2), dev1.lastSeenAt());
+
+		service.flush();
+		assertEquals(1, writer.batches.size());
+		assertEquals(0, service.getPendingCount());
+	}
+
+	/**
+	 * Input: telemetria con letture, poi un contatto (messaggio 16) senza
+	 * batteria né letture, poi una telemetria più vecchia (frame riordinato).
+	 *
+	 * Output atteso: il contatto aggiorna solo last seen e tipo di messaggio; la
+	 * telemetria più vecchia non sovrascrive nulla; il livello viene dalla
+	 * lettura più recente.
+	 */
+	@Test
+	void testMergeKeepsKnownValuesAndNewestReading() {
+		DeviceLatestStateService service = new DeviceLatestStateService(new RecordingWriter());
+		List<MeasurementEntity> readings = List.of(
+				new MeasurementEntity("dev-1", T0.minusMinutes(30), 140, 18.0, 9, 3),
+				new MeasurementEntity("dev-1", T0.minusMinutes(15), 120, 19.5, 9, 3));
+
+		service.update(telemetry("dev-1", 3.6, T0), readings);
+		service.touch("dev-1", "TEK822V2", 16, T0.plusMinutes(1));
+		service.update(telemetry("dev-1", 3.9, T0.minusHours(1)), List.of());
+
+		DeviceLatestState state = service.get("dev-1");
+		assertEquals(3.6, state.batteryVoltage());
+		assertEquals(120, state.distanceCm());
+		assertEquals(T0.minusMinutes(15), state.measuredAt());
+		assertEquals("16", state.lastMessageType());
+		assertEquals(T0.plusMinutes(1), state.lastSeenAt());
+	}
+
+	/**
+	 * Input: UPSERT che fallisce al primo flush.
+	 *
+	 * Output atteso: il device resta da scrivere e viene scritto al flush
+	 * successivo.
+	 */
+	@Test
+	void testFailedFlushKeepsDevicesPending() {
+		RecordingWriter writer = new RecordingWriter();
+		writer.failures = 1;
+		DeviceLatestStateService service = new DeviceLatestStateService(writer);
+
+		service.update(telemetry("dev-1", 3.6, T0), List.of());
+		service.flush();
+		assertEquals(1, service.getPendingCount());
+		assertEquals(1, service.getFailedFlushes());
+
+		service.flush();
+		assertEquals(0, service.getPendingCount());
+		assertEquals(1, writer.batches.size());
+	}
+
+	/**
+	 * Input: 5 device, pagine da 2.
+	 *
+	 * Output atteso: 3 pagine in ordine di device_id, nextAfter null
+	 * sull'ultima; limit fuori range rifiutato.
+	 */
+	@Test
+	void testFleetPagination() {
+		DeviceLatestStateService service = new DeviceLatestStateService(null);
+		for (String id : List.of("dev-4", "dev-2", "dev-5", "dev-1", "dev-3")) {
+			service.update(telemetry(id, 3.6, T0), List.of());
+		}
+
+		DeviceLatestStateService.Page first = service.page(null, 2);
+		assertEquals(List.of("dev-1", "dev-2"), first.devices().stream().map(DeviceLatestState::deviceId).toList());
+		assertEquals(5, first.total());
+		DeviceLatestStateService.Page second = service.page(first.nextAfter(), 2);
+		assertEquals(List.of("dev-3", "dev-4"), second.devices().stream().map(DeviceLatestState::deviceId).toList());
+		DeviceLatestStateService.Page last = service.page(second.nextAfter(), 2);
+		assertEquals(List.of("dev-5"), last.devices().stream().map(DeviceLatestState::deviceId).toList());
+		assertNull(last.nextAfter());
+
+		assertThrows(IllegalArgumentException.class, () -> service.page(null, 0));
+		assertEquals(0, service.getPendingCount(), "Senza writer nessun device resta da scrivere");
+	}
+
+	/**
+	 * Input: database.type di ciascun profilo.
+	 *
+	 * Output atteso: ON CONFLICT su PostgreSQL/TimescaleDB, MERGE con HOLDLOCK
+	 * su SQL Server, MERGE ... KEY su H2.
+	 */
+	@Test
+	void testUpsertSqlPerDatabase() {
+		assertTrue(DeviceLatestStateWriter.upsertSql("timescaledb").contains("ON CONFLICT (device_id) DO UPDATE"));
+		assertTrue(DeviceLatestStateWriter.upsertSql("postgresql").contains("ON CONFLICT (device_id) DO UPDATE"));
+		assertTrue(DeviceLatestStateWriter.upsertSql("sqlserver").startsWith("MERGE device_latest_state WITH (HOLDLOCK)"));
+		assertTrue(DeviceLatestStateWriter.upsertSql("h2mem").contains("KEY (device_id)"));
+	}
+
+	private static TelemetryEntity telemetry(String deviceId, double batteryVoltage, LocalDateTime receivedAt) {
+		TelemetryEntity entity = new TelemetryEntity();
+		entity.setDeviceId(deviceId);
+		entity.setDeviceType("TEK822V2");
+		entity.setMessageType("8");
+		entity.setFirmwareVersion("1.3");
+		entity.setBatteryVoltage(batteryVoltage);
+		entity.setSignalStrength(20);
+		entity.setReceivedAt(receivedAt);
+		return entity;
+	}
+
+	/** Registra i blocchi scritti; fallisce le prime failures chiamate */
+	private static final class RecordingWriter extends DeviceLatestStateWriter {
+
+		final List<List<DeviceLatestState>> batches = new ArrayList<>();
+		int failures;
+
+		RecordingWriter() {
+			super(null, "h2mem");
+		}
+
+		@Override
+		public void upsert(List<DeviceLatestState> states) {
+			if (failures > 0) {
+				failures--;
+				throw new IllegalStateException("database down");
+			}
+			batches.add(new ArrayList<>(states));
+		}
+
+		@Override
+		public List<DeviceLatestState> loadAll() {
+			return List.of();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.aton.proj.oneGasMeteor.service.state;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.aton.proj.oneGasMeteor.server.TcpSocketServer;
+
+/**
+ * Test di integrazione per DeviceLatestStateWriter con database H2 in-memory
+ * (MERGE ... KEY): una riga per device, aggiornata a ogni UPSERT.
+ */
+@SpringBootTest
+class DeviceLatestStateWriterIntegrationTest {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 3, 7, 12, 0);
+
+	@Autowired
+	private DeviceLatestStateWriter writer;
+
+	@MockitoBean
+	private TcpSocketServer tcpSocketServer;
+
+	/**
+	 * Input: due UPSERT successivi dello stesso device, il secondo senza livello.
+	 *
+	 * Output atteso: una sola riga con i valori del secondo UPSERT.
+	 */
+	@Test
+	void testUpsertInsertsThenUpdates() {
+		writer.upsert(List.of(new DeviceLatestState("state-it-device", "TEK822V2", "1.3", 3.6, 80.0, 20, 120, 19.5,
+				T0.minusMinutes(15), "8", T0)));
+		writer.upsert(List.of(new DeviceLatestState("state-it-device", "TEK822V2", "1.4", 3.5, 75.0, 18, null, null,
+				null, "16", T0.plusMinutes(5))));
+
+		List<DeviceLatestState> rows = writer.loadAll().stream()
+				.filter(s -> s.deviceId().equals("state-it-device"))
+				.toList();
+		assertEquals(1, rows.size());
+		DeviceLatestState row = rows.get(0);
+		assertEquals("1.4", row.firmwareVersion());
+		assertEquals(3.5, row.batteryVoltage());
+		assertEquals(18, row.signalStrength());
+		assertNull(row.distanceCm());
+		assertEquals("16", row.lastMessageType());
+		assertEquals(T0.plusMinutes(5), row.lastSeenAt());
+	}
+}
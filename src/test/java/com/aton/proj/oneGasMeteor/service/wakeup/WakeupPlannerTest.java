@@ -0,0 +1,129 @@
+package com.aton.proj.oneGasMeteor.service.wakeup;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.aton.proj.oneGasMeteor.repository.ProcessingMetricsRepository.ArrivalCount;
+import com.aton.proj.oneGasMeteor.service.wakeup.WakeupPlanner.Assignment;
+import com.aton.proj.oneGasMeteor.service.wakeup.WakeupPlanner.Plan;
+
+/**
+ * Test di {@link WakeupPlanner} e del valore S2 costruito da
+ * {@link WakeupPlanService}.
+ */
+class WakeupPlannerTest {
+
+	private static final int EIGHT_AM = 8 * 60;
+
+	/**
+	 * Input: 200 device che si connettono tutti alle 08:00 (7 giorni di storico),
+	 * finestra 06:00-12:00.
+	 *
+	 * Output atteso: picco osservato 200/min alle 08:00; dopo il piano al
+	 * massimo 10 connessioni/min (200 device su 24 slot, più la tolleranza di
+	 * una per chi resta nel proprio slot), tutti gli slot pianificati dentro la
+	 * finestra e sul minuto di inizio slot.
+	 */
+	@Test
+	void testSynchronizedFleetIsSpread() {
+		List<ArrivalCount> arrivals = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			arrivals.add(new ArrivalCount(String.format("dev-%03d", i), "TEK822V2", EIGHT_AM, 7));
+		}
+
+		Plan plan = new WakeupPlanner(0, 24, 48).plan(arrivals, 7);
+
+		assertEquals(EIGHT_AM, plan.observedPeakMinute());
+		assertEquals(200.0, plan.observedPerMinute()[EIGHT_AM], 0.001);
+		assertEquals(200, plan.assignments().size());
+		assertTrue(plan.plannedPerMinute()[plan.plannedPeakMinute()] <= 10,
+				"picco pianificato " + plan.plannedPerMinute()[plan.plannedPeakMinute()]);
+		for (Assignment a : plan.assignments()) {
+			assertTrue(a.plannedSlot() >= 24 && a.plannedSlot() < 48);
+			assertEquals(a.plannedSlot() * 15, a.plannedMinute());
+		}
+		assertEquals(200, Arrays.stream(plan.plannedPerMinute()).sum());
+	}
+
+	/**
+	 * Input: un device arriva abitualmente alle 08:07 (ritardo di 7 minuti nello
+	 * slot delle 08:00) e una volta alle 08:30; 3 device già alle 08:07.
+	 *
+	 * Output atteso: minuto abituale 08:07, slot attuale 32; se spostato il
+	 * ritardo di 7 minuti resta (minuto pianificato = slot * 15 + 7).
+	 */
+	@Test
+	void testUsualMinuteAndDelayAreKept() {
+		List<ArrivalCount> arrivals = List.of(
+				new ArrivalCount("a", "TEK822V2", EIGHT_AM + 7, 6),
+				new ArrivalCount("a", "TEK822V2", EIGHT_AM + 30, 1),
+				new ArrivalCount("b", "TEK822V2", EIGHT_AM + 7, 7),
+				new ArrivalCount("c", "TEK822V2", EIGHT_AM + 7, 7),
+				new ArrivalCount("d", "TEK822V2", EIGHT_AM + 7, 7));
+
+		Plan plan = new WakeupPlanner(0, 0, 0).plan(arrivals, 7);
+
+		for (Assignment a : plan.assignments()) {
+			assertEquals(EIGHT_AM + 7, a.arrivalMinute());
+			assertEquals(32, a.currentSlot());
+			assertEquals(a.plannedSlot() * 15 + 7, a.plannedMinute());
+		}
+		assertEquals(2, plan.moves().size(), "2 device restano alle 08:07, 2 vengono spostati");
+	}
+
+	/**
+	 * Input: 50 device alle 03:00, fuori dalla finestra 06:00-12:00.
+	 *
+	 * Output atteso: nessuno spostamento, il carico resta nel piano.
+	 */
+	@Test
+	void testDevicesOutsideWindowAreNotMoved() {
+		List<ArrivalCount> arrivals = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			arrivals.add(new ArrivalCount("night-" + i, "TEK822V2", 3 * 60, 7));
+		}
+
+		Plan plan = new WakeupPlanner(0, 24, 48).plan(arrivals, 7);
+
+		assertTrue(plan.moves().isEmpty());
+		assertEquals(50, plan.plannedPerMinute()[3 * 60]);
+	}
+
+	/**
+	 * Input: device con RTC un'ora indietro (offset 60), arrivo alle 09:02 del
+	 * server.
+	 *
+	 * Output atteso: slot attuale 32 (08:00 del device), finestra 22:00-02:00
+	 * che passa la mezzanotte contiene gli slot 88-95 e 0-7.
+	 */
+	@Test
+	void testClockOffsetAndWrappingWindow() {
+		WakeupPlanner planner = new WakeupPlanner(60, 88, 8);
+
+		assertEquals(32, planner.currentSlot(9 * 60 + 2));
+		assertEquals(10 * 60 + 2, planner.arrivalMinute(36, 9 * 60 + 2));
+		assertTrue(planner.inWindow(90));
+		assertTrue(planner.inWindow(3));
+		assertFalse(planner.inWindow(32));
+	}
+
+	/**
+	 * Input: S2 attuale "3E2001" (giorni feriali, 2 upload), nuovo slot 35;
+	 * S2 non noto o non valido.
+	 *
+	 * Output atteso: "3E2301" mantiene giorni e frequenza; default "7F2300".
+	 */
+	@Test
+	void testScheduleValue() {
+		assertEquals("3E2301", WakeupPlanService.scheduleValue("3E2001", 35));
+		assertEquals("7F2300", WakeupPlanService.scheduleValue(null, 35));
+		assertEquals("7F0000", WakeupPlanService.scheduleValue("ZZ", 0));
+		assertEquals(24, WakeupPlanService.toSlot("06:00"));
+		assertEquals(32, WakeupPlanService.toSlot("08:10"));
+	}
+}